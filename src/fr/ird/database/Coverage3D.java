@@ -19,12 +19,12 @@ package fr.ird.database;
 import java.awt.geom.Point2D;
 import java.awt.geom.Dimension2D;
 import java.awt.geom.Rectangle2D;
-import java.awt.geom.AffineTransform;
 import java.awt.image.RenderedImage;
 import java.awt.image.renderable.RenderableImage;
 
 // Divers
 import java.util.Date;
+import java.util.Arrays;
 import javax.media.jai.util.Range;
 
 // OpenGIS
@@ -39,7 +39,6 @@ import org.geotools.cs.CoordinateSystem;
 import org.geotools.cs.TemporalCoordinateSystem;
 import org.geotools.cs.GeographicCoordinateSystem;
 import org.geotools.ct.MathTransform2D;
-import org.geotools.ct.MathTransformFactory;
 import org.geotools.ct.CoordinateTransformation;
 import org.geotools.ct.CoordinateTransformationFactory;
 import org.geotools.resources.CTSUtilities;
@@ -52,6 +51,7 @@ import org.geotools.cv.PointOutsideCoverageException;
 
 // Geotools (resources)
 import org.geotools.resources.geometry.XRectangle2D;
+import org.geotools.util.ProgressListener;
 
 // Seagis
 import fr.ird.resources.seagis.Resources;
@@ -69,6 +69,12 @@ import fr.ird.resources.seagis.ResourceKeys;
  * @author Martin Desruisseaux
  */
 public abstract class Coverage3D extends Coverage {
+    /**
+     * Default image width for {@link #getGridCoverage2D(Date,ProgressListener)} when no
+     * {@linkplain #getDefaultPixelSize() default pixel size} is provided.
+     */
+    public static final int DEFAULT_WIDTH = 512;
+
     /**
      * The temporal coordinate system.
      */
@@ -247,6 +253,117 @@ public abstract class Coverage3D extends Coverage {
     public abstract double[] evaluate(final Point2D point, final Date time, double[] dest)
             throws CannotEvaluateException;
 
+    /**
+     * Returns the double values for an array of points in the coverage. This method is
+     * equivalent to invoking {@link #evaluate(Point2D,Date,double[])} for every points,
+     * except that points outside the coverage get {@link Double#NaN NaN} values instead
+     * of an exception. The values of point <var>i</var> are stored in <code>dest</code>
+     * starting at index <code>i*{@link #getNumSampleDimensions()}</code>.
+     * <br><br>
+     * The default implementation evaluates the points in chronological order (which
+     * usually avoid loading the same data twice) and reuses the same {@link Point2D}
+     * and {@link Date} objects for every points. Subclasses should override this method
+     * with a more efficient implementation when they can.
+     *
+     * @param  x    The <var>x</var> coordinates of the points where to evaluate.
+     * @param  y    The <var>y</var> coordinates of the points where to evaluate.
+     * @param  t    The dates where to evaluate, in milliseconds since January 1st, 1970 UTC.
+     * @param  dest An array in which to store values, or <code>null</code> to create a new array.
+     * @return The <code>dest</code> array, or a newly created array if <code>dest</code> was null.
+     * @throws IllegalArgumentException if the <code>x</code>, <code>y</code> and <code>t</code>
+     *         arrays don't have the same length.
+     * @throws CannotEvaluateException if the computation failed for some other reason than a
+     *         point outside the coverage.
+     */
+    public double[] evaluate(final double[] x, final double[] y, final long[] t, double[] dest)
+            throws CannotEvaluateException
+    {
+        final int numBands = getNumSampleDimensions();
+        final int n = checkLength(x, y, t);
+        if (dest == null) {
+            dest = new double[n * numBands];
+        }
+        final int[]   order  = sortByTime(t);
+        final Point2D point  = new Point2D.Double();
+        final Date    date   = new Date(0);
+        double[]      buffer = null;
+        for (int k=0; k<n; k++) {
+            final int i = order[k];
+            final int offset = i*numBands;
+            point.setLocation(x[i], y[i]);
+            date.setTime(t[i]);
+            try {
+                buffer = evaluate(point, date, buffer);
+                System.arraycopy(buffer, 0, dest, offset, numBands);
+            } catch (PointOutsideCoverageException exception) {
+                Arrays.fill(dest, offset, offset+numBands, Double.NaN);
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Vérifie que les tableaux de coordonnées ont tous la même longueur.
+     *
+     * @return La longueur commune des tableaux.
+     * @throws IllegalArgumentException si les tableaux n'ont pas la même longueur.
+     */
+    protected static int checkLength(final double[] x, final double[] y, final long[] t)
+            throws IllegalArgumentException
+    {
+        final int n = t.length;
+        if (x.length != n || y.length != n) {
+            throw new IllegalArgumentException("Les tableaux n'ont pas la même longueur.");
+        }
+        return n;
+    }
+
+    /**
+     * Retourne les index des éléments du tableau spécifié, classés par date croissante.
+     * L'ordre des éléments ayant la même date est conservé.
+     *
+     * @param  t Les dates, en millisecondes écoulées depuis le 1er janvier 1970 UTC.
+     * @return Les index <code>i</code> de <code>t[i]</code> en ordre chronologique.
+     */
+    protected static int[] sortByTime(final long[] t) {
+        final int[] order = new int[t.length];
+        boolean sorted = true;
+        for (int i=0; i<order.length; i++) {
+            order[i] = i;
+            if (i!=0 && t[i] < t[i-1]) {
+                sorted = false;
+            }
+        }
+        if (!sorted) {
+            sortByTime(t, order, new int[order.length], 0, order.length);
+        }
+        return order;
+    }
+
+    /**
+     * Tri fusion des index <code>order[lower..upper-1]</code> selon les dates <code>t</code>.
+     */
+    private static void sortByTime(final long[] t, final int[] order, final int[] buffer,
+                                   final int lower, final int upper)
+    {
+        if (upper - lower < 2) {
+            return;
+        }
+        final int middle = (lower + upper) >>> 1;
+        sortByTime(t, order, buffer, lower, middle);
+        sortByTime(t, order, buffer, middle, upper);
+        if (t[order[middle-1]] <= t[order[middle]]) {
+            return;
+        }
+        System.arraycopy(order, lower, buffer, lower, upper-lower);
+        int i=lower, j=middle, k=lower;
+        while (i<middle && j<upper) {
+            order[k++] = (t[buffer[j]] < t[buffer[i]]) ? buffer[j++] : buffer[i++];
+        }
+        while (i < middle) order[k++] = buffer[i++];
+        while (j < upper)  order[k++] = buffer[j++];
+    }
+
     /**
      * Returns a sequence of integer values for a given point in the coverage.  A value for
      * each sample dimension is included in the sequence.  The default implementation split
@@ -316,7 +433,7 @@ public abstract class Coverage3D extends Coverage {
     /**
      * Returns a 2 dimensional grid coverage for the given date. The grid geometry will be computed
      * in order to produces image with the {@linkplain #getDefaultPixelSize() default pixel size},
-     * if any.
+     * if any. This method is equivalent to <code>getGridCoverage2D(time, null)</code>.
      *
      * @param  time The date where to evaluate.
      * @return The grid coverage at the specified time, or <code>null</code>
@@ -325,16 +442,71 @@ public abstract class Coverage3D extends Coverage {
      * @throws CannotEvaluateException if the computation failed for some other reason.
      *
      * @see #getRenderableImage(Date)
-     * @see RenderableImage#createDefaultRendering()
      */
     public GridCoverage getGridCoverage2D(final Date time) throws CannotEvaluateException {
+        return getGridCoverage2D(time, null);
+    }
+
+    /**
+     * Returns a 2 dimensional grid coverage for the given date. The grid geometry will be computed
+     * in order to produces image with the {@linkplain #getDefaultPixelSize() default pixel size},
+     * if any, or an image {@value #DEFAULT_WIDTH} pixels wide otherwise. The image is divided in
+     * tiles which are computed in parallel, each tile being evaluated in a single call to
+     * {@link #evaluate(double[],double[],long[],double[])}. The computation can be canceled
+     * by {@linkplain Thread#interrupt interrupting} the current thread.
+     *
+     * @param  time The date where to evaluate.
+     * @param  progress An optional object to inform about progress, or <code>null</code>.
+     * @return The grid coverage at the specified time, or <code>null</code>
+     *         if the requested date fall in a hole in the data.
+     * @throws PointOutsideCoverageException if <code>time</code> is outside coverage.
+     * @throws CannotEvaluateException if the computation failed or has been interrupted.
+     */
+    public GridCoverage getGridCoverage2D(final Date time, final ProgressListener progress)
+            throws CannotEvaluateException
+    {
+        final Envelope        envelope = getEnvelope().getReducedEnvelope(temporalDimension, temporalDimension+1);
+        final Rectangle2D         area = envelope.toRectangle2D();
+        final Dimension2D    pixelSize = getDefaultPixelSize();
+        final int width, height;
+        if (pixelSize != null) {
+            width  = (int)Math.round(area.getWidth()  / pixelSize.getWidth());
+            height = (int)Math.round(area.getHeight() / pixelSize.getHeight());
+        } else {
+            width  = DEFAULT_WIDTH;
+            height = (int)Math.round(DEFAULT_WIDTH * (area.getHeight() / area.getWidth()));
+        }
         final String              name = getName(null);
         final SampleDimension[]  bands = getSampleDimensions();
         final CoordinateSystem      cs = CTSUtilities.getSubCoordinateSystem(coordinateSystem, 0,2);
-        final RenderedImage      image = getRenderableImage(time).createDefaultRendering();
-        final MathTransform2D gridToCS = MathTransformFactory.getDefault().createAffineTransform(
-                                   (AffineTransform) image.getProperty("gridToCoordinateSystem"));
-        return new GridCoverage(name, image, cs, gridToCS, bands, null, null);
+        final TileRenderer    renderer = new TileRenderer(this, area,
+                                         Math.max(width, 1), Math.max(height, 1), time.getTime());
+        final RenderedImage      image = renderer.render(progress);
+        return new GridCoverage(name, image, cs, envelope, bands, null, null);
+    }
+
+    /**
+     * Returns the maximum number of threads used by {@link #getGridCoverage2D(Date,ProgressListener)}
+     * for computing the tiles of an image. A value of 0 means as many threads as processors.
+     *
+     * @return The maximum number of threads, or 0 for the number of processors.
+     */
+    public static int getRenderingThreads() {
+        return TileRenderer.maximumThreads;
+    }
+
+    /**
+     * Sets the maximum number of threads used by {@link #getGridCoverage2D(Date,ProgressListener)}
+     * for computing the tiles of an image. This setting is shared by all coverages in the
+     * virtual machine.
+     *
+     * @param threads The maximum number of threads, or 0 for the number of processors.
+     */
+    public static void setRenderingThreads(final int threads) {
+        if (threads < 0) {
+            throw new IllegalArgumentException(String.valueOf(threads));
+        }
+        TileRenderer.maximumThreads = threads;
     }
 
     /**
@@ -0,0 +1,286 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database;
+
+// J2SE dependencies
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.awt.image.DataBuffer;
+import java.awt.image.ColorModel;
+import java.awt.image.WritableRaster;
+import java.awt.image.BandedSampleModel;
+import java.awt.geom.Rectangle2D;
+
+// JAI dependencies
+import javax.media.jai.TiledImage;
+
+// OpenGIS dependencies
+import org.opengis.coverage.CannotEvaluateException;
+
+// Geotools dependencies
+import org.geotools.cv.SampleDimension;
+import org.geotools.util.ProgressListener;
+
+
+/**
+ * Calcule l'image d'une couverture {@link Coverage3D} à une date donnée. L'image est découpée
+ * en tuiles de {@link #TILE_SIZE} pixels de côté, et les tuiles sont calculées en parallèle
+ * par plusieurs threads. Chaque thread évalue une tuile complète en un seul appel de
+ * {@link Coverage3D#evaluate(double[],double[],long[],double[])}, en réutilisant les mêmes
+ * tableaux d'une tuile à l'autre.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see Coverage3D#getGridCoverage2D(java.util.Date,ProgressListener)
+ */
+final class TileRenderer {
+    /**
+     * Largeur et hauteur des tuiles, en pixels.
+     */
+    static final int TILE_SIZE = 256;
+
+    /**
+     * Nombre maximal de threads à utiliser pour calculer une image, ou 0 pour utiliser
+     * autant de threads qu'il y a de processeurs.
+     *
+     * @see Coverage3D#setRenderingThreads
+     */
+    static volatile int maximumThreads;
+
+    /**
+     * Intervalle (en millisecondes) entre deux mises à jour de l'état d'avancement.
+     */
+    private static final long PROGRESS_INTERVAL = 250;
+
+    /**
+     * La couverture à évaluer.
+     */
+    private final Coverage3D coverage;
+
+    /**
+     * L'image de destination.
+     */
+    private final TiledImage image;
+
+    /**
+     * Coordonnées du coin supérieur gauche de l'image et taille des pixels.
+     */
+    private final double xmin, ymax, scaleX, scaleY;
+
+    /**
+     * La date à laquelle évaluer la couverture, en millisecondes.
+     */
+    private final long time;
+
+    /**
+     * Nombre de bandes de la couverture.
+     */
+    private final int numBands;
+
+    /**
+     * Index de la prochaine tuile à calculer.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Nombre de tuiles dont le calcul est terminé.
+     */
+    private final AtomicInteger completed = new AtomicInteger();
+
+    /**
+     * Mis à <code>true</code> si le calcul doit être interrompu.
+     */
+    private volatile boolean canceled;
+
+    /**
+     * Prépare le calcul d'une image de la taille spécifiée.
+     *
+     * @param coverage La couverture à évaluer.
+     * @param area     Les coordonnées spatiales de l'image.
+     * @param width    La largeur de l'image, en pixels.
+     * @param height   La hauteur de l'image, en pixels.
+     * @param time     La date à laquelle évaluer la couverture, en millisecondes.
+     */
+    TileRenderer(final Coverage3D coverage, final Rectangle2D area,
+                 final int width, final int height, final long time)
+    {
+        final SampleDimension[] bands = coverage.getSampleDimensions();
+        this.coverage = coverage;
+        this.time     = time;
+        this.numBands = bands.length;
+        this.xmin     = area.getMinX();
+        this.ymax     = area.getMaxY();
+        this.scaleX   = area.getWidth()  / width;
+        this.scaleY   = area.getHeight() / height;
+        final int tileWidth  = Math.min(width,  TILE_SIZE);
+        final int tileHeight = Math.min(height, TILE_SIZE);
+        final BandedSampleModel model = new BandedSampleModel(DataBuffer.TYPE_FLOAT,
+                                            tileWidth, tileHeight, numBands);
+        final ColorModel colors = (numBands != 0) ? bands[0].getColorModel(0, numBands) : null;
+        image = new TiledImage(0, 0, width, height, 0, 0, model, colors);
+    }
+
+    /**
+     * Calcule toutes les tuiles de l'image. Le calcul peut être interrompu
+     * en appelant {@link Thread#interrupt} sur le thread courant.
+     *
+     * @param  progress Objet à informer des progrès du calcul, ou <code>null</code>.
+     * @return L'image calculée.
+     * @throws CannotEvaluateException si le calcul a échoué ou a été interrompu.
+     */
+    TiledImage render(final ProgressListener progress) throws CannotEvaluateException {
+        final int numTiles = image.getNumXTiles() * image.getNumYTiles();
+        int numThreads = maximumThreads;
+        if (numThreads <= 0) {
+            numThreads = Runtime.getRuntime().availableProcessors();
+        }
+        numThreads = Math.max(1, Math.min(numTiles, numThreads));
+        if (progress != null) {
+            progress.started();
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<Object>> tasks = new ArrayList<Future<Object>>(numThreads);
+            for (int i=0; i<numThreads; i++) {
+                tasks.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws CannotEvaluateException {
+                        run(numTiles);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Object> task : tasks) {
+                while (true) {
+                    try {
+                        task.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                        break;
+                    } catch (TimeoutException exception) {
+                        // Pas encore terminé: met à jour l'état d'avancement.
+                    }
+                    if (progress != null) {
+                        progress.progress((100f/numTiles) * completed.get());
+                    }
+                }
+            }
+        } catch (InterruptedException exception) {
+            throw failure("Calcul de l'image interrompu.", exception);
+        } catch (ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof CannotEvaluateException) {
+                throw (CannotEvaluateException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw failure(cause.getLocalizedMessage(), cause);
+        } finally {
+            canceled = true;
+            executor.shutdownNow();
+        }
+        if (progress != null) {
+            progress.complete();
+        }
+        return image;
+    }
+
+    /**
+     * Construit l'exception à lancer si le calcul a échoué.
+     */
+    private static CannotEvaluateException failure(final String message, final Throwable cause) {
+        final CannotEvaluateException e = new CannotEvaluateException(message);
+        e.initCause(cause);
+        return e;
+    }
+
+    /**
+     * Calcule des tuiles jusqu'à ce qu'il n'en reste plus. Cette méthode est exécutée
+     * simultanément par chaque thread; les tableaux sont alloués une seule fois par thread.
+     *
+     * @param numTiles Nombre total de tuiles dans l'image.
+     */
+    private void run(final int numTiles) throws CannotEvaluateException {
+        final int numXTiles  = image.getNumXTiles();
+        final int tileWidth  = image.getTileWidth();
+        final int tileHeight = image.getTileHeight();
+        final int capacity   = tileWidth * tileHeight;
+        final double[] x      = new double[capacity];
+        final double[] y      = new double[capacity];
+        final long[]   t      = new long  [capacity];
+        final double[] values = new double[capacity * numBands];
+        final float [] band   = new float [capacity];
+        int tile;
+        while (!canceled && (tile = next.getAndIncrement()) < numTiles) {
+            final int tileX = tile % numXTiles;
+            final int tileY = tile / numXTiles;
+            final WritableRaster raster = image.getWritableTile(tileX, tileY);
+            try {
+                /*
+                 * Les tuiles du bord droit et du bord inférieur peuvent déborder de l'image.
+                 * On n'évalue que les pixels à l'intérieur de l'image. Les tableaux ne sont
+                 * réalloués que si leur taille change.
+                 */
+                final int minX   = raster.getMinX();
+                final int minY   = raster.getMinY();
+                final int width  = Math.min(tileWidth,  image.getMaxX() - minX);
+                final int height = Math.min(tileHeight, image.getMaxY() - minY);
+                final int count  = width * height;
+                final double[] tx, ty;
+                final long[] tt;
+                if (count == capacity) {
+                    tx = x;
+                    ty = y;
+                    tt = t;
+                } else {
+                    tx = new double[count];
+                    ty = new double[count];
+                    tt = new long  [count];
+                }
+                int k = 0;
+                for (int j=0; j<height; j++) {
+                    final double yj = ymax - (minY + j + 0.5) * scaleY;
+                    for (int i=0; i<width; i++) {
+                        tx[k] = xmin + (minX + i + 0.5) * scaleX;
+                        ty[k] = yj;
+                        tt[k] = time;
+                        k++;
+                    }
+                }
+                coverage.evaluate(tx, ty, tt, values);
+                for (int b=0; b<numBands; b++) {
+                    for (k=0; k<count; k++) {
+                        band[k] = (float) values[k*numBands + b];
+                    }
+                    raster.setSamples(minX, minY, width, height, b, band);
+                }
+            } finally {
+                image.releaseWritableTile(tileX, tileY);
+            }
+            completed.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.coverage;
+
+// J2SE dependencies
+import java.io.File;
+import java.util.Date;
+import java.io.IOException;
+import java.io.Serializable;
+import java.awt.Dimension;
+import java.awt.geom.Rectangle2D;
+
+// Geotools dependencies
+import org.geotools.pt.Envelope;
+import org.geotools.gc.GridRange;
+import org.geotools.gc.GridCoverage;
+import org.geotools.cs.TemporalDatum;
+import org.geotools.cs.TemporalCoordinateSystem;
+import org.geotools.resources.CTSUtilities;
+
+// Seagis dependencies
+import fr.ird.resources.seagis.Resources;
+import fr.ird.resources.seagis.ResourceKeys;
+
+
+/**
+ * Les informations nécessaires à l'ajout d'une image dans la table "<code>GridCoverages</code>":
+ * son nom, ses coordonnées géographiques, sa taille en pixels et sa plage de temps. Ces
+ * informations peuvent généralement être obtenues à partir de l'en-tête d'une image (ou d'un
+ * fichier auxiliaire) sans avoir à décoder ses pixels, ce qui permet d'enregistrer un grand
+ * nombre d'images avec {@link CoverageTable#addGridCoverages}.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see CoverageTable#addGridCoverages
+ */
+public class CoverageHeader implements Serializable {
+    /**
+     * Numéro de série pour compatibilités avec différentes versions.
+     */
+    private static final long serialVersionUID = 2470932154208127783L;
+
+    /**
+     * Lit les informations d'un fichier d'image. Les implémentations de cette interface
+     * peuvent être appelées simultanément par plusieurs threads.
+     */
+    public static interface Reader {
+        /**
+         * Lit les informations du fichier spécifié.
+         *
+         * @param  file Le fichier à lire.
+         * @return Les informations sur l'image.
+         * @throws IOException si le fichier n'a pas pu être lu.
+         */
+        public abstract CoverageHeader read(final File file) throws IOException;
+    }
+
+    /**
+     * Le nom de l'image, sans son chemin ni son extension.
+     */
+    public final String filename;
+
+    /**
+     * Les coordonnées géographiques de l'image, en degrés de longitude et de latitude.
+     */
+    public final Rectangle2D bbox;
+
+    /**
+     * La taille de l'image, en pixels.
+     */
+    public final Dimension size;
+
+    /**
+     * La date de début d'acquisition de l'image.
+     */
+    public final Date startTime;
+
+    /**
+     * La date de fin d'acquisition de l'image.
+     */
+    public final Date endTime;
+
+    /**
+     * Construit un en-tête avec les informations spécifiées.
+     *
+     * @param filename  Le nom de l'image, sans son chemin ni son extension.
+     * @param bbox      Les coordonnées géographiques de l'image.
+     * @param size      La taille de l'image, en pixels.
+     * @param startTime La date de début d'acquisition de l'image.
+     * @param endTime   La date de fin d'acquisition de l'image.
+     */
+    public CoverageHeader(final String      filename,
+                          final Rectangle2D bbox,
+                          final Dimension   size,
+                          final Date        startTime,
+                          final Date        endTime)
+    {
+        this.filename  = filename;
+        this.bbox      = bbox;
+        this.size      = size;
+        this.startTime = startTime;
+        this.endTime   = endTime;
+    }
+
+    /**
+     * Construit un en-tête à partir des informations d'une image. L'image doit avoir au moins
+     * trois dimensions, la troisième dimension étant la date de l'image sur l'axe du temps.
+     *
+     * @param  filename Le nom de l'image, sans son chemin ni son extension.
+     * @param  coverage L'image.
+     * @throws IllegalArgumentException si le système de coordonnées de l'image n'a pas
+     *         d'axe du temps selon le temps universel.
+     */
+    public CoverageHeader(final String filename, final GridCoverage coverage)
+            throws IllegalArgumentException
+    {
+        final TemporalCoordinateSystem timeCS = CTSUtilities.getTemporalCS(coverage.getCoordinateSystem());
+        if (timeCS == null || !TemporalDatum.UTC.equals(timeCS.getTemporalDatum())) {
+            throw new IllegalArgumentException(Resources.format(ResourceKeys.ERROR_BAD_COORDINATE_SYSTEM));
+        }
+        final Envelope envelope = coverage.getEnvelope();
+        final GridRange   range = coverage.getGridGeometry().getGridRange();
+        this.filename  = filename;
+        this.bbox      = envelope.getSubEnvelope(0,2).toRectangle2D();
+        this.size      = new Dimension(range.getLength(0), range.getLength(1));
+        this.startTime = timeCS.toDate(envelope.getMinimum(2));
+        this.endTime   = timeCS.toDate(envelope.getMaximum(2));
+    }
+
+    /**
+     * Retourne le nom du fichier spécifié sans son chemin ni son extension. Cette méthode
+     * peut être utile aux implémentations de {@link Reader}.
+     *
+     * @param  file Le fichier.
+     * @return Le nom du fichier, sans son extension.
+     */
+    public static String getFilename(final File file) {
+        final String name = file.getName();
+        final int split = name.lastIndexOf('.');
+        return (split > 0) ? name.substring(0, split) : name;
+    }
+
+    /**
+     * Retourne une chaîne de caractères représentant cet en-tête.
+     */
+    public String toString() {
+        return "CoverageHeader[\"" + filename + "\"]";
+    }
+}
@@ -16,8 +16,10 @@
 package fr.ird.database.coverage;
 
 // J2SE et JAI
+import java.io.File;
 import java.util.List;
 import java.util.Date;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.Dimension2D;
 import java.rmi.RemoteException;
@@ -32,6 +34,7 @@ import org.geotools.cs.CoordinateSystem;
 import org.geotools.gp.GridCoverageProcessor;
 import org.geotools.gp.OperationNotFoundException;
 import org.geotools.util.RangeSet;
+import org.geotools.util.ProgressListener;
 
 // Seagis
 import fr.ird.database.Table;
@@ -259,6 +262,25 @@ public interface CoverageTable extends Table {
      */
     public abstract CoverageEntry getEntry(final String name) throws RemoteException;
 
+    /**
+     * Retourne les séries temporelles des valeurs aux positions spécifiées. Les images sont
+     * celles que retournerait {@link #getEntries}, dans le même ordre; elles sont parcourues
+     * une seule fois et seuls les pixels contenant les points demandés sont lus. Cette
+     * méthode est beaucoup plus rapide que des appels répétés à
+     * {@link GridCoverage3D#evaluate(Point2D,Date,double[])} pour extraire la série
+     * temporelle d'une bouée sur plusieurs années d'images.
+     * <br><br>
+     * Les valeurs retournées sont celles des pixels qui contiennent les points, sans
+     * interpolation spatiale ni temporelle. Les points qui sont en dehors d'une image
+     * reçoivent des valeurs {@link Double#NaN NaN} pour cette image.
+     *
+     * @param  points Les positions, dans le système de coordonnées de cette table.
+     * @return Les valeurs sous forme de tableau <code>[point][image][bande]</code>.
+     * @throws RemoteException si un problème est survenu lors de la communication avec le
+     *         serveur ou lors de la lecture d'une image.
+     */
+    public double[][][] getTimeSeries(final Point2D[] points) throws RemoteException;
+
     /**
      * Obtient les plages de temps et de coordonnées des images, ainsi que la liste des entrées
      * correspondantes. L'objet retourné ne contiendra que les informations demandées. Par exemple
@@ -287,4 +309,27 @@ public interface CoverageTable extends Table {
      * @throws RemoteException si un problème est survenu lors de la communication avec le serveur.
      */
     public boolean addGridCoverage(final GridCoverage coverage, final String filename) throws RemoteException;
+
+    /**
+     * Ajoute un grand nombre d'entrées dans la table "<code>GridCoverages</code>". Les en-têtes
+     * des fichiers sont lus en parallèle par <code>reader</code>, les coordonnées géographiques
+     * identiques ne sont recherchées qu'une seule fois et toutes les insertions sont faites par
+     * lots dans une seule transaction. La méthode {@link #setSeries} doit d'abord avoir été
+     * appelée au moins une fois.
+     * <br><br>
+     * Les fichiers qui n'ont pas pu être lus et les images dont le nom existe déjà pour la
+     * série courante ne sont pas ajoutés; ils sont signalés par
+     * {@link ProgressListener#warningOccurred} et la lecture des autres fichiers continue.
+     * En revanche, si l'écriture dans la base de données échoue, aucune image n'est ajoutée.
+     *
+     * @param  files Les fichiers à ajouter. Les répertoires seront remplacés par les fichiers
+     *         qu'ils contiennent (sans descendre dans les sous-répertoires).
+     * @param  reader L'objet à utiliser pour lire les en-têtes des fichiers.
+     * @param  progress Objet à informer des progrès et des fichiers rejetés, ou <code>null</code>.
+     * @return Le nombre d'images ajoutées à la base de données.
+     * @throws RemoteException si un problème est survenu lors de la communication avec le serveur
+     *         ou lors de l'écriture dans la base de données.
+     */
+    public int addGridCoverages(final File[] files, final CoverageHeader.Reader reader,
+                                final ProgressListener progress) throws RemoteException;
 }
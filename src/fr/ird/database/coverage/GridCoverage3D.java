@@ -23,8 +23,15 @@ import java.awt.geom.Rectangle2D;
 // Collections
 import java.util.List;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.Iterator;
 import java.util.Comparator;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ExecutionException;
 
 // Requêtes SQL et entrés/sorties
 import java.rmi.RemoteException;
@@ -38,6 +45,7 @@ import javax.swing.event.EventListenerList;
 import javax.imageio.event.IIOReadWarningListener;
 import javax.imageio.event.IIOReadProgressListener;
 import org.geotools.io.image.IIOReadProgressAdapter;
+import org.geotools.util.ProgressListener;
 
 // Divers
 import java.util.Date;
@@ -133,7 +141,7 @@ public class GridCoverage3D extends Coverage3D {
     /**
      * Indique si les interpolations spatio-temporelles sont permises.
      */
-    private boolean interpolationAllowed = true;
+    private volatile boolean interpolationAllowed = true;
 
     /**
      * Intervalle de temps maximal toléré entre la fin d'une image et
@@ -155,44 +163,58 @@ public class GridCoverage3D extends Coverage3D {
     private transient Listeners readListener;
 
     /**
-     * Données dont la date de début est inférieure ou égale à la date demandée.
-     * Autant que possible, on essaiera de faire en sorte que la date du milieu
-     * soit inférieure ou égale à la date demandée (mais ce second aspect n'est
-     * pas garantie).
+     * Les images qui encadrent la dernière date demandée, ou <code>null</code> si aucune
+     * image n'a encore été chargée. Cet objet est immutable; {@link #seek} le remplace en
+     * bloc lorsqu'une date demandée sort de l'encadrement. Les méthodes <code>evaluate</code>
+     * peuvent ainsi l'utiliser sans synchronisation, seul le chargement de nouvelles images
+     * étant synchronisé.
      */
-    private transient GridCoverage lower;
-
-    /**
-     * Données dont la date de fin  est supérieure ou égale à la date demandée.
-     * Autant que possible, on essaiera de faire en sorte que la date du milieu
-     * soit supérieure ou égale à la date demandée (mais ce second aspect n'est
-     * pas garantie).
-     */
-    private transient GridCoverage upper;
+    private transient volatile Bracket bracket;
 
     /**
      * L'image interpolée lors du dernier appel de {@link #getGridCoverage2D}. Mémorisée ici
      * afin d'éviter de reconstruire cette image plusieurs fois lors d'appels successifs de
      * {@link #getGridCoverage2D} avec la même date.
      */
-    private transient GridCoverage interpolated;
+    private transient volatile Interpolated interpolated;
+
+    /**
+     * L'exécuteur à utiliser pour lire à l'avance les prochaines images, ou <code>null</code>
+     * si la lecture anticipée est désactivée.
+     *
+     * @see #setPrefetch
+     */
+    private transient Executor prefetchExecutor;
+
+    /**
+     * Nombre d'images à lire à l'avance lorsque les accès semblent séquentiels.
+     *
+     * @see #setPrefetch
+     */
+    private int prefetchDepth;
 
     /**
-     * Date et heure du milieu des données {@link #lower} et {@link #upper},
-     * en nombre de millisecondes écoulées depuis le 1er janvier 1970 UTC.
+     * Images dont la lecture anticipée a été demandée. Les clés sont les index dans le
+     * tableau {@link #entries}. Ne sera construit que la première fois où il sera nécessaire.
      */
-    private transient long lowerTime=Long.MAX_VALUE, upperTime=Long.MIN_VALUE;
+    private transient Map<Integer,FutureTask<GridCoverage>> prefetched;
 
     /**
-     * La date et heure (en nombre de millisecondes depuis le 1er janvier 1970 UTC)
-     * à laquelle a été interpolée l'image {@link #interpolated}.
+     * Index (dans {@link #entries}) de la dernière image chargée par {@link #seek},
+     * ou -1 si aucune image n'a encore été chargée.
      */
-    private transient long timeInterpolated = Long.MIN_VALUE;
+    private transient int lastLoaded = -1;
 
     /**
-     * Plage de temps des données {@link #lower} et {@link #upper}.
+     * Nombre d'images demandées par {@link #seek} qui avaient déjà été lues à l'avance
+     * (ou dont la lecture à l'avance était en cours).
      */
-    private transient Range lowerTimeRange, upperTimeRange;
+    private transient int prefetchHitCount;
+
+    /**
+     * Nombre d'images dont la lecture anticipée a été demandée.
+     */
+    private transient int prefetchCount;
 
     /**
      * L'objet à utiliser pour effectuer des opérations sur les images
@@ -206,9 +228,7 @@ public class GridCoverage3D extends Coverage3D {
      */
     private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
         in.defaultReadObject();
-        lowerTime = Long.MAX_VALUE;
-        upperTime = Long.MIN_VALUE;
-        timeInterpolated = Long.MIN_VALUE;
+        lastLoaded = -1;
     }
 
     /**
@@ -299,6 +319,79 @@ public class GridCoverage3D extends Coverage3D {
         envelope             = source.envelope;
         geographicArea       = source.geographicArea;
         interpolationAllowed = source.interpolationAllowed;
+        prefetchExecutor     = source.prefetchExecutor;
+        prefetchDepth        = source.prefetchDepth;
+    }
+
+    /**
+     * Les images qui encadrent une date. Il est possible que la même image soit affectée à
+     * {@link #lower} et {@link #upper}, s'il n'y a pas d'interpolation à faire.
+     */
+    private static final class Bracket {
+        /**
+         * Données dont la date de début est inférieure ou égale à la date demandée.
+         * Autant que possible, on essaiera de faire en sorte que la date du milieu
+         * soit inférieure ou égale à la date demandée (mais ce second aspect n'est
+         * pas garantie).
+         */
+        final GridCoverage lower;
+
+        /**
+         * Données dont la date de fin  est supérieure ou égale à la date demandée.
+         * Autant que possible, on essaiera de faire en sorte que la date du milieu
+         * soit supérieure ou égale à la date demandée (mais ce second aspect n'est
+         * pas garantie).
+         */
+        final GridCoverage upper;
+
+        /**
+         * Date et heure du milieu des données {@link #lower} et {@link #upper},
+         * en nombre de millisecondes écoulées depuis le 1er janvier 1970 UTC.
+         */
+        final long lowerTime, upperTime;
+
+        /**
+         * Plage de temps des données {@link #lower} et {@link #upper}.
+         */
+        final Range lowerTimeRange, upperTimeRange;
+
+        /**
+         * Construit un encadrement pour les images spécifiées.
+         */
+        Bracket(final GridCoverage lower, final Range lowerTimeRange,
+                final GridCoverage upper, final Range upperTimeRange)
+        {
+            this.lower          = lower;
+            this.upper          = upper;
+            this.lowerTimeRange = lowerTimeRange;
+            this.upperTimeRange = upperTimeRange;
+            this.lowerTime      = getTime(lowerTimeRange);
+            this.upperTime      = getTime(upperTimeRange);
+        }
+
+        /**
+         * Indique si cet encadrement est valide pour la date spécifiée.
+         */
+        final boolean contains(final long time) {
+            return time>=lowerTime && time<=upperTime;
+        }
+    }
+
+    /**
+     * Une image interpolée par {@link #getGridCoverage2D}, avec l'encadrement et la date
+     * pour lesquels elle a été calculée.
+     */
+    private static final class Interpolated {
+        /** L'encadrement qui a servi à l'interpolation. */ final Bracket bracket;
+        /** La date de l'interpolation, en millisecondes. */ final long time;
+        /** L'image interpolée.                           */ final GridCoverage coverage;
+
+        /** Construit une image interpolée. */
+        Interpolated(final Bracket bracket, final long time, final GridCoverage coverage) {
+            this.bracket  = bracket;
+            this.time     = time;
+            this.coverage = coverage;
+        }
     }
 
     /**
@@ -546,6 +639,14 @@ public class GridCoverage3D extends Coverage3D {
      */
     private GridCoverage load(final CoverageEntry entry) throws IOException {
         GridCoverage coverage = entry.getGridCoverage(listeners);
+        return interpolate(coverage);
+    }
+
+    /**
+     * Applique sur l'image spécifiée l'interpolation choisie par
+     * {@link #setInterpolationAllowed}.
+     */
+    private GridCoverage interpolate(GridCoverage coverage) {
         if (!interpolationAllowed) {
             final GridCoverageProcessor processor = getGridCoverageProcessor();
             coverage = processor.doOperation("Interpolate", coverage, "Type", "NearestNeighbor");
@@ -560,6 +661,7 @@ public class GridCoverage3D extends Coverage3D {
      * @throws IOException if an error occured while loading image.
      */
     private void load(final int index) throws IOException {
+        assert Thread.holdsLock(this);
         if (RUN_GC) {
             System.gc();
             System.runFinalization();
@@ -567,64 +669,221 @@ public class GridCoverage3D extends Coverage3D {
         final CoverageEntry entry = entries[index];
         final Range timeRange = entry.getTimeRange();
         log(ResourceKeys.LOADING_IMAGE_$1, new Object[]{entry});
-        lower          = upper          = load(entry);
-        lowerTime      = upperTime      = getTime(timeRange);
-        lowerTimeRange = upperTimeRange = timeRange;
+        final GridCoverage coverage = load(index, entry);
+        bracket = new Bracket(coverage, timeRange, coverage, timeRange);
+        prefetch(index);
     }
 
     /**
      * Loads images for the given entries.
      *
+     * @param  lowerIndex Index in {@link #entries} for the image before the requested date.
+     * @param  upperIndex Index in {@link #entries} for the image after the requested date.
      * @throws IOException if an error occured while loading images.
      */
-    private void load(final CoverageEntry lowerEntry,
-                      final CoverageEntry upperEntry)
-            throws IOException
-    {
+    private void load(final int lowerIndex, final int upperIndex) throws IOException {
+        assert Thread.holdsLock(this);
         if (RUN_GC) {
             System.gc();
             System.runFinalization();
         }
+        final CoverageEntry lowerEntry = entries[lowerIndex];
+        final CoverageEntry upperEntry = entries[upperIndex];
         log(ResourceKeys.LOADING_IMAGES_$2, new Object[]{lowerEntry, upperEntry});
         final Range lowerTimeRange = lowerEntry.getTimeRange();
         final Range upperTimeRange = upperEntry.getTimeRange();
-        final GridCoverage   lower = load(lowerEntry);
-        final GridCoverage   upper = load(upperEntry);
-
-        this.lower          = lower; // Set only when BOTH images are OK.
-        this.upper          = upper;
-        this.lowerTime      = getTime(lowerTimeRange);
-        this.upperTime      = getTime(upperTimeRange);
-        this.lowerTimeRange = lowerTimeRange;
-        this.upperTimeRange = upperTimeRange;
+        final GridCoverage   lower = load(lowerIndex, lowerEntry);
+        final GridCoverage   upper = load(upperIndex, upperEntry);
+
+        bracket = new Bracket(lower, lowerTimeRange, upper, upperTimeRange); // Set only when BOTH images are OK.
+        prefetch(upperIndex);
     }
 
     /**
-     * Procède à la lecture des images nécessaires à l'interpolation des données à la date
-     * spécifiée. Les images lues seront pointées par {@link #lower} et {@link #upper}. Il
-     * est possible que la même image soit affectée à ces deux champs, si cette méthode
-     * détermine qu'il n'y a pas d'interpolation à faire.
+     * Load a single image at the given index, using the image read in advance
+     * by {@link #prefetch} if there is one.
+     *
+     * @param  index Index in {@link #entries} for the image to load.
+     * @param  entry The image to load (must be <code>entries[index]</code>).
+     * @return The loaded image.
+     * @throws IOException if an error occured while loading image.
+     */
+    private GridCoverage load(final int index, final CoverageEntry entry) throws IOException {
+        assert entries[index] == entry : index;
+        if (prefetched != null) {
+            final FutureTask<GridCoverage> task = prefetched.remove(index);
+            if (task != null) {
+                /*
+                 * La lecture de cette image a déjà été lancée en arrière-plan. Attend la fin
+                 * de la lecture si elle n'est pas encore terminée. En cas d'échec, on lira
+                 * l'image à nouveau de la façon habituelle afin que l'exception soit lancée
+                 * dans le thread courant.
+                 */
+                try {
+                    final GridCoverage coverage = task.get();
+                    if (coverage != null) {
+                        prefetchHitCount++;
+                        return interpolate(coverage);
+                    }
+                } catch (ExecutionException exception) {
+                    // Ignore; l'image sera lue à nouveau ci-dessous.
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return load(entry);
+    }
+
+    /**
+     * Lance la lecture en arrière-plan des images qui suivent l'image à l'index spécifié,
+     * si les accès semblent séquentiels. Les accès sont considérés séquentiels lorsque
+     * l'image chargée suit immédiatement (ou de près) l'image précédemment chargée.
+     * Les lectures anticipées qui ne seront vraisemblablement plus utiles (parce
+     * qu'elles précèdent l'image courante) sont annulées.
+     *
+     * @param index Index in {@link #entries} of the last image loaded.
+     */
+    private void prefetch(final int index) {
+        final boolean sequential = (lastLoaded >= 0 && index > lastLoaded && index <= lastLoaded + prefetchDepth + 1);
+        lastLoaded = index;
+        if (prefetched != null) {
+            for (final Iterator<Map.Entry<Integer,FutureTask<GridCoverage>>> it=prefetched.entrySet().iterator(); it.hasNext();) {
+                final Map.Entry<Integer,FutureTask<GridCoverage>> e = it.next();
+                final int i = e.getKey();
+                if (!sequential || i < index-1 || i > index+prefetchDepth) {
+                    e.getValue().cancel(false);
+                    it.remove();
+                }
+            }
+        }
+        final Executor executor = prefetchExecutor;
+        if (!sequential || executor == null) {
+            return;
+        }
+        if (prefetched == null) {
+            prefetched = new HashMap<Integer,FutureTask<GridCoverage>>();
+        }
+        final int upper = Math.min(entries.length-1, index+prefetchDepth);
+        for (int i=index+1; i<=upper; i++) {
+            if (!prefetched.containsKey(i)) {
+                final CoverageEntry entry = entries[i];
+                final FutureTask<GridCoverage> task = new FutureTask<GridCoverage>(new Callable<GridCoverage>() {
+                    public GridCoverage call() throws IOException {
+                        return entry.getGridCoverage(null);
+                    }
+                });
+                prefetched.put(i, task);
+                prefetchCount++;
+                executor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Active ou désactive la lecture anticipée des images. Lorsque cette fonctionnalité est
+     * activée et que les dates demandées aux méthodes <code>evaluate</code> progressent de
+     * façon séquentielle dans le temps, les <code>depth</code> images qui suivent l'image
+     * courante seront lues en arrière-plan par l'exécuteur spécifié. Ceci permet de faire
+     * chevaucher la lecture des images avec les calculs effectués sur l'image courante.
+     *
+     * @param executor L'exécuteur à utiliser pour lire les images en arrière-plan, ou
+     *                 <code>null</code> pour désactiver la lecture anticipée.
+     * @param depth    Le nombre d'images à lire à l'avance. La valeur 0 désactive la
+     *                 lecture anticipée.
+     * @throws IllegalArgumentException si <code>depth</code> est négatif.
+     */
+    public synchronized void setPrefetch(final Executor executor, final int depth)
+            throws IllegalArgumentException
+    {
+        if (depth < 0) {
+            throw new IllegalArgumentException(String.valueOf(depth));
+        }
+        prefetchExecutor = (depth != 0) ? executor : null;
+        prefetchDepth    = (executor != null) ? depth : 0;
+        if (prefetched != null) {
+            for (final FutureTask<GridCoverage> task : prefetched.values()) {
+                task.cancel(false);
+            }
+            prefetched.clear();
+        }
+    }
+
+    /**
+     * Retourne le nombre d'images lues à l'avance lorsque les accès sont séquentiels,
+     * ou 0 si la lecture anticipée est désactivée.
+     */
+    public synchronized int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    /**
+     * Retourne le nombre d'images dont la lecture anticipée a été demandée.
+     */
+    public synchronized int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Retourne le nombre d'images demandées qui avaient déjà été lues à
+     * l'avance, ou dont la lecture anticipée était en cours.
+     */
+    public synchronized int getPrefetchHitCount() {
+        return prefetchHitCount;
+    }
+
+    /**
+     * Retourne les images nécessaires à l'interpolation des données à la date spécifiée.
+     * Si l'encadrement courant n'est pas valide pour cette date, les images nécessaires
+     * seront lues et un nouvel encadrement remplacera {@link #bracket}. Seule cette
+     * lecture est synchronisée; un encadrement valide est retourné sans verrou.
      *
      * @param  date La date demandée.
-     * @return <code>true</code> si les données sont présentes.
+     * @return Les images qui encadrent la date demandée, ou <code>null</code>
+     *         si la date tombe dans un trou des données.
      * @throws PointOutsideCoverageException si la date spécifiée est
      *         en dehors de la plage de temps des données disponibles.
      * @throws CannotEvaluateException Si l'opération a échouée pour
      *         une autre raison.
      */
-    private boolean seek(final Date date) throws CannotEvaluateException {
+    private Bracket seek(final Date date) throws CannotEvaluateException {
         /*
          * Check if images currently loaded
          * are valid for the requested date.
          */
         final long time = date.getTime();
-        if (time>=lowerTime && time<=upperTime) {
-            return true;
+        Bracket current = bracket;
+        if (current!=null && current.contains(time)) {
+            return current;
         }
+        synchronized (this) {
+            current = bracket;
+            if (current!=null && current.contains(time)) {
+                // Loaded by an other thread while we were waiting for the lock.
+                return current;
+            }
+            return load(date) ? bracket : null;
+        }
+    }
+
+    /**
+     * Procède à la lecture des images nécessaires à l'interpolation des données à la date
+     * spécifiée. Les images lues seront placées dans un nouvel encadrement {@link #bracket}.
+     *
+     * @param  date La date demandée.
+     * @return <code>true</code> si les données sont présentes.
+     * @throws PointOutsideCoverageException si la date spécifiée est
+     *         en dehors de la plage de temps des données disponibles.
+     * @throws CannotEvaluateException Si l'opération a échouée pour
+     *         une autre raison.
+     */
+    private boolean load(final Date date) throws CannotEvaluateException {
+        assert Thread.holdsLock(this);
+        final long time = date.getTime();
         /*
          * Currently loaded images are not valid for the
          * requested date. Search for the image to use
-         * as upper bounds ({@link #upper}).
+         * as upper bounds ({@link Bracket#upper}).
          */
         try {
             int index;
@@ -678,7 +937,7 @@ public class GridCoverage3D extends Coverage3D {
                 final long  upperStart = getTime(upperRange.getMinValue())-1; // MIN_VALUE-1 == MAX_VALUE
                 if (lowerEnd+maxTimeLag >= upperStart) {
                     if (interpolationAllowed) {
-                        load(lowerEntry, upperEntry);
+                        load(index-1, index);
                     } else {
                         if (Math.abs(getTime(upperRange)-time) > Math.abs(time-getTime(lowerRange))) {
                             index--;
@@ -703,6 +962,25 @@ public class GridCoverage3D extends Coverage3D {
         throw new PointOutsideCoverageException(Resources.format(ResourceKeys.ERROR_DATE_OUTSIDE_COVERAGE_$1, date));
     }
 
+    /**
+     * Returns a 2 dimensional grid coverage for the given date. This method returns the
+     * coverages read from the catalog (interpolated if needed), which is faster and more
+     * accurate than evaluating the coverage pixel by pixel. Consequently, the progress
+     * listener is ignored.
+     *
+     * @param  time The date where to evaluate.
+     * @param  progress Ignored by this implementation.
+     * @return The grid coverage at the specified time, or <code>null</code>
+     *         if the requested date fall in a hole in the data.
+     * @throws PointOutsideCoverageException if <code>time</code> is outside coverage.
+     * @throws CannotEvaluateException if the computation failed for some other reason.
+     */
+    public GridCoverage getGridCoverage2D(final Date time, final ProgressListener progress)
+            throws CannotEvaluateException
+    {
+        return getGridCoverage2D(time);
+    }
+
     /**
      * Returns a 2 dimensional grid coverage for the given date.
      *
@@ -712,38 +990,40 @@ public class GridCoverage3D extends Coverage3D {
      * @throws PointOutsideCoverageException if <code>time</code> is outside coverage.
      * @throws CannotEvaluateException if the computation failed for some other reason.
      */
-    public synchronized GridCoverage getGridCoverage2D(final Date time) throws CannotEvaluateException {
-        if (!seek(time)) {
+    public GridCoverage getGridCoverage2D(final Date time) throws CannotEvaluateException {
+        final Bracket b = seek(time);
+        if (b == null) {
             // Missing data
             return null;
         }
-        if (lower == upper) {
+        if (b.lower == b.upper) {
             // No interpolation needed.
-            return lower;
+            return b.lower;
         }
-        assert isCompatibleCS(lower.getCoordinateSystem()) : lower;
-        assert isCompatibleCS(upper.getCoordinateSystem()) : upper;
+        assert isCompatibleCS(b.lower.getCoordinateSystem()) : b.lower;
+        assert isCompatibleCS(b.upper.getCoordinateSystem()) : b.upper;
 
         final long timeMillis = time.getTime();
-        assert (timeMillis>=lowerTime && timeMillis<=upperTime) : time;
-        if (timeMillis==timeInterpolated && interpolated!=null) {
-            return interpolated;
+        assert b.contains(timeMillis) : time;
+        final Interpolated last = interpolated;
+        if (last!=null && last.bracket==b && last.time==timeMillis) {
+            return last.coverage;
         }
-        final double ratio = (double)(timeMillis-lowerTime) / (double)(upperTime-lowerTime);
-        if (Math.abs(  ratio) <= EPS) return lower;
-        if (Math.abs(1-ratio) <= EPS) return upper;
+        final double ratio = (double)(timeMillis-b.lowerTime) / (double)(b.upperTime-b.lowerTime);
+        if (Math.abs(  ratio) <= EPS) return b.lower;
+        if (Math.abs(1-ratio) <= EPS) return b.upper;
         if (interpolationAllowed) {
             final GridCoverageProcessor processor = getGridCoverageProcessor();
             final Operation operation = processor.getOperation("Combine");
             final ParameterList param = operation.getParameterList();
-            param.setParameter("source0", lower);
-            param.setParameter("source1", upper);
+            param.setParameter("source0", b.lower);
+            param.setParameter("source1", b.upper);
             param.setParameter("matrix", new double[][]{{1-ratio, ratio, 0}});
-            interpolated = processor.doOperation(operation, param);
-            timeInterpolated = timeMillis; // Set only if previous line has been successfull.
-            return interpolated;
+            final GridCoverage coverage = processor.doOperation(operation, param);
+            interpolated = new Interpolated(b, timeMillis, coverage); // Set only if previous line has been successfull.
+            return coverage;
         } else {
-            return (ratio <= 0.5) ? lower : upper;
+            return (ratio <= 0.5) ? b.lower : b.upper;
         }
     }
 
@@ -785,10 +1065,11 @@ public class GridCoverage3D extends Coverage3D {
      * @throws PointOutsideCoverageException if <code>point</code> or <code>time</code> is outside coverage.
      * @throws CannotEvaluateException if the computation failed for some other reason.
      */
-    public synchronized int[] evaluate(final Point2D point, final Date time, int[] dest)
+    public int[] evaluate(final Point2D point, final Date time, int[] dest)
             throws CannotEvaluateException
     {
-        if (!seek(time)) {
+        final Bracket b = seek(time);
+        if (b == null) {
             // Missing data
             if (dest == null) {
                 dest = new int[bands.length];
@@ -796,17 +1077,17 @@ public class GridCoverage3D extends Coverage3D {
             Arrays.fill(dest, 0, bands.length, 0);
             return dest;
         }
-        assert isCompatibleCS(lower.getCoordinateSystem()) : lower;
-        assert isCompatibleCS(upper.getCoordinateSystem()) : upper;
-        if (lower == upper) {
-            return lower.evaluate(point, dest);
+        assert isCompatibleCS(b.lower.getCoordinateSystem()) : b.lower;
+        assert isCompatibleCS(b.upper.getCoordinateSystem()) : b.upper;
+        if (b.lower == b.upper) {
+            return b.lower.evaluate(point, dest);
         }
         int[] last=null;
-        last = upper.evaluate(project(point, upper), last);
-        dest = lower.evaluate(project(point, lower), dest);
+        last = b.upper.evaluate(project(point, b.upper), last);
+        dest = b.lower.evaluate(project(point, b.lower), dest);
         final long timeMillis = time.getTime();
-        assert (timeMillis>=lowerTime && timeMillis<=upperTime) : time;
-        final double ratio = (double)(timeMillis-lowerTime) / (double)(upperTime-lowerTime);
+        assert b.contains(timeMillis) : time;
+        final double ratio = (double)(timeMillis-b.lowerTime) / (double)(b.upperTime-b.lowerTime);
         for (int i=0; i<last.length; i++) {
             dest[i] = (int)Math.round(dest[i] + ratio*(last[i]-dest[i]));
         }
@@ -827,10 +1108,11 @@ public class GridCoverage3D extends Coverage3D {
      * @throws PointOutsideCoverageException if <code>point</code> or <code>time</code> is outside coverage.
      * @throws CannotEvaluateException if the computation failed for some other reason.
      */
-    public synchronized float[] evaluate(final Point2D point, final Date time, float[] dest)
+    public float[] evaluate(final Point2D point, final Date time, float[] dest)
             throws CannotEvaluateException
     {
-        if (!seek(time)) {
+        final Bracket b = seek(time);
+        if (b == null) {
             // Missing data
             if (dest == null) {
                 dest = new float[bands.length];
@@ -838,17 +1120,17 @@ public class GridCoverage3D extends Coverage3D {
             Arrays.fill(dest, 0, bands.length, Float.NaN);
             return dest;
         }
-        assert isCompatibleCS(lower.getCoordinateSystem()) : lower;
-        assert isCompatibleCS(upper.getCoordinateSystem()) : upper;
-        if (lower == upper) {
-            return lower.evaluate(point, dest);
+        assert isCompatibleCS(b.lower.getCoordinateSystem()) : b.lower;
+        assert isCompatibleCS(b.upper.getCoordinateSystem()) : b.upper;
+        if (b.lower == b.upper) {
+            return b.lower.evaluate(point, dest);
         }
         float[] last=null;
-        last = upper.evaluate(project(point, upper), last);
-        dest = lower.evaluate(project(point, lower), dest);
+        last = b.upper.evaluate(project(point, b.upper), last);
+        dest = b.lower.evaluate(project(point, b.lower), dest);
         final long timeMillis = time.getTime();
-        assert (timeMillis>=lowerTime && timeMillis<=upperTime) : time;
-        final double ratio = (double)(timeMillis-lowerTime) / (double)(upperTime-lowerTime);
+        assert b.contains(timeMillis) : time;
+        final double ratio = (double)(timeMillis-b.lowerTime) / (double)(b.upperTime-b.lowerTime);
         for (int i=0; i<last.length; i++) {
             final float lower = dest[i];
             final float upper = last[i];
@@ -856,12 +1138,12 @@ public class GridCoverage3D extends Coverage3D {
             if (Float.isNaN(value)) {
                 if (!Float.isNaN(lower)) {
                     assert Float.isNaN(upper) : upper;
-                    if (lowerTimeRange.contains(time)) {
+                    if (b.lowerTimeRange.contains(time)) {
                         value = lower;
                     }
                 } else if (!Float.isNaN(upper)) {
                     assert Float.isNaN(lower) : lower;
-                    if (upperTimeRange.contains(time)) {
+                    if (b.upperTimeRange.contains(time)) {
                         value = upper;
                     }
                 }
@@ -885,10 +1167,11 @@ public class GridCoverage3D extends Coverage3D {
      * @throws PointOutsideCoverageException if <code>point</code> or <code>time</code> is outside coverage.
      * @throws CannotEvaluateException if the computation failed for some other reason.
      */
-    public synchronized double[] evaluate(final Point2D point, final Date time, double[] dest)
+    public double[] evaluate(final Point2D point, final Date time, double[] dest)
             throws CannotEvaluateException
     {
-        if (!seek(time)) {
+        final Bracket b = seek(time);
+        if (b == null) {
             // Missing data
             if (dest == null) {
                 dest = new double[bands.length];
@@ -896,35 +1179,137 @@ public class GridCoverage3D extends Coverage3D {
             Arrays.fill(dest, 0, bands.length, Double.NaN);
             return dest;
         }
-        assert isCompatibleCS(lower.getCoordinateSystem()) : lower;
-        assert isCompatibleCS(upper.getCoordinateSystem()) : upper;
-        if (lower == upper) {
-            return lower.evaluate(point, dest);
+        assert isCompatibleCS(b.lower.getCoordinateSystem()) : b.lower;
+        assert isCompatibleCS(b.upper.getCoordinateSystem()) : b.upper;
+        if (b.lower == b.upper) {
+            return b.lower.evaluate(point, dest);
         }
         double[] last=null;
-        last = upper.evaluate(project(point, upper), last);
-        dest = lower.evaluate(project(point, lower), dest);
+        last = b.upper.evaluate(project(point, b.upper), last);
+        dest = b.lower.evaluate(project(point, b.lower), dest);
         final long timeMillis = time.getTime();
-        assert (timeMillis>=lowerTime && timeMillis<=upperTime) : time;
-        final double ratio = (double)(timeMillis-lowerTime) / (double)(upperTime-lowerTime);
-        for (int i=0; i<last.length; i++) {
-            final double lower = dest[i];
-            final double upper = last[i];
+        assert b.contains(timeMillis) : time;
+        final double ratio = (double)(timeMillis-b.lowerTime) / (double)(b.upperTime-b.lowerTime);
+        interpolate(b, time, ratio, dest, last, dest, 0, last.length);
+        return dest;
+    }
+
+    /**
+     * Interpole linéairement dans le temps entre les valeurs des images {@link Bracket#lower}
+     * et {@link Bracket#upper}. Si une des deux valeurs est manquante, l'autre est utilisée
+     * à la condition que la date soit dans la plage de temps de son image.
+     *
+     * @param b           Les images qui encadrent la date.
+     * @param time        La date de l'interpolation.
+     * @param ratio       La position de <code>time</code> entre les dates des deux images.
+     * @param lowerValues Les valeurs de l'image {@link Bracket#lower}.
+     * @param upperValues Les valeurs de l'image {@link Bracket#upper}.
+     * @param dest        Le tableau dans lequel écrire les valeurs interpolées.
+     *                    Peut être le même tableau que <code>lowerValues</code>.
+     * @param offset      Index du premier élément à écrire dans <code>dest</code>.
+     * @param numBands    Nombre de bandes à interpoler.
+     */
+    private static void interpolate(final Bracket b, final Date time, final double ratio,
+                                    final double[] lowerValues, final double[] upperValues,
+                                    final double[] dest, final int offset, final int numBands)
+    {
+        for (int i=0; i<numBands; i++) {
+            final double lower = lowerValues[i];
+            final double upper = upperValues[i];
             double value = (lower + ratio*(upper-lower));
             if (Double.isNaN(value)) {
                 if (!Double.isNaN(lower)) {
                     assert Double.isNaN(upper) : upper;
-                    if (lowerTimeRange.contains(time)) {
+                    if (b.lowerTimeRange.contains(time)) {
                         value = lower;
                     }
                 } else if (!Double.isNaN(upper)) {
                     assert Double.isNaN(lower) : lower;
-                    if (upperTimeRange.contains(time)) {
+                    if (b.upperTimeRange.contains(time)) {
                         value = upper;
                     }
                 }
             }
-            dest[i] = value;
+            dest[offset + i] = value;
+        }
+    }
+
+    /**
+     * Returns the double values for an array of points in the coverage. Points are evaluated
+     * in chronological order, so every pair of images is loaded once and used for all the
+     * points that fall between them. No object is created for individual points. Points
+     * outside the coverage, or falling in a hole in the data, get {@link Double#NaN NaN}
+     * values.
+     *
+     * @param  x    The <var>x</var> coordinates of the points where to evaluate.
+     * @param  y    The <var>y</var> coordinates of the points where to evaluate.
+     * @param  t    The dates where to evaluate, in milliseconds since January 1st, 1970 UTC.
+     * @param  dest An array in which to store values, or <code>null</code> to create a new array.
+     * @return The <code>dest</code> array, or a newly created array if <code>dest</code> was null.
+     * @throws CannotEvaluateException if the computation failed for some other reason than a
+     *         point outside the coverage.
+     */
+    public double[] evaluate(final double[] x, final double[] y, final long[] t, double[] dest)
+            throws CannotEvaluateException
+    {
+        final int numBands = bands.length;
+        final int n = checkLength(x, y, t);
+        if (dest == null) {
+            dest = new double[n * numBands];
+        }
+        final int[]          order       = sortByTime(t);
+        final Point2D.Double point       = new Point2D.Double();
+        final Date           date        = new Date(0);
+        final double[]       lowerValues = new double[numBands];
+        final double[]       upperValues = new double[numBands];
+        Bracket b = null;
+        long bracketTime = 0;
+        boolean missing = false;
+        for (int k=0; k<n; k++) {
+            final int  i      = order[k];
+            final int  offset = i*numBands;
+            final long time   = t[i];
+            date.setTime(time);
+            /*
+             * Change d'encadrement seulement si la date a changé et n'est plus couverte par
+             * l'encadrement courant. Les points étant classés par date, chaque encadrement
+             * n'est obtenu qu'une seule fois.
+             */
+            if (k==0 || (time != bracketTime && (missing || !b.contains(time)))) {
+                bracketTime = time;
+                try {
+                    b = seek(date);
+                } catch (PointOutsideCoverageException exception) {
+                    b = null;
+                }
+                missing = (b == null);
+                if (!missing) {
+                    assert isCompatibleCS(b.lower.getCoordinateSystem()) : b.lower;
+                    assert isCompatibleCS(b.upper.getCoordinateSystem()) : b.upper;
+                    if (b.lower != b.upper) {
+                        project(point, b.lower);
+                        project(point, b.upper);
+                    }
+                }
+            }
+            if (missing) {
+                Arrays.fill(dest, offset, offset+numBands, Double.NaN);
+                continue;
+            }
+            point.x = x[i];
+            point.y = y[i];
+            try {
+                b.lower.evaluate(point, lowerValues);
+                if (b.lower == b.upper) {
+                    System.arraycopy(lowerValues, 0, dest, offset, numBands);
+                } else {
+                    b.upper.evaluate(point, upperValues);
+                    final double ratio = (double)(time-b.lowerTime) / (double)(b.upperTime-b.lowerTime);
+                    interpolate(b, date, ratio, lowerValues, upperValues, dest, offset, numBands);
+                }
+            } catch (PointOutsideCoverageException exception) {
+                Arrays.fill(dest, offset, offset+numBands, Double.NaN);
+            }
         }
         return dest;
     }
@@ -942,10 +1327,8 @@ public class GridCoverage3D extends Coverage3D {
      * La valeur par défaut est <code>true</code>.
      */
     public synchronized void setInterpolationAllowed(final boolean flag) {
-        lower     = null;
-        upper     = null;
-        lowerTime = Long.MAX_VALUE;
-        upperTime = Long.MIN_VALUE;
+        bracket      = null;
+        interpolated = null;
         interpolationAllowed = flag;
     }
 
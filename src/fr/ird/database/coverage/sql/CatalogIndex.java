@@ -0,0 +1,313 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.coverage.sql;
+
+// J2SE dependencies
+import java.util.Map;
+import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.PreparedStatement;
+import java.rmi.RemoteException;
+import java.awt.geom.Rectangle2D;
+
+// Seagis dependencies
+import fr.ird.resources.XArray;
+
+
+/**
+ * Index en mémoire du contenu de la table des images. Pour chaque série, tous les
+ * enregistrements de la table "GridCoverages" (joints à "GeographicBoundingBoxes")
+ * sont lus une seule fois, puis les requêtes spatio-temporelles de
+ * {@link GridCoverageTable#getRanges} sont résolues sans interroger la base de données.
+ * <br><br>
+ * L'index temporel est un tableau des enregistrements classés par date de fin, associé
+ * à la durée maximale des images de la série. Une recherche commence à la première image
+ * qui se termine après le début de la plage demandée (recherche binaire) et s'arrête dès
+ * qu'aucune image ne peut plus commencer avant la fin de cette plage. Les images dont le
+ * début ou la fin n'est pas connu sont conservées à part et examinées à chaque requête.
+ * <br><br>
+ * L'index spatial tire parti du fait que la table "GeographicBoundingBoxes" est partagée
+ * par les images: chaque enregistrement ne fait que référencer une des boîtes distinctes
+ * de la série. Une requête teste d'abord chaque boîte une seule fois, puis ne fait plus
+ * qu'une lecture de tableau par image.
+ * <br><br>
+ * L'index d'une série est invalidé par {@link #invalidate} (par exemple après l'ajout
+ * d'une image par {@link WritableGridCoverageTable#addGridCoverage}) et sera relu lors
+ * de la prochaine requête.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see CoverageDataBase#setCatalogIndexEnabled
+ */
+final class CatalogIndex {
+    /**
+     * Les index de chaque série. Les clés sont les noms des séries.
+     */
+    private final Map<String,Series> series = new HashMap<String,Series>();
+
+    /**
+     * Nombre de fois où {@link #invalidate} a été appelée. Utilisé pour éviter qu'un index
+     * lu pendant une mise à jour de la table ne remplace un index invalidé entre-temps.
+     */
+    private int modificationCount;
+
+    /**
+     * Compare les enregistrements selon leur date de fin, comme la clause "ORDER BY"
+     * de {@link GridCoverageTable#SELECT}.
+     */
+    private static final Comparator<CoverageRecord> END_TIME = new Comparator<CoverageRecord>() {
+        public int compare(final CoverageRecord r1, final CoverageRecord r2) {
+            if (r1.endTime < r2.endTime) return -1;
+            if (r1.endTime > r2.endTime) return +1;
+            return 0;
+        }
+    };
+
+    /**
+     * L'index des images d'une série. Les objets <code>Series</code> sont imutables;
+     * une mise à jour de la table des images les remplace par de nouvelles instances.
+     */
+    private static final class Series {
+        /**
+         * Tous les enregistrements de la série, classés par date de fin.
+         * Le tri étant stable, l'ordre de la requête SQL est préservé
+         * pour les images qui se terminent à la même date.
+         */
+        final CoverageRecord[] records;
+
+        /**
+         * Dates de fin des enregistrements, dans le même ordre que {@link #records}.
+         */
+        final long[] endTimes;
+
+        /**
+         * Index (dans {@link #records}) des enregistrements dont la date de début ou
+         * de fin n'est pas connue. Ces enregistrements ne peuvent pas être trouvés par
+         * la recherche basée sur {@link #maxDuration}.
+         */
+        final int[] unbounded;
+
+        /**
+         * Durée maximale (en millisecondes) des images dont le début et la fin sont connus.
+         */
+        final long maxDuration;
+
+        /**
+         * Les boîtes géographiques distinctes de la série, sous forme de tableau
+         * (<var>xmin</var>, <var>xmax</var>, <var>ymin</var>, <var>ymax</var>).
+         */
+        final float[] boxes;
+
+        /**
+         * Pour chaque enregistrement de {@link #records}, l'index de sa boîte
+         * géographique dans {@link #boxes} (divisé par 4).
+         */
+        final int[] boxIndex;
+
+        /**
+         * Construit l'index pour les enregistrements spécifiés.
+         */
+        Series(final CoverageRecord[] records) {
+            Arrays.sort(records, END_TIME);
+            final int count = records.length;
+            this.records  = records;
+            this.endTimes = new long[count];
+            this.boxIndex = new int [count];
+            final Map<List<Float>,Integer> boxMap = new HashMap<List<Float>,Integer>();
+            float[] boxes = new float[16];
+            int[] unbounded = new int[8];
+            int unboundedCount = 0;
+            long maxDuration = 0;
+            for (int i=0; i<count; i++) {
+                final CoverageRecord record = records[i];
+                endTimes[i] = record.endTime;
+                if (record.startTime == Long.MIN_VALUE || record.endTime == Long.MAX_VALUE) {
+                    if (unboundedCount == unbounded.length) {
+                        unbounded = XArray.resize(unbounded, unboundedCount*2);
+                    }
+                    unbounded[unboundedCount++] = i;
+                } else {
+                    maxDuration = Math.max(maxDuration, record.endTime - record.startTime);
+                }
+                final List<Float> key = Arrays.asList(record.xmin, record.xmax, record.ymin, record.ymax);
+                Integer index = boxMap.get(key);
+                if (index == null) {
+                    index = boxMap.size();
+                    boxMap.put(key, index);
+                    final int base = index * 4;
+                    if (base + 4 > boxes.length) {
+                        boxes = XArray.resize(boxes, boxes.length*2);
+                    }
+                    boxes[base  ] = record.xmin;
+                    boxes[base+1] = record.xmax;
+                    boxes[base+2] = record.ymin;
+                    boxes[base+3] = record.ymax;
+                }
+                boxIndex[i] = index;
+            }
+            this.boxes       = XArray.resize(boxes, boxMap.size()*4);
+            this.unbounded   = XArray.resize(unbounded, unboundedCount);
+            this.maxDuration = maxDuration;
+        }
+
+        /**
+         * Retourne les enregistrements qui interceptent la région géographique et la plage de
+         * temps spécifiées, dans le même ordre que {@link GridCoverageTable#SELECT}. Les
+         * critères sont ceux de la clause "WHERE" de cette requête.
+         */
+        final CoverageRecord[] query(final Rectangle2D area, final long startTime, final long endTime) {
+            /*
+             * Teste une seule fois chacune des boîtes géographiques distinctes.
+             */
+            final double xmin = area.getMinX();
+            final double xmax = area.getMaxX();
+            final double ymin = area.getMinY();
+            final double ymax = area.getMaxY();
+            final boolean[] boxMatches = new boolean[boxes.length / 4];
+            for (int i=0; i<boxMatches.length; i++) {
+                final int base = i*4;
+                boxMatches[i] = (boxes[base+1] > xmin && boxes[base  ] < xmax &&
+                                 boxes[base+3] > ymin && boxes[base+2] < ymax);
+            }
+            /*
+             * Recherche les images qui se terminent après 'startTime', en arrêtant
+             * dès que les images restantes commencent forcément après 'endTime'.
+             */
+            final boolean[] selected = new boolean[records.length];
+            int i = Arrays.binarySearch(endTimes, startTime);
+            if (i < 0) {
+                i = ~i;
+            } else while (i!=0 && endTimes[i-1] == startTime) {
+                i--;
+            }
+            for (; i<records.length; i++) {
+                final long end = endTimes[i];
+                if (end == Long.MAX_VALUE || end - maxDuration > endTime) {
+                    break;
+                }
+                final CoverageRecord record = records[i];
+                if (record.startTime != Long.MIN_VALUE && record.startTime <= endTime) {
+                    selected[i] = boxMatches[boxIndex[i]];
+                }
+            }
+            for (int j=0; j<unbounded.length; j++) {
+                final int k = unbounded[j];
+                final CoverageRecord record = records[k];
+                selected[k] = boxMatches[boxIndex[k]] &&
+                              record.endTime >= startTime && record.startTime <= endTime;
+            }
+            final List<CoverageRecord> matches = new ArrayList<CoverageRecord>();
+            for (int k=0; k<selected.length; k++) {
+                if (selected[k]) {
+                    matches.add(records[k]);
+                }
+            }
+            return matches.toArray(new CoverageRecord[matches.size()]);
+        }
+    }
+
+    /**
+     * Construit un index initialement vide.
+     */
+    CatalogIndex() {
+    }
+
+    /**
+     * Retourne les enregistrements de la série spécifiée qui interceptent la région géographique
+     * et la plage de temps spécifiées. Si l'index de cette série n'a pas encore été construit,
+     * il sera construit maintenant à partir de la requête de la table spécifiée.
+     *
+     * @param  table     Table à utiliser pour lire les enregistrements si nécessaire.
+     * @param  name      Nom de la série.
+     * @param  area      Coordonnées géographiques de la région d'intéret.
+     * @param  startTime Date de début de la plage de temps, en millisecondes.
+     * @param  endTime   Date de fin de la plage de temps, en millisecondes.
+     * @return Les enregistrements trouvés, en ordre chronologique de leur date de fin.
+     * @throws SQLException si l'interrogation de la base de données a échoué.
+     * @throws RemoteException si la requête SQL n'a pas pu être obtenue.
+     */
+    final CoverageRecord[] query(final GridCoverageTable table,
+                                 final String            name,
+                                 final Rectangle2D       area,
+                                 final long              startTime,
+                                 final long              endTime)
+            throws SQLException, RemoteException
+    {
+        Series index;
+        final int modification;
+        synchronized (this) {
+            index = series.get(name);
+            modification = modificationCount;
+        }
+        if (index == null) {
+            index = load(table, name);
+            synchronized (this) {
+                if (modification == modificationCount) {
+                    series.put(name, index);
+                }
+            }
+        }
+        return index.query(area, startTime, endTime);
+    }
+
+    /**
+     * Lit tous les enregistrements de la série spécifiée. La requête utilisée est celle
+     * de {@link GridCoverageTable#SELECT}, sans les conditions spatio-temporelles.
+     */
+    private static Series load(final GridCoverageTable table, final String name)
+            throws SQLException, RemoteException
+    {
+        final String query = Table.selectWithoutWhere(table.getProperty(GridCoverageTable.SELECT)) +
+                             " WHERE series=? ORDER BY end_time, subseries";
+        final List<CoverageRecord> records = new ArrayList<CoverageRecord>();
+        final PreparedStatement statement = table.getConnection().prepareStatement(query);
+        try {
+            statement.setString(1, name);
+            final ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                records.add(new CoverageRecord(table, result));
+            }
+            result.close();
+        } finally {
+            statement.close();
+        }
+        return new Series(records.toArray(new CoverageRecord[records.size()]));
+    }
+
+    /**
+     * Oublie l'index de la série spécifiée. Il sera relu lors de la prochaine requête.
+     *
+     * @param name Nom de la série dont le contenu a changé.
+     */
+    final synchronized void invalidate(final String name) {
+        series.remove(name);
+        modificationCount++;
+    }
+
+    /**
+     * Oublie l'index de toutes les séries.
+     */
+    final synchronized void clear() {
+        series.clear();
+        modificationCount++;
+    }
+}
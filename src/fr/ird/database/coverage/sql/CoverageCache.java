@@ -0,0 +1,278 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.coverage.sql;
+
+// J2SE dependencies
+import java.util.Map;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.awt.image.RenderedImage;
+
+// Geotools dependencies
+import org.geotools.gc.GridCoverage;
+import org.geotools.resources.Utilities;
+
+
+/**
+ * Cache des images {@link GridCoverage} lues par {@link GridCoverageEntry#getGridCoverage}.
+ * Cette cache est partagée par toutes les entrées et retient des références fortes vers les
+ * images les plus récemment utilisées, jusqu'à concurrence d'une quantité de mémoire exprimée
+ * en octets. Lorsque ce budget est dépassé, les images les moins récemment utilisées sont
+ * retirées de la cache (algorithme LRU).
+ * <br><br>
+ * Les clés sont les objets {@link GridCoverageEntry} eux-mêmes. Puisque deux entrées ne sont
+ * égales que si elles ont le même fichier <strong>et</strong> le même bloc de paramètres
+ * ({@link Parameters}, qui comprend la région géographique, la résolution et l'opération
+ * demandées), une même image lue avec des paramètres différents occupera des places
+ * distinctes dans la cache.
+ * <br><br>
+ * La quantité de mémoire occupée par une image est estimée à partir de son {@link SampleModel}.
+ * Il ne s'agit que d'une approximation, puisqu'elle ne tient pas compte des images
+ * intermédiaires que JAI pourrait conserver dans sa propre {@link javax.media.jai.TileCache}.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see CoverageDataBase#getCoverageCache
+ */
+public final class CoverageCache {
+    /**
+     * La cache par défaut, partagée par toutes les entrées {@link GridCoverageEntry}.
+     */
+    static final CoverageCache DEFAULT = new CoverageCache(Runtime.getRuntime().maxMemory() / 4);
+
+    /**
+     * Les images en cache, dans l'ordre des accès (de la moins récemment
+     * utilisée vers la plus récemment utilisée).
+     */
+    private final LinkedHashMap<GridCoverageEntry,Element> elements =
+            new LinkedHashMap<GridCoverageEntry,Element>(64, 0.75f, true);
+
+    /**
+     * Quantité maximale de mémoire (en octets) que peuvent occuper les images en cache.
+     */
+    private long capacity;
+
+    /**
+     * Quantité de mémoire (en octets) occupée par les images présentement en cache.
+     */
+    private long size;
+
+    /**
+     * Nombre de fois où une image demandée a été trouvée dans la cache.
+     */
+    private long hitCount;
+
+    /**
+     * Nombre de fois où une image demandée n'a pas été trouvée dans la cache.
+     */
+    private long missCount;
+
+    /**
+     * Nombre d'images qui ont été retirées de la cache afin de respecter le budget de mémoire.
+     */
+    private long evictionCount;
+
+    /**
+     * Une image en cache, accompagnée de la quantité de mémoire qu'elle occupe.
+     */
+    private static final class Element {
+        /** L'image en cache.                     */ final GridCoverage coverage;
+        /** Mémoire occupée par l'image, en octets. */ final long         size;
+
+        /** Construit un élément pour l'image spécifiée. */
+        Element(final GridCoverage coverage, final long size) {
+            this.coverage = coverage;
+            this.size     = size;
+        }
+    }
+
+    /**
+     * Construit une cache qui pourra retenir des images jusqu'à concurrence
+     * de la quantité de mémoire spécifiée.
+     *
+     * @param capacity Quantité maximale de mémoire, en octets.
+     */
+    CoverageCache(final long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Retourne l'image en cache pour l'entrée spécifiée, ou <code>null</code>
+     * s'il n'y en a pas. Cette méthode met à jour les compteurs de succès et
+     * d'échecs.
+     */
+    final synchronized GridCoverage get(final GridCoverageEntry entry) {
+        final Element element = elements.get(entry);
+        if (element != null) {
+            hitCount++;
+            return element.coverage;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Place dans la cache l'image lue pour l'entrée spécifiée. Si l'ajout de cette image
+     * fait dépasser le budget de mémoire, les images les moins récemment utilisées seront
+     * retirées. Une image plus grosse que la capacité totale de la cache n'y sera pas placée.
+     *
+     * @param entry    L'entrée qui a produit l'image.
+     * @param coverage L'image lue.
+     */
+    final synchronized void put(final GridCoverageEntry entry, final GridCoverage coverage) {
+        final long length = sizeOf(coverage);
+        final Element old = elements.remove(entry);
+        if (old != null) {
+            size -= old.size;
+        }
+        if (length > capacity) {
+            return;
+        }
+        elements.put(entry, new Element(coverage, length));
+        size += length;
+        evict();
+    }
+
+    /**
+     * Retire les images les moins récemment utilisées
+     * jusqu'à ce que le budget de mémoire soit respecté.
+     */
+    private void evict() {
+        assert Thread.holdsLock(this);
+        final Iterator<Element> it = elements.values().iterator();
+        while (size > capacity && it.hasNext()) {
+            size -= it.next().size;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Estime la quantité de mémoire occupée par l'image spécifiée. L'estimation est basée
+     * sur les dimensions de l'image, le nombre de bandes et le type des données tel que
+     * déclaré par son {@link SampleModel}. Si l'image géophysique est différente de l'image
+     * source (ce qui est le cas lorsque les valeurs doivent être converties en nombres réels),
+     * les deux images sont comptées.
+     */
+    static long sizeOf(final GridCoverage coverage) {
+        final RenderedImage packed = coverage.geophysics(false).getRenderedImage();
+        final RenderedImage geophy = coverage.geophysics(true ).getRenderedImage();
+        long length = sizeOf(geophy);
+        if (packed != geophy) {
+            length += sizeOf(packed);
+        }
+        return length;
+    }
+
+    /**
+     * Estime la quantité de mémoire occupée par l'image spécifiée.
+     */
+    private static long sizeOf(final RenderedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        final SampleModel model = image.getSampleModel();
+        final long bits = (long) DataBuffer.getDataTypeSize(model.getDataType()) * model.getNumBands();
+        return ((long) image.getWidth() * (long) image.getHeight() * bits + 7) / 8;
+    }
+
+    /**
+     * Retourne la quantité maximale de mémoire (en octets) que peuvent occuper les images en
+     * cache. La valeur par défaut est le quart de la mémoire maximale de la machine virtuelle.
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Modifie la quantité maximale de mémoire (en octets) que peuvent occuper les images en
+     * cache. Si la nouvelle capacité est inférieure à la mémoire présentement occupée, les
+     * images les moins récemment utilisées seront retirées immédiatement. Une capacité de 0
+     * désactive la cache.
+     *
+     * @param capacity La nouvelle capacité, en octets.
+     * @throws IllegalArgumentException si <code>capacity</code> est négatif.
+     */
+    public synchronized void setCapacity(final long capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(String.valueOf(capacity));
+        }
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Retourne la quantité de mémoire (en octets) présentement occupée par les images en cache.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Retourne le nombre d'images présentement en cache.
+     */
+    public synchronized int getCount() {
+        return elements.size();
+    }
+
+    /**
+     * Retourne le nombre de fois où une image demandée a été trouvée dans la cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Retourne le nombre de fois où une image demandée a dû être lue.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Retourne le nombre d'images qui ont été retirées de la cache afin de respecter
+     * le budget de mémoire.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Retire toutes les images de la cache. Les compteurs ne sont pas remis à zéro.
+     */
+    public synchronized void clear() {
+        elements.clear();
+        size = 0;
+    }
+
+    /**
+     * Retourne une chaîne de caractères résumant l'état de cette cache.
+     */
+    public synchronized String toString() {
+        final StringBuilder buffer = new StringBuilder(Utilities.getShortClassName(this));
+        buffer.append("[count=")    .append(elements.size());
+        buffer.append(", size=")    .append(size);
+        buffer.append(", capacity=").append(capacity);
+        buffer.append(", hits=")    .append(hitCount);
+        buffer.append(", misses=")  .append(missCount);
+        buffer.append(", evictions=").append(evictionCount);
+        buffer.append(']');
+        return buffer.toString();
+    }
+}
@@ -22,6 +22,7 @@ import java.util.logging.Logger;
 import javax.media.jai.util.Range;
 import java.awt.geom.Rectangle2D;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.rmi.RemoteException;
 
@@ -66,6 +67,13 @@ public class CoverageDataBase extends AbstractDataBase implements fr.ird.databas
      */
     private transient SeriesEntry series;
 
+    /**
+     * Index en mémoire de la table des images, partagé par toutes les tables
+     * obtenues par {@link #getCoverageTable(SeriesEntry)}. Vaut <code>null</code>
+     * si cet index n'est pas activé.
+     */
+    private transient CatalogIndex catalogIndex;
+
     /**
      * Ouvre une connection avec une base de données par défaut. Le nom de la base de
      * données ainsi que le pilote à utiliser seront puisés dans le fichier de
@@ -189,12 +197,21 @@ public class CoverageDataBase extends AbstractDataBase implements fr.ird.databas
             startTime = new Date(0);
             endTime   = new Date( );
         }
-        final CoverageTable table;
+        final GridCoverageTable table;
+        Connection lease = null;
         try {
-            table = new WritableGridCoverageTable(this, connection, timezone);
+            lease = leaseConnection();
+            table = new WritableGridCoverageTable(this, (lease!=null) ? lease : connection, timezone);
         } catch (SQLException cause) {
+            if (lease != null) try {
+                lease.close();
+            } catch (SQLException exception) {
+                cause.setNextException(exception);
+            }
             throw new CatalogException(cause);
-        }            
+        }
+        table.setLease(lease);
+        table.setCatalogIndex(catalogIndex);
         // Initial setup of the table. We set the series last in order to
         // avoid logging of "setGeographicArea" and "setTimeRange". Those
         // two methods do not log anything as long as the series in null.
@@ -218,6 +235,36 @@ public class CoverageDataBase extends AbstractDataBase implements fr.ird.databas
         }
     }
 
+    /**
+     * Active ou désactive l'index en mémoire de la table des images. Lorsque cet index est
+     * activé, le contenu de chaque série est lu une seule fois et les requêtes faites par
+     * {@link CoverageTable#getEntries} sont résolues sans interroger la base de données.
+     * Cette option est avantageuse lorsque de nombreuses requêtes spatio-temporelles sont
+     * faites sur un catalogue qui ne change pas, par exemple lors du remplissage des tables
+     * d'environnement. Elle ne s'applique qu'aux tables obtenues après l'appel de cette méthode.
+     *
+     * @param enabled <code>true</code> pour activer l'index, ou <code>false</code> pour
+     *        interroger directement la base de données à chaque requête.
+     */
+    public synchronized void setCatalogIndexEnabled(final boolean enabled) {
+        if (enabled) {
+            if (catalogIndex == null) {
+                catalogIndex = new CatalogIndex();
+            }
+        } else {
+            catalogIndex = null;
+        }
+    }
+
+    /**
+     * Indique si l'index en mémoire de la table des images est activé.
+     *
+     * @see #setCatalogIndexEnabled
+     */
+    public synchronized boolean isCatalogIndexEnabled() {
+        return catalogIndex != null;
+    }
+
     /**
      * Retourne le processeur par défaut à utiliser pour appliquer des opérations sur les images
      * lues. Les operations sont spécifiées par {@link CoverageTable#setOperation(String)} et
@@ -246,6 +293,42 @@ public class CoverageDataBase extends AbstractDataBase implements fr.ird.databas
         GridCoverageEntry.PROCESSOR = processor;
     }
 
+    /**
+     * Retourne la cache des images lues par {@link CoverageEntry#getGridCoverage}. Cette
+     * cache est partagée par toutes les bases de données de la machine virtuelle. Elle
+     * permet d'ajuster la quantité de mémoire réservée aux images et d'obtenir des
+     * statistiques sur son efficacité.
+     *
+     * @return La cache des images.
+     */
+    public static CoverageCache getCoverageCache() {
+        return CoverageCache.DEFAULT;
+    }
+
+    /**
+     * Retourne la cache sur disque des images lues par {@link CoverageEntry#getGridCoverage},
+     * ou <code>null</code> s'il n'y en a pas. Aucune cache sur disque n'est utilisée par défaut.
+     *
+     * @return La cache sur disque, ou <code>null</code>.
+     * @see #setDiskCoverageCache
+     */
+    public static DiskCoverageCache getDiskCoverageCache() {
+        return GridCoverageEntry.DISK_CACHE;
+    }
+
+    /**
+     * Spécifie une cache sur disque pour les images lues par {@link CoverageEntry#getGridCoverage}.
+     * Les images décodées et traitées par l'opération de la série y seront conservées, ce qui
+     * évite de refaire ce travail lors des exécutions suivantes (par exemple pour des traitements
+     * qui relisent chaque nuit les mêmes images). Cette cache est partagée par toutes les bases
+     * de données de la machine virtuelle.
+     *
+     * @param cache La cache sur disque, ou <code>null</code> pour ne plus en utiliser.
+     */
+    public static void setDiskCoverageCache(final DiskCoverageCache cache) {
+        GridCoverageEntry.DISK_CACHE = cache;
+    }
+
     /**
      * Construit et retourne un panneau qui permet à l'utilisateur de modifier
      * les instructions SQL. Les instructions modifiées seront conservées dans
@@ -0,0 +1,92 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.coverage.sql;
+
+// J2SE dependencies
+import java.util.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+
+/**
+ * Un enregistrement de la requête {@link GridCoverageTable#SELECT}. Cet objet mémorise
+ * les valeurs de toutes les colonnes d'une ligne, ce qui permet de construire plus tard
+ * des objets {@link GridCoverageEntry} sans garder le {@link ResultSet} ouvert. Il est
+ * utilisé à la fois par {@link GridCoverageTable#getRanges} et par {@link CatalogIndex}.
+ * <br><br>
+ * Les objets <code>CoverageRecord</code> sont imutables.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ */
+final class CoverageRecord {
+    /** Nom de la série.                 */ final String series;
+    /** Chemin relatif des images.       */ final String pathname;
+    /** Nom du fichier.                  */ final String filename;
+    /** Date du début de l'acquisition.  */ final   long startTime;
+    /** Date de la fin de l'acquisition. */ final   long endTime;
+    /** Longitude minimale.              */ final  float xmin;
+    /** Longitude maximale.              */ final  float xmax;
+    /** Latitude minimale.               */ final  float ymin;
+    /** Latitude maximale.               */ final  float ymax;
+    /** Nombre de pixels en largeur.     */ final  short width;
+    /** Nombre de pixels en hauteur.     */ final  short height;
+    /** Système de référence.            */ final String crs;
+    /** Format des images.               */ final String format;
+
+    /**
+     * Construit un enregistrement à partir de la ligne courante du résultat spécifié.
+     * Les dates inconnues sont représentées par {@link Long#MIN_VALUE} pour la date de
+     * début et {@link Long#MAX_VALUE} pour la date de fin.
+     *
+     * @param  table  Table d'où proviennent les enregistrements.
+     * @param  result Prochain enregistrement à lire.
+     * @throws SQLException si l'accès au catalogue a échoué.
+     */
+    CoverageRecord(final GridCoverageTable table, final ResultSet result) throws SQLException {
+        final Date startTime;
+        final Date   endTime;
+        series    = result.getString    (GridCoverageTable.SERIES);
+        pathname  = result.getString    (GridCoverageTable.PATHNAME).intern();
+        filename  = result.getString    (GridCoverageTable.FILENAME);
+        startTime = table .getTimestamp (GridCoverageTable.START_TIME, result);
+        endTime   = table .getTimestamp (GridCoverageTable.END_TIME,   result);
+        xmin      = result.getFloat     (GridCoverageTable.XMIN);
+        xmax      = result.getFloat     (GridCoverageTable.XMAX);
+        ymin      = result.getFloat     (GridCoverageTable.YMIN);
+        ymax      = result.getFloat     (GridCoverageTable.YMAX);
+        width     = result.getShort     (GridCoverageTable.WIDTH);
+        height    = result.getShort     (GridCoverageTable.HEIGHT);
+        crs       = result.getString    (GridCoverageTable.CRS);
+        format    = result.getString    (GridCoverageTable.FORMAT);
+        this.startTime = (startTime!=null) ? startTime.getTime() : Long.MIN_VALUE;
+        this.  endTime = (  endTime!=null) ?   endTime.getTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Retourne la date de début d'acquisition, ou <code>null</code> si elle n'est pas connue.
+     */
+    final Date getStartTime() {
+        return (startTime!=Long.MIN_VALUE) ? new Date(startTime) : null;
+    }
+
+    /**
+     * Retourne la date de fin d'acquisition, ou <code>null</code> si elle n'est pas connue.
+     */
+    final Date getEndTime() {
+        return (endTime!=Long.MAX_VALUE) ? new Date(endTime) : null;
+    }
+}
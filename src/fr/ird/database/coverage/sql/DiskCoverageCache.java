@@ -0,0 +1,633 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.coverage.sql;
+
+// J2SE dependencies
+import java.io.File;
+import java.io.IOException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.DataBuffer;
+import java.awt.image.ColorModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.BandedSampleModel;
+
+// Geotools dependencies
+import org.geotools.gc.GridCoverage;
+import org.geotools.pt.Envelope;
+import org.geotools.cs.CoordinateSystem;
+import org.geotools.cv.SampleDimension;
+import org.geotools.resources.Utilities;
+
+
+/**
+ * Cache sur disque des images {@link GridCoverage} lues par
+ * {@link GridCoverageEntry#getGridCoverage}. Cette cache complète {@link CoverageCache}:
+ * une image qui n'est plus en mémoire peut être relue à partir d'un répertoire local plutôt
+ * que d'être décodée à nouveau (PNG, GIF, RAW...) et de repasser par les opérations de JAI.
+ * <br><br>
+ * Chaque image est conservée sous la forme des valeurs géophysiques (nombres réels de
+ * 32 bits) obtenues après l'opération de la série, mais avant l'interpolation. Une image
+ * occupe deux fichiers dont le nom est une somme de contrôle de sa clé:
+ * <ul>
+ *   <li>un fichier d'index (<code>.hdr</code>) qui contient la clé complète (fichier source,
+ *       région et sous-échantillonnage, opération et ses paramètres), la date de modification
+ *       du fichier source, l'enveloppe et les {@link SampleDimension} de l'image;</li>
+ *   <li>un fichier de données (<code>.raw</code>) qui contient les pixels bande par bande,
+ *       ligne par ligne. Ce fichier est relu en le projetant en mémoire par
+ *       {@link MappedRawImage}, qui découpe l'image en tuiles au besoin.</li>
+ * </ul>
+ * Une image dont le fichier source a été modifié depuis sa mise en cache est ignorée et
+ * supprimée. Lorsque l'espace occupé dépasse la capacité de la cache, les images les moins
+ * récemment utilisées sont supprimées (algorithme LRU). L'ordre d'utilisation est conservé
+ * d'une exécution à l'autre grâce à la date de modification des fichiers de données.
+ * <br><br>
+ * Les erreurs d'entrées/sorties de cette cache ne sont jamais fatales: elles sont
+ * consignées dans le journal et l'image est simplement lue à partir de sa source.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see CoverageDataBase#setDiskCoverageCache
+ */
+public final class DiskCoverageCache {
+    /**
+     * Extension des fichiers d'index.
+     */
+    private static final String HEADER = ".hdr";
+
+    /**
+     * Extension des fichiers de données.
+     */
+    private static final String DATA = ".raw";
+
+    /**
+     * Extension des fichiers de données en cours d'écriture.
+     */
+    private static final String TEMPORARY = ".tmp";
+
+    /**
+     * Ordre des octets dans les fichiers de données.
+     */
+    private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    /**
+     * Le répertoire dans lequel sont écrits les fichiers de la cache.
+     */
+    private final File directory;
+
+    /**
+     * Les images en cache, dans l'ordre des accès (de la moins récemment utilisée vers la
+     * plus récemment utilisée). Les clés sont les noms des fichiers sans leur extension,
+     * et les valeurs l'espace occupé par les deux fichiers de chaque image, en octets.
+     */
+    private final LinkedHashMap<String,Long> elements = new LinkedHashMap<String,Long>(64, 0.75f, true);
+
+    /**
+     * Les images retirées de la cache dont les fichiers n'ont pas pu être supprimés, par
+     * exemple parce que le fichier de données est encore projeté en mémoire par une image
+     * {@link MappedRawImage} en cours d'utilisation (sous Windows, un tel fichier ne peut
+     * être ni supprimé ni remplacé). Leur suppression est tentée à nouveau à chaque éviction.
+     * Les valeurs sont l'espace occupé, qui reste compté dans {@link #size} tant que les
+     * fichiers existent.
+     */
+    private final LinkedHashMap<String,Long> pending = new LinkedHashMap<String,Long>();
+
+    /**
+     * Espace maximal (en octets) que peuvent occuper les fichiers de la cache.
+     */
+    private long capacity;
+
+    /**
+     * Espace (en octets) présentement occupé par les fichiers de la cache,
+     * y compris ceux des images en attente de suppression.
+     */
+    private long size;
+
+    /**
+     * Nombre de fois où une image demandée a été trouvée dans la cache.
+     */
+    private long hitCount;
+
+    /**
+     * Nombre de fois où une image demandée n'a pas été trouvée dans la cache.
+     */
+    private long missCount;
+
+    /**
+     * Nombre d'images qui ont été retirées de la cache, soit pour respecter la capacité,
+     * soit parce que leur fichier source a été modifié.
+     */
+    private long evictionCount;
+
+    /**
+     * Le contenu d'un fichier d'index.
+     */
+    private static final class Header implements java.io.Serializable {
+        /** Pour compatibilité entre différentes versions. */
+        private static final long serialVersionUID = 3858254736215237142L;
+        /** La clé complète.                            */ String key;
+        /** Date de modification du fichier source.      */ long sourceModified;
+        /** Longueur du fichier source, en octets.       */ long sourceLength;
+        /** Largeur de l'image, en pixels.               */ int width;
+        /** Hauteur de l'image, en pixels.               */ int height;
+        /** Coordonnées minimales de l'enveloppe.        */ double[] minimum;
+        /** Coordonnées maximales de l'enveloppe.        */ double[] maximum;
+        /** Les bandes de l'image (version géophysique). */ SampleDimension[] bands;
+    }
+
+    /**
+     * Construit une cache qui écrira ses fichiers dans le répertoire spécifié. Les fichiers
+     * déjà présents dans ce répertoire (par exemple ceux d'une exécution précédente) sont
+     * réutilisés, en commençant par supprimer les plus anciens si la capacité est dépassée.
+     *
+     * @param  directory Le répertoire de la cache. Il sera créé s'il n'existe pas.
+     * @param  capacity  Espace maximal que peuvent occuper les fichiers, en octets.
+     * @throws IOException si le répertoire n'a pas pu être créé.
+     */
+    public DiskCoverageCache(final File directory, final long capacity) throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(String.valueOf(capacity));
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException(directory.getPath());
+        }
+        this.directory = directory;
+        this.capacity  = capacity;
+        /*
+         * Reconstruit l'ordre LRU à partir des dates de modification des fichiers de données.
+         * Les fichiers de données sans index, les index sans données et les fichiers
+         * temporaires (par exemple ceux d'une écriture interrompue ou d'une suppression
+         * qui avait échoué) sont supprimés. Ceux qui ne peuvent pas l'être sont placés
+         * en attente de suppression.
+         */
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            Arrays.sort(files, new Comparator<File>() {
+                public int compare(final File f1, final File f2) {
+                    final long t1 = f1.lastModified();
+                    final long t2 = f2.lastModified();
+                    return (t1 < t2) ? -1 : (t1 > t2) ? +1 : 0;
+                }
+            });
+            for (int i=0; i<files.length; i++) {
+                final String filename = files[i].getName();
+                if (filename.endsWith(TEMPORARY)) {
+                    files[i].delete();
+                } else if (filename.endsWith(DATA)) {
+                    final String name = filename.substring(0, filename.length() - DATA.length());
+                    final File header = new File(directory, name + HEADER);
+                    final long length = files[i].length() + header.length();
+                    if (header.isFile()) {
+                        elements.put(name, length);
+                        size += length;
+                    } else if (!files[i].delete()) {
+                        pending.put(name, length);
+                        size += length;
+                    }
+                } else if (filename.endsWith(HEADER)) {
+                    final String name = filename.substring(0, filename.length() - HEADER.length());
+                    if (!new File(directory, name + DATA).isFile() && !files[i].delete()) {
+                        final long length = files[i].length();
+                        pending.put(name, length);
+                        size += length;
+                    }
+                }
+            }
+            synchronized (this) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * Retourne le nom des fichiers (sans leur extension) pour la clé spécifiée.
+     */
+    private static String toName(final String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes("UTF-8"));
+            final StringBuilder buffer = new StringBuilder(digest.length * 2);
+            for (int i=0; i<digest.length; i++) {
+                final int b = digest[i] & 0xFF;
+                if (b < 0x10) {
+                    buffer.append('0');
+                }
+                buffer.append(Integer.toHexString(b));
+            }
+            return buffer.toString();
+        } catch (NoSuchAlgorithmException exception) {
+            // Should not happen: every Java platform is required to support MD5.
+            throw new AssertionError(exception);
+        } catch (java.io.UnsupportedEncodingException exception) {
+            // Should not happen: every Java platform is required to support UTF-8.
+            throw new AssertionError(exception);
+        }
+    }
+
+    /**
+     * Retourne l'image en cache pour la clé spécifiée, ou <code>null</code> s'il n'y en a pas
+     * ou si le fichier source a été modifié depuis la mise en cache. L'image retournée est la
+     * version géophysique, telle qu'elle avait été donnée à {@link #put}.
+     *
+     * @param key        La clé de l'image (fichier source, région, opération...).
+     * @param source     Le fichier source, utilisé pour vérifier s'il a été modifié.
+     * @param name       Le nom à donner à l'image.
+     * @param cs         Le système de coordonnées de l'image.
+     * @param properties Les propriétés à donner à l'image.
+     */
+    final GridCoverage get(final String key, final File source, final String name,
+                           final CoordinateSystem cs, final Map properties)
+    {
+        final String filename = toName(key);
+        synchronized (this) {
+            if (elements.get(filename) == null) {
+                missCount++;
+                return null;
+            }
+        }
+        final File data = new File(directory, filename + DATA);
+        try {
+            final Header header = readHeader(new File(directory, filename + HEADER));
+            if (!key.equals(header.key)) {
+                synchronized (this) {
+                    missCount++;
+                }
+                return null;
+            }
+            if (header.sourceModified != source.lastModified() ||
+                header.sourceLength   != source.length())
+            {
+                synchronized (this) {
+                    remove(filename);
+                    missCount++;
+                }
+                return null;
+            }
+            final int numBands = header.bands.length;
+            final BandedSampleModel model = new BandedSampleModel(DataBuffer.TYPE_FLOAT,
+                                                header.width, header.height, numBands);
+            final ColorModel colors = header.bands[0].getColorModel(0, numBands);
+            final RenderedImage image = MappedRawImage.create(data, model, colors, ORDER, null);
+            if (image == null) {
+                synchronized (this) {
+                    remove(filename);
+                    missCount++;
+                }
+                return null;
+            }
+            data.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                hitCount++;
+            }
+            return new GridCoverage(name, image, cs, new Envelope(header.minimum, header.maximum),
+                                    header.bands, null, properties);
+        } catch (Exception exception) {
+            // IOException, ClassNotFoundException, ClassCastException...
+            // The cache is an optimization only: reads the image from its source.
+            synchronized (this) {
+                remove(filename);
+                missCount++;
+            }
+            Utilities.unexpectedException(fr.ird.database.coverage.CoverageDataBase.LOGGER.getName(),
+                                          "DiskCoverageCache", "get", exception);
+            return null;
+        }
+    }
+
+    /**
+     * Place dans la cache l'image spécifiée. Les valeurs écrites sont celles de la version
+     * géophysique de l'image. Si l'écriture échoue, l'erreur est consignée dans le journal
+     * et la cache reste dans son état précédent.
+     *
+     * @param key      La clé de l'image (fichier source, région, opération...).
+     * @param source   Le fichier source, dont la date de modification sera mémorisée.
+     * @param coverage L'image à écrire.
+     */
+    final void put(final String key, final File source, GridCoverage coverage) {
+        coverage = coverage.geophysics(true);
+        final RenderedImage image = coverage.getRenderedImage();
+        final int width  = image.getWidth();
+        final int height = image.getHeight();
+        final int numBands = image.getSampleModel().getNumBands();
+        final long length = (long) width * height * numBands * 4;
+        if (length > Math.min(capacity, Integer.MAX_VALUE)) {
+            return;
+        }
+        final String filename = toName(key);
+        final File header = new File(directory, filename + HEADER);
+        final File data   = new File(directory, filename + DATA);
+        final File temp   = new File(directory, filename + TEMPORARY);
+        try {
+            final long sourceModified = source.lastModified();
+            final long sourceLength   = source.length();
+            writeData(image, temp);
+            synchronized (this) {
+                final Long old = elements.remove(filename);
+                if (old != null) {
+                    discard(filename, old);
+                }
+                final Long stale = pending.get(filename);
+                if (stale != null && delete(filename)) {
+                    pending.remove(filename);
+                    size -= stale;
+                }
+                if (pending.containsKey(filename)) {
+                    /*
+                     * Les anciens fichiers de cette image sont encore utilisés (projetés en
+                     * mémoire) et ne peuvent pas être remplacés. L'image n'est pas mise en
+                     * cache pour cette fois.
+                     */
+                    temp.delete();
+                    return;
+                }
+                if (!temp.renameTo(data)) {
+                    throw new IOException(data.getPath());
+                }
+                final Header h       = new Header();
+                final Envelope envelope = coverage.getEnvelope();
+                final int dimension  = envelope.getDimension();
+                h.key                = key;
+                h.sourceModified     = sourceModified;
+                h.sourceLength       = sourceLength;
+                h.width              = width;
+                h.height             = height;
+                h.minimum            = new double[dimension];
+                h.maximum            = new double[dimension];
+                h.bands              = coverage.getSampleDimensions();
+                for (int i=0; i<dimension; i++) {
+                    h.minimum[i] = envelope.getMinimum(i);
+                    h.maximum[i] = envelope.getMaximum(i);
+                }
+                writeHeader(h, header);
+                final long total = data.length() + header.length();
+                elements.put(filename, total);
+                size += total;
+                evict();
+            }
+        } catch (IOException exception) {
+            temp.delete();
+            synchronized (this) {
+                remove(filename);
+            }
+            Utilities.unexpectedException(fr.ird.database.coverage.CoverageDataBase.LOGGER.getName(),
+                                          "DiskCoverageCache", "put", exception);
+        }
+    }
+
+    /**
+     * Écrit les pixels de l'image spécifiée dans le fichier de données. Les pixels sont
+     * écrits bande par bande, et les tuiles de l'image sont calculées une rangée à la fois.
+     */
+    private static void writeData(final RenderedImage image, final File file) throws IOException {
+        final int width    = image.getWidth();
+        final int height   = image.getHeight();
+        final int numBands = image.getSampleModel().getNumBands();
+        final int minX     = image.getMinX();
+        final int minY     = image.getMinY();
+        final int tileHeight = image.getTileHeight();
+        final long bandSize  = (long) width * height * 4;
+        final ByteBuffer buffer = ByteBuffer.allocate(width * 4).order(ORDER);
+        final float[] row = new float[width];
+        final RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            final FileChannel channel = out.getChannel();
+            channel.truncate(0);
+            for (int y=0; y<height; y+=tileHeight) {
+                final int stripHeight = Math.min(tileHeight, height - y);
+                final Raster strip = image.getData(new Rectangle(minX, minY + y, width, stripHeight));
+                for (int band=0; band<numBands; band++) {
+                    for (int j=0; j<stripHeight; j++) {
+                        strip.getSamples(minX, minY + y + j, width, 1, band, row);
+                        buffer.clear();
+                        buffer.asFloatBuffer().put(row);
+                        long position = band*bandSize + (long) (y + j) * width * 4;
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                    }
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Écrit le fichier d'index.
+     */
+    private static void writeHeader(final Header header, final File file) throws IOException {
+        final ObjectOutputStream out = new ObjectOutputStream(
+                                       new BufferedOutputStream(new FileOutputStream(file)));
+        try {
+            out.writeObject(header);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Lit le fichier d'index.
+     */
+    private static Header readHeader(final File file) throws IOException, ClassNotFoundException {
+        final ObjectInputStream in = new ObjectInputStream(
+                                     new BufferedInputStream(new FileInputStream(file)));
+        try {
+            return (Header) in.readObject();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Retire de la cache l'image spécifiée et supprime ses fichiers, s'ils existent.
+     */
+    private void remove(final String filename) {
+        assert Thread.holdsLock(this);
+        final Long length = elements.remove(filename);
+        if (length != null) {
+            evictionCount++;
+            discard(filename, length);
+        } else if (!pending.containsKey(filename)) {
+            final long remaining = new File(directory, filename + HEADER).length() +
+                                   new File(directory, filename + DATA  ).length();
+            size += remaining;
+            discard(filename, remaining);
+        }
+    }
+
+    /**
+     * Supprime les fichiers d'une image qui vient d'être retirée de {@link #elements}.
+     * Si les fichiers ne peuvent pas être supprimés, l'image est placée en attente de
+     * suppression et son espace reste compté dans {@link #size}.
+     *
+     * @param filename Le nom des fichiers, sans leur extension.
+     * @param length   L'espace occupé par les fichiers, en octets.
+     */
+    private void discard(final String filename, final long length) {
+        assert Thread.holdsLock(this);
+        if (delete(filename)) {
+            size -= length;
+        } else {
+            pending.put(filename, length);
+        }
+    }
+
+    /**
+     * Supprime les fichiers de l'image spécifiée.
+     *
+     * @return <code>true</code> si les fichiers n'existent plus.
+     */
+    private boolean delete(final String filename) {
+        final File header = new File(directory, filename + HEADER);
+        final File data   = new File(directory, filename + DATA);
+        return (header.delete() || !header.exists()) &
+               (data  .delete() || !data  .exists());
+    }
+
+    /**
+     * Supprime les images les moins récemment utilisées jusqu'à ce que la capacité soit
+     * respectée. La suppression des images en attente est d'abord tentée à nouveau.
+     */
+    private void evict() {
+        assert Thread.holdsLock(this);
+        for (final Iterator<Map.Entry<String,Long>> it=pending.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String,Long> entry = it.next();
+            if (delete(entry.getKey())) {
+                size -= entry.getValue();
+                it.remove();
+            }
+        }
+        final Iterator<Map.Entry<String,Long>> it = elements.entrySet().iterator();
+        while (size > capacity && it.hasNext()) {
+            final Map.Entry<String,Long> entry = it.next();
+            final String filename = entry.getKey();
+            it.remove();
+            evictionCount++;
+            discard(filename, entry.getValue());
+        }
+    }
+
+    /**
+     * Retourne le répertoire dans lequel sont écrits les fichiers de la cache.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Retourne l'espace maximal (en octets) que peuvent occuper les fichiers de la cache.
+     */
+    public synchronized long getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Modifie l'espace maximal (en octets) que peuvent occuper les fichiers de la cache.
+     * Si la nouvelle capacité est inférieure à l'espace présentement occupé, les images
+     * les moins récemment utilisées seront supprimées immédiatement.
+     *
+     * @param capacity La nouvelle capacité, en octets.
+     * @throws IllegalArgumentException si <code>capacity</code> est négatif.
+     */
+    public synchronized void setCapacity(final long capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException(String.valueOf(capacity));
+        }
+        this.capacity = capacity;
+        evict();
+    }
+
+    /**
+     * Retourne l'espace (en octets) présentement occupé par les fichiers de la cache.
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Retourne le nombre d'images présentement en cache.
+     */
+    public synchronized int getCount() {
+        return elements.size();
+    }
+
+    /**
+     * Retourne le nombre de fois où une image demandée a été trouvée dans la cache.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Retourne le nombre de fois où une image demandée a dû être lue à partir de sa source.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Retourne le nombre d'images qui ont été supprimées de la cache, soit pour respecter
+     * la capacité, soit parce que leur fichier source avait été modifié.
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Supprime tous les fichiers de la cache. Les compteurs ne sont pas remis à zéro.
+     */
+    public synchronized void clear() {
+        for (final String filename : elements.keySet()) {
+            new File(directory, filename + HEADER).delete();
+            new File(directory, filename + DATA  ).delete();
+        }
+        elements.clear();
+        size = 0;
+    }
+
+    /**
+     * Retourne une chaîne de caractères résumant l'état de cette cache.
+     */
+    public synchronized String toString() {
+        final StringBuilder buffer = new StringBuilder(Utilities.getShortClassName(this));
+        buffer.append("[\"").append(directory.getPath()).append('"');
+        buffer.append(", count=")    .append(elements.size());
+        buffer.append(", size=")     .append(size);
+        buffer.append(", capacity=") .append(capacity);
+        buffer.append(", hits=")     .append(hitCount);
+        buffer.append(", misses=")   .append(missCount);
+        buffer.append(", evictions=").append(evictionCount);
+        buffer.append(']');
+        return buffer.toString();
+    }
+}
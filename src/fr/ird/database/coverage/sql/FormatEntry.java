@@ -38,6 +38,7 @@ import javax.swing.event.EventListenerList;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.io.InterruptedIOException;
 import java.io.FileNotFoundException;
 import java.rmi.RemoteException;
 import java.net.MalformedURLException;
@@ -51,6 +52,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.Collections;
 import java.util.EventListener;
 import java.util.IdentityHashMap;
@@ -99,6 +101,19 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
      */
     private static final boolean USE_IMAGE_READ_OPERATION = false;
 
+    /**
+     * <code>true</code> pour lire les fichiers RAW locaux en les projetant en mémoire avec
+     * {@link MappedRawImage}, ou <code>false</code> pour toujours utiliser le décodeur RAW.
+     */
+    private static final boolean USE_MAPPED_RAW_IMAGE = true;
+
+    /**
+     * Nombre maximal d'objets {@link ImageReader} qui peuvent être utilisés simultanément
+     * pour un même format. Ce nombre détermine combien d'images de ce format peuvent être
+     * lues en parallèle par des threads différents.
+     */
+    private static final int MAX_READERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
     /**
      * Images en cours de lecture. Les clés sont les objets {@link CoverageEntry} en attente
      * d'être lus, tandis que les valeurs sont {@link Boolean#TRUE} si la lecture est en
@@ -107,6 +122,14 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
     private final Map<CoverageEntry,Boolean> enqueued =
             Collections.synchronizedMap(new IdentityHashMap<CoverageEntry,Boolean>());
 
+    /**
+     * Décodeurs présentement utilisés pour lire les images de {@link #enqueued} dont la
+     * lecture est en cours. Cette information est utilisée par {@link #abort} pour annuler
+     * la lecture d'une image sans affecter les autres lectures qui se dérouleraient en
+     * parallèle. Tous les accès doivent être synchronisés sur {@link #enqueued}.
+     */
+    private final Map<CoverageEntry,ImageReader> readersInUse = new IdentityHashMap<CoverageEntry,ImageReader>();
+
     /**
      * Nom du format lisant les images.
      */
@@ -136,11 +159,17 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
     public final boolean geophysics;
 
     /**
-     * Objet à utiliser pour lire des images de ce format. Cet objet ne sera
-     * créé que lors du premier appel de {@link #read},  puis réutilisé pour
-     * tous les appels subséquents.
+     * Objets disponibles pour lire des images de ce format. Ces objets ne seront créés
+     * qu'au besoin par {@link #acquireReader}, puis réutilisés pour tous les appels
+     * subséquents. Tous les accès doivent être synchronisés sur <code>this</code>.
      */
-    private transient ImageReader reader;
+    private transient LinkedList<ImageReader> readers;
+
+    /**
+     * Nombre d'objets {@link ImageReader} qui ont été créés pour ce format, incluant ceux
+     * qui sont présentement utilisés. Ce nombre n'excèdera jamais {@link #MAX_READERS}.
+     */
+    private transient int readerCount;
 
     /**
      * Construit une entrée représentant un format.
@@ -236,50 +265,77 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
     }
 
     /**
-     * Retourne l'objet à utiliser pour lire des images. Le lecteur retourné ne lira
-     * que des images du format MIME spécifié au constructeur. Les méthodes qui appelent
-     * <code>getImageReader</code> <u>doivent</u> appeler cette méthode et utiliser l'objet
-     * {@link ImageReader} retourné à l'intérieur d'un bloc synchronisé sur cet objet
-     * <code>FormatEntry</code> (c'est-à-dire <code>this</code>).
+     * Construit un nouvel objet à utiliser pour lire des images. Le lecteur retourné ne
+     * lira que des images du format MIME spécifié au constructeur.
      *
      * @return Le lecteur à utiliser pour lire les images de ce format.
      *         Cette méthode ne retourne jamais <code>null</code>.
      * @throws IIOException s'il n'y a pas d'objet {@link ImageReader}
      *         pour ce format.
      */
-    private ImageReader getImageReader() throws IIOException {
-        assert Thread.holdsLock(this);
-        if (reader != null) {
-            return reader;
-        }
-        Iterator<ImageReader> readers;
+    private ImageReader createImageReader() throws IIOException {
+        Iterator<ImageReader> it;
         if (mimeType.length() != 0) {
-            readers = ImageIO.getImageReadersByMIMEType(mimeType);
-            if (readers.hasNext()) {
-                return reader = readers.next();
+            it = ImageIO.getImageReadersByMIMEType(mimeType);
+            if (it.hasNext()) {
+                return it.next();
             }
         }
-        readers = ImageIO.getImageReadersByFormatName(extension);
-        if (readers.hasNext()) {
-            return reader = readers.next();
+        it = ImageIO.getImageReadersByFormatName(extension);
+        if (it.hasNext()) {
+            return it.next();
         }
         throw new IIOException(Resources.format(ResourceKeys.ERROR_NO_IMAGE_DECODER_$1, mimeType));
     }
 
     /**
-     * Retourne un bloc de paramètres par défaut pour le format courant.
-     * Cette méthode n'est appelée que par {@link GridCoverageEntry#getGridCoverage}.
-     * Note: cette méthode <strong>doit</strong> être appelée à partir d'un bloc
-     * synchronisé sur <code>this</code>.
+     * Retourne un objet à utiliser pour lire des images. Si aucun lecteur n'est disponible
+     * et que le nombre maximal de lecteurs a déjà été atteint, alors cette méthode bloque
+     * jusqu'à ce qu'un autre thread en libère un. Chaque appel de cette méthode
+     * <strong>doit</strong> être suivi d'un appel à {@link #releaseReader} dans un bloc
+     * <code>try...finally</code>. Le lecteur retourné ne doit pas être utilisé par plus
+     * d'un thread à la fois.
      *
-     * @return Un bloc de paramètres par défaut.
+     * @return Le lecteur à utiliser pour lire les images de ce format.
      *         Cette méthode ne retourne jamais <code>null</code>.
-     * @throws IIOException s'il n'y a pas d'objet {@link ImageReader}
-     *         pour ce format.
+     * @throws IIOException s'il n'y a pas d'objet {@link ImageReader} pour ce format.
+     * @throws InterruptedIOException si le thread a été interrompu pendant l'attente.
+     */
+    final synchronized ImageReader acquireReader() throws IOException {
+        if (readers == null) {
+            readers = new LinkedList<ImageReader>();
+        }
+        while (readers.isEmpty()) {
+            if (readerCount < MAX_READERS) {
+                final ImageReader reader = createImageReader();
+                readerCount++;
+                return reader;
+            }
+            try {
+                wait();
+            } catch (InterruptedException exception) {
+                final InterruptedIOException e = new InterruptedIOException(exception.getLocalizedMessage());
+                e.initCause(exception);
+                throw e;
+            }
+        }
+        return readers.removeFirst();
+    }
+
+    /**
+     * Remet à la disposition des autres threads un lecteur obtenu par {@link #acquireReader}.
+     *
+     * @param reader Le lecteur qui n'est plus utilisé.
      */
-    final ImageReadParam getDefaultReadParam() throws IIOException {
-        assert Thread.holdsLock(this);
-        return getImageReader().getDefaultReadParam();
+    final synchronized void releaseReader(final ImageReader reader) {
+        if (USE_IMAGE_READ_OPERATION) {
+            // Le lecteur appartient maintenant à l'opération "ImageRead" et ne peut plus
+            // être réutilisé. On permet simplement la création d'un nouveau lecteur.
+            readerCount--;
+        } else {
+            readers.addLast(reader);
+        }
+        notify();
     }
 
     /**
@@ -342,13 +398,14 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
      * soit lue non pas localement, mais plutôt à travers un réseau.
      * Cette méthode n'est appelée que par {@link GridCoverageEntry#getGridCoverage}.
      * <br><br>
-     * Note 1: cette méthode <strong>doit</strong> être appelée à partir d'un bloc
-     * synchronisé sur <code>this</code>.
+     * Note 1: le lecteur <code>reader</code> <strong>doit</strong> avoir été obtenu par
+     *         {@link #acquireReader} et ne doit pas être utilisé par un autre thread.
      * <br><br>
      * Note 2: La méthode {@link #setReading} <strong>doit</strong> être appelée
      *         avant et après cette méthode dans un bloc <code>try...finally</code>.
      *
      *
+     * @param  reader Le lecteur à utiliser, tel que retourné par {@link #acquireReader}.
      * @param  file Fichier à lire. Habituellement un objet {@link File}, {@link URL} ou {@link URI}.
      * @param  imageIndex Index (à partir de 0) de l'image à lire.
      * @param  param Bloc de paramètre à utiliser pour la lecture.
@@ -365,14 +422,14 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
      * @return Image lue, ou <code>null</code> si la lecture de l'image a été annulée.
      * @throws IOException si une erreur est survenue lors de la lecture.
      */
-    final RenderedImage read(final Object            file,
+    final RenderedImage read(final ImageReader       reader,
+                             final Object            file,
                              final int               imageIndex,
                              final ImageReadParam    param,
                              final EventListenerList listenerList,
                              final Dimension         expected,
                              final CoverageEntry     source) throws IOException
     {
-        assert Thread.holdsLock(this);
         RenderedImage    image       = null;
         ImageInputStream inputStream = null;
         Object           inputObject;
@@ -381,7 +438,6 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
          * essaira de donner un objet de type 'File' ou 'URL', ce qui permet
          * au décodeur d'utiliser la connection la plus appropriée pour eux.
          */
-        final ImageReader reader = getImageReader();
         final ImageReaderSpi spi = reader.getOriginatingProvider();
         final Class[] inputTypes = (spi!=null) ? spi.getInputTypes() : ImageReaderSpi.STANDARD_INPUT_TYPE;
         inputObject = getInput(file, inputTypes);
@@ -401,6 +457,26 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
             final SampleDimension[] bands = getSampleDimensions(param);
             final ColorModel  cm = bands[0].getColorModel(0, bands.length);
             final SampleModel sm = cm.createCompatibleSampleModel(expected.width, expected.height);
+            /*
+             * Si le fichier est local et que la disposition de ses pixels le permet, projette
+             * le fichier en mémoire plutôt que de le lire en entier. Seules les pages couvrant
+             * les tuiles demandées (compte tenu de la région et du sous-échantillonnage) seront
+             * lues par le système d'exploitation. L'image retournée n'a plus besoin du décodeur.
+             */
+            if (USE_MAPPED_RAW_IMAGE) {
+                final Object local = getInput(file, new Class[] {File.class});
+                if (local instanceof File) {
+                    image = MappedRawImage.create((File) local, sm, cm, inputStream.getByteOrder(), param);
+                    if (image != null) {
+                        inputStream.close();
+                        if (!enqueued.containsKey(source)) {
+                            // User aborted the reading before it started.
+                            image = null;
+                        }
+                        return image;
+                    }
+                }
+            }
             inputObject = inputStream = new RawImageInputStream(inputStream,
                                                                 new ImageTypeSpecifier(cm, sm),
                                                                 new long[]{0},
@@ -461,7 +537,8 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
                 .add(getLocale())     // Langue du décodeur
                 .add(param)           // Les paramètres
                 .add(reader));        // L'objet à utiliser pour la lecture.
-            this.reader = null;       // N'utilise que un ImageReader par opération.
+                                      // N'utilise que un ImageReader par opération
+                                      // (voir 'releaseReader').
         } else try {
             /*
              * Utilisation direct du 'ImageReader': cette approche lit l'image immédiatement,
@@ -489,13 +566,23 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
              * The reading will not be performed if the user aborted it before we reach
              * this point.
              */
-            if (enqueued.put(source, Boolean.TRUE) != null) {
+            final boolean proceed;
+            synchronized (enqueued) {
+                proceed = (enqueued.put(source, Boolean.TRUE) != null);
+                if (proceed) {
+                    readersInUse.put(source, reader);
+                }
+            }
+            if (proceed) {
                 image = reader.readAsRenderedImage(imageIndex, param);
             }
         } finally {
-            if (enqueued.remove(source) == null) {
-                // User aborted the reading while it was in process.
-                image = null;
+            synchronized (enqueued) {
+                readersInUse.remove(source);
+                if (enqueued.remove(source) == null) {
+                    // User aborted the reading while it was in process.
+                    image = null;
+                }
             }
             reader.reset(); // Comprend "removeIIOReadProgressListener" et "setInput(null)".
             if (inputStream != null) {
@@ -513,8 +600,11 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
      * <blockquote><pre>
      * try {
      *     format.setReading(source, true);
-     *     synchronized (format) {
-     *         format.read(...);
+     *     final ImageReader reader = format.acquireReader();
+     *     try {
+     *         format.read(reader, ...);
+     *     } finally {
+     *         format.releaseReader(reader);
      *     }
      * } finally {
      *     format.setReading(source, false);
@@ -533,8 +623,10 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
     }
 
     /**
-     * Annule la lecture de l'image en appelant {@link ImageReader#abort}.
-     * Cette méthode peut être appelée à partir de n'importe quel thread.
+     * Annule la lecture de l'image en appelant {@link ImageReader#abort} sur le lecteur
+     * utilisé pour cette image seulement. Les lectures des autres images de ce format qui
+     * se dérouleraient en parallèle ne sont pas affectées. Cette méthode peut être appelée
+     * à partir de n'importe quel thread.
      *
      * @param source Objet qui appelle cette méthode.
      */
@@ -543,6 +635,7 @@ final class FormatEntry implements fr.ird.database.coverage.FormatEntry, Seriali
         final Boolean active;
         synchronized (enqueued) {
             active = enqueued.remove(source);
+            final ImageReader reader = readersInUse.remove(source);
             if (Boolean.TRUE.equals(active)) {
                 if (reader != null) {
                     reader.abort();
@@ -24,31 +24,37 @@ import java.rmi.server.UnicastRemoteObject;
 // Entrés/sorties
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.ObjectStreamException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
 import java.net.URLEncoder;
 import javax.imageio.IIOException;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageReadParam;
 import javax.swing.event.EventListenerList;
 
 // Geométrie
 import java.awt.Dimension;
 import java.awt.Rectangle;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.Dimension2D;
 
 // Références faibles
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
-import java.lang.ref.SoftReference;
 
 // Divers
 import java.util.Date;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.awt.image.Raster;
 import java.awt.image.RenderedImage;
 import javax.media.jai.util.Range;
+import javax.media.jai.KernelJAI;
 import javax.media.jai.ParameterList;
 import javax.media.jai.util.CaselessStringKey;
 
@@ -58,11 +64,13 @@ import org.opengis.referencing.operation.TransformException;
 // Geotools (CTS)
 import org.geotools.pt.Envelope;
 import org.geotools.cs.CoordinateSystem;
+import org.geotools.ct.MathTransform1D;
 import org.geotools.ct.MathTransform2D;
 import org.geotools.ct.CoordinateTransformationFactory;
 
 // Geotools (GCS)
 import org.geotools.cv.SampleDimension;
+import org.geotools.cv.CannotEvaluateException;
 import org.geotools.gc.GridRange;
 import org.geotools.gc.GridGeometry;
 import org.geotools.gc.GridCoverage;
@@ -142,6 +150,14 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
      */
     static GridCoverageProcessor PROCESSOR = new fr.ird.database.coverage.sql.GridCoverageProcessor();
 
+    /**
+     * La cache sur disque des images lues, ou <code>null</code> s'il n'y en a pas.
+     *
+     * @see CoverageDataBase#getDiskCoverageCache
+     * @see CoverageDataBase#setDiskCoverageCache
+     */
+    static volatile DiskCoverageCache DISK_CACHE;
+
     /**
      * Ensemble des entrés qui ont déjà été retournées par {@link #canonicalize()}
      * et qui n'ont pas encore été réclamées par le ramasse-miettes. La classe
@@ -152,20 +168,21 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
     private static final WeakHashSet POOL = Table.POOL;
     
     /**
-     * Liste des derniers {@link GridCoverageEntry} pour lesquels la méthode
-     * {@link #getGridCoverage} a été appelée. Lorsqu'une nouvelle image est lue, les références
-     * molles des plus anciennes sont changées en références faibles afin d'augmenter les chances
-     * que le ramasse-miette se débarasse des images les plus anciennes avant que la mémoire ne
-     * sature.
+     * Cache des images lues, partagée par toutes les entrées. Cette cache retient des
+     * références fortes vers les images les plus récemment utilisées, dans la limite
+     * d'un budget de mémoire.
      */
-    private static final LinkedList<GridCoverageEntry> LAST_INVOKED = new LinkedList<GridCoverageEntry>();
+    private static final CoverageCache CACHE = CoverageCache.DEFAULT;
 
     /**
-     * Nombre maximal d'entrés à conserver dans la liste {@link #LAST_INVOKED}.
-     *
-     * @task TODO: Une meilleure mesure serait la mémoire occupée...
+     * Les lectures présentement en cours. Les clés sont les entrées qui font la lecture,
+     * mais la recherche se fait selon {@link #equals}: un thread qui demande une image
+     * égale à une image en cours de lecture (même si elle provient d'une autre instance,
+     * par exemple d'une autre table) attendra le résultat de cette lecture plutôt que de
+     * décoder l'image une seconde fois.
      */
-    private static final int ENTRY_CAPACITY = 8;
+    private static final ConcurrentMap<GridCoverageEntry,Load> LOADING =
+            new ConcurrentHashMap<GridCoverageEntry,Load>();
 
     /**
      * Petite valeur utilisée pour contourner les erreurs d'arrondissement.
@@ -179,6 +196,13 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
      */
     private static final int MIN_SIZE = 8;
 
+    /**
+     * Nombre de pixels que {@link #evaluate} accepte de lire par point demandé. Si le rectangle
+     * englobant tous les points contient plus de pixels que ce nombre multiplié par le nombre
+     * de points, alors chaque point sera lu séparément.
+     */
+    private static final int PIXELS_PER_POINT = 64*64;
+
     /** Nom du fichier.                  */ private final String filename;
     /** Date du début de l'acquisition.  */ private final   long startTime;
     /** Date de la fin de l'acquisition. */ private final   long endTime;
@@ -198,10 +222,10 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
     private final Parameters parameters;
 
     /**
-     * Référence molle vers l'image {@link GridCoverage} qui a été retournée lors
+     * Référence faible vers l'image {@link GridCoverage} qui a été retournée lors
      * du dernier appel de {@link #getGridCoverage}.  Cette référence est retenue
-     * afin d'éviter de charger inutilement une autre fois l'image si elle est déjà
-     * en mémoire.
+     * afin d'éviter de charger inutilement une autre fois l'image si elle est encore
+     * utilisée ailleurs, même après avoir été retirée de {@link #CACHE}.
      */
     private transient Reference<GridCoverage> gridCoverage;
 
@@ -213,6 +237,18 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
      */
     private transient Reference<RenderedImage> renderedImage;
 
+    /**
+     * La lecture faite par une autre entrée dont cette entrée attend le résultat,
+     * ou <code>null</code> s'il n'y en a pas.
+     */
+    private transient volatile Load waiting;
+
+    /**
+     * Mis à <code>true</code> par {@link #abort} et remis à <code>false</code> au début
+     * de chaque appel de {@link #getGridCoverage}.
+     */
+    private transient volatile boolean aborted;
+
     /**
      * Construit une entré contenant des informations sur une image.
      *
@@ -223,32 +259,35 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
     GridCoverageEntry(final GridCoverageTable table, final ResultSet result)
             throws RemoteException, SQLException
     {
-        final String seriesID;
-        final String formatID;
-        final String crsID;
-        final String pathname;
-        final Date   startTime;
-        final Date     endTime;
-        seriesID   = result.getString    (GridCoverageTable.SERIES);
-        pathname   = result.getString    (GridCoverageTable.PATHNAME).intern();
-        filename   = result.getString    (GridCoverageTable.FILENAME);
-        startTime  = table .getTimestamp (GridCoverageTable.START_TIME, result);
-        endTime    = table .getTimestamp (GridCoverageTable.END_TIME,   result);
-        xmin       = result.getFloat     (GridCoverageTable.XMIN);
-        xmax       = result.getFloat     (GridCoverageTable.XMAX);
-        ymin       = result.getFloat     (GridCoverageTable.YMIN);
-        ymax       = result.getFloat     (GridCoverageTable.YMAX);
-        width      = result.getShort     (GridCoverageTable.WIDTH);
-        height     = result.getShort     (GridCoverageTable.HEIGHT);
-        crsID      = result.getString    (GridCoverageTable.CRS);
-        formatID   = result.getString    (GridCoverageTable.FORMAT);
-        parameters = table .getParameters(seriesID, formatID, crsID, pathname);
+        this(table, new CoverageRecord(table, result));
+    }
+
+    /**
+     * Construit une entré contenant des informations sur une image à partir d'un
+     * enregistrement déjà lu. Les paramètres de lecture (région géographique,
+     * résolution, opération...) sont ceux de la table spécifiée.
+     *
+     * @param  table  Table pour laquelle construire l'entrée.
+     * @param  record Enregistrement décrivant l'image.
+     * @throws SQLException si l'accès au catalogue a échoué.
+     */
+    GridCoverageEntry(final GridCoverageTable table, final CoverageRecord record)
+            throws RemoteException, SQLException
+    {
+        filename   = record.filename;
+        startTime  = record.startTime;
+        endTime    = record.endTime;
+        xmin       = record.xmin;
+        xmax       = record.xmax;
+        ymin       = record.ymin;
+        ymax       = record.ymax;
+        width      = record.width;
+        height     = record.height;
+        parameters = table.getParameters(record.series, record.format, record.crs, record.pathname);
         // TODO: mémoriser les coordonnées dans un Rectangle2D et lancer une exception s'il est vide.
         // NOTE: Les coordonnées xmin, xmax, ymin et ymax ne sont PAS exprimées selon le système de
         //       coordonnées de l'image, mais plutôt selon le système de coordonnées de la table
         //       d'images. La transformation sera effectuée par 'getEnvelope()'.
-        this.startTime = (startTime!=null) ? startTime.getTime() : Long.MIN_VALUE;
-        this.  endTime = (  endTime!=null) ?   endTime.getTime() : Long.MAX_VALUE;
     }
 
     /**
@@ -490,21 +529,161 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
     private synchronized GridCoverage getGridCoverage(final int imageIndex,
                                                       final EventListenerList listenerList)
             throws IOException, TransformException
+    {
+        aborted = false;
+        while (true) {
+            GridCoverage cached = getCachedGridCoverage();
+            if (cached != null) {
+                return cached;
+            }
+            /*
+             * Si une autre entrée égale à celle-ci est déjà en train de lire l'image, attend son
+             * résultat. Sinon, cette entrée devient celle qui fait la lecture. Si la lecture
+             * attendue a été annulée par son propriétaire (mais pas par nous), on recommence.
+             */
+            final Load load = new Load();
+            final Load running = LOADING.putIfAbsent(this, load);
+            if (running == null) {
+                GridCoverage coverage = null;
+                Throwable failure = null;
+                try {
+                    coverage = load(imageIndex, listenerList);
+                    return coverage;
+                } catch (IOException exception) {
+                    failure = exception;
+                    throw exception;
+                } catch (TransformException exception) {
+                    failure = exception;
+                    throw exception;
+                } catch (RuntimeException exception) {
+                    failure = exception;
+                    throw exception;
+                } catch (Error exception) {
+                    failure = exception;
+                    throw exception;
+                } finally {
+                    LOADING.remove(this, load);
+                    load.done(coverage, failure, aborted);
+                }
+            }
+            waiting = running;
+            try {
+                final GridCoverage coverage = running.get(this);
+                if (coverage != null) {
+                    gridCoverage = new WeakReference<GridCoverage>(coverage);
+                    return coverage;
+                }
+                if (aborted || !running.aborted) {
+                    return null;
+                }
+            } finally {
+                waiting = null;
+            }
+        }
+    }
+
+    /**
+     * Une lecture en cours, dont le résultat peut être attendu par plusieurs threads.
+     */
+    private static final class Load {
+        /** <code>true</code> si la lecture est terminée.  */ private boolean done;
+        /** <code>true</code> si la lecture a été annulée. */ boolean aborted;
+        /** L'image lue, ou <code>null</code>.             */ private GridCoverage coverage;
+        /** L'exception lancée, ou <code>null</code>.      */ private Throwable failure;
+
+        /**
+         * Enregistre le résultat de la lecture et réveille les threads en attente.
+         */
+        synchronized void done(final GridCoverage coverage, final Throwable failure,
+                               final boolean aborted)
+        {
+            this.coverage = coverage;
+            this.failure  = failure;
+            this.aborted  = aborted;
+            this.done     = true;
+            notifyAll();
+        }
+
+        /**
+         * Attend le résultat de la lecture pour le compte de l'entrée spécifiée. Cette méthode
+         * retourne <code>null</code> immédiatement si l'entrée est annulée par {@link #abort}.
+         */
+        synchronized GridCoverage get(final GridCoverageEntry entry)
+                throws IOException, TransformException
+        {
+            while (!done) {
+                if (entry.aborted) {
+                    return null;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException exception) {
+                    final InterruptedIOException e = new InterruptedIOException(exception.getLocalizedMessage());
+                    e.initCause(exception);
+                    throw e;
+                }
+            }
+            if (failure != null) {
+                if (failure instanceof IOException) {
+                    final IOException e = new IIOException(failure.getLocalizedMessage());
+                    e.initCause(failure);
+                    throw e;
+                }
+                if (failure instanceof TransformException) {
+                    throw (TransformException) failure;
+                }
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw (RuntimeException) failure;
+            }
+            return coverage;
+        }
+
+        /**
+         * Réveille les threads en attente, afin qu'ils vérifient s'ils ont été annulés.
+         */
+        synchronized void wakeup() {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Retourne l'image de cette entrée si elle est encore en mémoire,
+     * ou <code>null</code> sinon.
+     */
+    private GridCoverage getCachedGridCoverage() {
+        assert Thread.holdsLock(this);
+        GridCoverage cached = CACHE.get(this);
+        if (cached == null && gridCoverage != null) {
+            cached = gridCoverage.get();
+            if (cached != null) {
+                CACHE.put(this, cached);
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Procède à la lecture de l'image pour le compte de {@link #getGridCoverage}. Aucune
+     * autre entrée égale à celle-ci ne lit la même image pendant l'exécution de cette
+     * méthode.
+     */
+    private GridCoverage load(final int imageIndex, final EventListenerList listenerList)
+            throws IOException, TransformException
     {
         /*
          * NOTE SUR LES SYNCHRONISATIONS: Cette méthode est synchronisée à plusieurs niveau:
          *
-         *  1) Toute la méthode sur 'this',  afin d'éviter qu'une image ne soit lue deux fois
-         *     si un thread tente d'accéder à la cache alors que l'autre thread n'a pas eu le
-         *     temps de placer le résultat de la lecture dans cette cache.   Synchroniser sur
-         *     'this' ne devrait pas avoir d'impact significatif sur la performance,    étant
-         *     donné que l'opération vraiment longue (la lecture de l'image) est synchronisée
-         *     sur 'format' de toute façon (voir prochain item).
+         *  1) Toute la méthode 'getGridCoverage' sur 'this', et la table 'LOADING' pour les
+         *     entrées égales à 'this', afin d'éviter qu'une image ne soit lue deux fois si un
+         *     thread tente d'accéder à la cache alors que l'autre thread n'a pas eu le temps
+         *     de placer le résultat de la lecture dans cette cache.
          *
-         *  2) La lecture de l'image sur 'format'. On ne synchronise pas toute la méthode sur
-         *     'format' afin de ne pas bloquer l'accès à la cache  pour un objet 'CoverageEntry'
-         *     donné pendant qu'une lecture est en cours  sur un autre objet 'CoverageEntry' qui
-         *     utiliserait le même format.
+         *  2) L'obtention d'un décodeur auprès de 'format'. Chaque format gère un nombre limité
+         *     de décodeurs ('FormatEntry.acquireReader'), ce qui permet de lire en parallèle
+         *     plusieurs images d'un même format à partir de threads différents. Un décodeur
+         *     donné n'est utilisé que par un seul thread à la fois.
          *
          *  3) Les demandes d'annulation de lecture ({@link #abort}) sur
          *     <code>FormatEntryImpl.enqueued</code>, afin de pouvoir
@@ -512,16 +691,6 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
          *     synchronisation est gérée en interne par <code>FormatEntryImpl</code>.
          */
 
-        /*
-         * Vérifie d'abord si l'image demandée se trouve déjà en mémoire. Si
-         * oui, elle sera retournée et la méthode se termine immédiatement.
-         */
-        if (gridCoverage != null) {
-            final GridCoverage image = gridCoverage.get();
-            if (image != null) {
-                return image;
-            }
-        }
         gridCoverage = null;
         /*
          * Obtient les coordonnées géographiques et la résolution désirées. Notez que ces
@@ -634,48 +803,8 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
                                                      clipPixel.getHeight()/scaleY);
         }
         /*
-         * Avant d'effectuer la lecture, vérifie si l'image est déjà en mémoire. Une image
-         * {@link RenderedGridCoverage} peut être en mémoire même si {@link GridCoverage}
-         * ne l'est plus si, par exemple, l'image est entrée dans une chaîne d'opérations de JAI.
-         */
-        RenderedImage image = null;
-        if (renderedImage != null) {
-            image = renderedImage.get();
-            if (image == null) {
-                renderedImage = null;
-            }
-        }
-        /*
-         * A ce stade, nous disposons maintenant des coordonnées en pixels
-         * de la région à charger. Procède maintenant à la lecture.
-         */
-        final FormatEntry format = parameters.format;
-        final SampleDimension[] bands;
-        try {
-            format.setReading(this, true);
-            synchronized (format) {
-                final ImageReadParam param = format.getDefaultReadParam();
-                if (clipPixel != null) {
-                    param.setSourceRegion(clipPixel);
-                }
-                param.setSourceSubsampling(xSubsampling,   ySubsampling,
-                                           xSubsampling/2, ySubsampling/2);
-                if (image == null) {
-                    image = format.read(getInput(true), imageIndex, param, listenerList,
-                                        new Dimension(width, height), this);
-                    if (image == null) {
-                        return null;
-                    }
-                }
-                bands = format.getSampleDimensions(param);
-            }
-        } finally {
-            format.setReading(this, false);
-        }
-        /*
-         * La lecture est maintenant terminée et n'a pas été annulée.
-         * On construit maintenant l'objet {@link GridCoverage}, on le
-         * conserve dans une cache interne puis on le retourne.
+         * Calcule l'enveloppe et le système de coordonnées de l'image. Ces informations
+         * ne dépendent que de la région demandée, et non des pixels qui seront lus.
          */
         CoordinateSystem imageCS = parameters.imageCS;
         double[] min = new double[] {clipLogical.getMinX(), clipLogical.getMinY(), CoordinateSystemTable.toJulian(startTime)};
@@ -686,20 +815,113 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
             max = XArray.resize(max, 2);
             imageCS = CTSUtilities.getCoordinateSystem2D(imageCS);
         }
-        GridCoverage coverage = new GridCoverage(filename, image, imageCS,
-                                new Envelope(min, max), bands, null,
-                                Collections.singletonMap(SOURCE_KEY, this));
+        final Operation operation = parameters.operation;
+        final boolean interpolate = (operation != null) &&
+                                    operation.getName().equalsIgnoreCase("Interpolate");
         /*
-         * Retourne toujours la version "géophysique" de l'image.
+         * Si une cache sur disque a été spécifiée, vérifie si l'image (après l'opération
+         * de la série, mais avant l'interpolation) s'y trouve déjà. Si oui, on évite à la
+         * fois le décodage de l'image et l'application de l'opération.
          */
-        coverage = coverage.geophysics(true);
+        final DiskCoverageCache diskCache = DISK_CACHE;
+        final File   diskSource;
+        final String diskKey;
+        GridCoverage coverage = null;
+        RenderedImage image = null;
+        if (diskCache != null && (diskSource = getFile()) != null) {
+            diskKey  = getDiskCacheKey(diskSource, imageIndex, clipPixel, xSubsampling, ySubsampling,
+                                       interpolate ? null : operation);
+            if (diskKey != null) {
+                coverage = diskCache.get(diskKey, diskSource, filename, imageCS,
+                                         Collections.singletonMap(SOURCE_KEY, this));
+            }
+        } else {
+            diskSource = null;
+            diskKey    = null;
+        }
+        if (coverage == null) {
+            /*
+             * Avant d'effectuer la lecture, vérifie si l'image est déjà en mémoire. Une image
+             * {@link RenderedGridCoverage} peut être en mémoire même si {@link GridCoverage}
+             * ne l'est plus si, par exemple, l'image est entrée dans une chaîne d'opérations
+             * de JAI.
+             */
+            if (renderedImage != null) {
+                image = renderedImage.get();
+                if (image == null) {
+                    renderedImage = null;
+                }
+            }
+            /*
+             * A ce stade, nous disposons maintenant des coordonnées en pixels
+             * de la région à charger. Procède maintenant à la lecture.
+             */
+            final FormatEntry format = parameters.format;
+            final SampleDimension[] bands;
+            try {
+                format.setReading(this, true);
+                final ImageReader reader = format.acquireReader();
+                try {
+                    final ImageReadParam param = reader.getDefaultReadParam();
+                    if (clipPixel != null) {
+                        param.setSourceRegion(clipPixel);
+                    }
+                    param.setSourceSubsampling(xSubsampling,   ySubsampling,
+                                               xSubsampling/2, ySubsampling/2);
+                    if (image == null) {
+                        image = format.read(reader, getInput(true), imageIndex, param, listenerList,
+                                            new Dimension(width, height), this);
+                        if (image == null) {
+                            return null;
+                        }
+                    }
+                    bands = format.getSampleDimensions(param);
+                } finally {
+                    format.releaseReader(reader);
+                }
+            } finally {
+                format.setReading(this, false);
+            }
+            /*
+             * La lecture est maintenant terminée et n'a pas été annulée.
+             * On construit maintenant l'objet {@link GridCoverage}.
+             */
+            coverage = new GridCoverage(filename, image, imageCS,
+                       new Envelope(min, max), bands, null,
+                       Collections.singletonMap(SOURCE_KEY, this));
+            /*
+             * Retourne toujours la version "géophysique" de l'image.
+             */
+            coverage = coverage.geophysics(true);
+            /*
+             * Si l'utilisateur a spécifié une operation à appliquer sur les images, applique
+             * cette opération maintenant. L'interpolation est appliquée plus bas, après la
+             * mise en cache sur disque.
+             */
+            if (operation != null && !interpolate) {
+                synchronized (operation) {
+                    try {
+                        ParameterList param = parameters.parameters.setParameter("Source", coverage);
+                        coverage = PROCESSOR.doOperation(operation, param);
+                    } finally {
+                        parameters.parameters.setParameter("Source", null);
+                    }
+                }
+            }
+            /*
+             * Conserve le résultat dans la cache sur disque, sauf si l'opération a changé
+             * le système de coordonnées (on ne saurait alors pas reconstruire l'image).
+             */
+            if (diskKey != null && imageCS.equals(coverage.getCoordinateSystem())) {
+                diskCache.put(diskKey, diskSource, coverage);
+            }
+        }
         /*
-         * Si l'utilisateur a spécifié une operation à appliquer
-         * sur les images, applique cette opération maintenant.
+         * Applique l'interpolation bicubique (ou l'interpolation demandée par
+         * l'opération de la série), conserve le résultat dans une cache et
+         * retourne le résultat.
          */
-        Operation operation = parameters.operation;
-        boolean interpolationDone = false;
-        if (operation != null) {
+        if (interpolate) {
             synchronized (operation) {
                 try {
                     ParameterList param = parameters.parameters.setParameter("Source", coverage);
@@ -707,45 +929,303 @@ final class GridCoverageEntry extends UnicastRemoteObject implements CoverageEnt
                 } finally {
                     parameters.parameters.setParameter("Source", null);
                 }
-                if (operation.getName().equalsIgnoreCase("Interpolate")) {
-                    interpolationDone = true;
+            }
+        } else {
+            coverage = PROCESSOR.doOperation("Interpolate", coverage, "Type", INTERPOLATIONS);
+        }
+        if (image != null) {
+            renderedImage = new WeakReference<RenderedImage>(image);
+        }
+        gridCoverage  = new WeakReference<GridCoverage>(coverage);
+        CACHE.put(this, coverage);
+        return coverage;
+    }
+
+    /**
+     * Retourne la clé sous laquelle l'image est conservée dans la cache sur disque. Cette
+     * clé comprend tout ce qui détermine les valeurs des pixels: le fichier source, l'index
+     * de l'image, le format, la région et le sous-échantillonnage, ainsi que le nom et les
+     * paramètres de l'opération (à l'exception de la source). Si un paramètre n'a pas de
+     * représentation textuelle stable d'une exécution à l'autre (par exemple un objet dont
+     * <code>toString()</code> contient le code de hachage de l'identité), alors cette méthode
+     * retourne <code>null</code> et l'image ne passe pas par la cache sur disque.
+     *
+     * @param operation L'opération appliquée avant la mise en cache, ou <code>null</code>.
+     * @return La clé, ou <code>null</code> si l'image ne doit pas être mise en cache sur disque.
+     */
+    private String getDiskCacheKey(final File source, final int imageIndex, final Rectangle clipPixel,
+                                   final int xSubsampling, final int ySubsampling,
+                                   final Operation operation)
+    {
+        final StringBuilder buffer = new StringBuilder(source.getAbsolutePath());
+        buffer.append('[').append(imageIndex).append(']');
+        buffer.append(" format=").append(parameters.format.getName());
+        buffer.append(" region=");
+        if (clipPixel != null) {
+            buffer.append(clipPixel.x).append(',').append(clipPixel.y).append(',')
+                  .append(clipPixel.width).append(',').append(clipPixel.height);
+        } else {
+            buffer.append("full");
+        }
+        buffer.append(" subsampling=").append(xSubsampling).append('x').append(ySubsampling);
+        if (operation != null) {
+            buffer.append(" operation=").append(operation.getName());
+            synchronized (operation) {
+                final ParameterList param = parameters.parameters;
+                final String[] names = param.getParameterListDescriptor().getParamNames();
+                for (int i=0; i<names.length; i++) {
+                    final String name = names[i];
+                    if (!name.equalsIgnoreCase("Source")) {
+                        buffer.append(' ').append(name).append('=');
+                        if (!appendStable(buffer, param.getObjectParameter(name))) {
+                            return null;
+                        }
+                    }
+                }
+            }
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Ajoute au buffer la représentation textuelle de la valeur d'un paramètre, à la condition
+     * qu'elle soit la même d'une exécution à l'autre. Sont acceptés les nombres, chaînes de
+     * caractères, booléens, énumérations, les tableaux de ces types et les noyaux
+     * {@link KernelJAI} (par leur taille, leur origine et leurs valeurs).
+     *
+     * @return <code>false</code> si la valeur n'a pas de représentation stable.
+     */
+    private static boolean appendStable(final StringBuilder buffer, final Object value) {
+        if (value == null || value instanceof Number || value instanceof String ||
+            value instanceof Boolean || value instanceof Character)
+        {
+            buffer.append(value);
+        } else if (value instanceof Enum) {
+            buffer.append(((Enum) value).name());
+        } else if (value instanceof KernelJAI) {
+            final KernelJAI kernel = (KernelJAI) value;
+            buffer.append("Kernel[").append(kernel.getWidth()).append('x').append(kernel.getHeight())
+                  .append(" origin=").append(kernel.getXOrigin()).append(',').append(kernel.getYOrigin())
+                  .append(' ').append(Arrays.toString(kernel.getKernelData())).append(']');
+        } else if (value instanceof Object[]) {
+            final Object[] array = (Object[]) value;
+            buffer.append('[');
+            for (int i=0; i<array.length; i++) {
+                if (i != 0) {
+                    buffer.append(", ");
+                }
+                if (!appendStable(buffer, array[i])) {
+                    return false;
+                }
+            }
+            buffer.append(']');
+        } else if (value instanceof double[]) {
+            buffer.append(Arrays.toString((double[]) value));
+        } else if (value instanceof float[]) {
+            buffer.append(Arrays.toString((float[]) value));
+        } else if (value instanceof long[]) {
+            buffer.append(Arrays.toString((long[]) value));
+        } else if (value instanceof int[]) {
+            buffer.append(Arrays.toString((int[]) value));
+        } else if (value instanceof short[]) {
+            buffer.append(Arrays.toString((short[]) value));
+        } else if (value instanceof byte[]) {
+            buffer.append(Arrays.toString((byte[]) value));
+        } else if (value instanceof char[]) {
+            buffer.append(Arrays.toString((char[]) value));
+        } else if (value instanceof boolean[]) {
+            buffer.append(Arrays.toString((boolean[]) value));
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Retourne les valeurs géophysiques de cette image aux positions spécifiées. Contrairement
+     * à {@link #getGridCoverage}, cette méthode ne lit que les pixels nécessaires (à l'aide de
+     * {@link ImageReadParam#setSourceRegion}) et ne construit pas d'objet {@link GridCoverage}.
+     * La valeur retournée est celle du pixel qui contient chaque point, sans interpolation et
+     * sans tenir compte de la région géographique de la table. Les points qui sont en dehors
+     * de l'image reçoivent des valeurs {@link Double#NaN NaN}.
+     * <br><br>
+     * Si la série applique une opération sur ses images (autre qu'une interpolation), les
+     * pixels lus ne suffisent pas à calculer les valeurs. Cette méthode délègue alors à
+     * l'image complète retournée par {@link #getGridCoverage}.
+     *
+     * @param  points Les positions, dans le système de coordonnées de la table d'images.
+     * @return Les valeurs de chaque bande pour chaque point, ou <code>null</code> si la
+     *         lecture a été annulée.
+     * @throws IOException si la lecture de l'image a échoué.
+     * @throws TransformException si une transformation de coordonnées a échoué.
+     */
+    final double[][] evaluate(final Point2D[] points) throws IOException, TransformException {
+        final SampleDimension[] geophysics = getSampleDimensions();
+        final double[][] values = new double[points.length][geophysics.length];
+        for (int i=0; i<values.length; i++) {
+            Arrays.fill(values[i], Double.NaN);
+        }
+        final Operation operation = parameters.operation;
+        if (operation!=null && !operation.getName().equalsIgnoreCase("Interpolate")) {
+            final GridCoverage coverage = getGridCoverage(0, null);
+            if (coverage == null) {
+                return null;
+            }
+            for (int i=0; i<points.length; i++) {
+                if (points[i] != null) try {
+                    coverage.evaluate(tableToCoverageCS(points[i]), values[i]);
+                } catch (CannotEvaluateException exception) {
+                    // Point outside the image: leave the values to NaN.
+                }
+            }
+            return values;
+        }
+        /*
+         * Calcule les coordonnées pixels de chaque point ainsi que le rectangle qui les englobe.
+         * Les conversions sont les mêmes que celles de 'load(...)' pour une image complète.
+         */
+        final Rectangle2D fullArea = tableToCoverageCS(new XRectangle2D(xmin, ymin, xmax-xmin, ymax-ymin));
+        final double scaleX =  width/fullArea.getWidth();
+        final double scaleY = height/fullArea.getHeight();
+        final int[] columns = new int[points.length];
+        final int[] rows    = new int[points.length];
+        Rectangle bounds = null;
+        int count = 0;
+        for (int i=0; i<points.length; i++) {
+            columns[i] = -1;
+            if (points[i] == null) {
+                continue;
+            }
+            final Point2D point = tableToCoverageCS(points[i]);
+            final double x = Math.floor(scaleX*(point.getX() - fullArea.getMinX()));
+            final double y = Math.floor(scaleY*(fullArea.getMaxY() - point.getY()));
+            if (x>=0 && x<width && y>=0 && y<height) {
+                columns[i] = (int) x;
+                rows   [i] = (int) y;
+                if (bounds == null) {
+                    bounds = new Rectangle(columns[i], rows[i], 1, 1);
+                } else {
+                    bounds.add(new Rectangle(columns[i], rows[i], 1, 1));
                 }
+                count++;
             }
         }
+        if (bounds == null) {
+            return values;
+        }
         /*
-         * Applique l'interpolation bicubique, conserve le
-         * résultat dans une cache et retourne le résultat.
+         * Lit les pixels nécessaires: en une seule fois si les points sont suffisament proches
+         * les uns des autres, ou un pixel à la fois sinon. Le décodeur n'est obtenu qu'une fois.
          */
-        if (!interpolationDone) {
-            coverage  = PROCESSOR.doOperation("Interpolate", coverage, "Type", INTERPOLATIONS);
-        }
-        renderedImage = new WeakReference<RenderedImage>(image);
-        gridCoverage  = new SoftReference<GridCoverage>(coverage);
-        synchronized (LAST_INVOKED) {
-            LAST_INVOKED.addLast(this);
-            while (LAST_INVOKED.size() > ENTRY_CAPACITY) {
-                LAST_INVOKED.removeFirst().clearSoftReference();
+        final FormatEntry format = parameters.format;
+        final SampleDimension[] bands;
+        final ImageReader reader = format.acquireReader();
+        try {
+            final ImageReadParam param = reader.getDefaultReadParam();
+            bands = format.getSampleDimensions(param);
+            if ((double)bounds.width * (double)bounds.height <= (double)PIXELS_PER_POINT * count) {
+                param.setSourceRegion(bounds);
+                final RenderedImage image = read(format, reader, param);
+                if (image == null) {
+                    return null;
+                }
+                for (int i=0; i<points.length; i++) {
+                    if (columns[i] >= 0) {
+                        getPixel(image, columns[i]-bounds.x, rows[i]-bounds.y, values[i]);
+                    }
+                }
+            } else {
+                final Rectangle pixel = new Rectangle(1, 1);
+                for (int i=0; i<points.length; i++) {
+                    if (columns[i] >= 0) {
+                        pixel.setLocation(columns[i], rows[i]);
+                        param.setSourceRegion(pixel);
+                        final RenderedImage image = read(format, reader, param);
+                        if (image == null) {
+                            return null;
+                        }
+                        getPixel(image, 0, 0, values[i]);
+                    }
+                }
             }
+        } finally {
+            format.releaseReader(reader);
+        }
+        /*
+         * Convertit les valeurs des pixels en valeurs géophysiques.
+         */
+        for (int b=0; b<bands.length && b<geophysics.length; b++) {
+            final MathTransform1D tr = bands[b].geophysics(false).getSampleToGeophysics();
+            if (tr != null) {
+                for (int i=0; i<points.length; i++) {
+                    if (columns[i] >= 0) {
+                        values[i][b] = tr.transform(values[i][b]);
+                    }
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Lit une région de l'image avec le décodeur spécifié. Chaque lecture est annoncée
+     * séparément par {@link FormatEntry#setReading}, puisque {@link FormatEntry#read}
+     * retire cette entrée de la queue des lectures à la fin de chaque lecture; une
+     * lecture suivante serait sinon considérée comme annulée.
+     *
+     * @return L'image lue, ou <code>null</code> si la lecture a été annulée.
+     */
+    private RenderedImage read(final FormatEntry format, final ImageReader reader,
+                               final ImageReadParam param) throws IOException
+    {
+        try {
+            format.setReading(this, true);
+            return format.read(reader, getInput(true), 0, param, null,
+                               new Dimension(width, height), this);
+        } finally {
+            format.setReading(this, false);
         }
-        return coverage;
     }
 
     /**
-     * Remplace la référence molle de {@link #gridCoverage} par une référence faible.
-     * Cette méthode est appelée par quand on a déterminé que la mémoire allouée par
-     * un {@link GridCoverage} devrait être libérée.
+     * Copie dans <code>dest</code> les valeurs du pixel spécifié. Les coordonnées sont
+     * relatives au coin supérieur gauche de l'image.
      */
-    private synchronized void clearSoftReference() {
-        if (gridCoverage instanceof SoftReference) {
-            final GridCoverage coverage = gridCoverage.get();
-            gridCoverage = (coverage!=null) ? new WeakReference<GridCoverage>(coverage) : null;
+    private static void getPixel(final RenderedImage image, int x, int y, final double[] dest) {
+        x += image.getMinX();
+        y += image.getMinY();
+        final Raster tile = image.getTile(image.XToTileX(x), image.YToTileY(y));
+        final int n = Math.min(dest.length, tile.getNumBands());
+        for (int b=0; b<n; b++) {
+            dest[b] = tile.getSampleDouble(x, y, b);
         }
     }
 
+    /**
+     * Projète le point spécifié du système de coordonnées de la table vers le système
+     * de coordonnées de l'image.
+     */
+    private Point2D tableToCoverageCS(Point2D point) throws TransformException {
+        CoordinateSystem sourceCS = parameters.tableCS;
+        CoordinateSystem targetCS = parameters.imageCS;
+        if (sourceCS != targetCS) {
+            sourceCS = CTSUtilities.getCoordinateSystem2D(sourceCS);
+            targetCS = CTSUtilities.getCoordinateSystem2D(targetCS);
+            point = ((MathTransform2D) TRANSFORMS.createFromCoordinateSystems(sourceCS, targetCS)
+                                                 .getMathTransform()).transform(point, null);
+        }
+        return point;
+    }
+
     /**
      * {@inheritDoc}
      */
     public void abort() throws RemoteException {
+        aborted = true;
+        final Load load = waiting;
+        if (load != null) {
+            load.wakeup();
+        }
         parameters.format.abort(this);
     }
 
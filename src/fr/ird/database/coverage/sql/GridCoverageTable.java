@@ -23,7 +23,12 @@ import java.sql.SQLException;
 import java.sql.PreparedStatement;
 import java.rmi.RemoteException;
 
+// Entrées/sorties
+import java.io.File;
+import java.io.IOException;
+
 // Géométrie
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.Dimension2D;
 
@@ -38,6 +43,7 @@ import java.text.DateFormat;
 import java.util.Map;
 import java.util.List;
 import java.util.HashMap;
+import java.util.Arrays;
 
 // Divers
 import java.util.logging.Level;
@@ -45,6 +51,9 @@ import java.util.logging.LogRecord;
 import javax.media.jai.ParameterList;
 import javax.media.jai.util.Range;
 
+// OpenGIS dependencies
+import org.opengis.referencing.operation.TransformException;
+
 // Geotools dependencies (CTS)
 import org.geotools.pt.Envelope;
 import org.geotools.cs.CoordinateSystem;
@@ -55,6 +64,7 @@ import org.geotools.measure.Latitude;
 import org.geotools.gp.Operation;
 import org.geotools.gp.OperationNotFoundException;
 import org.geotools.gc.GridCoverage;
+import org.geotools.util.ProgressListener;
 
 // Geotools dependencies (resources)
 import org.geotools.resources.Utilities;
@@ -69,6 +79,7 @@ import fr.ird.database.coverage.SeriesEntry;
 import fr.ird.database.coverage.CoverageEntry;
 import fr.ird.database.coverage.CoverageTable;
 import fr.ird.database.coverage.CoverageRanges;
+import fr.ird.database.coverage.CoverageHeader;
 import fr.ird.database.coverage.CoverageDataBase;
 import fr.ird.database.coverage.CoverageComparator;
 import fr.ird.resources.seagis.Resources;
@@ -255,6 +266,19 @@ class GridCoverageTable extends Table implements CoverageTable {
      */
     private transient Parameters parameters;
 
+    /**
+     * Index en mémoire de la table des images, ou <code>null</code> pour interroger
+     * directement la base de données à chaque appel de {@link #getRanges}.
+     */
+    private transient CatalogIndex index;
+
+    /**
+     * Bail sur la connexion utilisée par cette table, ou <code>null</code> si la connexion
+     * n'a pas été obtenue d'une {@link fr.ird.database.sql.ConnectionPool}. Ce bail sera
+     * rendu par {@link #close}.
+     */
+    private transient Connection lease;
+
     /**
      * Construit une table des images en utilisant la connection spécifiée.
      * L'appellant <strong>doit</strong> appeler {@link #setSeries},
@@ -526,6 +550,35 @@ class GridCoverageTable extends Table implements CoverageTable {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized double[][][] getTimeSeries(final Point2D[] points) throws RemoteException {
+        final List<CoverageEntry> entries = getEntries();
+        final double[][][] values = new double[points.length][entries.size()][];
+        for (int t=0; t<entries.size(); t++) {
+            final GridCoverageEntry entry = (GridCoverageEntry) entries.get(t);
+            double[][] v;
+            try {
+                v = entry.evaluate(points);
+            } catch (IOException cause) {
+                throw new CatalogException(cause);
+            } catch (TransformException cause) {
+                throw new CatalogException(cause);
+            }
+            for (int i=0; i<points.length; i++) {
+                if (v != null) {
+                    values[i][t] = v[i];
+                } else {
+                    // Reading aborted.
+                    values[i][t] = new double[entry.getSampleDimensions().length];
+                    Arrays.fill(values[i][t], Double.NaN);
+                }
+            }
+        }
+        return values;
+    }
+
     /**
      * Retourne l'image correspondant à la requête spécifiée. Il ne
      * doit y avoir qu'une image correspondant à cette requête.
@@ -553,6 +606,31 @@ class GridCoverageTable extends Table implements CoverageTable {
         return entry;
     }
 
+    /**
+     * Spécifie l'index en mémoire à utiliser pour répondre aux requêtes de cette table.
+     *
+     * @param index L'index à utiliser, ou <code>null</code> pour interroger directement
+     *              la base de données.
+     */
+    final synchronized void setCatalogIndex(final CatalogIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Spécifie le bail sur la connexion utilisée par cette table. Ce bail sera rendu
+     * lors de la fermeture de cette table.
+     */
+    final synchronized void setLease(final Connection lease) {
+        this.lease = lease;
+    }
+
+    /**
+     * Retourne l'index en mémoire utilisé par cette table, ou <code>null</code> s'il n'y en a pas.
+     */
+    final synchronized CatalogIndex getCatalogIndex() {
+        return index;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -562,8 +640,23 @@ class GridCoverageTable extends Table implements CoverageTable {
             GridCoverageEntry newEntry = null;
             long           lastEndTime = Long.MIN_VALUE;
             final int       startIndex = (entries!=null) ? entries.size() : 0;
-            final ResultSet     result = statement.executeQuery();
-      loop: while (result.next()) {
+            /*
+             * Obtient les enregistrements soit de l'index en mémoire (s'il y en a un),
+             * soit de la base de données. Dans les deux cas, les enregistrements sont
+             * en ordre chronologique de leur date de fin.
+             */
+            final CoverageRecord[] indexed;
+            final ResultSet result;
+            if (index != null) {
+                indexed = index.query(this, series.getName(), geographicArea, startTime, endTime);
+                result  = null;
+            } else {
+                indexed = null;
+                result  = statement.executeQuery();
+            }
+            int row = 0;
+      loop: while ((indexed!=null) ? row<indexed.length : result.next()) {
+                final CoverageRecord record = (indexed!=null) ? indexed[row++] : new CoverageRecord(this, result);
                 /*
                  * Add the new entry to the list.  If many entries have the same
                  * spatio-temporal coordinates but different resolution, then an
@@ -571,7 +664,7 @@ class GridCoverageTable extends Table implements CoverageTable {
                  * be selected.
                  */
                 if (entries != null) {
-                    newEntry = new GridCoverageEntry(this, result);
+                    newEntry = new GridCoverageEntry(this, record);
                     for (int i=entries.size(); --i>=startIndex;) {
                         final GridCoverageEntry olderEntry = (GridCoverageEntry) entries.get(i);
                         if (!olderEntry.compare(newEntry)) {
@@ -595,25 +688,17 @@ class GridCoverageTable extends Table implements CoverageTable {
                     entries.add(newEntry);
                 }
                 /*
-                 * Compute ranges if it has been requested.  If we have previously
-                 * constructed an GridCoverageEntry, fetch the data from this entry
-                 * since some JDBC driver doesn't allow to get data from the same
-                 * column twice. Furthermore, this is faster... The "continue loop"
-                 * statement above may have hidden some rows, but since those rows
-                 * have the same spatio-temporal coordinates than one visible row,
-                 * it should not have any effect except improving performance.
+                 * Compute ranges if it has been requested. The data are fetched from
+                 * the record since some JDBC driver doesn't allow to get data from the
+                 * same column twice. The "continue loop" statement above may have hidden
+                 * some rows, but since those rows have the same spatio-temporal coordinates
+                 * than one visible row, it should not have any effect except improving
+                 * performance.
                  */
                 if (ranges.t != null) {
                     final long period = Math.round(series.getPeriod()*CoordinateSystemTable.DAY);
-                    final Date startTime;
-                    final Date   endTime;
-                    if (newEntry != null) {
-                        startTime = newEntry.getStartTime();
-                          endTime = newEntry.getEndTime();
-                    } else {
-                        startTime = getTimestamp(START_TIME, result);
-                          endTime = getTimestamp(  END_TIME, result);
-                    }
+                    final Date startTime = record.getStartTime();
+                    final Date   endTime = record.getEndTime();
                     if (startTime!=null && endTime!=null) {
                         final long lgEndTime = endTime.getTime();
                         final long checkTime = lgEndTime-period;
@@ -628,31 +713,15 @@ class GridCoverageTable extends Table implements CoverageTable {
                     }
                 }
                 if (ranges.x != null) {
-                    final double xmin;
-                    final double xmax;
-                    if (newEntry != null) {
-                        xmin = newEntry.xmin;
-                        xmax = newEntry.xmax;
-                    } else {
-                        xmin = result.getDouble(XMIN);
-                        xmax = result.getDouble(XMAX);
-                    }
-                    ranges.x.add(new Longitude(xmin), new Longitude(xmax));
+                    ranges.x.add(new Longitude(record.xmin), new Longitude(record.xmax));
                 }
                 if (ranges.y != null) {
-                    final double ymin;
-                    final double ymax;
-                    if (newEntry != null) {
-                        ymin = newEntry.ymin;
-                        ymax = newEntry.ymax;
-                    } else {
-                        ymin = result.getDouble(YMIN);
-                        ymax = result.getDouble(YMAX);
-                    }
-                    ranges.y.add(new Latitude(ymin), new Latitude(ymax));
+                    ranges.y.add(new Latitude(record.ymin), new Latitude(record.ymax));
                 }
             }
-            result.close();
+            if (result != null) {
+                result.close();
+            }
             if (entries != null) {
                 final int size = entries.size();
                 for (int i=startIndex; i<size; i++) {
@@ -816,6 +885,10 @@ class GridCoverageTable extends Table implements CoverageTable {
                 coordinateSystemTable = null;
             }
             statement.close();
+            if (lease != null) {
+                lease.close();
+                lease = null;
+            }
         } catch (SQLException e) {
             throw new CatalogException(e);
         }
@@ -859,4 +932,14 @@ class GridCoverageTable extends Table implements CoverageTable {
     public boolean addGridCoverage(final GridCoverage coverage, final String filename) throws RemoteException {
         throw new CatalogException("Table en lecture seule.");
     }
+
+    /**
+     * Ajoute des entrées dans la table "<code>GridCoverages</code>".
+     * Cette méthode sera redéfinie dans {@link WritableGridCoverageTable}.
+     */
+    public int addGridCoverages(final File[] files, final CoverageHeader.Reader reader,
+                                final ProgressListener progress) throws RemoteException
+    {
+        throw new CatalogException("Table en lecture seule.");
+    }
 }
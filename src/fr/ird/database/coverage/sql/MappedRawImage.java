@@ -0,0 +1,355 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.coverage.sql;
+
+// J2SE dependencies
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.FloatBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.ColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.awt.image.ComponentSampleModel;
+import javax.imageio.ImageReadParam;
+
+// JAI dependencies
+import javax.media.jai.JAI;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.SourcelessOpImage;
+
+
+/**
+ * Image non-compressée lue directement à partir d'un fichier projeté en mémoire avec
+ * {@link FileChannel#map}. Cette classe remplace le décodeur RAW de Sun pour les fichiers
+ * locaux dont la disposition des pixels est entièrement décrite par un
+ * {@link ComponentSampleModel}. Aucune donnée n'est lue lors de la construction de l'image:
+ * chaque tuile est calculée au besoin à partir du tampon projeté, de sorte que seules les
+ * pages du fichier couvrant les tuiles demandées sont chargées par le système d'exploitation.
+ * La région source et le sous-échantillonnage de {@link ImageReadParam} sont appliqués
+ * directement lors du calcul des tuiles, sans copie intermédiaire de l'image complète.
+ * <br><br>
+ * Les tuiles sont des {@link java.awt.image.Raster} ordinaires. Les classes de
+ * {@link DataBuffer} standards exigent des tableaux Java, et les opérations de JAI
+ * (via {@link javax.media.jai.RasterAccessor}) supposent ces classes. Les pixels sont
+ * donc copiés tuile par tuile du tampon projeté vers la tuile, laquelle est ensuite
+ * gérée par la {@link javax.media.jai.TileCache} de JAI comme pour les autres images.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see FormatEntry#read
+ */
+final class MappedRawImage extends SourcelessOpImage {
+    /**
+     * Le tampon projeté en mémoire, sous la forme d'une vue du type des données de l'image
+     * ({@link ByteBuffer}, {@link ShortBuffer}, {@link IntBuffer}, {@link FloatBuffer} ou
+     * {@link DoubleBuffer}). Les indices sont exprimés en nombre d'éléments.
+     */
+    private final java.nio.Buffer buffer;
+
+    /**
+     * Type des données dans le fichier, selon les constantes de {@link DataBuffer}.
+     */
+    private final int dataType;
+
+    /**
+     * Index (en nombre d'éléments) du premier élément de chaque bande lue dans le fichier,
+     * en tenant compte du décalage de la bande et de la position de son tableau.
+     */
+    private final int[] bandOrigins;
+
+    /**
+     * Nombre d'éléments entre deux pixels consécutifs d'une même ligne et entre deux
+     * lignes consécutives dans le fichier.
+     */
+    private final int pixelStride, scanlineStride;
+
+    /**
+     * Coordonnées dans le fichier du pixel correspondant au pixel (0,0) de cette image.
+     */
+    private final int xOrigin, yOrigin;
+
+    /**
+     * Pas du sous-échantillonnage selon les axes <var>x</var> et <var>y</var>.
+     */
+    private final int xSubsampling, ySubsampling;
+
+    /**
+     * Construit une image pour le tampon spécifié. Utilisez plutôt {@link #create}.
+     */
+    private MappedRawImage(final ImageLayout layout, final SampleModel sampleModel,
+                           final Rectangle region, final int width, final int height,
+                           final java.nio.Buffer buffer, final ComponentSampleModel stream,
+                           final int[] sourceBands, final int xSubsampling, final int ySubsampling)
+    {
+        super(layout, null, sampleModel, 0, 0, width, height);
+        this.buffer         = buffer;
+        this.dataType       = stream.getDataType();
+        this.pixelStride    = stream.getPixelStride();
+        this.scanlineStride = stream.getScanlineStride();
+        this.xOrigin        = region.x;
+        this.yOrigin        = region.y;
+        this.xSubsampling   = xSubsampling;
+        this.ySubsampling   = ySubsampling;
+        final int[] bankIndices = stream.getBankIndices();
+        final int[] bandOffsets = stream.getBandOffsets();
+        final int      bankSize = scanlineStride * stream.getHeight();
+        bandOrigins = new int[sourceBands.length];
+        for (int i=0; i<sourceBands.length; i++) {
+            final int band = sourceBands[i];
+            bandOrigins[i] = bankIndices[band]*bankSize + bandOffsets[band];
+        }
+    }
+
+    /**
+     * Construit une image pour le fichier spécifié, ou retourne <code>null</code> si ce
+     * fichier ne peut pas être lu par cette classe. Dans ce dernier cas, l'appelant devrait
+     * se rabattre sur le décodeur habituel. Le fichier est supposé ne contenir qu'une seule
+     * image, sans en-tête, dont les pixels sont disposés selon <code>stream</code>.
+     *
+     * @param  file   Le fichier à lire.
+     * @param  stream Disposition des pixels dans le fichier, pour l'image complète.
+     * @param  colors Modèle de couleurs de l'image complète.
+     * @param  order  Ordre des octets dans le fichier.
+     * @param  param  Paramètres de lecture, ou <code>null</code> s'il n'y en a pas.
+     * @return L'image, ou <code>null</code> si elle ne peut pas être lue par cette classe.
+     * @throws IOException si le fichier n'a pas pu être projeté en mémoire.
+     */
+    static PlanarImage create(final File           file,
+                              final SampleModel    stream,
+                              final ColorModel     colors,
+                              final ByteOrder      order,
+                              final ImageReadParam param) throws IOException
+    {
+        if (!(stream instanceof ComponentSampleModel)) {
+            return null;
+        }
+        final ComponentSampleModel model = (ComponentSampleModel) stream;
+        final int elementSize = DataBuffer.getDataTypeSize(model.getDataType()) / 8;
+        if (elementSize == 0) {
+            return null;
+        }
+        /*
+         * Calcule la région source et le sous-échantillonnage de la même façon que
+         * 'ImageReader.computeRegions'. Les paramètres que cette classe ne sait pas
+         * appliquer (type ou bandes de destination) sont laissés au décodeur habituel.
+         */
+        Rectangle region = new Rectangle(0, 0, model.getWidth(), model.getHeight());
+        int[] sourceBands = null;
+        int xSubsampling=1, ySubsampling=1;
+        if (param != null) {
+            if (param.getDestination()       != null ||
+                param.getDestinationType()   != null ||
+                param.getDestinationBands()  != null ||
+                param.getDestinationOffset().x != 0  ||
+                param.getDestinationOffset().y != 0)
+            {
+                return null;
+            }
+            final Rectangle sourceRegion = param.getSourceRegion();
+            if (sourceRegion != null) {
+                region = region.intersection(sourceRegion);
+            }
+            xSubsampling = param.getSourceXSubsampling();
+            ySubsampling = param.getSourceYSubsampling();
+            final int xOffset = param.getSubsamplingXOffset();
+            final int yOffset = param.getSubsamplingYOffset();
+            region.x      += xOffset;
+            region.y      += yOffset;
+            region.width  -= xOffset;
+            region.height -= yOffset;
+            sourceBands = param.getSourceBands();
+        }
+        final int width  = (region.width  + xSubsampling - 1) / xSubsampling;
+        final int height = (region.height + ySubsampling - 1) / ySubsampling;
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        /*
+         * Vérifie que le fichier est assez grand, puis le projette en mémoire. La projection
+         * reste valide après la fermeture du fichier, et sera libérée par le ramasse-miettes.
+         */
+        final int numBanks = maximum(model.getBankIndices()) + 1;
+        final long length = (long) numBanks * model.getScanlineStride() * model.getHeight() * elementSize;
+        if (length > Integer.MAX_VALUE || length > file.length()) {
+            return null;
+        }
+        final ByteBuffer bytes;
+        final RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            bytes = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            in.close();
+        }
+        bytes.order(order);
+        final java.nio.Buffer buffer;
+        switch (model.getDataType()) {
+            case DataBuffer.TYPE_BYTE:   buffer = bytes;                  break;
+            case DataBuffer.TYPE_SHORT:  // fall through
+            case DataBuffer.TYPE_USHORT: buffer = bytes.asShortBuffer();  break;
+            case DataBuffer.TYPE_INT:    buffer = bytes.asIntBuffer();    break;
+            case DataBuffer.TYPE_FLOAT:  buffer = bytes.asFloatBuffer();  break;
+            case DataBuffer.TYPE_DOUBLE: buffer = bytes.asDoubleBuffer(); break;
+            default: return null;
+        }
+        /*
+         * Construit la disposition des tuiles de l'image. Le modèle de couleurs
+         * n'est conservé que si toutes les bandes sont lues dans le même ordre.
+         */
+        if (sourceBands == null) {
+            sourceBands = new int[model.getNumBands()];
+            for (int i=0; i<sourceBands.length; i++) {
+                sourceBands[i] = i;
+            }
+        }
+        final Dimension tileSize = JAI.getDefaultTileSize();
+        final int tileWidth  = (tileSize!=null) ? Math.min(tileSize.width,  width)  : width;
+        final int tileHeight = (tileSize!=null) ? Math.min(tileSize.height, height) : height;
+        final SampleModel sampleModel = model.createCompatibleSampleModel(tileWidth, tileHeight)
+                                             .createSubsetSampleModel(sourceBands);
+        final ImageLayout layout = new ImageLayout(0, 0, width, height, 0, 0,
+                                                   tileWidth, tileHeight, sampleModel, null);
+        if (isIdentity(sourceBands, model.getNumBands()) && colors != null &&
+            colors.isCompatibleSampleModel(sampleModel))
+        {
+            layout.setColorModel(colors);
+        } else {
+            layout.setColorModel(PlanarImage.createColorModel(sampleModel));
+        }
+        return new MappedRawImage(layout, sampleModel, region, width, height, buffer,
+                                  model, sourceBands, xSubsampling, ySubsampling);
+    }
+
+    /**
+     * Retourne la plus grande valeur du tableau spécifié.
+     */
+    private static int maximum(final int[] array) {
+        int max = 0;
+        for (int i=0; i<array.length; i++) {
+            if (array[i] > max) {
+                max = array[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Indique si les bandes spécifiées sont toutes les bandes de l'image, dans l'ordre.
+     */
+    private static boolean isIdentity(final int[] bands, final int numBands) {
+        if (bands.length != numBands) {
+            return false;
+        }
+        for (int i=0; i<bands.length; i++) {
+            if (bands[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calcule les pixels de la région spécifiée à partir du tampon projeté en mémoire.
+     * Les lectures se font par index absolus, de sorte que plusieurs tuiles peuvent être
+     * calculées simultanément par des threads différents.
+     *
+     * @param sources  Ignoré (cette image n'a pas de source).
+     * @param dest     La tuile dans laquelle écrire les pixels.
+     * @param destRect La région à calculer, en coordonnées de l'image.
+     */
+    protected void computeRect(final PlanarImage[] sources,
+                               final WritableRaster dest,
+                               final Rectangle destRect)
+    {
+        final int width  = destRect.width;
+        final int xmin   = destRect.x;
+        final int ymin   = destRect.y;
+        final int ymax   = ymin + destRect.height;
+        final int xStep  = xSubsampling * pixelStride;
+        final int x0     = (xOrigin + xmin*xSubsampling) * pixelStride;
+        int[]    intRow  = null;
+        float[]  fltRow  = null;
+        double[] dblRow  = null;
+        switch (dataType) {
+            case DataBuffer.TYPE_FLOAT:  fltRow = new float [width]; break;
+            case DataBuffer.TYPE_DOUBLE: dblRow = new double[width]; break;
+            default:                     intRow = new int   [width]; break;
+        }
+        for (int band=0; band<bandOrigins.length; band++) {
+            for (int y=ymin; y<ymax; y++) {
+                int index = bandOrigins[band] + (yOrigin + y*ySubsampling)*scanlineStride + x0;
+                switch (dataType) {
+                    case DataBuffer.TYPE_BYTE: {
+                        final ByteBuffer data = (ByteBuffer) buffer;
+                        for (int i=0; i<width; i++, index+=xStep) {
+                            intRow[i] = data.get(index) & 0xFF;
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_USHORT: {
+                        final ShortBuffer data = (ShortBuffer) buffer;
+                        for (int i=0; i<width; i++, index+=xStep) {
+                            intRow[i] = data.get(index) & 0xFFFF;
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_SHORT: {
+                        final ShortBuffer data = (ShortBuffer) buffer;
+                        for (int i=0; i<width; i++, index+=xStep) {
+                            intRow[i] = data.get(index);
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_INT: {
+                        final IntBuffer data = (IntBuffer) buffer;
+                        for (int i=0; i<width; i++, index+=xStep) {
+                            intRow[i] = data.get(index);
+                        }
+                        break;
+                    }
+                    case DataBuffer.TYPE_FLOAT: {
+                        final FloatBuffer data = (FloatBuffer) buffer;
+                        for (int i=0; i<width; i++, index+=xStep) {
+                            fltRow[i] = data.get(index);
+                        }
+                        dest.setSamples(xmin, y, width, 1, band, fltRow);
+                        continue;
+                    }
+                    case DataBuffer.TYPE_DOUBLE: {
+                        final DoubleBuffer data = (DoubleBuffer) buffer;
+                        for (int i=0; i<width; i++, index+=xStep) {
+                            dblRow[i] = data.get(index);
+                        }
+                        dest.setSamples(xmin, y, width, 1, band, dblRow);
+                        continue;
+                    }
+                }
+                dest.setSamples(xmin, y, width, 1, band, intRow);
+            }
+        }
+    }
+}
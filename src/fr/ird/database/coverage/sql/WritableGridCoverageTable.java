@@ -17,6 +17,7 @@ package fr.ird.database.coverage.sql;
 
 // Databases
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.PreparedStatement;
@@ -26,10 +27,28 @@ import java.rmi.RemoteException;
 import java.awt.Dimension;
 import java.awt.geom.Rectangle2D;
 
+// Input/output
+import java.io.File;
+import java.io.IOException;
+
 // Miscellaneous
+import java.util.Map;
+import java.util.Set;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.TimeZone;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.text.SimpleDateFormat;
@@ -42,6 +61,7 @@ import org.geotools.gc.GridCoverage;
 import org.geotools.cs.TemporalDatum;
 import org.geotools.cs.CoordinateSystem;
 import org.geotools.cs.TemporalCoordinateSystem;
+import org.geotools.util.ProgressListener;
 import org.geotools.resources.CTSUtilities;
 
 // Seagis
@@ -50,6 +70,7 @@ import fr.ird.database.ConfigurationKey;
 import fr.ird.database.CatalogException;
 import fr.ird.database.IllegalRecordException;
 import fr.ird.database.sql.LoggingLevel;
+import fr.ird.database.coverage.CoverageHeader;
 import fr.ird.database.coverage.CoverageDataBase;
 import fr.ird.resources.seagis.Resources;
 import fr.ird.resources.seagis.ResourceKeys;
@@ -95,6 +116,11 @@ final class WritableGridCoverageTable extends GridCoverageTable {
             "(subseries, filename, start_time, end_time, geometry) " +
             "VALUES (?, ?, ?, ?, ?)");
 
+    /**
+     * Nombre maximal d'insertions à envoyer dans un même lot par {@link #addGridCoverages}.
+     */
+    private static final int BATCH_SIZE = 500;
+
     /**
      * Prepared statement for selecting a bounding box ID.
      * This statement is built by {@link #addBoundingBox} when first needed.
@@ -321,6 +347,10 @@ final class WritableGridCoverageTable extends GridCoverageTable {
             if (insertCoverage.executeUpdate() == 1) {
                 logUpdate(getProperty(INSERT_COVERAGE), subseries, filename,
                           startTimeText, endTimeText, bboxID);
+                final CatalogIndex index = getCatalogIndex();
+                if (index != null) {
+                    index.invalidate(getSeries().getName());
+                }
                 return true;
             }
             // Should not happen.
@@ -330,6 +360,301 @@ final class WritableGridCoverageTable extends GridCoverageTable {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int addGridCoverages(final File[] files, final CoverageHeader.Reader reader,
+                                             final ProgressListener progress) throws RemoteException
+    {
+        if (progress != null) {
+            progress.setDescription("Lecture des en-têtes");
+            progress.started();
+        }
+        /*
+         * Remplace les répertoires par les fichiers qu'ils contiennent, puis lit les en-têtes
+         * en parallèle. Les tâches sont conservées dans l'ordre des fichiers, de sorte que les
+         * images seront ajoutées dans cet ordre.
+         */
+        final List<File> inputs = new ArrayList<File>();
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                final File[] content = file.listFiles();
+                if (content != null) {
+                    Arrays.sort(content);
+                    for (final File candidate : content) {
+                        if (candidate.isFile() && !candidate.isHidden()) {
+                            inputs.add(candidate);
+                        }
+                    }
+                }
+            } else {
+                inputs.add(file);
+            }
+        }
+        final int count = inputs.size();
+        final List<CoverageHeader> headers = new ArrayList<CoverageHeader>(count);
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(count, Runtime.getRuntime().availableProcessors())));
+        try {
+            final List<Future<CoverageHeader>> tasks = new ArrayList<Future<CoverageHeader>>(count);
+            for (final File file : inputs) {
+                tasks.add(executor.submit(new Callable<CoverageHeader>() {
+                    public CoverageHeader call() throws IOException {
+                        return reader.read(file);
+                    }
+                }));
+            }
+            for (int i=0; i<count; i++) {
+                final File file = inputs.get(i);
+                try {
+                    final CoverageHeader header = tasks.get(i).get();
+                    if (header != null) {
+                        if (header.filename == null || header.startTime == null ||
+                            header.endTime  == null || header.bbox      == null ||
+                            header.size     == null)
+                        {
+                            warning(progress, file.getPath(), "En-tête incomplet.");
+                        } else {
+                            headers.add(header);
+                        }
+                    }
+                } catch (ExecutionException exception) {
+                    final Throwable cause = exception.getCause();
+                    warning(progress, file.getPath(), cause.getLocalizedMessage());
+                } catch (InterruptedException exception) {
+                    throw new CatalogException(exception);
+                }
+                if (progress != null) {
+                    progress.progress((50f/count) * (i+1));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        /*
+         * Ecarte les images dont le nom existe déjà pour la série courante,
+         * ainsi que celles qui apparaissent plus d'une fois dans la liste.
+         */
+        int added = 0;
+        try {
+            final Set<String> existing = getFilenames();
+            for (final Iterator<CoverageHeader> it=headers.iterator(); it.hasNext();) {
+                final CoverageHeader header = it.next();
+                if (!existing.add(header.filename)) {
+                    warning(progress, header.filename, Resources.format(
+                            ResourceKeys.ERROR_DUPLICATED_RECORD_$1, header.filename));
+                    it.remove();
+                }
+            }
+            if (progress != null) {
+                progress.setDescription("Ecriture dans la base de données");
+            }
+            /*
+             * Ecrit toutes les images dans une seule transaction. Les coordonnées géographiques
+             * distinctes sont recherchées une seule fois, et celles qui n'existaient pas encore
+             * sont ajoutées par lots avant les images.
+             */
+            final Connection connection = getConnection();
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            boolean success = false;
+            try {
+                final Map<List<Number>,Integer> bboxIDs = getBoundingBoxes(headers);
+                if (insertCoverage == null) {
+                    insertCoverage = connection.prepareStatement(getProperty(INSERT_COVERAGE));
+                }
+                if (dateFormat == null) {
+                    dateFormat = new SimpleDateFormat("MM-dd-yyyy HH:mm:ss", Locale.US);
+                    dateFormat.setTimeZone(timezone);
+                }
+                final String subseries = getSubSeries().getName();
+                final int size = headers.size();
+                int pending = 0;
+                for (int i=0; i<size; i++) {
+                    final CoverageHeader header = headers.get(i);
+                    insertCoverage.setString(1, subseries);
+                    insertCoverage.setString(2, header.filename);
+                    insertCoverage.setString(3, dateFormat.format(header.startTime));
+                    insertCoverage.setString(4, dateFormat.format(header.endTime));
+                    insertCoverage.setInt   (5, bboxIDs.get(getKey(header)).intValue());
+                    insertCoverage.addBatch();
+                    if (++pending == BATCH_SIZE || i == size-1) {
+                        added += sum(insertCoverage.executeBatch());
+                        pending = 0;
+                        if (progress != null) {
+                            progress.progress(50 + (50f/size) * (i+1));
+                        }
+                    }
+                }
+                connection.commit();
+                success = true;
+            } finally {
+                /*
+                 * Annule la transaction pour toute exception, y compris les RuntimeException.
+                 * Sans cela, le rétablissement du mode "auto-commit" validerait les lots déjà
+                 * envoyés.
+                 */
+                if (!success) {
+                    connection.rollback();
+                    added = 0;
+                }
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException exception) {
+            throw new CatalogException(exception);
+        }
+        if (added != 0) {
+            log(new LogRecord(LoggingLevel.UPDATE, getProperty(INSERT_COVERAGE) + " [" + added + ']'));
+            final CatalogIndex index = getCatalogIndex();
+            if (index != null) {
+                index.invalidate(getSeries().getName());
+            }
+        }
+        if (progress != null) {
+            progress.complete();
+        }
+        return added;
+    }
+
+    /**
+     * Signale qu'un fichier a été rejeté par {@link #addGridCoverages}.
+     */
+    private static void warning(final ProgressListener progress, final String source, final String message) {
+        if (progress != null) {
+            progress.warningOccurred(source, null, message);
+        }
+        final LogRecord record = new LogRecord(Level.WARNING, source + ": " + message);
+        log(record);
+    }
+
+    /**
+     * Retourne la clé sous laquelle regrouper les images qui partagent
+     * les mêmes coordonnées géographiques et la même taille.
+     */
+    private static List<Number> getKey(final CoverageHeader header) {
+        final Rectangle2D bbox = header.bbox;
+        return Arrays.asList(new Number[] {
+            bbox.getMinX(), bbox.getMaxX(), bbox.getMinY(), bbox.getMaxY(),
+            header.size.width, header.size.height
+        });
+    }
+
+    /**
+     * Retourne les numéros des coordonnées géographiques des images spécifiées. Chaque
+     * combinaison distincte de coordonnées et de taille n'est recherchée qu'une seule fois;
+     * celles qui n'existent pas encore sont ajoutées par lots, puis relues.
+     *
+     * @param  headers Les en-têtes des images à ajouter.
+     * @return Les numéros des coordonnées géographiques, selon les clés de {@link #getKey}.
+     * @throws SQLException si l'interrogation ou la mise à jour de la base de données a échoué.
+     */
+    private Map<List<Number>,Integer> getBoundingBoxes(final List<CoverageHeader> headers)
+            throws RemoteException, SQLException
+    {
+        assert Thread.holdsLock(this);
+        final Map<List<Number>,CoverageHeader> distinct = new LinkedHashMap<List<Number>,CoverageHeader>();
+        for (final CoverageHeader header : headers) {
+            final List<Number> key = getKey(header);
+            if (!distinct.containsKey(key)) {
+                distinct.put(key, header);
+            }
+        }
+        if (selectBBox == null) {
+            selectBBox = getConnection().prepareStatement(getProperty(SELECT_BBOX));
+        }
+        final Map<List<Number>,Integer> IDs = new HashMap<List<Number>,Integer>();
+        final List<CoverageHeader> missing = new ArrayList<CoverageHeader>();
+        for (final Map.Entry<List<Number>,CoverageHeader> entry : distinct.entrySet()) {
+            final Integer ID = selectBoundingBox(entry.getValue());
+            if (ID != null) {
+                IDs.put(entry.getKey(), ID);
+            } else {
+                missing.add(entry.getValue());
+            }
+        }
+        if (!missing.isEmpty()) {
+            if (insertBBox == null) {
+                insertBBox = getConnection().prepareStatement(getProperty(INSERT_BBOX));
+            }
+            for (final CoverageHeader header : missing) {
+                final Rectangle2D bbox = header.bbox;
+                insertBBox.setDouble(1, bbox.getMinX());
+                insertBBox.setDouble(2, bbox.getMaxX());
+                insertBBox.setDouble(3, bbox.getMinY());
+                insertBBox.setDouble(4, bbox.getMaxY());
+                insertBBox.setInt   (5, header.size.width);
+                insertBBox.setInt   (6, header.size.height);
+                insertBBox.addBatch();
+            }
+            insertBBox.executeBatch();
+            for (final CoverageHeader header : missing) {
+                final Integer ID = selectBoundingBox(header);
+                if (ID == null) {
+                    // Should not happen.
+                    throw new SQLException("Unexpected update result");
+                }
+                IDs.put(getKey(header), ID);
+            }
+            log(new LogRecord(LoggingLevel.UPDATE, getProperty(INSERT_BBOX) + " [" + missing.size() + ']'));
+        }
+        return IDs;
+    }
+
+    /**
+     * Recherche le numéro des coordonnées géographiques de l'image spécifiée.
+     *
+     * @return Le numéro, ou <code>null</code> s'il n'a pas été trouvé.
+     */
+    private Integer selectBoundingBox(final CoverageHeader header) throws SQLException {
+        final Rectangle2D bbox = header.bbox;
+        selectBBox.setDouble(1, bbox.getMinX());
+        selectBBox.setDouble(2, bbox.getMaxX());
+        selectBBox.setDouble(3, bbox.getMinY());
+        selectBBox.setDouble(4, bbox.getMaxY());
+        selectBBox.setInt   (5, header.size.width);
+        selectBBox.setInt   (6, header.size.height);
+        return executeQuery(selectBBox, ResourceKeys.ERROR_DUPLICATED_GEOMETRY_$1);
+    }
+
+    /**
+     * Retourne les noms de toutes les images de la série courante. La requête utilisée est
+     * celle de {@link GridCoverageTable#SELECT}, sans les conditions spatio-temporelles.
+     */
+    private Set<String> getFilenames() throws RemoteException, SQLException {
+        final Set<String> filenames = new HashSet<String>();
+        final PreparedStatement statement = getConnection().prepareStatement(
+                selectWithoutWhere(getProperty(SELECT)) + " WHERE series=?");
+        try {
+            statement.setString(1, getSeries().getName());
+            final ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                filenames.add(result.getString(FILENAME));
+            }
+            result.close();
+        } finally {
+            statement.close();
+        }
+        return filenames;
+    }
+
+    /**
+     * Retourne la somme des nombres de lignes modifiées par un lot. Les pilotes qui ne
+     * connaissent pas le nombre de lignes modifiées retournent
+     * {@link Statement#SUCCESS_NO_INFO}, qui est compté comme une ligne.
+     */
+    private static int sum(final int[] counts) {
+        int sum = 0;
+        for (int i=0; i<counts.length; i++) {
+            final int n = counts[i];
+            if (n == Statement.SUCCESS_NO_INFO) {
+                sum++;
+            } else if (n > 0) {
+                sum += n;
+            }
+        }
+        return sum;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -350,5 +675,6 @@ final class WritableGridCoverageTable extends GridCoverageTable {
         } catch (SQLException e) {
             throw new CatalogException(e);
         }
+        super.close();
     }
 }
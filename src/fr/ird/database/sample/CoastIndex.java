@@ -0,0 +1,332 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.IllegalPathStateException;
+
+// Geotools
+import org.geotools.cs.Ellipsoid;
+import org.geotools.resources.geometry.ShapeUtilities;
+
+// Seagis
+import fr.ird.resources.XArray;
+
+
+/**
+ * Index spatial des segments d'une côte, permettant de trouver rapidement la distance la plus
+ * courte entre un point et la côte. Les segments de la forme (aplatie par {@link PathIterator})
+ * sont répartis dans une grille régulière en degrés de longitude et de latitude; chaque segment
+ * est inscrit dans toutes les cellules que son rectangle englobant touche. Une recherche visite
+ * les cellules par anneaux concentriques autour du point, et s'arrête dès qu'une borne inférieure
+ * de la distance des anneaux suivants dépasse la plus courte distance déjà trouvée.
+ * <br><br>
+ * Les coordonnées doivent être exprimées en degrés selon l'ellipsoïde WGS 1984. Comme l'ancien
+ * calcul exhaustif, le point le plus proche sur chaque segment est calculé dans un plan, ce qui
+ * n'est qu'une approximation. Un objet <code>CoastIndex</code> est immuable une fois construit
+ * et peut être interrogé simultanément par plusieurs threads.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see SampleTableFiller#computeCoastDistances
+ */
+final class CoastIndex {
+    /**
+     * Nombre moyen de segments visé par cellule de la grille.
+     */
+    private static final int SEGMENTS_PER_CELL = 4;
+
+    /**
+     * Nombre maximal de cellules le long de chaque axe de la grille.
+     */
+    private static final int MAXIMUM_CELLS = 2048;
+
+    /**
+     * Plus petit rayon de courbure de l'ellipsoïde WGS 1984 (au méridien, à l'équateur),
+     * en mètres. Sert à calculer des bornes inférieures des distances orthodromiques.
+     */
+    private static final double MINIMUM_RADIUS;
+    static {
+        final Ellipsoid e = Ellipsoid.WGS84;
+        final double a = e.getSemiMajorAxis();
+        final double b = e.getSemiMinorAxis();
+        MINIMUM_RADIUS = b*b / a;
+    }
+
+    /**
+     * La forme à partir de laquelle cet index a été construit.
+     */
+    final Shape coast;
+
+    /**
+     * Ellipsoïde à utiliser pour les calculs de distances orthodromiques.
+     */
+    private final Ellipsoid ellipsoid;
+
+    /**
+     * Coordonnées des extrémités des segments: (<var>x1</var>, <var>y1</var>,
+     * <var>x2</var>, <var>y2</var>) pour chaque segment.
+     */
+    private final double[] segments;
+
+    /**
+     * Coordonnées du coin inférieur gauche de la grille et dimensions des cellules, en degrés.
+     */
+    private final double xmin, ymin, cellWidth, cellHeight;
+
+    /**
+     * Nombre de cellules le long des axes des <var>x</var> et des <var>y</var>.
+     */
+    private final int width, height;
+
+    /**
+     * Plus grande valeur absolue des latitudes de la côte.
+     */
+    private final double maxAbsLatitude;
+
+    /**
+     * Index dans {@link #cellSegments} du premier segment de chaque cellule. La cellule
+     * (<var>i</var>,<var>j</var>) a l'index <code>j*width + i</code>. Ce tableau a un
+     * élément de plus que le nombre de cellules.
+     */
+    private final int[] cellStart;
+
+    /**
+     * Numéros des segments de chaque cellule, cellule par cellule.
+     */
+    private final int[] cellSegments;
+
+    /**
+     * Construit l'index des segments de la côte spécifiée.
+     *
+     * @param  coast Forme géométrique représentant la côte.
+     * @param  ellipsoid Ellipsoïde à utiliser pour les calculs de distances orthodromiques.
+     * @throws IllegalPathStateException si la forme contient un segment inattendu.
+     */
+    CoastIndex(final Shape coast, final Ellipsoid ellipsoid) throws IllegalPathStateException {
+        this.coast     = coast;
+        this.ellipsoid = ellipsoid;
+        /*
+         * Extrait tous les segments de la forme aplatie.
+         */
+        double[] segments = new double[4096];
+        int count = 0;
+        final double[] coords = new double[6];
+        final PathIterator iter = coast.getPathIterator(null, ShapeUtilities.getFlatness(coast));
+        double x0 = Double.NaN;
+        double y0 = Double.NaN;
+        double x2 = Double.NaN;
+        double y2 = Double.NaN;
+        for (; !iter.isDone(); iter.next()) {
+            final double x1=x2, y1=y2;
+            switch (iter.currentSegment(coords)) {
+                case PathIterator.SEG_MOVETO: {
+                    x2 = x0 = coords[0];
+                    y2 = y0 = coords[1];
+                    continue;
+                }
+                case PathIterator.SEG_LINETO: {
+                    x2 = coords[0];
+                    y2 = coords[1];
+                    break;
+                }
+                case PathIterator.SEG_CLOSE: {
+                    x2 = x0;
+                    y2 = y0;
+                    break;
+                }
+                default: throw new IllegalPathStateException();
+            }
+            if (count == segments.length) {
+                segments = XArray.resize(segments, 2*count);
+            }
+            segments[count++] = x1;
+            segments[count++] = y1;
+            segments[count++] = x2;
+            segments[count++] = y2;
+        }
+        this.segments = segments = XArray.resize(segments, count);
+        count /= 4;
+        /*
+         * Choisit la taille des cellules de façon à obtenir environ SEGMENTS_PER_CELL
+         * segments par cellule, puis compte le nombre de segments de chaque cellule.
+         */
+        final Rectangle2D bounds = coast.getBounds2D();
+        xmin = bounds.getMinX();
+        ymin = bounds.getMinY();
+        maxAbsLatitude = Math.max(Math.abs(bounds.getMinY()), Math.abs(bounds.getMaxY()));
+        final int    cells = Math.max(1, count / SEGMENTS_PER_CELL);
+        final double area  = bounds.getWidth() * bounds.getHeight();
+        final double side  = (area > 0) ? Math.sqrt(area / cells) :
+                             Math.max(bounds.getWidth(), bounds.getHeight()) / cells;
+        width  = cellCount(bounds.getWidth(),  side);
+        height = cellCount(bounds.getHeight(), side);
+        cellWidth  = (bounds.getWidth()  > 0) ? bounds.getWidth()  / width  : 1;
+        cellHeight = (bounds.getHeight() > 0) ? bounds.getHeight() / height : 1;
+        cellStart = new int[width*height + 1];
+        final int[] range = new int[4];
+        for (int s=0; s<count; s++) {
+            getCells(s, range);
+            for (int j=range[2]; j<=range[3]; j++) {
+                for (int i=range[0]; i<=range[1]; i++) {
+                    cellStart[j*width + i + 1]++;
+                }
+            }
+        }
+        for (int c=1; c<cellStart.length; c++) {
+            cellStart[c] += cellStart[c-1];
+        }
+        cellSegments = new int[cellStart[cellStart.length - 1]];
+        final int[] fill = new int[width*height];
+        for (int s=0; s<count; s++) {
+            getCells(s, range);
+            for (int j=range[2]; j<=range[3]; j++) {
+                for (int i=range[0]; i<=range[1]; i++) {
+                    final int cell = j*width + i;
+                    cellSegments[cellStart[cell] + fill[cell]++] = s;
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcule la plage de cellules touchées par le rectangle englobant d'un segment.
+     *
+     * @param s     Le numéro du segment.
+     * @param range Tableau dans lequel écrire les colonnes minimale et maximale,
+     *              puis les lignes minimale et maximale (inclusivement).
+     */
+    private void getCells(int s, final int[] range) {
+        s *= 4;
+        range[0] = column(Math.min(segments[s  ], segments[s+2]));
+        range[1] = column(Math.max(segments[s  ], segments[s+2]));
+        range[2] = row   (Math.min(segments[s+1], segments[s+3]));
+        range[3] = row   (Math.max(segments[s+1], segments[s+3]));
+    }
+
+    /**
+     * Retourne le nombre de cellules le long d'un axe de la longueur spécifiée.
+     */
+    private static int cellCount(final double length, final double side) {
+        if (!(length > 0) || !(side > 0)) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(MAXIMUM_CELLS, Math.ceil(length / side)));
+    }
+
+    /**
+     * Retourne la colonne de la grille qui contient la longitude spécifiée,
+     * en la ramenant dans les limites de la grille si nécessaire.
+     */
+    private int column(final double x) {
+        return Math.max(0, Math.min(width-1, (int) Math.floor((x - xmin) / cellWidth)));
+    }
+
+    /**
+     * Retourne la ligne de la grille qui contient la latitude spécifiée,
+     * en la ramenant dans les limites de la grille si nécessaire.
+     */
+    private int row(final double y) {
+        return Math.max(0, Math.min(height-1, (int) Math.floor((y - ymin) / cellHeight)));
+    }
+
+    /**
+     * Retourne le nombre de segments dans cet index.
+     */
+    int getSegmentCount() {
+        return segments.length / 4;
+    }
+
+    /**
+     * Retourne une borne inférieure de la distance orthodromique (en mètres) entre deux
+     * points dont les latitudes ne dépassent pas <var>maxLatitude</var> en valeur absolue
+     * et qui sont séparés d'au moins <var>dx</var> degrés de longitude <em>ou</em> d'au
+     * moins <var>dy</var> degrés de latitude.
+     */
+    static double lowerBound(double dx, double dy, final double maxLatitude) {
+        dx = Math.toRadians(Math.min(180, Math.max(0, dx)));
+        dy = Math.toRadians(Math.min(180, Math.max(0, dy)));
+        final double cos = Math.cos(Math.toRadians(Math.min(90, maxLatitude)));
+        final double sx  = cos * Math.sin(dx/2);
+        final double sy  = Math.sin(dy/2);
+        return MINIMUM_RADIUS * 2 * Math.asin(Math.min(1, Math.min(sx, sy)));
+    }
+
+    /**
+     * Calcule la distance la plus courte entre le point spécifié et la côte.
+     *
+     * @param  px Longitude du point, en degrés.
+     * @param  py Latitude du point, en degrés.
+     * @return Distance la plus courte en mètres, ou {@link Double#NaN} si la côte est vide.
+     */
+    double distance(final double px, final double py) {
+        if (segments.length == 0) {
+            return Double.NaN;
+        }
+        /*
+         * Coordonnées (non-bornées) de la cellule qui contient le point. Une cellule de l'anneau
+         * k est à au moins (k-1) cellules du point selon l'un des deux axes, ce qui permet de
+         * calculer une borne inférieure de la distance de tous les segments de cet anneau.
+         */
+        final double fx = (px - xmin) / cellWidth;
+        final double fy = (py - ymin) / cellHeight;
+        final int ci = (int) Math.max(-MAXIMUM_CELLS, Math.min(2*MAXIMUM_CELLS, Math.floor(fx)));
+        final int cj = (int) Math.max(-MAXIMUM_CELLS, Math.min(2*MAXIMUM_CELLS, Math.floor(fy)));
+        final int maxRing = Math.max(Math.max(Math.abs(ci), Math.abs(width -1-ci)),
+                                     Math.max(Math.abs(cj), Math.abs(height-1-cj)));
+        final double maxLatitude = Math.max(Math.abs(py), maxAbsLatitude);
+        double smallestDistance = Double.POSITIVE_INFINITY;
+        for (int k=0; k<=maxRing; k++) {
+            if (k != 0 && lowerBound((k-1)*cellWidth, (k-1)*cellHeight, maxLatitude) >= smallestDistance) {
+                break;
+            }
+            final int jmin = Math.max(cj-k, 0), jmax = Math.min(cj+k, height-1);
+            final int imin = Math.max(ci-k, 0), imax = Math.min(ci+k, width -1);
+            for (int j=jmin; j<=jmax; j++) {
+                final boolean edge = (j == cj-k || j == cj+k);
+                for (int i=imin; i<=imax; i++) {
+                    if (!edge && i != ci-k && i != ci+k) {
+                        // Cellule intérieure à l'anneau: déjà visitée. Saute à l'autre bord.
+                        if (i < ci+k) {
+                            i = Math.min(ci+k, imax+1) - 1;
+                        }
+                        continue;
+                    }
+                    final int cell = j*width + i;
+                    for (int n=cellStart[cell]; n<cellStart[cell+1]; n++) {
+                        final int s = 4*cellSegments[n];
+                        // APPROXIMATION IS THERE: 'nearestColinearPoint' is for a cartesian
+                        // coordinate system, not an ellipsoidal surface. This approximation
+                        // still okay if <code>coast</code> is build of many small segments.
+                        final Point2D point = ShapeUtilities.nearestColinearPoint(
+                                segments[s], segments[s+1], segments[s+2], segments[s+3], px, py);
+                        final double distance = ellipsoid.orthodromicDistance(
+                                point.getX(), point.getY(), px, py);
+                        if (distance < smallestDistance) {
+                            smallestDistance = distance;
+                        }
+                    }
+                }
+            }
+        }
+        return Double.isInfinite(smallestDistance) ? Double.NaN : smallestDistance;
+    }
+}
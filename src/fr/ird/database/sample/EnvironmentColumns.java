@@ -0,0 +1,145 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE dependencies
+import java.util.Arrays;
+import java.io.Serializable;
+
+
+/**
+ * Les valeurs des paramètres environnementaux chargées en mémoire, colonne par colonne.
+ * Chaque ligne correspond à un échantillon, et les lignes sont classées en ordre croissant
+ * de numéro ID. Chaque colonne correspond à une combinaison (paramètre, opération, position)
+ * déclarée avec {@link EnvironmentTable#addParameter(ParameterEntry,OperationEntry,RelativePositionEntry)
+ * addParameter(...)}, dans le même ordre que les colonnes de {@link EnvironmentTable#getRowSet}
+ * (la colonne des numéros ID et les colonnes de la table des échantillons en moins). Les valeurs
+ * manquantes sont représentées par {@link Float#NaN}.
+ * <br><br>
+ * Les tableaux retournés par {@link #getSampleIDs} et {@link #getValues} ne sont pas copiés,
+ * afin que le code d'analyse puisse les parcourir sans surcoût. Ils ne doivent pas être modifiés.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see EnvironmentTable#getColumns
+ */
+public final class EnvironmentColumns implements Serializable {
+    /**
+     * Numéro de série pour compatibilités avec différentes versions.
+     */
+    private static final long serialVersionUID = -3512790934482161174L;
+
+    /**
+     * Les titres des colonnes.
+     */
+    private final String[] labels;
+
+    /**
+     * Les numéros ID des échantillons, en ordre croissant.
+     */
+    private final int[] IDs;
+
+    /**
+     * Les valeurs de chaque colonne. La longueur de chaque tableau
+     * est égale à la longueur du tableau {@link #IDs}.
+     */
+    private final float[][] values;
+
+    /**
+     * Construit un ensemble de colonnes. Ce constructeur est
+     * destiné aux implémentations de {@link EnvironmentTable}.
+     *
+     * @param labels Les titres des colonnes.
+     * @param IDs    Les numéros ID des échantillons, en ordre croissant.
+     * @param values Les valeurs de chaque colonne, dans le même ordre que les titres.
+     * @throws IllegalArgumentException si la longueur d'un des tableaux ne convient pas.
+     */
+    public EnvironmentColumns(final String[] labels, final int[] IDs, final float[][] values)
+            throws IllegalArgumentException
+    {
+        if (labels.length != values.length) {
+            throw new IllegalArgumentException("Le nombre de titres ne correspond pas.");
+        }
+        for (int i=0; i<values.length; i++) {
+            if (values[i].length != IDs.length) {
+                throw new IllegalArgumentException("Le nombre de valeurs ne correspond pas.");
+            }
+        }
+        this.labels = labels;
+        this.IDs    = IDs;
+        this.values = values;
+    }
+
+    /**
+     * Retourne le nombre de lignes, c'est-à-dire d'échantillons.
+     */
+    public int getRowCount() {
+        return IDs.length;
+    }
+
+    /**
+     * Retourne le nombre de colonnes.
+     */
+    public int getColumnCount() {
+        return values.length;
+    }
+
+    /**
+     * Retourne le titre de la colonne spécifiée.
+     *
+     * @param column Le numéro de la colonne, à partir de 0.
+     */
+    public String getColumnLabel(final int column) {
+        return labels[column];
+    }
+
+    /**
+     * Retourne les numéros ID des échantillons, en ordre croissant.
+     * <strong>Ce tableau ne doit pas être modifié.</strong>
+     */
+    public int[] getSampleIDs() {
+        return IDs;
+    }
+
+    /**
+     * Retourne les valeurs de la colonne spécifiée, ligne par ligne. Les valeurs manquantes
+     * sont {@link Float#NaN}. <strong>Ce tableau ne doit pas être modifié.</strong>
+     *
+     * @param column Le numéro de la colonne, à partir de 0.
+     */
+    public float[] getValues(final int column) {
+        return values[column];
+    }
+
+    /**
+     * Retourne la ligne de l'échantillon spécifié, ou une valeur négative
+     * si cet échantillon n'apparaît pas dans ces colonnes.
+     *
+     * @param sampleID Le numéro ID de l'échantillon.
+     */
+    public int indexOf(final int sampleID) {
+        final int index = Arrays.binarySearch(IDs, sampleID);
+        return (index >= 0) ? index : -1;
+    }
+
+    /**
+     * Retourne une chaîne de caractères représentant ces colonnes.
+     */
+    public String toString() {
+        return "EnvironmentColumns[" + getColumnCount() + " columns × " + getRowCount() + " rows]";
+    }
+}
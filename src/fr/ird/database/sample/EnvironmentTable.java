@@ -25,6 +25,7 @@ import java.util.Set;
 import java.util.List;
 import java.util.Date;
 import java.io.Writer;
+import java.io.OutputStream;
 import java.io.IOException;
 
 // SEAS dependencies
@@ -226,6 +227,21 @@ public interface EnvironmentTable extends Table {
      */
     public abstract RowSet getRowSet(final ProgressListener progress) throws RemoteException;
 
+    /**
+     * Retourne les valeurs des paramètres environnementaux chargées en mémoire, colonne par
+     * colonne. Les colonnes sont les mêmes que celles de {@link #getRowSet getRowSet(...)},
+     * à l'exception de la colonne des numéros ID et des colonnes de la table des échantillons.
+     * Cette méthode est plus rapide que le parcours de {@link #getRowSet getRowSet(...)}
+     * pour les analyses statistiques qui portent sur un grand nombre de colonnes.
+     *
+     * @param  progress Objet à utiliser pour informer des progrès de l'initialisation,
+     *         ou <code>null</code> si aucun.
+     * @return Les valeurs des paramètres environnementaux.
+     * @throws RemoteException si l'interrogation du catalogue a échoué.
+     */
+    public abstract EnvironmentColumns getColumns(final ProgressListener progress)
+            throws RemoteException;
+
     /**
      * Affiche les enregistrements vers le flot spécifié.
      * Cette méthode est surtout utile à des fins de vérification.
@@ -254,6 +270,48 @@ public interface EnvironmentTable extends Table {
                                     final String          tableName,
                                     final ProgressListener progress) throws RemoteException;
 
+    /**
+     * Écrit toutes les données de {@link #getRowSet} en format CSV. La première ligne contient
+     * les noms des colonnes; les valeurs manquantes sont laissées vides. Les enregistrements
+     * sont lus et écrits au fur et à mesure, de sorte que la mémoire utilisée ne dépend pas
+     * de leur nombre.
+     *
+     * @param  out Le flot dans lequel écrire les données.
+     * @param  progress Objet à utiliser pour informer des progrès, ou <code>null</code> si aucun.
+     * @return Le nombre d'enregistrement écrits.
+     * @throws IOException si l'interrogation du catalogue ou l'écriture a échoué.
+     */
+    public abstract int exportToCSV(final Writer           out,
+                                    final ProgressListener progress) throws IOException;
+
+    /**
+     * Écrit toutes les données de {@link #getRowSet} dans un format binaire par colonnes,
+     * découpé en blocs de lignes. Ce format se relit beaucoup plus rapidement que le format
+     * CSV. Les enregistrements sont lus et écrits au fur et à mesure, de sorte que la mémoire
+     * utilisée ne dépend pas de leur nombre.
+     *
+     * @param  out Le flot dans lequel écrire les données.
+     * @param  progress Objet à utiliser pour informer des progrès, ou <code>null</code> si aucun.
+     * @return Le nombre d'enregistrement écrits.
+     * @throws IOException si l'interrogation du catalogue ou l'écriture a échoué.
+     */
+    public abstract int exportToBinary(final OutputStream     out,
+                                       final ProgressListener progress) throws IOException;
+
+    /**
+     * Retourne les numéros des échantillons pour lesquels toutes les valeurs déclarées avec
+     * {@link #addParameter(ParameterEntry,OperationEntry,RelativePositionEntry) addParameter(...)}
+     * sont déjà présentes dans la base de données. Cette méthode permet de ne calculer que
+     * les valeurs manquantes.
+     *
+     * @param  position Si non-nul, seuls les paramètres déclarés à cette position relative
+     *         seront pris en compte.
+     * @return Les numéros ID des échantillons dont les valeurs sont toutes présentes.
+     * @throws RemoteException si l'interrogation du catalogue a échoué.
+     */
+    public abstract Set<Integer> getCompleteSamples(final RelativePositionEntry position)
+            throws RemoteException;
+
     /**
      * Définit la valeur des paramètres environnementaux pour un échantillons. Le nombre
      * de valeurs (<code>values.length</code>) doit correspondre au nombre de paramètres
@@ -279,6 +337,16 @@ public interface EnvironmentTable extends Table {
                              final RelativePositionEntry position,
                              final double[]              values) throws RemoteException;
 
+    /**
+     * Écrit dans la base de données les valeurs transmises à {@link #set set(...)} qui sont
+     * encore en mémoire. Pour des raisons de performances, {@link #set set(...)} n'écrit pas
+     * immédiatement chaque valeur mais les regroupe en lots. Cette méthode est appelée
+     * automatiquement par {@link #getRowSet getRowSet(...)}, {@link #clear} et {@link #close}.
+     *
+     * @throws RemoteException si un problème est survenu lors de la mise à jour.
+     */
+    public abstract void flush() throws RemoteException;
+
     /**
      * Oublie tous les paramètres qui ont été déclarés avec
      * {@link #addParameter(ParameterEntry,OperationEntry,RelativePositionEntry) addParameter(...)}.
@@ -34,11 +34,26 @@ import java.awt.geom.Rectangle2D;
 // Ensembles
 import java.util.Map;
 import java.util.Set;
+import java.util.List;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Properties;
 import java.util.Iterator;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Entrés/sorties
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 
 // Divers
 import java.util.Date;
@@ -51,9 +66,11 @@ import javax.media.jai.ParameterList;
 
 // OpenGIS
 import org.opengis.referencing.operation.TransformException;
+import org.opengis.coverage.CannotEvaluateException;
 
 // Geotools
 import org.geotools.gc.GridCoverage;
+import org.geotools.util.Range;
 import org.geotools.pt.CoordinatePoint;
 import org.geotools.gp.GridCoverageProcessor; // Pour javadoc
 import org.geotools.cv.PointOutsideCoverageException;
@@ -65,6 +82,7 @@ import fr.ird.database.Table;
 import fr.ird.database.IllegalRecordException;
 import fr.ird.database.coverage.SeriesTable;
 import fr.ird.database.coverage.SeriesEntry;
+import fr.ird.database.coverage.CoverageEntry;
 import fr.ird.database.coverage.CoverageTable;
 import fr.ird.database.coverage.CoverageDataBase;
 import fr.ird.resources.seagis.ResourceKeys;
@@ -92,6 +110,14 @@ import fr.ird.resources.XArray;
  * La plage de temps des échantillons à traiter peut être spécifiée avec
  * <code>{@link #getSampleTable}.setTimeRange(startTime, endTime)</code>,
  * et de même pour les coordonnées géographiques.
+ * <br><br>
+ * <strong>Remplissage incrémental</strong><br>
+ * En {@linkplain #setIncremental mode incrémental}, seules les valeurs absentes de la table
+ * "Environnement" sont calculées, ainsi que celles qui dépendent d'images modifiées depuis le
+ * dernier remplissage. Si un {@linkplain #setCheckpointFile fichier de reprise} est spécifié,
+ * la fin du traitement de chaque couple (série, opération) y est enregistrée. Un remplissage
+ * interrompu peut alors être relancé en mode incrémental: il reprendra avec les valeurs qui
+ * n'avaient pas encore été écrites.
  *
  * @version $Id$
  * @author Martin Desruisseaux
@@ -182,6 +208,33 @@ public class EnvironmentTableFiller implements Table {
      */
     private boolean interpolationAllowed = true;
 
+    /**
+     * Nombre de threads qui évaluent les positions en parallèle.
+     */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Indique si seules les valeurs manquantes ou périmées doivent être calculées.
+     */
+    private boolean incremental;
+
+    /**
+     * Fichier dans lequel enregistrer l'état d'avancement du remplissage,
+     * ou <code>null</code> si aucun.
+     */
+    private File checkpointFile;
+
+    /**
+     * Nombre minimal de positions à confier à chaque thread. Il serait inutile de découper
+     * le travail en morceaux plus petits, puisque chaque thread doit lire ses propres images.
+     */
+    private static final int MINIMUM_CHUNK_SIZE = 1000;
+
+    /**
+     * Nombre maximal de résultats en attente d'écriture dans la base de données.
+     */
+    private static final int QUEUE_CAPACITY = 4096;
+
     /**
      * Construit un objet utlisant une connexion par défaut.  Cette connexion utilisera
      * des paramètres par défaut qui peuvent être préalablement configurés en exécutant
@@ -356,6 +409,70 @@ public class EnvironmentTableFiller implements Table {
         this.interpolationAllowed = flag;
     }
 
+    /**
+     * Retourne le nombre de threads qui évaluent les positions en parallèle.
+     * La valeur par défaut est le nombre de processeurs disponibles.
+     */
+    public synchronized int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Spécifie le nombre de threads qui évaluent les positions en parallèle. Les positions,
+     * classées par date, sont découpées en autant de plages de temps contigües qu'il y a de
+     * threads. Chaque thread utilise sa propre copie de la couverture des données, de sorte
+     * que les threads ne se disputent pas les images en mémoire. L'écriture dans la base de
+     * données reste faite par un seul thread.
+     *
+     * @param count Le nombre de threads (au moins 1).
+     */
+    public synchronized void setThreadCount(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException(String.valueOf(count));
+        }
+        threadCount = count;
+    }
+
+    /**
+     * Indique si le remplissage est incrémental. La valeur par défaut est <code>false</code>.
+     */
+    public synchronized boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Spécifie si le remplissage doit être incrémental. En mode incrémental, {@link #run}
+     * interroge d'abord la table "Environnement" pour connaître les valeurs déjà présentes,
+     * et ne calcule que les valeurs manquantes. Si un {@linkplain #setCheckpointFile fichier
+     * de reprise} indique qu'une série a déjà été traitée, alors les valeurs qui dépendent
+     * d'images dont le fichier a été modifié depuis sont aussi recalculées. Notez que les
+     * positions pour lesquelles aucune donnée n'est disponible sont toujours recalculées,
+     * puisque rien ne les distingue d'un échantillon ajouté depuis le dernier remplissage.
+     */
+    public synchronized void setIncremental(final boolean flag) {
+        incremental = flag;
+    }
+
+    /**
+     * Retourne le fichier dans lequel est enregistré l'état d'avancement du remplissage,
+     * ou <code>null</code> si aucun.
+     */
+    public synchronized File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * Spécifie le fichier dans lequel enregistrer l'état d'avancement du remplissage. Ce
+     * fichier est mis à jour après le traitement de chaque couple (série, opération), et
+     * mémorise la date à laquelle ce traitement a commencé. Cette date permet au mode
+     * {@linkplain #setIncremental incrémental} de détecter les images modifiées depuis.
+     *
+     * @param file Le fichier de reprise, ou <code>null</code> si aucun.
+     */
+    public synchronized void setCheckpointFile(final File file) {
+        checkpointFile = file;
+    }
+
     /**
      * Lance le remplissage de la table "Environnement".
      *
@@ -369,6 +486,7 @@ public class EnvironmentTableFiller implements Table {
         final CoverageTable                    coverageTable = getCoverageTable();
         final Set<? extends OperationEntry>       operations = getOperations();
         final Set<? extends RelativePositionEntry> positions = getRelativePositions();
+        final Properties                         checkpoints = loadCheckpoints();
         for (final OperationEntry operation : operations) {
             /*
              * Pour chaque opérations, configure la table d'images en lui appliquant l'opération
@@ -391,14 +509,15 @@ public class EnvironmentTableFiller implements Table {
              * relatives, mais ces positions seront transmises de manière explicites plus loin.
              */
             for (final Map.Entry<SeriesEntry,ParameterEntry[]> series : this.series.entrySet()) {
-                final SeriesCoverage3D coverage;
-                final SamplePosition[]    tasks;
+                final Environment3D coverage;
+                SamplePosition[]    tasks;
 
+                final String key = series.getKey().getName() + " / " + operation.getName();
+                final long startTime = System.currentTimeMillis();
                 coverageTable.setSeries(series.getKey());
-                coverage = new SeriesCoverage3D(coverageTable);
+                coverage = new Environment3D(coverageTable);
                 coverage.setInterpolationAllowed(interpolationAllowed);
                 tasks = SamplePosition.getInstances(sampleEntries, positions, coverage);
-                info(ResourceKeys.POSITIONS_TO_EVALUATE_$1, new Integer(tasks.length));
                 final EnvironmentTable table = samples.getEnvironmentTable(seriesTable);
                 final ParameterEntry[] parameters = series.getValue();
                 for (final RelativePositionEntry position : positions) {
@@ -406,29 +525,316 @@ public class EnvironmentTableFiller implements Table {
                         table.addParameter(parameters[i], operation, position, false);
                     }
                 }
+                if (isIncremental()) {
+                    final String checkpoint = checkpoints.getProperty(key);
+                    tasks = retainPending(tasks, table, coverageTable,
+                                          (checkpoint!=null) ? Long.valueOf(checkpoint) : null);
+                }
+                info(ResourceKeys.POSITIONS_TO_EVALUATE_$1, new Integer(tasks.length));
                 /*
                  * Procède maintenant à l'évaluation de toutes les valeurs et leur
                  * écriture dans la base de données.
                  */
-                double[] values = null;
-                for (int i=0; i<tasks.length; i++) {
-                    final SampleEntry           sample   = tasks[i].sample;
-                    final RelativePositionEntry position = tasks[i].position;
-                    try {
-                        values = coverage.evaluate(sample, position, values);
-                        coverage.lastWarning = null;
-                    } catch (PointOutsideCoverageException exception) {
-                        warning(coverage, exception);
-                        continue;
-                    }
-                    table.set(sample, position, values);
-                }
+                evaluate(coverage, tasks, table);
                 table.close();
+                checkpoints.setProperty(key, String.valueOf(startTime));
+                saveCheckpoints(checkpoints);
             }
         }
         SampleDataBase.LOGGER.info("Remplissage de la table d'environnement terminé.");
     }
 
+    /**
+     * Retire des positions à évaluer celles dont les valeurs sont déjà présentes dans la table,
+     * à moins qu'elles ne dépendent d'images modifiées depuis le dernier remplissage.
+     *
+     * @param  tasks Les positions à évaluer, en ordre chronologique.
+     * @param  table La table des valeurs environnementales, avec ses paramètres déjà déclarés.
+     * @param  coverageTable La table des images de la série.
+     * @param  lastRun Date (en millisecondes) du dernier remplissage de cette série, ou
+     *         <code>null</code> si elle n'a pas été enregistrée.
+     * @return Les positions qui restent à évaluer, en ordre chronologique.
+     * @throws RemoteException si l'interrogation d'une des tables a échoué.
+     */
+    private static SamplePosition[] retainPending(final SamplePosition[] tasks,
+                                                  final EnvironmentTable table,
+                                                  final CoverageTable    coverageTable,
+                                                  final Long             lastRun)
+            throws RemoteException
+    {
+        final long[] changed = (lastRun != null) ?
+                getModifiedPeriods(coverageTable.getEntries(), lastRun.longValue()) : new long[0];
+        final Map<RelativePositionEntry,Set<Integer>> complete =
+                new HashMap<RelativePositionEntry,Set<Integer>>();
+        final SamplePosition[] retained = new SamplePosition[tasks.length];
+        int count = 0;
+        for (int i=0; i<tasks.length; i++) {
+            final SamplePosition task = tasks[i];
+            Set<Integer> IDs = complete.get(task.position);
+            if (IDs == null) {
+                IDs = table.getCompleteSamples(task.position);
+                complete.put(task.position, IDs);
+            }
+            if (IDs.contains(new Integer(task.sample.getID()))) {
+                /*
+                 * La valeur existe déjà. On ne la recalcule que si sa date tombe dans une des
+                 * périodes couvertes par des images modifiées. Le tableau 'changed' contient
+                 * des paires (début, fin) classées en ordre croissant: la date est à
+                 * l'intérieur d'une période si son point d'insertion est impair.
+                 */
+                final int index = Arrays.binarySearch(changed, task.time);
+                if (index < 0 && (~index & 1) == 0) {
+                    continue;
+                }
+            }
+            retained[count++] = task;
+        }
+        final LogRecord record = new LogRecord(Level.INFO, (tasks.length - count) +
+                                 " position(s) déjà calculée(s) sur " + tasks.length + '.');
+        record.setSourceClassName("EnvironmentTableFiller");
+        record.setSourceMethodName("run");
+        SampleDataBase.LOGGER.log(record);
+        return XArray.resize(retained, count);
+    }
+
+    /**
+     * Retourne les périodes de temps affectées par des images dont le fichier a été modifié
+     * après la date spécifiée. Puisqu'une valeur peut être interpolée entre deux images
+     * consécutives, chaque période s'étend du début de l'image précédente jusqu'à la fin
+     * de l'image suivante.
+     *
+     * @param  entries Les images de la série, en ordre chronologique.
+     * @param  since Date (en millisecondes) à partir de laquelle une modification est prise
+     *         en compte.
+     * @return Les paires (début, fin) des périodes en millisecondes, classées en ordre
+     *         croissant et sans chevauchement.
+     * @throws RemoteException si l'interrogation d'une des images a échoué.
+     */
+    private static long[] getModifiedPeriods(final List<CoverageEntry> entries, final long since)
+            throws RemoteException
+    {
+        final int n = entries.size();
+        final List<long[]> periods = new ArrayList<long[]>();
+        for (int i=0; i<n; i++) {
+            final File file = entries.get(i).getFile();
+            if (file == null || file.lastModified() <= since) {
+                continue;
+            }
+            final long start = getTime(entries.get(Math.max(i-1, 0)),   true);
+            final long end   = getTime(entries.get(Math.min(i+1, n-1)), false);
+            final int last = periods.size() - 1;
+            if (last >= 0 && start <= periods.get(last)[1]) {
+                periods.get(last)[1] = Math.max(periods.get(last)[1], end);
+            } else {
+                periods.add(new long[] {start, end});
+            }
+        }
+        final long[] changed = new long[periods.size() * 2];
+        for (int i=0; i<periods.size(); i++) {
+            changed[2*i  ] = periods.get(i)[0];
+            changed[2*i+1] = periods.get(i)[1];
+        }
+        return changed;
+    }
+
+    /**
+     * Retourne la date de début ou de fin de l'image spécifiée, en millisecondes.
+     * Si l'image n'a pas de plage de temps, alors elle est considérée comme valide
+     * en tout temps.
+     */
+    private static long getTime(final CoverageEntry entry, final boolean start) throws RemoteException {
+        final Range range = entry.getTimeRange();
+        final Date time = (range == null) ? null :
+                          (Date) (start ? range.getMinValue() : range.getMaxValue());
+        if (time == null) {
+            return start ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return time.getTime();
+    }
+
+    /**
+     * Lit le fichier de reprise. Si aucun fichier n'a été spécifié
+     * ou s'il n'existe pas encore, retourne un ensemble vide.
+     *
+     * @throws RemoteException si le fichier n'a pas pu être lu.
+     */
+    private Properties loadCheckpoints() throws RemoteException {
+        final Properties checkpoints = new Properties();
+        final File file = getCheckpointFile();
+        if (file != null && file.exists()) try {
+            final InputStream in = new FileInputStream(file);
+            try {
+                checkpoints.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException exception) {
+            throw new CatalogException(exception);
+        }
+        return checkpoints;
+    }
+
+    /**
+     * Enregistre l'état d'avancement dans le fichier de reprise, s'il y en a un. Le fichier
+     * est d'abord écrit sous un nom temporaire, afin qu'une interruption pendant l'écriture
+     * ne laisse pas un fichier incomplet.
+     *
+     * @throws RemoteException si le fichier n'a pas pu être écrit.
+     */
+    private void saveCheckpoints(final Properties checkpoints) throws RemoteException {
+        final File file = getCheckpointFile();
+        if (file == null) {
+            return;
+        }
+        final File tmp = new File(file.getPath() + ".tmp");
+        try {
+            final OutputStream out = new FileOutputStream(tmp);
+            try {
+                checkpoints.store(out, "EnvironmentTableFiller");
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(file)) {
+                // Sous Windows, 'renameTo' échoue si la destination existe déjà.
+                if (!file.delete() || !tmp.renameTo(file)) {
+                    throw new IOException("Ne peut pas écrire le fichier \"" + file + "\".");
+                }
+            }
+        } catch (IOException exception) {
+            throw new CatalogException(exception);
+        }
+    }
+
+    /**
+     * Un résultat à écrire dans la base de données, ou la fin du travail d'un thread.
+     */
+    private static final class Result {
+        /** La position évaluée, ou <code>null</code> si le thread a terminé son travail. */
+        final SamplePosition task;
+
+        /** Les valeurs à écrire, ou <code>null</code> si le thread a terminé son travail. */
+        final double[] values;
+
+        /** L'erreur qui a interrompu le thread, ou <code>null</code> s'il n'y en a pas. */
+        final Throwable failure;
+
+        /** Construit un résultat. */
+        Result(final SamplePosition task, final double[] values, final Throwable failure) {
+            this.task    = task;
+            this.values  = values;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Évalue toutes les positions spécifiées et écrit les résultats dans la table. Les
+     * positions étant classées par date, elles sont découpées en plages de temps contigües
+     * dont chacune est évaluée par un thread disposant de sa propre copie de la couverture
+     * (et donc de ses propres images encadrant la date courante). Les résultats sont écrits
+     * par le thread courant au fur et à mesure qu'ils sont produits; ils sont en ordre
+     * chronologique à l'intérieur de chaque plage.
+     *
+     * @param  coverage La couverture des données de la série.
+     * @param  tasks    Les positions à évaluer, en ordre chronologique.
+     * @param  table    La table dans laquelle écrire les résultats.
+     * @throws RemoteException si l'écriture dans la base de données a échoué.
+     */
+    private void evaluate(final Environment3D    coverage,
+                          final SamplePosition[] tasks,
+                          final EnvironmentTable table)
+            throws RemoteException
+    {
+        final int numChunks = Math.max(1, Math.min(getThreadCount(),
+                                       tasks.length / MINIMUM_CHUNK_SIZE));
+        final BlockingQueue<Result> results = new ArrayBlockingQueue<Result>(QUEUE_CAPACITY);
+        final ExecutorService executor = Executors.newFixedThreadPool(numChunks);
+        try {
+            for (int i=0; i<numChunks; i++) {
+                final int lower = (int) ((long) tasks.length *  i    / numChunks);
+                final int upper = (int) ((long) tasks.length * (i+1) / numChunks);
+                final Environment3D worker = (i == 0) ? coverage : new Environment3D(coverage);
+                executor.execute(new Runnable() {
+                    public void run() {
+                        /*
+                         * Le résultat de fin doit être envoyé quelle que soit l'erreur
+                         * (y compris une Error), sans quoi le thread d'écriture attendrait
+                         * indéfiniment dans 'results.take()'.
+                         */
+                        Throwable failure = null;
+                        try {
+                            evaluate(worker, tasks, lower, upper, results);
+                        } catch (InterruptedException exception) {
+                            // Le thread d'écriture a abandonné. Termine simplement.
+                            return;
+                        } catch (Throwable exception) {
+                            failure = exception;
+                        }
+                        try {
+                            results.put(new Result(null, null, failure));
+                        } catch (InterruptedException exception) {
+                            // Le thread d'écriture a abandonné. Termine simplement.
+                        }
+                    }
+                });
+            }
+            /*
+             * Ecrit les résultats dans la base de données jusqu'à ce que tous les
+             * threads aient terminé leur travail. Seul ce thread accède à la table.
+             */
+            int running = numChunks;
+            while (running != 0) {
+                final Result result;
+                try {
+                    result = results.take();
+                } catch (InterruptedException exception) {
+                    throw new CatalogException(exception);
+                }
+                if (result.task == null) {
+                    running--;
+                    final Throwable failure = result.failure;
+                    if (failure != null) {
+                        if (failure instanceof RuntimeException) {
+                            throw (RuntimeException) failure;
+                        }
+                        if (failure instanceof Error) {
+                            throw (Error) failure;
+                        }
+                        throw new CatalogException((Exception) failure);
+                    }
+                    continue;
+                }
+                table.set(result.task.sample, result.task.position, result.values);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Évalue les positions <code>tasks[lower]</code> inclusivement jusqu'à
+     * <code>tasks[upper]</code> exclusivement, et place les résultats dans la queue.
+     * Cette méthode est exécutée par chacun des threads de calcul.
+     */
+    private static void evaluate(final Environment3D         coverage,
+                                 final SamplePosition[]      tasks,
+                                 final int lower, final int  upper,
+                                 final BlockingQueue<Result> results)
+            throws InterruptedException, CannotEvaluateException
+    {
+        for (int i=lower; i<upper; i++) {
+            final SamplePosition task = tasks[i];
+            final double[] values;
+            try {
+                values = coverage.evaluate(task.sample, task.position, null);
+                coverage.lastWarning = null;
+            } catch (PointOutsideCoverageException exception) {
+                warning(coverage, exception);
+                continue;
+            }
+            results.put(new Result(task, values, null));
+        }
+    }
+
     /**
      * Ecrit un message dans le journal avec le niveau "info".
      */
@@ -444,7 +850,7 @@ public class EnvironmentTableFiller implements Table {
      * Cette méthode écrit un avertissement dans le journal, à la condition
      * qu'il n'y en avait pas déjà un.
      */
-    private static void warning(final SeriesCoverage3D source, final PointOutsideCoverageException exception) {
+    private static void warning(final Environment3D source, final PointOutsideCoverageException exception) {
         final LogRecord record = new LogRecord(Level.WARNING, exception.getLocalizedMessage());
         record.setSourceClassName ("EnvironmentTableFiller");
         record.setSourceMethodName("run");
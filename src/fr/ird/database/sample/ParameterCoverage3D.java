@@ -18,13 +18,25 @@ package fr.ird.database.sample;
 // J2SE
 import java.util.Map;
 import java.util.Set;
+import java.util.List;
 import java.util.Date;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.TimeZone;
 import java.util.Collection;
 import java.util.Collections;
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.DataBuffer;
+import java.awt.image.SampleModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.awt.image.BandedSampleModel;
 import java.awt.geom.Point2D;
+import java.awt.geom.Dimension2D;
+import java.awt.geom.Rectangle2D;
 import java.text.ParseException;
 import java.text.DateFormat;
 import java.io.IOException;
@@ -34,6 +46,9 @@ import java.rmi.RemoteException;
 // JAI
 import javax.media.jai.JAI;
 import javax.media.jai.ParameterList;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.SourcelessOpImage;
 
 // OpenGIS
 import org.opengis.referencing.operation.TransformException;
@@ -46,13 +61,18 @@ import org.geotools.cv.Coverage; // Pour Javadoc
 import org.geotools.cv.Category;
 import org.geotools.cv.SampleDimension;
 import org.geotools.cv.PointOutsideCoverageException;
+import org.geotools.gc.GridRange;
 import org.geotools.gc.GridCoverage;
+import org.geotools.gc.GridGeometry;
 import org.geotools.gp.GridCoverageProcessor;
 import org.geotools.gp.CannotReprojectException;
 import org.geotools.gui.swing.FrameFactory;
 import org.geotools.util.MonolineFormatter;
+import org.geotools.util.ProgressListener;
 import org.geotools.resources.Utilities;
 import org.geotools.resources.Arguments;
+import org.geotools.resources.CTSUtilities;
+import org.geotools.resources.geometry.XDimension2D;
 import org.geotools.util.NumberRange;
 
 // Seagis
@@ -118,7 +138,7 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
      * @version $Id$
      * @author Martin Desruisseaux
      */
-    private static final class SeriesKey {
+    static final class SeriesKey {
         /** La série. */                public SeriesEntry    series;
         /** L'opération à appliquer. */ public OperationEntry operation;
         /** Décalage temporel.       */ public float          timeOffset;
@@ -209,6 +229,539 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
         }
     }
 
+    /**
+     * Le modèle linéaire "compilé" sous forme de tableaux, afin que {@link #evaluate evaluate}
+     * n'ait plus à parcourir les termes et descripteurs ni à interroger le dictionnaire
+     * {@link #coverages} pour chaque point. Les descripteurs qui sont l'identité sont omis.
+     * Les objets <code>Plan</code> sont imutables et construits par {@link #setParameter}.
+     *
+     * @version $Id$
+     * @author Martin Desruisseaux
+     */
+    static final class Plan {
+        /**
+         * Le coefficient de chaque terme du modèle linéaire, ou <code>null</code> s'il n'y
+         * a pas de modèle linéaire. Dans ce dernier cas, le paramètre est évalué directement
+         * à partir de l'unique descripteur de ce plan, sans normalisation.
+         */
+        final double[] coefficients;
+
+        /**
+         * Pour chaque terme, l'index (exclusif) de son dernier descripteur dans les tableaux
+         * qui suivent. Les descripteurs du terme <var>i</var> vont de
+         * <code>termEnd[i-1]</code> inclusivement jusqu'à <code>termEnd[i]</code> exclusivement.
+         */
+        final int[] termEnd;
+
+        /**
+         * Les descripteurs, pour leur méthode {@link DescriptorEntry#normalize normalize}.
+         */
+        final DescriptorEntry[] descriptors;
+
+        /**
+         * La position relative de chaque descripteur, ou <code>null</code> si aucune.
+         */
+        final RelativePositionEntry[] positions;
+
+        /**
+         * L'index (à partir de 0) de la bande à utiliser pour chaque descripteur.
+         */
+        final int[] bands;
+
+        /**
+         * Les couvertures de chaque descripteur: celle de la série principale d'abord,
+         * suivie de celles des séries "de secours".
+         */
+        final Coverage3D[][] coverages;
+
+        /**
+         * Tableaux de travail propres à chaque thread. Le tableau <code>double[]</code>
+         * a une longueur suffisante pour toutes les couvertures de ce plan.
+         */
+        final ThreadLocal<Scratch> scratch;
+
+        /**
+         * Construit un plan à partir des tableaux spécifiés.
+         */
+        Plan(final double[] coefficients, final int[] termEnd, final DescriptorEntry[] descriptors,
+             final RelativePositionEntry[] positions, final int[] bands, final Coverage3D[][] coverages)
+        {
+            this.coefficients = coefficients;
+            this.termEnd      = termEnd;
+            this.descriptors  = descriptors;
+            this.positions    = positions;
+            this.bands        = bands;
+            this.coverages    = coverages;
+            int length = 0;
+            for (int i=0; i<coverages.length; i++) {
+                length = Math.max(length, bands[i]+1);
+                for (final Coverage3D coverage : coverages[i]) {
+                    length = Math.max(length, coverage.getNumSampleDimensions());
+                }
+            }
+            final int bufferLength = length;
+            scratch = new ThreadLocal<Scratch>() {
+                protected Scratch initialValue() {
+                    return new Scratch(bufferLength);
+                }
+            };
+        }
+    }
+
+    /**
+     * Objets de travail réutilisés d'un appel de {@link #evaluate evaluate} à l'autre
+     * par un même thread.
+     *
+     * @version $Id$
+     * @author Martin Desruisseaux
+     */
+    private static final class Scratch {
+        /** Les valeurs de toutes les bandes. */ double[]       buffer;
+        /** La coordonnée spatiale décalée.   */ final Point2D coord = new Point2D.Double();
+        /** La coordonnée temporelle décalée. */ final Date    time  = new Date(0);
+
+        /** Construit des objets de travail. */
+        Scratch(final int numBands) {
+            buffer = new double[numBands];
+        }
+    }
+
+    /**
+     * Les images sources lues à l'avance par {@link ParameterCoverage3D#prefetch} pour une date.
+     *
+     * @version $Id$
+     * @author Martin Desruisseaux
+     */
+    static final class Sources {
+        /**
+         * Le plan d'évaluation pour lequel les images ont été lues, ou <code>null</code>.
+         */
+        final Plan plan;
+
+        /**
+         * Pour chaque descripteur du plan, les images de chaque série; ou <code>null</code>
+         * si le mode image n'est pas applicable.
+         */
+        final GridCoverage[][] images;
+
+        /**
+         * Construit un ensemble d'images sources.
+         */
+        Sources(final Plan plan, final GridCoverage[][] images) {
+            this.plan   = plan;
+            this.images = images;
+        }
+    }
+
+    /**
+     * Les couvertures utilisées par un thread de lecture pour obtenir les images sources à
+     * l'avance avec {@link ParameterCoverage3D#prefetch(Prefetcher,Date)}. Chaque
+     * {@link GridCoverage3D} du plan est remplacée par une copie propre au thread de lecture,
+     * de sorte que la lecture d'une date ultérieure ne déplace pas les images qui encadrent
+     * la date en cours de calcul dans les couvertures du thread de calcul.
+     *
+     * @version $Id$
+     * @author Martin Desruisseaux
+     */
+    static final class Prefetcher {
+        /**
+         * Le plan d'évaluation dont les couvertures ont été copiées, ou <code>null</code>.
+         */
+        final Plan plan;
+
+        /**
+         * Les copies des couvertures de {@link Plan#coverages}, ou <code>null</code>
+         * si aucun plan n'a été spécifié.
+         */
+        final Coverage3D[][] coverages;
+
+        /**
+         * Construit un objet de lecture pour le plan spécifié.
+         */
+        Prefetcher(final Plan plan) {
+            this.plan = plan;
+            if (plan != null) {
+                coverages = new Coverage3D[plan.coverages.length][];
+                for (int d=0; d<coverages.length; d++) {
+                    coverages[d] = new Coverage3D[plan.coverages[d].length];
+                    for (int i=0; i<coverages[d].length; i++) {
+                        coverages[d][i] = clone(plan.coverages[d][i]);
+                    }
+                }
+            } else {
+                coverages = null;
+            }
+        }
+    }
+
+    /**
+     * Le modèle linéaire appliqué directement sur les images de chaque descripteur à une date
+     * donnée. Cette couverture est construite par {@link ParameterCoverage3D#getGridCoverage2D
+     * getGridCoverage2D} lorsque le {@linkplain ParameterCoverage3D#setRasterMode mode image}
+     * est activé. Toutes les images sources sont obtenues une seule fois, puis rééchantillonnées
+     * une seule fois sur la grille de l'image de sortie. La normalisation et la combinaison
+     * linéaire sont ensuite calculées ligne par ligne par {@link RasterModelImage}, sans
+     * évaluer les sources point par point.
+     *
+     * @version $Id$
+     * @author Martin Desruisseaux
+     */
+    private static final class RasterModel extends Coverage3D {
+        /**
+         * Le plan d'évaluation du modèle linéaire.
+         */
+        private final Plan plan;
+
+        /**
+         * Pour chaque descripteur du plan, les images de la série principale et des séries
+         * "de secours". Un élément est nul si la série n'a pas de données à la date demandée.
+         */
+        private final GridCoverage[][] sources;
+
+        /**
+         * Les coordonnées spatiales de chacune des images de {@link #sources}.
+         */
+        private final Rectangle2D[][] areas;
+
+        /**
+         * La couverture qui a construit cet objet.
+         */
+        private final ParameterCoverage3D parent;
+
+        /**
+         * La taille des pixels de l'image la plus fine parmi les sources.
+         */
+        private final Dimension2D pixelSize;
+
+        /**
+         * Construit une couverture pour les images spécifiées.
+         */
+        RasterModel(final ParameterCoverage3D parent, final Plan plan, final GridCoverage[][] sources) {
+            super(parent);
+            this.parent  = parent;
+            this.plan    = plan;
+            this.sources = sources;
+            areas = new Rectangle2D[sources.length][];
+            double width  = Double.POSITIVE_INFINITY;
+            double height = Double.POSITIVE_INFINITY;
+            for (int d=0; d<sources.length; d++) {
+                areas[d] = new Rectangle2D[sources[d].length];
+                for (int i=0; i<sources[d].length; i++) {
+                    final GridCoverage source = sources[d][i];
+                    if (source != null) {
+                        final Rectangle2D area = source.getEnvelope().getSubEnvelope(0,2).toRectangle2D();
+                        final GridRange  range = source.getGridGeometry().getGridRange();
+                        width  = Math.min(width,  area.getWidth()  / range.getLength(0));
+                        height = Math.min(height, area.getHeight() / range.getLength(1));
+                        areas[d][i] = area;
+                    }
+                }
+            }
+            pixelSize = (width != Double.POSITIVE_INFINITY) ? new XDimension2D.Double(width, height) : null;
+        }
+
+        /**
+         * Retourne l'enveloppe de la couverture qui a construit cet objet.
+         */
+        public Envelope getEnvelope() {
+            return parent.getEnvelope();
+        }
+
+        /**
+         * Retourne la description de la bande de la couverture qui a construit cet objet.
+         */
+        public SampleDimension[] getSampleDimensions() {
+            return parent.getSampleDimensions();
+        }
+
+        /**
+         * Retourne la taille des pixels de l'image la plus fine parmi les sources.
+         */
+        protected Dimension2D getDefaultPixelSize() {
+            return pixelSize;
+        }
+
+        /**
+         * Retourne l'image du modèle linéaire. La grille de l'image de sortie est calculée
+         * de la même façon que dans l'implémentation par défaut. Chaque image source est
+         * rééchantillonnée sur cette grille par l'opération "Resample", après quoi toutes
+         * les tuiles de l'image de sortie sont calculées. La date est ignorée, puisque les
+         * images sources ont été obtenues pour une date fixée à la construction.
+         */
+        public GridCoverage getGridCoverage2D(final Date time, final ProgressListener progress)
+                throws CannotEvaluateException
+        {
+            final Envelope envelope = getEnvelope().getReducedEnvelope(temporalDimension, temporalDimension+1);
+            final Rectangle2D  area = envelope.toRectangle2D();
+            final int width, height;
+            if (pixelSize != null) {
+                width  = Math.max(1, (int)Math.round(area.getWidth()  / pixelSize.getWidth()));
+                height = Math.max(1, (int)Math.round(area.getHeight() / pixelSize.getHeight()));
+            } else {
+                width  = DEFAULT_WIDTH;
+                height = Math.max(1, (int)Math.round(DEFAULT_WIDTH * (area.getHeight() / area.getWidth())));
+            }
+            if (progress != null) {
+                progress.started();
+            }
+            final GridGeometry geometry = new GridGeometry(
+                    new GridRange(new int[2], new int[] {width, height}), envelope, new boolean[] {false,true});
+            final RenderedImage[][] images = new RenderedImage[sources.length][];
+            final Rectangle    [][] bounds = new Rectangle    [sources.length][];
+            for (int d=0; d<sources.length; d++) {
+                images[d] = new RenderedImage[sources[d].length];
+                bounds[d] = new Rectangle    [sources[d].length];
+                for (int i=0; i<sources[d].length; i++) {
+                    final GridCoverage source = sources[d][i];
+                    if (source != null) {
+                        final Rectangle region = toGrid(areas[d][i], area, width, height);
+                        if (!region.isEmpty()) {
+                            images[d][i] = parent.processor.doOperation("Resample",
+                                           source.geophysics(true), "GridGeometry", geometry)
+                                           .getRenderedImage();
+                            bounds[d][i] = region;
+                        }
+                    }
+                }
+            }
+            final SampleDimension[] bands = getSampleDimensions();
+            final RasterModelImage  image = RasterModelImage.create(plan, images, bounds,
+                                            width, height, bands);
+            image.getTiles();
+            if (progress != null) {
+                progress.complete();
+            }
+            final CoordinateSystem cs = CTSUtilities.getSubCoordinateSystem(getCoordinateSystem(), 0, 2);
+            return new GridCoverage(getName(null), image, cs, envelope, bands, null, null);
+        }
+
+        /**
+         * Retourne les pixels de l'image de sortie dont le centre se trouve à l'intérieur
+         * de la région géographique spécifiée. Ce sont les seuls pixels pour lesquels une
+         * image source peut fournir une valeur.
+         *
+         * @param area   La région géographique d'une image source.
+         * @param grid   La région géographique de l'image de sortie.
+         * @param width  La largeur de l'image de sortie, en pixels.
+         * @param height La hauteur de l'image de sortie, en pixels.
+         */
+        private static Rectangle toGrid(final Rectangle2D area, final Rectangle2D grid,
+                                        final int width, final int height)
+        {
+            final double scaleX = grid.getWidth()  / width;
+            final double scaleY = grid.getHeight() / height;
+            final double xmin = Math.ceil ((area.getMinX() - grid.getMinX()) / scaleX - 0.5);
+            final double xmax = Math.ceil ((area.getMaxX() - grid.getMinX()) / scaleX - 0.5);
+            final double ymin = Math.floor((grid.getMaxY() - area.getMaxY()) / scaleY - 0.5) + 1;
+            final double ymax = Math.floor((grid.getMaxY() - area.getMinY()) / scaleY - 0.5) + 1;
+            final int x0 = (int) Math.max(xmin, 0);
+            final int y0 = (int) Math.max(ymin, 0);
+            final int x1 = (int) Math.min(xmax, width);
+            final int y1 = (int) Math.min(ymax, height);
+            return new Rectangle(x0, y0, Math.max(0, x1-x0), Math.max(0, y1-y0));
+        }
+
+        /**
+         * Retourne la valeur à la coordonnée spécifiée. La date est ignorée, puisque les
+         * images sources ont été obtenues pour une date fixée à la construction.
+         */
+        public double[] evaluate(final Point2D point, final Date time, double[] dest) {
+            if (dest == null) {
+                dest = new double[1];
+            }
+            final Scratch scratch = plan.scratch.get();
+            dest[0] = evaluate(point, scratch);
+            return dest;
+        }
+
+        /**
+         * Retourne les valeurs aux coordonnées spécifiées. Les dates sont ignorées, puisque
+         * les images sources ont été obtenues pour une date fixée à la construction.
+         */
+        public double[] evaluate(final double[] x, final double[] y, final long[] t, double[] dest) {
+            final int n = checkLength(x, y, t);
+            if (dest == null) {
+                dest = new double[n];
+            }
+            final Scratch scratch = plan.scratch.get();
+            final Point2D point = scratch.coord;
+            for (int i=0; i<n; i++) {
+                point.setLocation(x[i], y[i]);
+                dest[i] = evaluate(point, scratch);
+            }
+            return dest;
+        }
+
+        /**
+         * Calcule la combinaison linéaire au point spécifié. Les tableaux de travail
+         * sont ceux du thread courant.
+         */
+        private double evaluate(final Point2D point, final Scratch scratch) {
+            if (plan.coefficients == null) {
+                return evaluate(0, point, scratch);
+            }
+            double value = 0;
+            int d = 0;
+            for (int t=0; t<plan.coefficients.length; t++) {
+                double termValue = plan.coefficients[t];
+                for (final int end=plan.termEnd[t]; d<end; d++) {
+                    termValue *= plan.descriptors[d].normalize(evaluate(d, point, scratch));
+                }
+                value += termValue;
+            }
+            return value;
+        }
+
+        /**
+         * Retourne la valeur du descripteur <code>d</code> au point spécifié, en examinant
+         * les séries "de secours" si la série principale n'a pas de valeur à ce point.
+         */
+        private double evaluate(final int d, final Point2D point, final Scratch scratch) {
+            final GridCoverage[] coverages = sources[d];
+            for (int i=0; i<coverages.length; i++) {
+                if (coverages[i] != null && areas[d][i].contains(point)) {
+                    scratch.buffer = coverages[i].evaluate(point, scratch.buffer);
+                    final double value = scratch.buffer[plan.bands[d]];
+                    if (!Double.isNaN(value)) {
+                        return value;
+                    }
+                }
+            }
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * L'image calculée par {@link RasterModel}. Les images sources ont toutes été
+     * rééchantillonnées sur la grille de cette image, de sorte que chaque pixel de sortie
+     * se calcule à partir des pixels de mêmes coordonnées dans les sources. Les tuiles sont
+     * calculées ligne par ligne dans des tableaux alloués une seule fois par tuile.
+     *
+     * @version $Id$
+     * @author Martin Desruisseaux
+     */
+    private static final class RasterModelImage extends SourcelessOpImage {
+        /**
+         * Le plan d'évaluation du modèle linéaire.
+         */
+        private final Plan plan;
+
+        /**
+         * Pour chaque descripteur du plan, les images rééchantillonnées de la série principale
+         * et des séries "de secours". Un élément est nul si la série n'a pas de données.
+         */
+        private final RenderedImage[][] sources;
+
+        /**
+         * Pour chaque image de {@link #sources}, les pixels couverts par cette image.
+         */
+        private final Rectangle[][] bounds;
+
+        /**
+         * Construit une image. Utilisez plutôt {@link #create}.
+         */
+        private RasterModelImage(final ImageLayout layout, final SampleModel sampleModel,
+                                 final int width, final int height, final Plan plan,
+                                 final RenderedImage[][] sources, final Rectangle[][] bounds)
+        {
+            super(layout, null, sampleModel, 0, 0, width, height);
+            this.plan    = plan;
+            this.sources = sources;
+            this.bounds  = bounds;
+        }
+
+        /**
+         * Construit une image de la taille spécifiée pour les images sources spécifiées.
+         */
+        static RasterModelImage create(final Plan plan, final RenderedImage[][] sources,
+                                       final Rectangle[][] bounds, final int width, final int height,
+                                       final SampleDimension[] bands)
+        {
+            final Dimension tileSize = JAI.getDefaultTileSize();
+            final int tileWidth  = (tileSize!=null) ? Math.min(tileSize.width,  width)  : width;
+            final int tileHeight = (tileSize!=null) ? Math.min(tileSize.height, height) : height;
+            final SampleModel sampleModel = new BandedSampleModel(DataBuffer.TYPE_FLOAT,
+                                                tileWidth, tileHeight, 1);
+            final ImageLayout layout = new ImageLayout(0, 0, width, height, 0, 0,
+                                                       tileWidth, tileHeight, sampleModel, null);
+            layout.setColorModel((bands.length != 0) ? bands[0].getColorModel(0, 1)
+                                 : PlanarImage.createColorModel(sampleModel));
+            return new RasterModelImage(layout, sampleModel, width, height, plan, sources, bounds);
+        }
+
+        /**
+         * Calcule les pixels de la région spécifiée. La région utile de chaque image source
+         * est extraite une seule fois, puis chaque ligne est calculée en lisant d'abord la
+         * ligne de chaque descripteur (en complétant les valeurs manquantes de la série
+         * principale par celles des séries "de secours"), puis en faisant la combinaison
+         * linéaire pixel par pixel.
+         *
+         * @param ignored  Ignoré (les sources sont conservées par cette image).
+         * @param dest     La tuile dans laquelle écrire les pixels.
+         * @param destRect La région à calculer, en coordonnées de l'image.
+         */
+        protected void computeRect(final PlanarImage[] ignored,
+                                   final WritableRaster dest,
+                                   final Rectangle destRect)
+        {
+            final int width = destRect.width;
+            final int xmin  = destRect.x;
+            final int ymin  = destRect.y;
+            final int ymax  = ymin + destRect.height;
+            final Raster[][] rasters = new Raster[sources.length][];
+            for (int d=0; d<sources.length; d++) {
+                rasters[d] = new Raster[sources[d].length];
+                for (int i=0; i<sources[d].length; i++) {
+                    if (sources[d][i] != null) {
+                        final Rectangle region = bounds[d][i].intersection(destRect);
+                        if (!region.isEmpty()) {
+                            rasters[d][i] = sources[d][i].getData(region);
+                        }
+                    }
+                }
+            }
+            final double[][] values = new double[sources.length][width];
+            final double[]   row    = new double[width];
+            final double[]   result = new double[width];
+            for (int y=ymin; y<ymax; y++) {
+                for (int d=0; d<rasters.length; d++) {
+                    final double[] component = values[d];
+                    Arrays.fill(component, Double.NaN);
+                    for (final Raster raster : rasters[d]) {
+                        if (raster == null || y < raster.getMinY() || y >= raster.getMinY() + raster.getHeight()) {
+                            continue;
+                        }
+                        final int x0 = raster.getMinX();
+                        final int w  = raster.getWidth();
+                        raster.getSamples(x0, y, w, 1, plan.bands[d], row);
+                        for (int i=0, x=x0-xmin; i<w; i++, x++) {
+                            if (Double.isNaN(component[x])) {
+                                component[x] = row[i];
+                            }
+                        }
+                    }
+                }
+                if (plan.coefficients == null) {
+                    System.arraycopy(values[0], 0, result, 0, width);
+                } else {
+                    for (int x=0; x<width; x++) {
+                        double value = 0;
+                        int d = 0;
+                        for (int t=0; t<plan.coefficients.length; t++) {
+                            double termValue = plan.coefficients[t];
+                            for (final int end=plan.termEnd[t]; d<end; d++) {
+                                termValue *= plan.descriptors[d].normalize(values[d][x]);
+                            }
+                            value += termValue;
+                        }
+                        result[x] = value;
+                    }
+                }
+                dest.setSamples(xmin, y, width, 1, 0, result);
+            }
+        }
+    }
+
     /**
      * La base de données d'images, ou <code>null</code> si <code>ParameterCoverage3D</code>
      * n'a pas construit lui-même cette base. Cette référence est conservée uniquement afin
@@ -251,16 +804,25 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
     private Map<SeriesKey,Coverage3D> coverages = EMPTY_MAP;
 
     /**
-     * Nombre maximal de bandes dans les objets {@link Coverage3D}.
-     * Ce nombre sera calculé à chaque appel de {@link #setParameter}.
+     * Le modèle linéaire compilé, ou <code>null</code> si aucun paramètre n'a été spécifié.
+     * Ce plan sera construit à chaque appel de {@link #setParameter}. Il est lu sans
+     * synchronisation par les méthodes <code>evaluate</code>.
      */
-    private int maxNumBands;
+    private volatile Plan plan;
 
     /**
      * Une description de l'unique bande produite en sortie par cet objet.
      */
     private SampleDimension sampleDimension;
 
+    /**
+     * <code>true</code> si {@link #getGridCoverage2D getGridCoverage2D} doit appliquer le
+     * modèle linéaire directement sur les images des descripteurs plutôt que point par point.
+     *
+     * @see #setRasterMode
+     */
+    private volatile boolean rasterMode;
+
     /**
      * L'envelope de cette couverture. Ne sera calculée que la première fois où elle
      * sera demandée.
@@ -470,7 +1032,7 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
         linearModel     = null;
         envelope        = null;
         sampleDimension = null;
-        maxNumBands     = 0;
+        plan            = null;
         if (parameter == null) {
             return;
         }
@@ -516,10 +1078,6 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
          */
         for (int i=0; i<sources.length; i++) {
             final ParameterEntry source = sources[i];
-            final int band = source.getBand(); // Les numéros commencent à 1.
-            if (band > maxNumBands) {
-                maxNumBands = band;
-            }
             if (source.isIdentity()) {
                 continue;
             }
@@ -596,6 +1154,91 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
          * 'evaluate', qui n'est que partiellement synchronisée sur 'this' afin de permettre des
          * accès multi-thread aux données.
          */
+        plan = compile(target, linearModel, coverages);
+    }
+
+    /**
+     * Construit le plan d'évaluation du paramètre spécifié. Toutes les couvertures
+     * nécessaires doivent déjà être présentes dans le dictionnaire <code>coverages</code>.
+     *
+     * @param  target      Le paramètre à produire.
+     * @param  linearModel Les termes du modèle linéaire, ou <code>null</code> s'il n'y en a pas.
+     * @param  coverages   Les couvertures de chaque série.
+     * @return Le plan d'évaluation.
+     */
+    static Plan compile(final ParameterEntry            target,
+                        final LinearModelTerm[]         linearModel,
+                        final Map<SeriesKey,Coverage3D> coverages)
+    {
+        if (linearModel == null) {
+            return new Plan(null, new int[] {1}, new DescriptorEntry[1], new RelativePositionEntry[1],
+                            new int[] {target.getBand()-1},
+                            new Coverage3D[][] {getCoverages(target, null, null, coverages)});
+        }
+        /*
+         * Les descripteurs qui sont l'identité (la constante d'un terme comme "C", ou le
+         * terme constant du modèle) n'ont pas de couverture et valent 1: ils sont omis,
+         * et le terme se réduit à son coefficient multiplié par les autres descripteurs.
+         */
+        int n = 0;
+        for (final LinearModelTerm term : linearModel) {
+            for (final DescriptorEntry descriptor : term.getDescriptors()) {
+                if (!descriptor.getParameter().isIdentity()) {
+                    n++;
+                }
+            }
+        }
+        final double[]                coefficients = new double[linearModel.length];
+        final int[]                   termEnd      = new int   [linearModel.length];
+        final DescriptorEntry[]       descriptors  = new DescriptorEntry[n];
+        final RelativePositionEntry[] positions    = new RelativePositionEntry[n];
+        final int[]                   bands        = new int[n];
+        final Coverage3D[][]          series       = new Coverage3D[n][];
+        n = 0;
+        for (int i=0; i<linearModel.length; i++) {
+            final LinearModelTerm term = linearModel[i];
+            coefficients[i] = term.getCoefficient();
+            for (final DescriptorEntry descriptor : term.getDescriptors()) {
+                final ParameterEntry source = descriptor.getParameter();
+                if (source.isIdentity()) {
+                    continue;
+                }
+                final RelativePositionEntry position = descriptor.getRelativePosition();
+                descriptors[n] = descriptor;
+                positions  [n] = position;
+                bands      [n] = source.getBand()-1;
+                series     [n] = getCoverages(source, descriptor.getOperation(), position, coverages);
+                n++;
+            }
+            termEnd[i] = n;
+        }
+        assert n == descriptors.length : n;
+        return new Plan(coefficients, termEnd, descriptors, positions, bands, series);
+    }
+
+    /**
+     * Remplace le plan d'évaluation. Cette méthode est réservée aux tests, qui construisent
+     * un plan par {@link #compile} à partir de couvertures en mémoire, sans base de données.
+     */
+    final void setPlan(final Plan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * Retourne les couvertures de toutes les séries du paramètre spécifié, dans l'ordre
+     * de {@link ParameterEntry#getSeries}.
+     */
+    private static Coverage3D[] getCoverages(final ParameterEntry            source,
+                                             final OperationEntry            operation,
+                                             final RelativePositionEntry     position,
+                                             final Map<SeriesKey,Coverage3D> coverages)
+    {
+        final List<Coverage3D> list = new ArrayList<Coverage3D>();
+        SeriesEntry series;
+        for (int seriesIndex=0; (series=source.getSeries(seriesIndex))!=null; seriesIndex++) {
+            list.add(coverages.get(new SeriesKey(series, operation, position)));
+        }
+        return list.toArray(new Coverage3D[list.size()]);
     }
 
     /**
@@ -606,6 +1249,160 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
         return target;
     }
 
+    /**
+     * Indique si {@link #getGridCoverage2D getGridCoverage2D} applique le modèle linéaire
+     * directement sur les images des descripteurs.
+     *
+     * @see #setRasterMode
+     */
+    public boolean isRasterMode() {
+        return rasterMode;
+    }
+
+    /**
+     * Spécifie si {@link #getGridCoverage2D getGridCoverage2D} doit appliquer le modèle
+     * linéaire directement sur les images des descripteurs. Dans ce mode, l'image de chaque
+     * série à la date demandée (décalée selon la position relative de chaque descripteur)
+     * n'est obtenue qu'une seule fois, puis la normalisation et la combinaison linéaire sont
+     * calculées tuile par tuile en un seul passage, à la résolution de l'image la plus fine.
+     * Ce mode est beaucoup plus rapide que l'évaluation point par point, mais ne s'applique
+     * que si toutes les sources sont des {@link GridCoverage3D} et qu'aucune position relative
+     * ne déplace les coordonnées spatiales. Dans le cas contraire, les images sont calculées
+     * point par point comme si ce mode n'était pas activé.
+     *
+     * @param enabled <code>true</code> pour activer le mode image.
+     */
+    public void setRasterMode(final boolean enabled) {
+        rasterMode = enabled;
+    }
+
+    /**
+     * Retourne une image du paramètre à la date spécifiée. Si le {@linkplain #setRasterMode
+     * mode image} est activé et applicable, alors le modèle linéaire est appliqué directement
+     * sur les images des descripteurs. Sinon, l'image est calculée point par point.
+     *
+     * @param  time La date de l'image.
+     * @param  progress Objet à informer des progrès du calcul, ou <code>null</code>.
+     * @return L'image du paramètre à la date spécifiée.
+     * @throws CannotEvaluateException si le calcul a échoué.
+     */
+    public GridCoverage getGridCoverage2D(final Date time, final ProgressListener progress)
+            throws CannotEvaluateException
+    {
+        if (rasterMode) {
+            return getGridCoverage2D(time, prefetch(time), progress);
+        }
+        return super.getGridCoverage2D(time, progress);
+    }
+
+    /**
+     * Retourne une image du paramètre à la date spécifiée à partir d'images sources lues à
+     * l'avance par {@link #prefetch}. Si le {@linkplain #setRasterMode mode image} n'est pas
+     * activé ou pas applicable, l'image est calculée point par point (les images sources
+     * lues à l'avance pourront néanmoins se trouver dans la cache).
+     *
+     * @param  time La date de l'image.
+     * @param  sources Les images sources obtenues par <code>prefetch(time)</code>.
+     * @param  progress Objet à informer des progrès du calcul, ou <code>null</code>.
+     * @return L'image du paramètre à la date spécifiée.
+     * @throws CannotEvaluateException si le calcul a échoué.
+     */
+    final GridCoverage getGridCoverage2D(final Date time, final Sources sources,
+                                         final ProgressListener progress)
+            throws CannotEvaluateException
+    {
+        if (rasterMode && sources.images != null && sources.plan == plan) {
+            return new RasterModel(this, sources.plan, sources.images).getGridCoverage2D(time, progress);
+        }
+        return super.getGridCoverage2D(time, progress);
+    }
+
+    /**
+     * Lit les images de chaque descripteur nécessaires au calcul de l'image à la date spécifiée.
+     * Cette méthode utilise les couvertures du plan courant; elle ne doit donc pas être appelée
+     * dans un autre thread pendant un calcul (utiliser plutôt {@link #prefetch(Prefetcher,Date)}).
+     * Les images lues se trouveront dans la cache des images, même si le mode image n'est pas
+     * applicable.
+     *
+     * @param  time La date de l'image à produire.
+     * @return Les images de chaque série de chaque descripteur.
+     * @throws CannotEvaluateException si la lecture d'une image a échoué.
+     */
+    final Sources prefetch(final Date time) throws CannotEvaluateException {
+        final Plan plan = this.plan;
+        return prefetch(plan, (plan != null) ? plan.coverages : null, time);
+    }
+
+    /**
+     * Retourne un objet permettant à un autre thread de lire les images à l'avance avec
+     * {@link #prefetch(Prefetcher,Date)} sans déplacer les images qui encadrent la date
+     * en cours de calcul. L'objet retourné correspond au paramètre courant; il devient
+     * inutile (les images lues ne sont plus utilisées en mode image) après un appel à
+     * {@link #setParameter}.
+     */
+    final Prefetcher createPrefetcher() {
+        return new Prefetcher(plan);
+    }
+
+    /**
+     * Lit les images de chaque descripteur nécessaires au calcul de l'image à la date spécifiée,
+     * en utilisant les copies des couvertures propres au thread de lecture. Cette méthode est
+     * destinée à être appelée dans un autre thread pendant le calcul de l'image d'une date
+     * précédente.
+     *
+     * @param  prefetcher L'objet obtenu par {@link #createPrefetcher}.
+     * @param  time La date de l'image à produire.
+     * @return Les images de chaque série de chaque descripteur.
+     * @throws CannotEvaluateException si la lecture d'une image a échoué.
+     */
+    final Sources prefetch(final Prefetcher prefetcher, final Date time) throws CannotEvaluateException {
+        return prefetch(prefetcher.plan, prefetcher.coverages, time);
+    }
+
+    /**
+     * Lit les images du plan spécifié à partir des couvertures spécifiées, qui peuvent
+     * être celles du plan ou des copies.
+     */
+    private Sources prefetch(final Plan plan, final Coverage3D[][] sources, final Date time)
+            throws CannotEvaluateException
+    {
+        if (plan == null) {
+            return new Sources(null, null);
+        }
+        final Rectangle2D area  = getEnvelope().getReducedEnvelope(temporalDimension,
+                                                                   temporalDimension+1).toRectangle2D();
+        final Point2D    center = new Point2D.Double(area.getCenterX(), area.getCenterY());
+        final Point2D    coord1 = new Point2D.Double();
+        final Date        time1 = new Date(0);
+        final GridCoverage[][] images = new GridCoverage[plan.coverages.length][];
+        boolean applicable = true;
+        for (int d=0; d<images.length; d++) {
+            coord1.setLocation(center);
+            time1.setTime(time.getTime());
+            final RelativePositionEntry position = plan.positions[d];
+            if (position != null) {
+                position.applyOffset(coord1, time1);
+                if (!coord1.equals(center)) {
+                    applicable = false;
+                }
+            }
+            final Coverage3D[] coverages = sources[d];
+            images[d] = new GridCoverage[coverages.length];
+            for (int i=0; i<coverages.length; i++) {
+                if (!(coverages[i] instanceof GridCoverage3D)) {
+                    applicable = false;
+                    continue;
+                }
+                try {
+                    images[d][i] = coverages[i].getGridCoverage2D(time1);
+                } catch (PointOutsideCoverageException exception) {
+                    // Pas de données à cette date: laisse l'élément à null.
+                }
+            }
+        }
+        return new Sources(plan, applicable ? images : null);
+    }
+
     /**
      * Retourne une envelope englobant les coordonnées spatio-temporelles des données.
      * Cette envelope sera l'intersection des envelopes de toutes les descripteurs du
@@ -764,74 +1561,56 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
             assert sample.getCoordinate().equals(coordinate) : coordinate;
             assert sample.getTime()      .equals(time)       : time;
         }
-        final SeriesKey key = new SeriesKey();
-        final LinearModelTerm[] linearModel;
-        final Map<SeriesKey,Coverage3D> coverages;
-        double[] buffer;
-        synchronized (this) {
-            buffer      = new double[maxNumBands];
-            linearModel = this.linearModel;
-            coverages   = this.coverages;
-            if (linearModel == null) {
-                if (target == null) {
-                    return Double.NaN;
+        final Plan plan = this.plan;
+        if (plan == null) {
+            return Double.NaN;
+        }
+        final Scratch scratch = plan.scratch.get();
+        double[] buffer = scratch.buffer;
+        if (plan.coefficients == null) {
+            final int band = plan.bands[0];
+            double value = Double.NaN;
+            for (final Coverage3D coverage : plan.coverages[0]) {
+                if (sample!=null && coverage instanceof fr.ird.database.sample.Coverage3D) {
+                    buffer = ((fr.ird.database.sample.Coverage3D)coverage)
+                             .evaluate(sample, null, buffer);
+                } else {
+                    buffer = coverage.evaluate(coordinate, time, buffer);
+                }
+                value = buffer[band];
+                if (!Double.isNaN(value)) {
+                    break;
                 }
-                final int band = target.getBand()-1;
-                int seriesIndex = 0;
-                do {
-                    key.series = target.getSeries(seriesIndex++);
-                    if (key.series == null) {
-                        break;
-                    }
-                    final Coverage3D coverage = coverages.get(key);
-                    if (sample!=null && coverage instanceof fr.ird.database.sample.Coverage3D) {
-                        buffer = ((fr.ird.database.sample.Coverage3D)coverage)
-                                 .evaluate(sample, null, buffer);
-                    } else {
-                        buffer = coverage.evaluate(coordinate, time, buffer);
-                    }
-                } while (Double.isNaN(buffer[band]));
-                return buffer[band];
             }
+            scratch.buffer = buffer;
+            return value;
         }
         /*
-         * Effectue la combinaison des paramètres. Le code qui suit n'a pas besoin d'être
-         * synchronisé, puisque les seules références utilisées ('linearModel','coverages'
-         * et 'maxNumBands') ont été copiées dans le bloc synchronisé précédent. Par design,
-         * les instances référés ne sont jamais modifiés après leur création par 'setParameters'.
+         * Effectue la combinaison des paramètres. Le plan est imutable et les objets de
+         * travail sont propres au thread courant, de sorte que le code qui suit n'a pas
+         * besoin d'être synchronisé.
          */
         double  value  = 0;                          // La valeur à retourner.
         boolean inside = false;                      // Vrai si au moins un paramètre a une valeur.
         PointOutsideCoverageException outside=null;  // La première exception obtenue.
-        final Point2D coord1 = new Point2D.Double(); // La coordonnée spatiale décalée.
-        final Date     time1 = new Date(0);          // La coordonnée temporelle décalée.
-        for (final LinearModelTerm term : linearModel) {
-            double termValue = term.getCoefficient();
-            for (final DescriptorEntry descriptor : term.getDescriptors()) {
-                final ParameterEntry source = descriptor.getParameter();
-                if (source.isIdentity()) {
-                    continue;
-                }
-                final RelativePositionEntry relativePosition;
-                relativePosition = descriptor.getRelativePosition();
-                key.operation    = descriptor.getOperation();
-                key.timeOffset   = relativePosition.getTypicalTimeOffset();
+        final Point2D coord1 = scratch.coord;        // La coordonnée spatiale décalée.
+        final Date     time1 = scratch.time;         // La coordonnée temporelle décalée.
+        int d = 0;
+        for (int t=0; t<plan.coefficients.length; t++) {
+            double termValue = plan.coefficients[t];
+            for (final int end=plan.termEnd[t]; d<end; d++) {
+                final RelativePositionEntry relativePosition = plan.positions[d];
                 coord1.setLocation(coordinate);
                 time1.setTime(time.getTime());
                 relativePosition.applyOffset(coord1, time1);
-                final int band = source.getBand()-1;
-                int seriesIndex = 0;
-                do {
-                    /*
-                     * Obtient la couverture spatio-temporelle GridCoverage3D correspondant à la
-                     * série principale de la composante courante.  Si aucune valeur n'est trouvée
-                     * pour cette série, alors seulement on examinera les séries "de secours".
-                     */
-                    key.series = source.getSeries(seriesIndex++);
-                    if (key.series == null) {
-                        break;
-                    }
-                    final Coverage3D coverage = coverages.get(key);
+                final int band = plan.bands[d];
+                double component = Double.NaN;
+                /*
+                 * Examine la série principale de la composante courante. Si aucune valeur
+                 * n'est trouvée pour cette série, alors seulement on examinera les séries
+                 * "de secours".
+                 */
+                for (final Coverage3D coverage : plan.coverages[d]) {
                     try {
                         if (sample!=null && coverage instanceof fr.ird.database.sample.Coverage3D) {
                             buffer = ((fr.ird.database.sample.Coverage3D)coverage)
@@ -840,17 +1619,21 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
                             buffer = coverage.evaluate(coord1, time1, buffer);
                         }
                         inside = true;
+                        component = buffer[band];
                     } catch (PointOutsideCoverageException exception) {
                         if (outside == null) {
                             outside = exception;
                         }
-                        Arrays.fill(buffer, Double.NaN);
                     }
-                } while (Double.isNaN(buffer[band]));
-                termValue *= descriptor.normalize(buffer[band]);
+                    if (!Double.isNaN(component)) {
+                        break;
+                    }
+                }
+                termValue *= plan.descriptors[d].normalize(component);
             }
             value += termValue;
         }
+        scratch.buffer = buffer;
         /*
          * Calcul terminer. Lance une exception si la coordonnée spécifiée tombait en dehors
          * de la couverture de *toutes* les séries. Autrement, les séries pour lesquelles le
@@ -953,6 +1736,139 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
         return dest;
     }
 
+    /**
+     * Retourne les valeurs aux coordonnées spatio-temporelles spécifiées. Le résultat est le
+     * même que celui de {@link #evaluate(Point2D,Date)} pour chaque point, excepté que les
+     * points en dehors de la couverture reçoivent la valeur {@link Double#NaN NaN}. Pour
+     * chaque descripteur du modèle linéaire, les coordonnées de tous les points sont décalées
+     * puis évaluées en un seul appel sur la couverture de la série, ce qui permet à cette
+     * dernière de ne parcourir ses images qu'une seule fois.
+     *
+     * Cette méthode peut être appelée simultanément par plusieurs threads.
+     *
+     * @param  x    Les coordonnées <var>x</var> des points à évaluer.
+     * @param  y    Les coordonnées <var>y</var> des points à évaluer.
+     * @param  t    Les dates des points à évaluer, en millisecondes depuis le 1er janvier 1970 UTC.
+     * @param  dest Tableau de destination, ou <code>null</code>.
+     * @return Les valeurs aux points spécifiés.
+     * @throws CannotEvaluateException si l'évaluation a échouée.
+     */
+    public double[] evaluate(final double[] x, final double[] y, final long[] t, double[] dest)
+            throws CannotEvaluateException
+    {
+        final int n = checkLength(x, y, t);
+        if (dest == null) {
+            dest = new double[n];
+        }
+        final Plan plan = this.plan;
+        if (plan == null || plan.coefficients == null) {
+            Arrays.fill(dest, 0, n, Double.NaN);
+            if (plan != null) {
+                evaluate(plan.coverages[0], plan.bands[0], x, y, t, dest);
+            }
+            return dest;
+        }
+        /*
+         * Effectue la combinaison des paramètres, de la même façon que la méthode
+         * 'evaluate(SampleEntry, Point2D, Date)' mais pour tous les points à la fois.
+         */
+        Arrays.fill(dest, 0, n, 0);
+        final double[] termValues = new double[n];
+        final double[] values     = new double[n];
+        final double[] x1         = new double[n];
+        final double[] y1         = new double[n];
+        final long[]   t1         = new long  [n];
+        final Point2D  coord1     = new Point2D.Double();
+        final Date     time1      = new Date(0);
+        int d = 0;
+        for (int k=0; k<plan.coefficients.length; k++) {
+            Arrays.fill(termValues, plan.coefficients[k]);
+            for (final int end=plan.termEnd[k]; d<end; d++) {
+                final RelativePositionEntry relativePosition = plan.positions[d];
+                for (int i=0; i<n; i++) {
+                    coord1.setLocation(x[i], y[i]);
+                    time1.setTime(t[i]);
+                    relativePosition.applyOffset(coord1, time1);
+                    x1[i] = coord1.getX();
+                    y1[i] = coord1.getY();
+                    t1[i] = time1.getTime();
+                }
+                Arrays.fill(values, Double.NaN);
+                evaluate(plan.coverages[d], plan.bands[d], x1, y1, t1, values);
+                final DescriptorEntry descriptor = plan.descriptors[d];
+                for (int i=0; i<n; i++) {
+                    termValues[i] *= descriptor.normalize(values[i]);
+                }
+            }
+            for (int i=0; i<n; i++) {
+                dest[i] += termValues[i];
+            }
+        }
+        return dest;
+    }
+
+    /**
+     * Évalue une composante pour tous les points dont la valeur est encore manquante.
+     * La série principale est examinée en premier; les séries "de secours" ne le sont
+     * que pour les points qui n'ont toujours pas de valeur.
+     *
+     * @param coverages Les couvertures de la série principale et des séries "de secours".
+     * @param band      L'index (à partir de 0) de la bande à évaluer.
+     * @param x         Les coordonnées <var>x</var> des points à évaluer.
+     * @param y         Les coordonnées <var>y</var> des points à évaluer.
+     * @param t         Les dates des points à évaluer.
+     * @param values    Les valeurs des points. Seules les valeurs NaN seront calculées.
+     */
+    private static void evaluate(final Coverage3D[] coverages, final int band,
+                                 final double[] x, final double[] y, final long[] t,
+                                 final double[] values)
+            throws CannotEvaluateException
+    {
+        int[]    index  = null;
+        double[] subX   = x;
+        double[] subY   = y;
+        long[]   subT   = t;
+        double[] buffer = null;
+        for (int seriesIndex=0; seriesIndex<coverages.length; seriesIndex++) {
+            /*
+             * Ne conserve que les points dont la valeur est encore manquante. A la
+             * première itération, tous les points sont évalués sans copie.
+             */
+            if (seriesIndex != 0) {
+                int count = 0;
+                for (int i=0; i<values.length; i++) {
+                    if (Double.isNaN(values[i])) {
+                        count++;
+                    }
+                }
+                if (count == 0) {
+                    break;
+                }
+                index = new int   [count];
+                subX  = new double[count];
+                subY  = new double[count];
+                subT  = new long  [count];
+                count = 0;
+                for (int i=0; i<values.length; i++) {
+                    if (Double.isNaN(values[i])) {
+                        index[count] = i;
+                        subX [count] = x[i];
+                        subY [count] = y[i];
+                        subT [count] = t[i];
+                        count++;
+                    }
+                }
+            }
+            final Coverage3D coverage = coverages[seriesIndex];
+            final int numBands = coverage.getNumSampleDimensions();
+            buffer = coverage.evaluate(subX, subY, subT,
+                     (buffer!=null && buffer.length>=subT.length*numBands) ? buffer : null);
+            for (int j=0; j<subT.length; j++) {
+                values[(index != null) ? index[j] : j] = buffer[j*numBands + band];
+            }
+        }
+    }
+
     /**
      * Libère toutes les ressources utilisées par cet objet. Cette méthode devrait être appelée
      * lorsque l'on sait que cet objet <code>ParameterCoverage3D</code> ne sera plus utilisé.
@@ -999,6 +1915,8 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
      *        ParameterCoverage3D} à utiliser pour générer les images de potentiel. Si cet
      *        argument est omis, alors <code>fr.ird.database.sample.ParameterCoverage3D</code>
      *        est utilisé directement.</li>
+     *   <li><code>-raster</code> applique le modèle linéaire directement sur les images des
+     *       descripteurs plutôt que point par point (voir {@link #setRasterMode}).</li>
      * </ul>
      *
      * @param  args Les paramètres transmis sur la ligne de commande.
@@ -1029,6 +1947,7 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
         final Date           date = format.parse(arguments.getRequiredString("-date"));
         final String     filename = arguments.getOptionalString("-file");
         final String    generator = arguments.getOptionalString("-generator");
+        final boolean      raster = arguments.getFlag("-raster");
         arguments.getRemainingArguments(0);
         /*
          * Procède à la création de l'image, à son enregistrement puis à son affichage.
@@ -1045,6 +1964,7 @@ public class ParameterCoverage3D extends Coverage3D implements fr.ird.database.s
         }
         try {
             coverage3D.setParameter(parameter);
+            coverage3D.setRasterMode(raster);
             coverage3D.setOutputRange(new NumberRange(1*scale+offset, 255*scale+offset));
             coverage = coverage3D.getGridCoverage2D(date);
             if (filename != null) {
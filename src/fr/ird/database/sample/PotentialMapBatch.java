@@ -0,0 +1,394 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE dependencies
+import java.io.File;
+import java.io.Writer;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+
+// JAI dependencies
+import javax.media.jai.JAI;
+
+// Geotools dependencies
+import org.geotools.gc.GridCoverage;
+import org.geotools.util.NumberRange;
+import org.geotools.util.MonolineFormatter;
+import org.geotools.resources.Arguments;
+
+// Seagis dependencies
+import fr.ird.database.Coverage3D;
+
+
+/**
+ * Produit les cartes de potentiel d'un paramètre pour une série de dates. Une seule instance
+ * de {@link ParameterCoverage3D} est utilisée pour toutes les dates. Le travail est organisé
+ * en trois étapes qui se chevauchent: pendant que la carte d'une date est calculée, les images
+ * sources de la date suivante sont lues dans un autre thread, et les cartes des dates précédentes
+ * sont encodées et enregistrées dans un troisième thread. Le nombre de cartes en attente
+ * d'enregistrement est limité par {@link #setQueueCapacity}, ce qui borne la mémoire utilisée.
+ * <br><br>
+ * Chaque carte est enregistrée dans le répertoire de destination sous le nom
+ * <code><var>paramètre</var>_<var>aaaammjj</var>.png</code>. Un fichier
+ * <code>manifest.txt</code> énumère, pour chaque date, le fichier produit ou l'erreur survenue.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see ParameterCoverage3D#main
+ */
+public final class PotentialMapBatch {
+    /**
+     * Le nom du fichier qui énumère les cartes produites.
+     */
+    public static final String MANIFEST = "manifest.txt";
+
+    /**
+     * La couverture qui calcule les cartes.
+     */
+    private final ParameterCoverage3D coverage;
+
+    /**
+     * Le répertoire dans lequel enregistrer les cartes.
+     */
+    private final File directory;
+
+    /**
+     * Le préfixe des noms de fichiers.
+     */
+    private final String prefix;
+
+    /**
+     * Le format des dates dans les noms de fichiers.
+     */
+    private final DateFormat filenameFormat = new SimpleDateFormat("yyyyMMdd");
+
+    /**
+     * Le format des dates dans le manifeste.
+     */
+    private final DateFormat manifestFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+
+    /**
+     * Nombre maximal de cartes calculées en attente d'enregistrement.
+     */
+    private int queueCapacity = 2;
+
+    /**
+     * Construit un générateur de cartes.
+     *
+     * @param coverage  La couverture qui calcule les cartes. Le paramètre à produire doit
+     *                  déjà avoir été spécifié par {@link ParameterCoverage3D#setParameter}.
+     * @param directory Le répertoire dans lequel enregistrer les cartes et le manifeste.
+     */
+    public PotentialMapBatch(final ParameterCoverage3D coverage, final File directory) {
+        this.coverage  = coverage;
+        this.directory = directory;
+        final ParameterEntry parameter = coverage.getParameter();
+        prefix = (parameter != null) ? parameter.getName() : "potential";
+        final TimeZone UTC = TimeZone.getTimeZone("UTC");
+        filenameFormat.setTimeZone(UTC);
+        manifestFormat.setTimeZone(UTC);
+    }
+
+    /**
+     * Retourne le nombre maximal de cartes calculées en attente d'enregistrement.
+     */
+    public synchronized int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Spécifie le nombre maximal de cartes calculées en attente d'enregistrement. Lorsque
+     * ce nombre est atteint, le calcul de la carte suivante attend que l'enregistrement de
+     * la plus ancienne soit terminé. Une valeur plus élevée peut améliorer le débit si
+     * l'enregistrement est parfois lent, au prix d'une plus grande consommation de mémoire.
+     *
+     * @param capacity Le nombre maximal de cartes en attente (au moins 1).
+     */
+    public synchronized void setQueueCapacity(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.valueOf(capacity));
+        }
+        queueCapacity = capacity;
+    }
+
+    /**
+     * Retourne le fichier dans lequel enregistrer la carte de la date spécifiée.
+     */
+    private File getFile(final Date date) {
+        return new File(directory, prefix + '_' + filenameFormat.format(date) + ".png");
+    }
+
+    /**
+     * Produit les cartes de toutes les dates de <code>start</code> jusqu'à <code>end</code>
+     * inclusivement, à intervalle de <code>step</code> millisecondes. Une erreur lors du
+     * calcul ou de l'enregistrement d'une carte n'interrompt pas le traitement des autres
+     * dates; elle est journalisée et notée dans le manifeste.
+     *
+     * @param  start La date de la première carte.
+     * @param  end   La date de la dernière carte.
+     * @param  step  L'intervalle de temps entre deux cartes, en millisecondes.
+     * @return Le nombre de cartes enregistrées.
+     * @throws IOException si le manifeste n'a pas pu être écrit.
+     * @throws InterruptedException si le thread courant a été interrompu.
+     */
+    public int run(final Date start, final Date end, final long step)
+            throws IOException, InterruptedException
+    {
+        if (step <= 0) {
+            throw new IllegalArgumentException(String.valueOf(step));
+        }
+        final int capacity = getQueueCapacity();
+        final Writer manifest = new BufferedWriter(new FileWriter(new File(directory, MANIFEST)));
+        final ExecutorService reader = Executors.newSingleThreadExecutor();
+        final ExecutorService writer = Executors.newSingleThreadExecutor();
+        final LinkedList<Pending> pending = new LinkedList<Pending>();
+        /*
+         * Le thread de lecture utilise ses propres copies des couvertures, afin que la lecture
+         * de la date suivante ne déplace pas les images utilisées par le calcul en cours.
+         */
+        final ParameterCoverage3D.Prefetcher prefetcher = coverage.createPrefetcher();
+        int count = 0;
+        try {
+            Future<ParameterCoverage3D.Sources> prefetch = prefetch(reader, prefetcher, start.getTime());
+            for (long time=start.getTime(); time<=end.getTime(); time+=step) {
+                /*
+                 * Attend les images sources de la date courante, puis lance immédiatement
+                 * la lecture de celles de la date suivante pendant le calcul de la carte.
+                 */
+                final Date date = new Date(time);
+                ParameterCoverage3D.Sources sources = null;
+                Throwable failure = null;
+                try {
+                    sources = prefetch.get();
+                } catch (ExecutionException exception) {
+                    failure = exception.getCause();
+                }
+                final long next = time + step;
+                if (next <= end.getTime()) {
+                    prefetch = prefetch(reader, prefetcher, next);
+                }
+                GridCoverage map = null;
+                if (failure == null) try {
+                    map = coverage.getGridCoverage2D(date, sources, null);
+                } catch (RuntimeException exception) {
+                    failure = exception;
+                }
+                /*
+                 * Confie l'enregistrement de la carte au thread d'écriture. Si trop de cartes
+                 * sont déjà en attente, attend que la plus ancienne soit enregistrée.
+                 */
+                if (failure != null) {
+                    pending.add(new Pending(date, null, failure(date, failure)));
+                } else {
+                    pending.add(new Pending(date, write(writer, date, map), null));
+                }
+                while (pending.size() > capacity) {
+                    count += report(manifest, pending.removeFirst());
+                }
+            }
+            while (!pending.isEmpty()) {
+                count += report(manifest, pending.removeFirst());
+            }
+        } finally {
+            reader.shutdownNow();
+            writer.shutdown();
+            manifest.close();
+        }
+        return count;
+    }
+
+    /**
+     * Lance la lecture des images sources de la date spécifiée dans le thread de lecture.
+     */
+    private Future<ParameterCoverage3D.Sources> prefetch(final ExecutorService reader,
+            final ParameterCoverage3D.Prefetcher prefetcher, final long time)
+    {
+        return reader.submit(new Callable<ParameterCoverage3D.Sources>() {
+            public ParameterCoverage3D.Sources call() {
+                return coverage.prefetch(prefetcher, new Date(time));
+            }
+        });
+    }
+
+    /**
+     * Lance l'enregistrement de la carte spécifiée dans le thread d'écriture.
+     * La tâche retourne la ligne à écrire dans le manifeste.
+     */
+    private Future<String> write(final ExecutorService writer, final Date date, final GridCoverage map) {
+        return writer.submit(new Callable<String>() {
+            public String call() throws IOException {
+                final String line;
+                synchronized (manifestFormat) {
+                    line = manifestFormat.format(date);
+                }
+                if (map == null) {
+                    return line + "\t\tno data";
+                }
+                final File file = getFile(date);
+                fr.ird.resources.Utilities.save(map.geophysics(false).getRenderedImage(), file.getPath());
+                return line + '\t' + file.getName() + "\tok";
+            }
+        });
+    }
+
+    /**
+     * Attend la fin de l'enregistrement spécifié et écrit son résultat dans le manifeste.
+     *
+     * @return 1 si une carte a été enregistrée, 0 sinon.
+     */
+    private int report(final Writer manifest, final Pending pending)
+            throws IOException, InterruptedException
+    {
+        String line = pending.line;
+        int count = 0;
+        if (line == null) try {
+            line = pending.task.get();
+            if (line.endsWith("\tok")) {
+                count = 1;
+            }
+        } catch (ExecutionException exception) {
+            line = failure(pending.date, exception.getCause());
+        }
+        manifest.write(line);
+        manifest.write(System.getProperty("line.separator", "\n"));
+        manifest.flush();
+        return count;
+    }
+
+    /**
+     * Journalise l'erreur survenue pour la date spécifiée et retourne la ligne correspondante
+     * du manifeste.
+     */
+    private String failure(final Date date, final Throwable cause) {
+        final String line;
+        synchronized (manifestFormat) {
+            line = manifestFormat.format(date);
+        }
+        final LogRecord record = new LogRecord(Level.WARNING, "Echec de la carte du " + line);
+        record.setSourceClassName("PotentialMapBatch");
+        record.setSourceMethodName("run");
+        record.setThrown(cause);
+        SampleDataBase.LOGGER.log(record);
+        return line + "\t\terror: " + cause.getLocalizedMessage();
+    }
+
+    /**
+     * Une carte en attente d'enregistrement, ou dont le calcul a échoué.
+     */
+    private static final class Pending {
+        /** La date de la carte. */
+        final Date date;
+
+        /** La tâche d'enregistrement, ou <code>null</code> si le calcul a échoué. */
+        final Future<String> task;
+
+        /** La ligne du manifeste si elle est déjà connue, ou <code>null</code>. */
+        final String line;
+
+        /** Construit une carte en attente. */
+        Pending(final Date date, final Future<String> task, final String line) {
+            this.date = date;
+            this.task = task;
+            this.line = line;
+        }
+    }
+
+    /**
+     * Lance la création d'une série de cartes de potentiel de pêche à partir de la ligne de
+     * commande. Les arguments sont:
+     *
+     * <ul>
+     *   <li><code>-parameter=<var>P</var></code> où <var>P</var> est un des paramètre énuméré
+     *       dans la table "Paramètre" de la base de données des échantillons.</li>
+     *   <li><code>-start=<var>date</var></code> et <code>-end=<var>date</var></code> sont les
+     *       dates (en heure universelle) de la première et de la dernière carte.</li>
+     *   <li><code>-step=<var>jours</var></code> est l'intervalle en jours entre deux cartes
+     *       (1 par défaut).</li>
+     *   <li><code>-directory=<var>dir</var></code> est le répertoire de destination.</li>
+     *   <li><code>-raster</code> active le {@linkplain ParameterCoverage3D#setRasterMode
+     *       mode image}.</li>
+     *   <li><code>-threads=<var>n</var></code> est le nombre maximal de threads utilisés pour
+     *       calculer une carte (par défaut le nombre de processeurs).</li>
+     *   <li><code>-queue=<var>n</var></code> est le nombre maximal de cartes en attente
+     *       d'enregistrement (2 par défaut).</li>
+     *   <li><code>-locale=<var>locale</var></code> désigne les conventions locales à utiliser
+     *       pour lire les dates.</li>
+     *   <li><code>-generator=<var>classname</var></code> est le nom d'une sous-classe de
+     *       {@link ParameterCoverage3D} à utiliser pour générer les cartes.</li>
+     * </ul>
+     *
+     * @param  args Les paramètres transmis sur la ligne de commande.
+     * @throws Exception si une erreur est survenue.
+     */
+    public static void main(final String[] args) throws Exception {
+        MonolineFormatter.init("org.geotools");
+        MonolineFormatter.init("fr.ird");
+        final Arguments arguments = new Arguments(args);
+        final String    parameter = arguments.getRequiredString("-parameter");
+        final DateFormat   format = DateFormat.getDateInstance(DateFormat.SHORT, arguments.locale);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final Date          start = format.parse(arguments.getRequiredString("-start"));
+        final Date            end = format.parse(arguments.getRequiredString("-end"));
+        final Integer        step = arguments.getOptionalInteger("-step");
+        final File      directory = new File(arguments.getRequiredString("-directory"));
+        final boolean      raster = arguments.getFlag("-raster");
+        final Integer     threads = arguments.getOptionalInteger("-threads");
+        final Integer       queue = arguments.getOptionalInteger("-queue");
+        final String    generator = arguments.getOptionalString("-generator");
+        arguments.getRemainingArguments(0);
+        if (threads != null) {
+            Coverage3D.setRenderingThreads(threads.intValue());
+        }
+        JAI.getDefaultInstance().getTileCache().setMemoryCapacity(256*1024*1024);
+        final ParameterCoverage3D coverage3D;
+        if (generator != null) {
+            coverage3D = (ParameterCoverage3D) Class.forName(generator).newInstance();
+        } else {
+            coverage3D = new ParameterCoverage3D();
+        }
+        try {
+            final double offset = -2;
+            final double scale  = 1.0/64;
+            coverage3D.setParameter(parameter);
+            coverage3D.setRasterMode(raster);
+            coverage3D.setOutputRange(new NumberRange(1*scale+offset, 255*scale+offset));
+            final PotentialMapBatch batch = new PotentialMapBatch(coverage3D, directory);
+            if (queue != null) {
+                batch.setQueueCapacity(queue.intValue());
+            }
+            final long day = 24*60*60*1000L;
+            final int count = batch.run(start, end, (step != null ? step.intValue() : 1) * day);
+            arguments.out.println(count + " cartes enregistrées dans " + directory);
+        } finally {
+            coverage3D.dispose();
+        }
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE
+import java.util.Date;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.awt.geom.Point2D;
+
+// Geotools
+import org.geotools.cs.Ellipsoid;
+
+
+/**
+ * Index spatio-temporel des échantillons, permettant de trouver rapidement l'échantillon
+ * d'une autre campagne le plus proche d'un échantillon donné et pris à peu près au même
+ * moment. Le temps est découpé en intervalles de la largeur de l'écart de temps maximal,
+ * et l'espace en une grille régulière en degrés de longitude et de latitude. Chaque
+ * échantillon est classé selon la paire (intervalle de temps, cellule); tous les candidats
+ * d'un échantillon se trouvent donc dans son intervalle ou dans les deux intervalles voisins.
+ * <br><br>
+ * Comme pour {@link CoastIndex}, une recherche visite les cellules par anneaux concentriques
+ * et s'arrête dès qu'une borne inférieure de la distance des anneaux suivants dépasse la plus
+ * courte distance déjà trouvée. Chaque candidat est en plus écarté à partir de son rectangle
+ * englobant avant tout calcul de distance orthodromique. Un objet <code>SampleIndex</code> est
+ * immuable une fois construit et peut être interrogé simultanément par plusieurs threads.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see SampleTableFiller#computeInterSampleDistances
+ */
+final class SampleIndex {
+    /**
+     * Nombre moyen d'échantillons visé par cellule de la grille et par intervalle de temps.
+     */
+    private static final int SAMPLES_PER_CELL = 4;
+
+    /**
+     * Nombre maximal de cellules le long de chaque axe de la grille.
+     */
+    private static final int MAXIMUM_CELLS = 2048;
+
+    /**
+     * Ellipsoïde à utiliser pour les calculs de distances orthodromiques.
+     */
+    private final Ellipsoid ellipsoid;
+
+    /**
+     * Ecart de temps maximal entre deux échantillons, en millisecondes.
+     */
+    private final long maxTimeLag;
+
+    /**
+     * Les échantillons indexés. Les échantillons sans position ou sans date sont exclus.
+     */
+    private final SampleEntry[] samples;
+
+    /**
+     * Les campagnes des échantillons, dans le même ordre que {@link #samples}.
+     */
+    private final CruiseEntry[] cruises;
+
+    /**
+     * Les longitudes et latitudes des échantillons, en degrés.
+     */
+    private final double[] x, y;
+
+    /**
+     * Les dates des échantillons, en millisecondes.
+     */
+    private final long[] t;
+
+    /**
+     * Coordonnées du coin inférieur gauche de la grille et dimensions des cellules, en degrés.
+     */
+    private final double xmin, ymin, cellWidth, cellHeight;
+
+    /**
+     * Nombre de cellules le long des axes des <var>x</var> et des <var>y</var>.
+     */
+    private final int width, height;
+
+    /**
+     * Plus grande valeur absolue des latitudes des échantillons.
+     */
+    private final double maxAbsLatitude;
+
+    /**
+     * Date de début du premier intervalle de temps, et largeur des intervalles.
+     */
+    private final long tmin, bucketWidth;
+
+    /**
+     * Clés (intervalle de temps, cellule) des échantillons, en ordre croissant.
+     * La clé d'un échantillon est <code>bucket*width*height + cell</code>.
+     */
+    private final long[] keys;
+
+    /**
+     * Index dans {@link #samples} des échantillons, dans le même ordre que {@link #keys}.
+     */
+    private final int[] order;
+
+    /**
+     * Construit l'index des échantillons spécifiés.
+     *
+     * @param entries    Les échantillons à indexer.
+     * @param maxTimeLag Ecart de temps maximal entre deux échantillons, en millisecondes.
+     * @param ellipsoid  Ellipsoïde à utiliser pour les calculs de distances orthodromiques.
+     */
+    SampleIndex(final Collection<SampleEntry> entries, final long maxTimeLag, final Ellipsoid ellipsoid) {
+        this.ellipsoid  = ellipsoid;
+        this.maxTimeLag = maxTimeLag;
+        int count = 0;
+        final SampleEntry[] samples = new SampleEntry[entries.size()];
+        for (final SampleEntry sample : entries) {
+            if (sample.getCoordinate()!=null && sample.getTime()!=null) {
+                samples[count++] = sample;
+            }
+        }
+        this.samples = new SampleEntry[count];
+        System.arraycopy(samples, 0, this.samples, 0, count);
+        cruises = new CruiseEntry[count];
+        x = new double[count];
+        y = new double[count];
+        t = new long  [count];
+        double xmin = Double.POSITIVE_INFINITY, xmax = Double.NEGATIVE_INFINITY;
+        double ymin = Double.POSITIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+        long   tmin = Long.MAX_VALUE,           tmax = Long.MIN_VALUE;
+        for (int i=0; i<count; i++) {
+            final SampleEntry sample = samples[i];
+            final Point2D coord = sample.getCoordinate();
+            final Date    time  = sample.getTime();
+            cruises[i] = sample.getCruise();
+            x[i] = coord.getX();
+            y[i] = coord.getY();
+            t[i] = time.getTime();
+            if (x[i] < xmin) xmin = x[i];
+            if (x[i] > xmax) xmax = x[i];
+            if (y[i] < ymin) ymin = y[i];
+            if (y[i] > ymax) ymax = y[i];
+            if (t[i] < tmin) tmin = t[i];
+            if (t[i] > tmax) tmax = t[i];
+        }
+        if (count == 0) {
+            xmin = xmax = ymin = ymax = 0;
+            tmin = tmax = 0;
+        }
+        this.xmin      = xmin;
+        this.ymin      = ymin;
+        this.tmin      = tmin;
+        maxAbsLatitude = Math.max(Math.abs(ymin), Math.abs(ymax));
+        bucketWidth    = Math.max(1, maxTimeLag);
+        /*
+         * Choisit la taille des cellules de façon à obtenir environ SAMPLES_PER_CELL
+         * échantillons par cellule dans chaque intervalle de temps.
+         */
+        final long   buckets = (tmax - tmin) / bucketWidth + 1;
+        final double cells   = Math.max(1, (double) count / (SAMPLES_PER_CELL * (double) buckets));
+        final double dx      = xmax - xmin;
+        final double dy      = ymax - ymin;
+        final double area    = dx * dy;
+        final double side    = (area > 0) ? Math.sqrt(area / cells) : Math.max(dx, dy) / cells;
+        width      = cellCount(dx, side);
+        height     = cellCount(dy, side);
+        cellWidth  = (dx > 0) ? dx / width  : 1;
+        cellHeight = (dy > 0) ? dy / height : 1;
+        /*
+         * Classe les échantillons par clé (intervalle de temps, cellule).
+         */
+        final long[] sampleKeys = new long[count];
+        final Integer[] sorted  = new Integer[count];
+        for (int i=0; i<count; i++) {
+            sampleKeys[i] = key(bucket(t[i]), row(y[i])*width + column(x[i]));
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            public int compare(final Integer i1, final Integer i2) {
+                final long k1 = sampleKeys[i1];
+                final long k2 = sampleKeys[i2];
+                return (k1 < k2) ? -1 : (k1 == k2) ? 0 : +1;
+            }
+        });
+        keys  = new long[count];
+        order = new int [count];
+        for (int i=0; i<count; i++) {
+            final int index = sorted[i];
+            order[i] = index;
+            keys [i] = sampleKeys[index];
+        }
+    }
+
+    /**
+     * Retourne le nombre de cellules le long d'un axe de la longueur spécifiée.
+     */
+    private static int cellCount(final double length, final double side) {
+        if (!(length > 0) || !(side > 0)) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(MAXIMUM_CELLS, Math.ceil(length / side)));
+    }
+
+    /**
+     * Retourne la colonne de la grille qui contient la longitude spécifiée.
+     */
+    private int column(final double x) {
+        return Math.max(0, Math.min(width-1, (int) Math.floor((x - xmin) / cellWidth)));
+    }
+
+    /**
+     * Retourne la ligne de la grille qui contient la latitude spécifiée.
+     */
+    private int row(final double y) {
+        return Math.max(0, Math.min(height-1, (int) Math.floor((y - ymin) / cellHeight)));
+    }
+
+    /**
+     * Retourne l'intervalle de temps qui contient la date spécifiée.
+     */
+    private long bucket(final long time) {
+        return (time - tmin) / bucketWidth;
+    }
+
+    /**
+     * Retourne la clé de la cellule spécifiée dans l'intervalle de temps spécifié.
+     */
+    private long key(final long bucket, final int cell) {
+        return bucket * ((long) width * height) + cell;
+    }
+
+    /**
+     * Retourne l'index du premier élément de {@link #keys} supérieur ou égal à la clé spécifiée.
+     */
+    private int first(final long key) {
+        int low  = 0;
+        int high = keys.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (keys[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Retourne le nombre d'échantillons indexés.
+     */
+    int getSampleCount() {
+        return samples.length;
+    }
+
+    /**
+     * Retourne l'échantillon à l'index spécifié.
+     */
+    SampleEntry getSample(final int index) {
+        return samples[index];
+    }
+
+    /**
+     * Calcule la distance entre l'échantillon spécifié et l'échantillon le plus proche qui
+     * provient d'une autre campagne et qui a été pris au plus {@link #maxTimeLag} millisecondes
+     * avant ou après.
+     *
+     * @param  index Index de l'échantillon, de 0 inclusivement
+     *         jusqu'à {@link #getSampleCount} exclusivement.
+     * @return Distance la plus courte en mètres, ou {@link Double#NaN} si aucun échantillon
+     *         ne convient.
+     */
+    double distance(final int index) {
+        final double      px     = x[index];
+        final double      py     = y[index];
+        final long        pt     = t[index];
+        final CruiseEntry cruise = cruises[index];
+        final long        bucket = bucket(pt);
+        final int ci = column(px);
+        final int cj = row(py);
+        final int maxRing = Math.max(Math.max(ci, width -1-ci),
+                                     Math.max(cj, height-1-cj));
+        double smallestDistance = Double.POSITIVE_INFINITY;
+        for (int k=0; k<=maxRing; k++) {
+            if (k != 0 && CoastIndex.lowerBound((k-1)*cellWidth, (k-1)*cellHeight, maxAbsLatitude) >= smallestDistance) {
+                break;
+            }
+            final int jmin = Math.max(cj-k, 0), jmax = Math.min(cj+k, height-1);
+            final int imin = Math.max(ci-k, 0), imax = Math.min(ci+k, width -1);
+            for (int j=jmin; j<=jmax; j++) {
+                final boolean edge = (j == cj-k || j == cj+k);
+                for (int i=imin; i<=imax; i++) {
+                    if (!edge && i != ci-k && i != ci+k) {
+                        // Cellule intérieure à l'anneau: déjà visitée. Saute à l'autre bord.
+                        if (i < ci+k) {
+                            i = Math.min(ci+k, imax+1) - 1;
+                        }
+                        continue;
+                    }
+                    final int cell = j*width + i;
+                    for (long b=Math.max(0, bucket-1); b<=bucket+1; b++) {
+                        final long key = key(b, cell);
+                        for (int n=first(key); n<keys.length && keys[n]==key; n++) {
+                            final int c = order[n];
+                            if (c == index || Math.abs(t[c] - pt) > maxTimeLag) {
+                                continue;
+                            }
+                            if (cruise != null && cruise.equals(cruises[c])) {
+                                // Ignore les positions qui proviennent du même bateau.
+                                continue;
+                            }
+                            final double cx = x[c];
+                            final double cy = y[c];
+                            if (CoastIndex.lowerBound(Math.abs(cx-px), Math.abs(cy-py), maxAbsLatitude) >= smallestDistance) {
+                                continue;
+                            }
+                            final double distance = ellipsoid.orthodromicDistance(px, py, cx, cy);
+                            if (distance < smallestDistance) {
+                                smallestDistance = distance;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return Double.isInfinite(smallestDistance) ? Double.NaN : smallestDistance;
+    }
+}
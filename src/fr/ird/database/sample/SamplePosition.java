@@ -86,7 +86,7 @@ final class SamplePosition implements Comparable<SamplePosition> {
      */
     public static SamplePosition[] getInstances(final Collection<? extends SampleEntry> samples,
                                                 final Collection<? extends RelativePositionEntry> positions,
-                                                final SeriesCoverage3D coverage)
+                                                final Environment3D coverage)
     {
         final SamplePosition[] tasks = new SamplePosition[samples.size() * positions.size()];
         int i=0;
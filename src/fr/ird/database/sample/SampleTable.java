@@ -186,4 +186,24 @@ public interface SampleTable extends Table {
      *                   du catalogue a échoué pour une autre raison.
      */
     public abstract void setValue(final SampleEntry sample, final String columnName, final boolean value) throws RemoteException;
+
+    /**
+     * Définie des valeurs réelles pour un ensemble d'échantillons. Cette méthode est équivalente
+     * à appeler {@link #setValue(SampleEntry,String,float)} pour chaque échantillon, mais les
+     * mises à jour sont soumises par lots et dans une seule transaction. Elle est destinée aux
+     * calculs qui remplissent une colonne pour un grand nombre d'échantillons. Si l'appelant a
+     * déjà ouvert une transaction sur la connexion au catalogue, les mises à jour font partie
+     * de cette transaction: cette méthode ne la valide pas et ne l'annule pas.
+     *
+     * @param samples    Echantillons à mettre à jour. Ces arguments définissent les lignes à mettre à jour.
+     * @param columnName Nom de la colonne à mettre à jour.
+     * @param values     Valeurs à inscrire dans la base de données, dans le même ordre que les
+     *                   échantillons. Ce tableau doit avoir la même longueur que <code>samples</code>.
+     * @throws RemoteException si un des échantillons spécifiés n'existe pas, ou si la mise à jour
+     *                   du catalogue a échoué pour une autre raison. Si aucune transaction n'était
+     *                   ouverte, aucune valeur n'est alors modifiée. Sinon, les mises à jour déjà
+     *                   faites restent dans la transaction de l'appelant, qui décide de la valider
+     *                   ou de l'annuler.
+     */
+    public abstract void setValues(final SampleEntry[] samples, final String columnName, final float[] values) throws RemoteException;
 }
@@ -17,22 +17,24 @@ package fr.ird.database.sample;
 
 // J2SE
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Arrays;
+import java.util.List;
 import java.util.Date;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.awt.Shape;
-import java.awt.geom.Line2D;
 import java.awt.geom.Point2D;
-import java.awt.geom.Rectangle2D;
 import java.awt.geom.PathIterator;
 import java.awt.geom.IllegalPathStateException;
 import java.rmi.RemoteException;
 
 // Geotools
 import org.geotools.cs.Ellipsoid;
-import org.geotools.resources.XMath;
 import org.geotools.resources.Arguments;
 import org.geotools.resources.geometry.ShapeUtilities;
 
@@ -66,6 +68,17 @@ public class SampleTableFiller implements Table {
      */
     private final Ellipsoid ellipsoid = Ellipsoid.WGS84;
 
+    /**
+     * Index des segments de la dernière côte utilisée par {@link #computeCoastDistances},
+     * ou <code>null</code> si aucun.
+     */
+    private transient CoastIndex coastIndex;
+
+    /**
+     * Nombre de threads qui calculent les distances en parallèle.
+     */
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
     /**
      * <code>true</code> si cet objet possède les connexion vers la base de données.
      * Dans ce cas, {@link #close} fermera cette connexion.
@@ -95,6 +108,27 @@ public class SampleTableFiller implements Table {
         this.table = table;
     }
 
+    /**
+     * Retourne le nombre de threads qui calculent les distances en parallèle.
+     * La valeur par défaut est le nombre de processeurs disponibles.
+     */
+    public synchronized int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Spécifie le nombre de threads qui calculent les distances en parallèle.
+     * L'écriture dans la base de données reste faite par un seul thread.
+     *
+     * @param count Le nombre de threads (au moins 1).
+     */
+    public synchronized void setThreadCount(final int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException(String.valueOf(count));
+        }
+        threadCount = count;
+    }
+
     /**
      * Calcule la longueur du trajet de l'échantillon. Plus spécifiquement, cette méthode calcule la
      * distance orthodromique entre les points de la forme retournée par {@link SampleEntry#getShape}.
@@ -105,6 +139,7 @@ public class SampleTableFiller implements Table {
      * @throws RemoteException si une erreur est survenue lors d'un accès au catalogue.
      */
     public void computePathLength(final String columnName) throws RemoteException {
+        final SampleValues values = new SampleValues(table, columnName);
         for (final SampleEntry sample : table.getEntries()) {
             final Shape shape = sample.getShape();
             if (shape != null) {
@@ -131,17 +166,22 @@ public class SampleTableFiller implements Table {
                             break;
                         }
                     }
+                    it.next();
                 }
-                if (!Double.isInfinite(length) && !Double.isNaN(length)) {
-                    table.setValue(sample, columnName, (float)(length/1000)); // TODO: units
-                }
+                values.add(sample, length/1000); // TODO: units
             }
         }
+        values.flush();
     }
 
     /**
      * Calcule la distance la plus courte entre chaque échantillon pris la même journée.
      * Le résultat du calcul sera écrit dans la base de données dans la colonne spécifiée.
+     * Les positions qui proviennent du même bateau sont ignorées.
+     * <br><br>
+     * Les échantillons sont placés dans un {@linkplain SampleIndex index spatio-temporel}, de
+     * sorte que seuls les échantillons voisins dans le temps et dans l'espace sont examinés.
+     * Les distances sont calculées en parallèle par {@linkplain #getThreadCount plusieurs threads}.
      *
      * @param  maxTimeLag Ecart de temps maximal entre deux échantillons pour considérer qu'is
      *         sont pris le même jour. Cet écart doit être exprimé en nombre de millisecondes.
@@ -153,43 +193,20 @@ public class SampleTableFiller implements Table {
                                             final String columnName)
             throws RemoteException
     {
-        final Collection<SampleEntry> list = table.getEntries();
-        final SampleEntry[] samples = list.toArray(new SampleEntry[list.size()]);
-        Arrays.sort(samples, new Comparator<SampleEntry>() {
-            public int compare(final SampleEntry e1, final SampleEntry e2) {
-                return e1.getTime().compareTo(e2.getTime());
-            }
-        });
-        for (int i=0; i<samples.length; i++) {
-            final SampleEntry  sample = samples[i];
-            final CruiseEntry  cruise = sample.getCruise();
-            final long           time = sample.getTime().getTime();
-            final Point2D       coord = sample.getCoordinate();
-            double   smallestDistance = Double.POSITIVE_INFINITY;
-            int scanDirection = -1;
-            do { // Run this loop exactly 2 times.
-                for (int j=i; (j+=scanDirection)>=0 && j<samples.length;) {
-                    final SampleEntry candidate = samples[j];
-                    if (Math.abs(time - candidate.getTime().getTime()) > maxTimeLag) {
-                        break;
-                    }
-                    if (cruise != null) {
-                        if (cruise.equals(candidate.getCruise())) {
-                            // Ignore les positions qui proviennent du même bateau.
-                            continue;
-                        }
-                    }
-                    final double distance = ellipsoid.orthodromicDistance(coord, candidate.getCoordinate());
-                    if (distance < smallestDistance) {
-                        smallestDistance = distance;
-                    }
+        final SampleIndex index = new SampleIndex(table.getEntries(), maxTimeLag, ellipsoid);
+        final double[] distances = new double[index.getSampleCount()];
+        run(distances.length, new Task() {
+            public void run(final int lower, final int upper) {
+                for (int i=lower; i<upper; i++) {
+                    distances[i] = index.distance(i);
                 }
             }
-            while ((scanDirection = -scanDirection) >= 0);
-            if (!Double.isInfinite(smallestDistance) && !Double.isNaN(smallestDistance)) {
-                table.setValue(sample, columnName, (float)(smallestDistance/1000)); // TODO: units
-            }
+        });
+        final SampleValues values = new SampleValues(table, columnName);
+        for (int i=0; i<distances.length; i++) {
+            values.add(index.getSample(i), distances[i]/1000); // TODO: units
         }
+        values.flush();
     }
 
     /**
@@ -200,6 +217,7 @@ public class SampleTableFiller implements Table {
      * @throws RemoteException si une erreur est survenue lors d'un accès au catalogue.
      */
     public void computeSpeed(final String columnName) throws RemoteException {
+        final SampleValues values = new SampleValues(table, columnName);
         final Map<CruiseEntry,SampleEntry> positions = new HashMap<CruiseEntry,SampleEntry>();
         for (final SampleEntry sample : table.getEntries()) {
             final CruiseEntry cruise = sample.getCruise();
@@ -214,19 +232,22 @@ public class SampleTableFiller implements Table {
                         final double delay;
                         delay = (time.getTime() - last.getTime().getTime()) / (24*60*60*1000.0);
                         distance /= delay;
-                        if (!Double.isNaN(distance) && !Double.isInfinite(distance)) {
-                            table.setValue(sample, columnName, (float)(distance/1000)); // TODO: units
-                        }
+                        values.add(sample, distance/1000); // TODO: units
                     }
                 }
             }
         }
+        values.flush();
     }
 
     /**
      * Calcule la distance la plus courte entre chaque échantillon et la côte. Les coordonnées
      * du point et de la côte doivent être exprimées selon l'ellipsoïde WGS 1984. <strong>Note:
      * ce calcul n'est qu'approximatif</strong>.
+     * <br><br>
+     * Les segments de la côte sont placés dans un index spatial, construit une seule fois par
+     * forme (il est conservé pour les appels suivants avec la même forme). Les distances sont
+     * ensuite calculées en parallèle par {@linkplain #getThreadCount plusieurs threads}.
      *
      * @param  coast Forme géométrique représentant la côte.
      * @param  columnName Nom de la colonne dans laquelle écrire les
@@ -235,65 +256,84 @@ public class SampleTableFiller implements Table {
      *         lors d'un accès au catalogue.
      */
     public void computeCoastDistances(final Shape coast, final String columnName) throws RemoteException {
-        for (final SampleEntry sample : table.getEntries()) {
-            final Point2D coordinate = sample.getCoordinate();
-            final double distance = computeCoastDistances(coast, coordinate.getX(), coordinate.getY());
-            if (!Double.isInfinite(distance) && !Double.isNaN(distance)) {
-                table.setValue(sample, columnName, (float)(distance/1000)); // TODO: units
+        final CoastIndex index;
+        synchronized (this) {
+            if (coastIndex == null || coastIndex.coast != coast) {
+                coastIndex = new CoastIndex(coast, ellipsoid);
             }
+            index = coastIndex;
         }
+        final Collection<SampleEntry> list = table.getEntries();
+        final SampleEntry[] samples = list.toArray(new SampleEntry[list.size()]);
+        final double[] distances = new double[samples.length];
+        run(samples.length, new Task() {
+            public void run(final int lower, final int upper) {
+                for (int i=lower; i<upper; i++) {
+                    final Point2D coordinate = samples[i].getCoordinate();
+                    distances[i] = (coordinate != null) ?
+                            index.distance(coordinate.getX(), coordinate.getY()) : Double.NaN;
+                }
+            }
+        });
+        final SampleValues values = new SampleValues(table, columnName);
+        for (int i=0; i<samples.length; i++) {
+            values.add(samples[i], distances[i]/1000); // TODO: units
+        }
+        values.flush();
     }
 
     /**
-     * Calcule la distance la plus courte entre le point spécifié et la côte. Les coordonnées
-     * du point et de la côte doivent être exprimées selon l'ellipsoïde WGS 1984. <strong>Note:
-     * ce calcul n'est qu'approximatif</strong>.
+     * Un calcul à effectuer sur une plage d'échantillons.
+     */
+    private static interface Task {
+        /**
+         * Effectue le calcul pour les échantillons <code>lower</code> inclusivement
+         * jusqu'à <code>upper</code> exclusivement.
+         */
+        void run(int lower, int upper);
+    }
+
+    /**
+     * Exécute une tâche en parallèle. Les <code>count</code> échantillons sont découpés en
+     * plages contigües, chacune étant calculée par un thread. Cette méthode ne retourne que
+     * lorsque toutes les plages ont été calculées.
      *
-     * @param  coast Forme géométrique représentant la côte.
-     * @param  x Coordonnée <var>x</var> du point dont on veut la distance à la côte.
-     * @param  y Coordonnée <var>y</var> du point dont on veut la distance à la côte.
-     * @return Distance la plus courte.
+     * @param  count Nombre total d'échantillons.
+     * @param  task  Le calcul à effectuer.
+     * @throws RemoteException si le calcul a été interrompu.
      */
-    private double computeCoastDistances(final Shape coast, final double px, final double py) {
-        final double[]    coords = new double[6];
-        final Rectangle2D bounds = coast.getBounds2D();
-        final PathIterator  iter = coast.getPathIterator(null, ShapeUtilities.getFlatness(coast));
-        double smallestDistance  = Double.POSITIVE_INFINITY;
-        double x0 = Double.NaN;
-        double y0 = Double.NaN;
-        double x1 = Double.NaN;
-        double y1 = Double.NaN;
-        double x2 = Double.NaN;
-        double y2 = Double.NaN;
-        for (; !iter.isDone(); iter.next()) {
-            switch (iter.currentSegment(coords)) {
-                case PathIterator.SEG_MOVETO: {
-                    x2 = x0 = coords[0];
-                    y2 = y0 = coords[1];
-                    continue;
-                }
-                case PathIterator.SEG_LINETO: {
-                    x1=x2; x2=coords[0];
-                    y1=y2; y2=coords[0];
-                    break;
-                }
-                case PathIterator.SEG_CLOSE: {
-                    x1=x2; x2=x0;
-                    y1=y2; y2=y0;
-                    break;
-                }
-                default: throw new IllegalPathStateException();
+    private void run(final int count, final Task task) throws RemoteException {
+        final int numChunks = Math.max(1, Math.min(getThreadCount(), count / 64));
+        final ExecutorService executor = Executors.newFixedThreadPool(numChunks);
+        try {
+            final List<Future<Object>> futures = new ArrayList<Future<Object>>(numChunks);
+            for (int i=0; i<numChunks; i++) {
+                final int lower = (int) ((long) count *  i    / numChunks);
+                final int upper = (int) ((long) count * (i+1) / numChunks);
+                futures.add(executor.submit(new Callable<Object>() {
+                    public Object call() {
+                        task.run(lower, upper);
+                        return null;
+                    }
+                }));
+            }
+            for (final Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException exception) {
+            throw new CatalogException(exception);
+        } catch (ExecutionException exception) {
+            final Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-            // APPROXIMATION IS THERE: 'nearestColinearPoint' is for a cartesian
-            // coordinate system, not an ellipsoidal surface. This approximation
-            // still okay if <code>coast</code> is build of many small segments.
-            final Point2D point = ShapeUtilities.nearestColinearPoint(x1, y1, x2, y2, px, py);
-            final double distance = ellipsoid.orthodromicDistance(point.getX(), point.getY(), px, py);
-            if (distance<smallestDistance) {
-                smallestDistance=distance;
+            if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new CatalogException((Exception) cause);
+        } finally {
+            executor.shutdownNow();
         }
-        return Double.isInfinite(smallestDistance) ? Double.NaN : smallestDistance;
     }
 
     /**
@@ -0,0 +1,105 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE
+import java.rmi.RemoteException;
+
+// Seagis
+import fr.ird.resources.XArray;
+
+
+/**
+ * Valeurs à écrire dans une colonne de la table des échantillons. Les paires (échantillon,
+ * valeur) sont accumulées en mémoire, puis écrites en une seule fois par
+ * {@link SampleTable#setValues} lors de l'appel de {@link #flush}. Les calculs de
+ * {@link SampleTableFiller} évitent ainsi un aller-retour avec la base de données
+ * pour chaque échantillon.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ */
+final class SampleValues {
+    /**
+     * La table dans laquelle écrire les valeurs.
+     */
+    private final SampleTable table;
+
+    /**
+     * Nom de la colonne à mettre à jour.
+     */
+    private final String columnName;
+
+    /**
+     * Les échantillons à mettre à jour.
+     */
+    private SampleEntry[] samples = new SampleEntry[256];
+
+    /**
+     * Les valeurs à écrire, dans le même ordre que {@link #samples}.
+     */
+    private float[] values = new float[256];
+
+    /**
+     * Nombre de valeurs en attente d'écriture.
+     */
+    private int count;
+
+    /**
+     * Construit un ensemble de valeurs initialement vide.
+     *
+     * @param table      La table dans laquelle écrire les valeurs.
+     * @param columnName Nom de la colonne à mettre à jour.
+     */
+    SampleValues(final SampleTable table, final String columnName) {
+        this.table      = table;
+        this.columnName = columnName;
+    }
+
+    /**
+     * Ajoute une valeur pour l'échantillon spécifié. Les valeurs
+     * infinies ou {@linkplain Double#NaN NaN} sont ignorées.
+     *
+     * @param sample Echantillon à mettre à jour.
+     * @param value  Valeur à inscrire dans la base de données.
+     */
+    void add(final SampleEntry sample, final double value) {
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            return;
+        }
+        if (count == values.length) {
+            samples = XArray.resize(samples, 2*count);
+            values  = XArray.resize(values,  2*count);
+        }
+        samples[count] = sample;
+        values [count] = (float) value;
+        count++;
+    }
+
+    /**
+     * Ecrit dans la base de données toutes les valeurs en attente.
+     *
+     * @throws RemoteException si la mise à jour du catalogue a échoué.
+     */
+    void flush() throws RemoteException {
+        if (count != 0) {
+            table.setValues(XArray.resize(samples, count), columnName, XArray.resize(values, count));
+            samples = new SampleEntry[256];
+            values  = new float[256];
+            count   = 0;
+        }
+    }
+}
@@ -298,6 +298,30 @@ final class DescriptorTable extends SingletonTable<DescriptorEntry, DescriptorEn
         return positions;
     }
 
+    /**
+     * Charge d'avance le contenu complet des tables des positions relatives, des opérations,
+     * des paramètres et des descripteurs. Ces tables sont petites et ne changent presque
+     * jamais; les recherches faites ensuite par {@link EnvironmentTable} et
+     * {@link LinearModelTable} ne prendront plus de verrou ni n'interrogeront la base
+     * de données. Les tables sont chargées dans l'ordre de leurs dépendances.
+     * <br><br>
+     * Cette méthode n'est volontairement pas synchronisée. Les descripteurs sont chargés en
+     * détenant le verrou de {@link ParameterTable} puis celui de cette table, dans le même
+     * ordre que lorsque {@link ParameterTable} interroge cette table. Ce verrou est exigé
+     * par {@link ParameterTable#getIncompleteEntry}, qu'appelle {@link #createEntry}.
+     *
+     * @throws RemoteException si l'interrogation de la base de données a échouée.
+     */
+    final void refreshAll() throws RemoteException {
+        getPositionTable (BY_ID).refresh();
+        getOperationTable(BY_ID).refresh();
+        final ParameterTable parameters = getParameterTable(BY_ID);
+        parameters.refresh();
+        synchronized (parameters) {
+            refresh();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
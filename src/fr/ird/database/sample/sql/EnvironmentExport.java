@@ -0,0 +1,395 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample.sql;
+
+// Requêtes SQL
+import java.sql.Types;
+import java.sql.Timestamp;
+import java.sql.ResultSet;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+
+// Entrés/sorties et divers
+import java.io.Writer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.util.Locale;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+// Geotools
+import org.geotools.util.ProgressListener;
+
+// Seagis
+import fr.ird.database.sample.SampleDataBase;
+
+
+/**
+ * Écrit les données environnementales d'un {@link ResultSet} vers une destination externe.
+ * Les enregistrements sont lus et écrits au fur et à mesure, de sorte que la quantité de
+ * mémoire utilisée ne dépend pas du nombre d'enregistrements. La première colonne doit être
+ * le numéro ID des échantillons; les colonnes de type date sont écrites comme des dates, et
+ * toutes les autres comme des nombres réels de 32 bits.
+ * <br><br>
+ * <strong>Format binaire</strong><br>
+ * Le format écrit par {@link #toBinary} est un format par colonnes, découpé en blocs d'au
+ * plus {@link #BLOCK_SIZE} lignes. Tous les nombres sont en ordre d'octets "big endian".
+ *
+ * <blockquote><pre>
+ * int    {@link #MAGIC}
+ * int    {@link #VERSION}
+ * int    nombre de colonnes
+ * pour chaque colonne: UTF nom, byte type ('I' = int, 'F' = float, 'T' = long en millisecondes)
+ * pour chaque bloc:
+ *     int n (nombre de lignes du bloc, toujours supérieur à 0)
+ *     pour chaque colonne: n valeurs du type de la colonne
+ * int 0  (fin des données)
+ * </pre></blockquote>
+ *
+ * Les valeurs manquantes sont {@link Float#NaN} pour les colonnes <code>'F'</code>, et
+ * {@link Long#MIN_VALUE} pour les colonnes <code>'T'</code>.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see EnvironmentTable#copyToTable
+ * @see EnvironmentTable#exportToCSV
+ * @see EnvironmentTable#exportToBinary
+ */
+final class EnvironmentExport {
+    /**
+     * Nombre magique au début des fichiers binaires ("ENVC").
+     */
+    static final int MAGIC = 0x454E5643;
+
+    /**
+     * Version du format des fichiers binaires.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Nombre maximal de lignes par bloc du format binaire.
+     */
+    static final int BLOCK_SIZE = 4096;
+
+    /**
+     * Nombre d'enregistrements à soumettre dans chaque lot d'instructions <code>INSERT</code>.
+     */
+    static final int BATCH_SIZE = 1000;
+
+    /**
+     * Types des colonnes dans le format binaire.
+     */
+    private static final byte INT='I', FLOAT='F', TIME='T';
+
+    /**
+     * Le flot de données source.
+     */
+    private final ResultSet source;
+
+    /**
+     * Nombre de colonnes de {@link #source}.
+     */
+    private final int columnCount;
+
+    /**
+     * Indique pour chaque colonne s'il s'agit d'une date.
+     */
+    private final boolean[] isDate;
+
+    /**
+     * Objet à informer des progrès, ou <code>null</code> si aucun.
+     */
+    private final ProgressListener progress;
+
+    /**
+     * Date (en millisecondes) du début de l'exportation.
+     */
+    private final long startTime;
+
+    /**
+     * Prépare l'exportation des données du flot spécifié.
+     *
+     * @param  source Les données à exporter. La première colonne doit être le numéro ID.
+     * @param  progress Objet à informer des progrès, ou <code>null</code> si aucun.
+     * @throws SQLException si les méta-données du flot n'ont pas pu être obtenues.
+     */
+    EnvironmentExport(final ResultSet source, final ProgressListener progress) throws SQLException {
+        final ResultSetMetaData meta = source.getMetaData();
+        this.source      = source;
+        this.progress    = progress;
+        this.columnCount = meta.getColumnCount();
+        this.isDate      = new boolean[columnCount];
+        for (int i=1; i<columnCount; i++) {
+            isDate[i] = isDate(meta.getColumnType(i+1));
+        }
+        if (progress != null) {
+            progress.setDescription("Copie des données");
+            progress.progress(0);
+        }
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Indique si le type SQL spécifié est un type de date.
+     */
+    static boolean isDate(final int type) {
+        switch (type) {
+            case Types.DATE:      // Fall through
+            case Types.TIME:      // Fall through
+            case Types.TIMESTAMP: return true;
+            default:              return false;
+        }
+    }
+
+    /**
+     * Informe des progrès après la lecture d'un enregistrement. L'avancement est estimé
+     * en supposant que les numéros ID sont distribués uniformément entre
+     * {@link Integer#MIN_VALUE} et {@link Integer#MAX_VALUE}.
+     */
+    private void progress(final int ID, final int count) {
+        if (progress!=null && (count & 0xFF)==0) {
+            final float minID = Integer.MIN_VALUE;
+            final float maxID = Integer.MAX_VALUE;
+            progress.progress((ID - minID) / ((maxID-minID)/100));
+        }
+    }
+
+    /**
+     * Termine l'exportation: informe de la fin des progrès
+     * et inscrit le débit obtenu dans le journal.
+     *
+     * @param method Nom de la méthode qui a procédé à l'exportation.
+     * @param count  Nombre d'enregistrements exportés.
+     */
+    private void complete(final String method, final int count) {
+        if (progress != null) {
+            progress.complete();
+        }
+        final long   elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+        final double rate    = count * 1000.0 / elapsed;
+        final LogRecord record = new LogRecord(Level.INFO, count + " enregistrement(s) exporté(s) en " +
+                                 (elapsed / 1000.0) + " s (" + Math.round(rate) + " enregistrements/s).");
+        record.setSourceClassName("EnvironmentTable");
+        record.setSourceMethodName(method);
+        SampleDataBase.LOGGER.log(record);
+    }
+
+    /**
+     * Ajoute tous les enregistrements dans une table existante, par lots d'instructions
+     * <code>INSERT</code>. Si le pilote n'accepte pas les lots d'instructions, alors les
+     * instructions sont exécutées une à une.
+     *
+     * @param  connection La connexion vers la base de données de destination.
+     * @param  tableName  Le nom de la table de destination, qui doit avoir autant
+     *                    de colonnes que {@link #source} et dans le même ordre.
+     * @return Le nombre d'enregistrements copiés.
+     * @throws SQLException si la lecture ou l'écriture a échoué.
+     */
+    int toTable(final Connection connection, final String tableName) throws SQLException {
+        final StringBuffer buffer = new StringBuffer("INSERT INTO \"");
+        buffer.append(tableName);
+        buffer.append("\" VALUES (");
+        for (int i=0; i<columnCount; i++) {
+            buffer.append((i==0) ? "?" : ", ?");
+        }
+        buffer.append(')');
+        final boolean batch = connection.getMetaData().supportsBatchUpdates();
+        final PreparedStatement insert = connection.prepareStatement(buffer.toString());
+        int count = 0;
+        try {
+            while (source.next()) {
+                final int ID = source.getInt(1);
+                progress(ID, count);
+                insert.setInt(1, ID);
+                for (int i=2; i<=columnCount; i++) {
+                    if (isDate[i-1]) {
+                        final Timestamp time = source.getTimestamp(i);
+                        if (time != null) {
+                            insert.setTimestamp(i, time);
+                        } else {
+                            insert.setNull(i, Types.TIMESTAMP);
+                        }
+                    } else {
+                        final float x = source.getFloat(i);
+                        if (!source.wasNull()) {
+                            insert.setFloat(i, x);
+                        } else {
+                            insert.setNull(i, Types.REAL);
+                        }
+                    }
+                }
+                count++;
+                if (batch) {
+                    insert.addBatch();
+                    if (count % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                } else {
+                    insert.executeUpdate();
+                }
+            }
+            if (batch && count % BATCH_SIZE != 0) {
+                insert.executeBatch();
+            }
+        } finally {
+            insert.close();
+        }
+        complete("copyToTable", count);
+        return count;
+    }
+
+    /**
+     * Écrit tous les enregistrements en format CSV. La première ligne contient les noms des
+     * colonnes tels que retournés par {@link ResultSetMetaData#getColumnName}. Les séparateurs
+     * sont des virgules, les nombres utilisent le point comme séparateur décimal, les dates
+     * sont écrites selon le motif <code>"yyyy-MM-dd HH:mm:ss"</code> et les valeurs manquantes
+     * sont laissées vides.
+     *
+     * @param  out Le flot dans lequel écrire les enregistrements.
+     * @return Le nombre d'enregistrements écrits.
+     * @throws SQLException si la lecture des enregistrements a échoué.
+     * @throws IOException si l'écriture a échoué.
+     */
+    int toCSV(final Writer out) throws SQLException, IOException {
+        final ResultSetMetaData meta = source.getMetaData();
+        final String lineSeparator = System.getProperty("line.separator", "\n");
+        final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        for (int i=1; i<=columnCount; i++) {
+            if (i != 1) {
+                out.write(',');
+            }
+            final String name = meta.getColumnName(i);
+            if (name.indexOf(',')>=0 || name.indexOf('"')>=0) {
+                out.write('"');
+                out.write(name.replaceAll("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(name);
+            }
+        }
+        out.write(lineSeparator);
+        int count = 0;
+        while (source.next()) {
+            final int ID = source.getInt(1);
+            progress(ID, count);
+            out.write(String.valueOf(ID));
+            for (int i=2; i<=columnCount; i++) {
+                out.write(',');
+                if (isDate[i-1]) {
+                    final Timestamp time = source.getTimestamp(i);
+                    if (time != null) {
+                        out.write(dateFormat.format(time));
+                    }
+                } else {
+                    final float x = source.getFloat(i);
+                    if (!source.wasNull() && !Float.isNaN(x)) {
+                        out.write(Float.toString(x));
+                    }
+                }
+            }
+            out.write(lineSeparator);
+            count++;
+        }
+        out.flush();
+        complete("exportToCSV", count);
+        return count;
+    }
+
+    /**
+     * Écrit tous les enregistrements dans le format binaire par colonnes décrit dans la
+     * documentation de cette classe. Les lignes sont accumulées dans des tampons d'au plus
+     * {@link #BLOCK_SIZE} lignes, puis écrites colonne par colonne.
+     *
+     * @param  stream Le flot dans lequel écrire les enregistrements.
+     * @return Le nombre d'enregistrements écrits.
+     * @throws SQLException si la lecture des enregistrements a échoué.
+     * @throws IOException si l'écriture a échoué.
+     */
+    int toBinary(final OutputStream stream) throws SQLException, IOException {
+        final ResultSetMetaData meta = source.getMetaData();
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(columnCount);
+        for (int i=0; i<columnCount; i++) {
+            out.writeUTF(meta.getColumnName(i+1));
+            out.writeByte((i==0) ? INT : isDate[i] ? TIME : FLOAT);
+        }
+        final int[]     IDs    = new int[BLOCK_SIZE];
+        final float[][] floats = new float[columnCount][];
+        final long [][] times  = new long [columnCount][];
+        for (int i=1; i<columnCount; i++) {
+            if (isDate[i]) {
+                times[i] = new long[BLOCK_SIZE];
+            } else {
+                floats[i] = new float[BLOCK_SIZE];
+            }
+        }
+        int count = 0;
+        int n = 0;
+        boolean more;
+        do {
+            more = source.next();
+            if (more) {
+                final int ID = source.getInt(1);
+                progress(ID, count);
+                IDs[n] = ID;
+                for (int i=1; i<columnCount; i++) {
+                    if (isDate[i]) {
+                        final Timestamp time = source.getTimestamp(i+1);
+                        times[i][n] = (time != null) ? time.getTime() : Long.MIN_VALUE;
+                    } else {
+                        final float x = source.getFloat(i+1);
+                        floats[i][n] = source.wasNull() ? Float.NaN : x;
+                    }
+                }
+                n++;
+                count++;
+            }
+            if (n == BLOCK_SIZE || (!more && n != 0)) {
+                out.writeInt(n);
+                for (int k=0; k<n; k++) {
+                    out.writeInt(IDs[k]);
+                }
+                for (int i=1; i<columnCount; i++) {
+                    if (isDate[i]) {
+                        final long[] column = times[i];
+                        for (int k=0; k<n; k++) {
+                            out.writeLong(column[k]);
+                        }
+                    } else {
+                        final float[] column = floats[i];
+                        for (int k=0; k<n; k++) {
+                            out.writeFloat(column[k]);
+                        }
+                    }
+                }
+                n = 0;
+            }
+        } while (more);
+        out.writeInt(0);
+        out.flush();
+        complete("exportToBinary", count);
+        return count;
+    }
+}
@@ -44,12 +44,17 @@ import javax.swing.event.EventListenerList;
 // Geotools dependencies
 import org.geotools.resources.Utilities;
 
+// Seagis dependencies
+import fr.ird.database.sample.EnvironmentColumns;
+
 
 /**
  * The environmental values for each sample location. This object is created as
  * a result of {@link EnvironmentTable#getRowSet} invocation. This is a connected
  * {@link RowSet} made of the juxtaposition of many {@link EnvironmentTableStep}
- * objects.
+ * objects. The environmental values may also be supplied as {@link EnvironmentColumns}
+ * already loaded in memory, in which case they are joined with the remaining (connected)
+ * {@link ResultSet}s without any JDBC call per cell.
  * <br><br>
  * <strong>NOTE: {@link Integer#MIN_VALUE} and {@link Integer#MAX_VALUE} are reserved
  *         ID and should not be used in the catch table primary key.</strong>
@@ -77,10 +82,27 @@ final class EnvironmentRowSet implements RowSet, ResultSetMetaData {
      */
     private final ResultSet[] results;
 
+    /**
+     * Les valeurs environnementales chargées en mémoire, ou <code>null</code> si aucune.
+     * Si non-nul, ces colonnes viennent après celles de tous les {@link ResultSet}s.
+     */
+    private final EnvironmentColumns columns;
+
+    /**
+     * La ligne courante dans {@link #columns}.
+     */
+    private int row = -1;
+
+    /**
+     * La valeur lue dans {@link #columns} lors du dernier appel de {@link #toResultSet}.
+     */
+    private transient float cell;
+
     /**
      * Index de l'objet {@link ResultSet} à utiliser pour un numéro de colonne donnée.
      * Pour une colonne numérotée <var>n</var>, le {@link ResultSet} a utiliser est
-     * <code>results[resultMap[n-2]]</code>.
+     * <code>results[resultMap[n-2]]</code>. Si cet index est égal à <code>results.length</code>,
+     * alors la colonne doit être lue dans {@link #columns}.
      */
     private final int[] resultMap;
 
@@ -97,14 +119,15 @@ final class EnvironmentRowSet implements RowSet, ResultSetMetaData {
     private final String[] columnLabels;
 
     /**
-     * Indique si les valeurs <code>null</code> sont autorisées. Les index vont
-     * de 0 inclusivement à <code>results.length</code> exclusivement.
+     * Indique si les valeurs <code>null</code> sont autorisées. Les index vont de 0
+     * inclusivement à <code>results.length</code> exclusivement, plus un élément
+     * pour {@link #columns} s'il est non-nul.
      */
     private final boolean[] nullIncluded;
 
     /**
      * Les numéros ID courrant pour chacun des {@link ResultSet}s présents dans le
-     * tableau {@link #results}.
+     * tableau {@link #results}, plus un élément pour {@link #columns} s'il est non-nul.
      */
     private final int[] IDs;
 
@@ -131,19 +154,40 @@ final class EnvironmentRowSet implements RowSet, ResultSetMetaData {
     EnvironmentRowSet(final ResultSet[] results, final String[] labels, final boolean[] nullIncluded)
             throws SQLException
     {
+        this(results, null, labels, nullIncluded);
+    }
+
+    /**
+     * Construit un objet <code>EnvironmentRowSet</code> joignant des {@link ResultSet}s
+     * et des colonnes déjà chargées en mémoire.
+     *
+     * @param  results Les objets <code>results</code>.
+     * @param  columns Les valeurs chargées en mémoire, ou <code>null</code> si aucune.
+     * @param  labels  Les titres des colonnes.
+     * @param  nullIncluded Indique si les valeurs nulles sont autorisées pour chacun des
+     *         objets {@link ResultSet}, puis pour <code>columns</code> s'il est non-nul.
+     * @throws SQLException si une erreur est survenue lors de l'accès à la base de données.
+     */
+    EnvironmentRowSet(final ResultSet[] results, final EnvironmentColumns columns,
+                      final String[] labels, final boolean[] nullIncluded)
+            throws SQLException
+    {
+        final int sources = results.length + (columns!=null ? 1 : 0);
         this.columnLabels = labels;
         this.results      = results;
+        this.columns      = columns;
         this.nullIncluded = nullIncluded;
-        this.IDs          = new int[results.length];
+        this.IDs          = new int[sources];
         Arrays.fill(IDs, ID);
         /*
          * Compte le nombre de colonnes, et vérifie que ce nombre correspond
          * bien à la longueur du tableau 'labels' moins la colonne ID.
          */
         int count = 0;
-        final int[] columnCount = new int[results.length];
-        for (int i=0; i<results.length; i++) {
-            final int c = results[i].getMetaData().getColumnCount()-1;
+        final int[] columnCount = new int[sources];
+        for (int i=0; i<sources; i++) {
+            final int c = (i < results.length) ? results[i].getMetaData().getColumnCount()-1
+                                               : columns.getColumnCount();
             if (c < 0) {
                 throw new IllegalArgumentException();
             }
@@ -153,20 +197,22 @@ final class EnvironmentRowSet implements RowSet, ResultSetMetaData {
         if (count != labels.length-1) {
             throw new IllegalArgumentException();
         }
-        if (nullIncluded.length != results.length) {
+        if (nullIncluded.length != sources) {
             throw new IllegalArgumentException();
         }
         /*
          * Construit les tables de correspondances pour convertir un numéro de colonne
          * de cet objet ResultSet vers un numéro de colonne d'un des objets ResultSet fils.
+         * Pour les colonnes en mémoire, le numéro est l'index de la colonne à partir de 0.
          */
         resultMap = new int[count];
         columnMap = new int[count];
-        for (int i=results.length; --i>=0;) {
+        for (int i=sources; --i>=0;) {
             int c = columnCount[i];
             Arrays.fill(resultMap, count-c, count, i);
+            final int offset = (i < results.length) ? 2 : 0;
             while (--c >= 0) {
-                columnMap[--count] = c+2;
+                columnMap[--count] = c+offset;
             }
         }
         if (count != 0) {
@@ -180,10 +226,15 @@ final class EnvironmentRowSet implements RowSet, ResultSetMetaData {
     public boolean next() throws SQLException {
 search: while (ID != Integer.MAX_VALUE) {
             int min = Integer.MAX_VALUE;
-            for (int i=0; i<results.length; i++) {
+            for (int i=0; i<IDs.length; i++) {
                 if (IDs[i] == ID) {
-                    final ResultSet result = results[i];
-                    IDs[i] = result.next() ? result.getInt(1) : Integer.MAX_VALUE;
+                    if (i < results.length) {
+                        final ResultSet result = results[i];
+                        IDs[i] = result.next() ? result.getInt(1) : Integer.MAX_VALUE;
+                    } else {
+                        IDs[i] = (++row < columns.getRowCount()) ?
+                                 columns.getSampleIDs()[row] : Integer.MAX_VALUE;
+                    }
                 }
                 if (IDs[i] < min) {
                     min = IDs[i];
@@ -264,6 +315,15 @@ search: while (ID != Integer.MAX_VALUE) {
         }
         if (--columnIndex>=0 && columnIndex<resultMap.length) {
             final int index = resultMap[columnIndex];
+            if (index == results.length) {
+                /*
+                 * Colonne en mémoire: la valeur est mémorisée dans 'cell'. 'last' est mis
+                 * à 'this' si la valeur existe, afin que 'wasNull()' retourne 'false'.
+                 */
+                cell = (IDs[index] == ID) ? columns.getValues(columnMap[columnIndex])[row] : Float.NaN;
+                last = Float.isNaN(cell) ? null : this;
+                return -1;
+            }
             last = (IDs[index] == ID) ? results[index] : null;
             return columnMap[columnIndex];
         }
@@ -281,7 +341,12 @@ search: while (ID != Integer.MAX_VALUE) {
             return 0;
         }
         if (--columnIndex>=0 && columnIndex<resultMap.length) {
-            last = results[resultMap[columnIndex]];
+            final int index = resultMap[columnIndex];
+            if (index == results.length) {
+                last = null;
+                return -1;
+            }
+            last = results[index];
             return columnMap[columnIndex];
         }
         throw new SQLException("Numéro de colonne invalide.");
@@ -297,6 +362,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return new Integer(ID);
         }
         if (last==null) return null;
+        if (columnIndex < 0) return new Float(cell);
         return last.getObject(columnIndex);
     }
 
@@ -306,6 +372,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return new Integer(ID);
         }
         if (last==null) return null;
+        if (columnIndex < 0) return new Float(cell);
         return last.getObject(columnIndex, map);
     }
 
@@ -315,6 +382,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return String.valueOf(ID);
         }
         if (last==null) return null;
+        if (columnIndex < 0) return String.valueOf(cell);
         return last.getString(columnIndex);
     }
 
@@ -324,6 +392,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return ID != 0;
         }
         if (last==null) return false;
+        if (columnIndex < 0) return cell != 0;
         return last.getBoolean(columnIndex);
     }
 
@@ -333,6 +402,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return (byte) ID;
         }
         if (last==null) return 0;
+        if (columnIndex < 0) return (byte) cell;
         return last.getByte(columnIndex);
     }
 
@@ -342,6 +412,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return (short) ID;
         }
         if (last==null) return 0;
+        if (columnIndex < 0) return (short) cell;
         return last.getShort(columnIndex);
     }
 
@@ -351,6 +422,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return ID;
         }
         if (last==null) return 0;
+        if (columnIndex < 0) return (int) cell;
         return last.getInt(columnIndex);
     }
 
@@ -360,6 +432,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return ID;
         }
         if (last==null) return 0;
+        if (columnIndex < 0) return (long) cell;
         return last.getLong(columnIndex);
     }
 
@@ -369,6 +442,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return ID;
         }
         if (last==null) return 0;
+        if (columnIndex < 0) return cell;
         return last.getFloat(columnIndex);
     }
 
@@ -378,6 +452,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return ID;
         }
         if (last==null) return 0;
+        if (columnIndex < 0) return cell;
         return last.getDouble(columnIndex);
     }
 
@@ -387,6 +462,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return new BigDecimal(ID);
         }
         if (last==null) return null;
+        if (columnIndex < 0) return new BigDecimal(cell);
         return last.getBigDecimal(columnIndex);
     }
 
@@ -397,6 +473,7 @@ search: while (ID != Integer.MAX_VALUE) {
             return new BigDecimal(ID);
         }
         if (last==null) return null;
+        if (columnIndex < 0) return new BigDecimal(cell);
         return last.getBigDecimal(columnIndex, scale);
     }
 
@@ -406,6 +483,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getBytes(columnIndex);
     }
 
@@ -415,6 +493,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getDate(columnIndex);
     }
 
@@ -424,6 +503,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getDate(columnIndex, cal);
     }
 
@@ -433,6 +513,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getTime(columnIndex);
     }
 
@@ -442,6 +523,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getTime(columnIndex, cal);
     }
 
@@ -451,6 +533,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getTimestamp(columnIndex);
     }
 
@@ -460,6 +543,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getTimestamp(columnIndex, cal);
     }
 
@@ -469,6 +553,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getAsciiStream(columnIndex);
     }
 
@@ -479,6 +564,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getUnicodeStream(columnIndex);
     }
 
@@ -488,6 +574,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getBinaryStream(columnIndex);
     }
 
@@ -497,6 +584,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getCharacterStream(columnIndex);
     }
 
@@ -506,6 +594,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getURL(columnIndex);
     }
 
@@ -515,6 +604,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getRef(columnIndex);
     }
 
@@ -524,6 +614,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getBlob(columnIndex);
     }
 
@@ -533,6 +624,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getClob(columnIndex);
     }
 
@@ -542,6 +634,7 @@ search: while (ID != Integer.MAX_VALUE) {
             throw unsupportedOperation();
         }
         if (last==null) return null;
+        if (columnIndex < 0) throw unsupportedOperation();
         return last.getArray(columnIndex);
     }
 
@@ -719,6 +812,9 @@ search: while (ID != Integer.MAX_VALUE) {
      * this <code>ResultSet</code> object.
      */
     public boolean isBeforeFirst() throws SQLException {
+        if (columns!=null && row<0) {
+            return true;
+        }
         for (int i=0; i<results.length; i++) {
             if (results[i].isBeforeFirst()) {
                 return true;
@@ -732,6 +828,9 @@ search: while (ID != Integer.MAX_VALUE) {
      * this <code>ResultSet</code> object.
      */
     public boolean isAfterLast() throws SQLException {
+        if (columns!=null && row>=columns.getRowCount()) {
+            return true;
+        }
         for (int i=0; i<results.length; i++) {
             if (results[i].isAfterLast()) {
                 return true;
@@ -763,6 +862,8 @@ search: while (ID != Integer.MAX_VALUE) {
      */
     public void beforeFirst() throws SQLException {
         ID = Integer.MIN_VALUE;
+        Arrays.fill(IDs, ID);
+        row = -1;
         for (int i=0; i<results.length; i++) {
             results[i].beforeFirst();
         }
@@ -775,6 +876,9 @@ search: while (ID != Integer.MAX_VALUE) {
      */
     public void afterLast() throws SQLException {
         ID = Integer.MIN_VALUE;
+        if (columns != null) {
+            row = columns.getRowCount();
+        }
         for (int i=0; i<results.length; i++) {
             results[i].afterLast();
         }
@@ -1620,6 +1724,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return null;
         }
+        if (column < 0) {
+            return null;
+        }
         return last.getMetaData().getSchemaName(column);
     }
     
@@ -1631,6 +1738,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return null;
         }
+        if (column < 0) {
+            return null;
+        }
         return last.getMetaData().getTableName(column);
     }
     
@@ -1642,6 +1752,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return null;
         }
+        if (column < 0) {
+            return null;
+        }
         return last.getMetaData().getCatalogName(column);
     }
     
@@ -1653,6 +1766,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return Types.INTEGER;
         }
+        if (column < 0) {
+            return Types.REAL;
+        }
         return last.getMetaData().getColumnType(column);
     }
     
@@ -1664,6 +1780,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return "int";
         }
+        if (column < 0) {
+            return "real";
+        }
         return last.getMetaData().getColumnTypeName(column);
     }
     
@@ -1677,6 +1796,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return Integer.class.getName();
         }
+        if (column < 0) {
+            return Float.class.getName();
+        }
         return last.getMetaData().getColumnClassName(column);
     }
     
@@ -1688,6 +1810,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return columnNoNulls;
         }
+        if (column < 0) {
+            return columnNullable;
+        }
         return last.getMetaData().isNullable(column);
     }
     
@@ -1699,6 +1824,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return false;
         }
+        if (column < 0) {
+            return false;
+        }
         return last.getMetaData().isSearchable(column);
     }
     
@@ -1710,6 +1838,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return false;
         }
+        if (column < 0) {
+            return false;
+        }
         return last.getMetaData().isDefinitelyWritable(column);
     }
     
@@ -1721,6 +1852,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return false;
         }
+        if (column < 0) {
+            return false;
+        }
         return last.getMetaData().isWritable(column);
     }
 
@@ -1732,6 +1866,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return true;
         }
+        if (column < 0) {
+            return true;
+        }
         return last.getMetaData().isReadOnly(column);
     }
 
@@ -1743,6 +1880,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return false;
         }
+        if (column < 0) {
+            return false;
+        }
         return last.getMetaData().isAutoIncrement(column);
     }
     
@@ -1754,6 +1894,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return false;
         }
+        if (column < 0) {
+            return false;
+        }
         return last.getMetaData().isCaseSensitive(column);
     }
     
@@ -1765,6 +1908,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return false;
         }
+        if (column < 0) {
+            return false;
+        }
         return last.getMetaData().isCurrency(column);
     }
     
@@ -1776,6 +1922,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return true;
         }
+        if (column < 0) {
+            return true;
+        }
         return last.getMetaData().isSigned(column);
     }
     
@@ -1787,6 +1936,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return 10;
         }
+        if (column < 0) {
+            return 7;
+        }
         return last.getMetaData().getPrecision(column);
     }
     
@@ -1798,6 +1950,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return 0;
         }
+        if (column < 0) {
+            return 0;
+        }
         return last.getMetaData().getScale(column);
     }
     
@@ -1809,6 +1964,9 @@ search: while (ID != Integer.MAX_VALUE) {
         if (column == 0) {
             return 10;
         }
+        if (column < 0) {
+            return 15;
+        }
         return last.getMetaData().getColumnDisplaySize(column);
     }
     
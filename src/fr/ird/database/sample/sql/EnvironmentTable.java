@@ -45,10 +45,12 @@ import java.util.List;
 import java.util.Date;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 
 // Entrés/sorties et divers
 import java.io.Writer;
+import java.io.OutputStream;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.NumberFormat;
@@ -65,6 +67,7 @@ import fr.ird.resources.XArray;
 import fr.ird.database.coverage.SeriesTable;
 import fr.ird.database.sample.SampleDataBase;
 import fr.ird.database.sample.SampleEntry;
+import fr.ird.database.sample.EnvironmentColumns;
 import fr.ird.database.sample.ParameterEntry;
 import fr.ird.database.sample.OperationEntry;
 import fr.ird.database.sample.RelativePositionEntry;
@@ -137,19 +140,82 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
     private transient boolean[] nullIncluded;
 
     /**
-     * Instruction à utiliser pour les mises à jour et les insertions.
-     * Ces instructions ne seront construites que la première fois où
-     * elle seront nécessaires.
+     * Nombre maximal de valeurs à conserver en mémoire avant de les écrire dans la base
+     * de données. Lorsque ce nombre est atteint, {@link #set set(...)} appelle {@link #flush}.
      */
-    private transient PreparedStatement update, insert;
+    private static final int BATCH_SIZE = 1000;
 
     /**
-     * Nom des colonnes utilisées lors de la dernière création des instructions
-     * {@link #update} et {@link #insert}. Sert à éviter de reconstruire de
-     * nouvelles instructions lorsque ce n'est pas nécessaire (c'est-à-dire
-     * lorsque le nom n'a pas changé).
+     * Délai maximal (en millisecondes) pendant lequel des valeurs peuvent rester en mémoire
+     * avant d'être écrites dans la base de données. Ce délai n'est vérifié que lors des
+     * appels à {@link #set set(...)}.
      */
-    private transient String columnUpdate, columnInsert;
+    private static final long FLUSH_DELAY = 10000;
+
+    /**
+     * Une valeur en attente d'écriture dans la base de données. Deux cellules sont considérées
+     * égales si elles désignent le même enregistrement (même échantillon, même position et même
+     * paramètre), quelle que soit leur valeur.
+     */
+    private static final class Cell {
+        /** Numéros de l'échantillon, de la position et du paramètre. */
+        final int sample, position, parameter;
+
+        /** La valeur à écrire. */
+        final double value;
+
+        /** Construit une cellule pour l'enregistrement et la valeur spécifiés. */
+        Cell(final int sample, final int position, final int parameter, final double value) {
+            this.sample    = sample;
+            this.position  = position;
+            this.parameter = parameter;
+            this.value     = value;
+        }
+
+        /** Retourne un code pour cette cellule. */
+        public int hashCode() {
+            return sample + 37*(position + 37*parameter);
+        }
+
+        /** Vérifie si cette cellule désigne le même enregistrement que l'objet spécifié. */
+        public boolean equals(final Object object) {
+            if (object instanceof Cell) {
+                final Cell that = (Cell) object;
+                return sample    == that.sample   &&
+                       position  == that.position &&
+                       parameter == that.parameter;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Les valeurs en attente d'écriture, regroupées par colonne. Pour chaque colonne, les
+     * cellules sont à la fois les clés et les valeurs de l'ensemble, ce qui permet à une
+     * valeur plus récente de remplacer une valeur plus ancienne du même enregistrement.
+     */
+    private final Map<String, Map<Cell,Cell>> pending = new LinkedHashMap<String, Map<Cell,Cell>>();
+
+    /**
+     * Nombre de valeurs dans {@link #pending}.
+     */
+    private transient int pendingCount;
+
+    /**
+     * Date (en millisecondes) de la plus ancienne valeur dans {@link #pending}.
+     */
+    private transient long pendingSince;
+
+    /**
+     * Nombre d'enregistrements mis à jour et insérés depuis la construction de cette table.
+     */
+    private transient int updateCount, insertCount;
+
+    /**
+     * Indique si le pilote de la base de données accepte les lots d'instructions, ou
+     * <code>null</code> si cette information n'a pas encore été obtenue.
+     */
+    private transient Boolean batchSupported;
 
     /**
      * Construit une table.
@@ -163,6 +229,7 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
         super(null);
         descriptors = new ParameterTable(connection, ParameterTable.BY_ID, series)
                           .getLinearModelTable().getDescriptorTable();
+        descriptors.refreshAll();
     }
 
     /**
@@ -369,30 +436,233 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
      * {@inheritDoc}
      */
     public synchronized RowSet getRowSet(final ProgressListener progress) throws RemoteException {
+        return getRowSet(progress, true);
+    }
+
+    /**
+     * Retourne les données environnementales, soit chargées en mémoire, soit lues au fur et
+     * à mesure par des requêtes connectées (une par objet {@link EnvironmentTableStep}).
+     * La seconde forme utilise une quantité de mémoire qui ne dépend pas du nombre
+     * d'enregistrements, mais ne permet qu'un seul parcours des données.
+     *
+     * @param  progress Objet à utiliser pour informer des progrès de l'initialisation,
+     *         ou <code>null</code> si aucun.
+     * @param  inMemory <code>true</code> pour charger les valeurs en mémoire avec
+     *         {@link #getColumns}, ou <code>false</code> pour les lire au fur et à mesure.
+     * @return Les données environnementales pour les captures.
+     * @throws RemoteException si l'interrogation du catalogue a échoué.
+     */
+    private RowSet getRowSet(final ProgressListener progress, final boolean inMemory)
+            throws RemoteException
+    {
+        flush();
         try {
             if (progress != null) {
                 progress.setDescription("Initialisation");
                 progress.started();
             }
-            int i = (sampleTableStep!=null) ? 1 : 0;
-            final ResultSet[]    results = new ResultSet[parameters.size() + i];
-            final boolean[] nullIncluded = new boolean[results.length];
-            final Connection  connection = descriptors.getConnection();
-            if (sampleTableStep != null) {
-                results[0] = sampleTableStep.getResultSet();
+            if (!inMemory) {
+                int i = (sampleTableStep!=null) ? 1 : 0;
+                final ResultSet[]    results = new ResultSet[parameters.size() + i];
+                final boolean[] nullIncluded = new boolean[results.length];
+                final Connection  connection = descriptors.getConnection();
+                if (sampleTableStep != null) {
+                    results[0] = sampleTableStep.getResultSet();
+                }
+                for (final EnvironmentTableStep step : parameters.values()) {
+                    results[i] = step.getResultSet(connection);
+                    nullIncluded[i++] = step.nullIncluded;
+                    if (progress != null) {
+                        progress.progress((100f/results.length) * i);
+                    }
+                }
+                assert i == results.length;
+                return new EnvironmentRowSet(results, getColumnLabels(), nullIncluded);
             }
+            /*
+             * Les valeurs environnementales sont chargées en mémoire. Seule la table des
+             * échantillons (s'il y en a une) reste une requête connectée, puisque ses
+             * colonnes ne sont pas nécessairement numériques.
+             */
+            final EnvironmentColumns columns = getColumns(progress);
+            boolean required = false;
             for (final EnvironmentTableStep step : parameters.values()) {
-                results[i] = step.getResultSet(connection);
-                nullIncluded[i++] = step.nullIncluded;
+                required |= !step.nullIncluded;
+            }
+            final ResultSet[] results;
+            final boolean[]   nullIncluded;
+            if (sampleTableStep != null) {
+                results      = new ResultSet[] {sampleTableStep.getResultSet()};
+                nullIncluded = new boolean[] {false, !required};
+            } else {
+                results      = new ResultSet[0];
+                nullIncluded = new boolean[] {!required};
+            }
+            return new EnvironmentRowSet(results, columns, getColumnLabels(), nullIncluded);
+        } catch (SQLException e) {
+            throw new CatalogException(e);
+        }            
+    }
+
+    /**
+     * Les valeurs d'un objet {@link EnvironmentTableStep} chargées en mémoire.
+     */
+    private static final class Column {
+        /** Les numéros ID des échantillons, en ordre croissant. */
+        int[] IDs = new int[1024];
+
+        /** Les valeurs de chaque colonne de l'étape. */
+        float[][] values;
+
+        /** Nombre de lignes valides dans {@link #IDs} et {@link #values}. */
+        int count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized EnvironmentColumns getColumns(final ProgressListener progress)
+            throws RemoteException
+    {
+        flush();
+        final String[] labels = getColumnLabels();
+        final EnvironmentTableStep[] steps = parameters.values().toArray(
+                                             new EnvironmentTableStep[parameters.size()]);
+        final Column[] loaded = new Column[steps.length];
+        /*
+         * Charge chaque étape l'une après l'autre. Les requêtes de toutes les étapes passent
+         * par la même connexion, sur laquelle le pont JDBC-ODBC et Access n'acceptent pas de
+         * requêtes simultanées provenant de threads différents.
+         */
+        final Connection connection = descriptors.getConnection();
+        try {
+            for (int i=0; i<steps.length; i++) {
+                loaded[i] = load(steps[i], connection);
                 if (progress != null) {
-                    progress.progress((100f/results.length) * i);
+                    progress.progress((100f/loaded.length) * (i+1));
+                }
+            }
+        } catch (SQLException exception) {
+            throw new CatalogException(exception);
+        }
+        /*
+         * Construit la liste de tous les numéros ID, puis ne retient que ceux qui
+         * apparaissent dans toutes les étapes qui n'acceptent pas les valeurs nulles.
+         */
+        int count = 0;
+        for (int i=0; i<loaded.length; i++) {
+            count += loaded[i].count;
+        }
+        int[] IDs = new int[count];
+        count = 0;
+        for (int i=0; i<loaded.length; i++) {
+            System.arraycopy(loaded[i].IDs, 0, IDs, count, loaded[i].count);
+            count += loaded[i].count;
+        }
+        Arrays.sort(IDs);
+        int n = 0;
+        for (int i=0; i<count; i++) {
+            if (n == 0 || IDs[i] != IDs[n-1]) {
+                IDs[n++] = IDs[i];
+            }
+        }
+        final int[] hits = new int[n];
+        int required = 0;
+        for (int i=0; i<steps.length; i++) {
+            if (!steps[i].nullIncluded) {
+                required++;
+                final Column column = loaded[i];
+                int r = 0;
+                for (int k=0; k<column.count; k++) {
+                    while (IDs[r] < column.IDs[k]) r++;
+                    hits[r]++;
                 }
             }
-            assert i == results.length;
-            return new EnvironmentRowSet(results, getColumnLabels(), nullIncluded);
+        }
+        count = 0;
+        for (int i=0; i<n; i++) {
+            if (hits[i] == required) {
+                IDs[count++] = IDs[i];
+            }
+        }
+        IDs = XArray.resize(IDs, count);
+        /*
+         * Copie les valeurs de chaque étape dans les colonnes finales.
+         */
+        final int offset = 1 + getSampleColumnCount();
+        final String[] titles = new String[labels.length - offset];
+        System.arraycopy(labels, offset, titles, 0, titles.length);
+        final float[][] values = new float[titles.length][];
+        int c = 0;
+        for (int i=0; i<loaded.length; i++) {
+            final Column column = loaded[i];
+            final int base = c;
+            for (int j=0; j<column.values.length; j++) {
+                Arrays.fill(values[c++] = new float[count], Float.NaN);
+            }
+            int r = 0;
+            for (int k=0; k<column.count; k++) {
+                final int ID = column.IDs[k];
+                while (r<count && IDs[r] < ID) r++;
+                if (r<count && IDs[r] == ID) {
+                    for (int j=0; j<column.values.length; j++) {
+                        values[base + j][r] = column.values[j][k];
+                    }
+                }
+            }
+        }
+        assert c == values.length;
+        return new EnvironmentColumns(titles, IDs, values);
+    }
+
+    /**
+     * Retourne le nombre de colonnes de la table des échantillons qui apparaissent dans
+     * {@link #getColumnLabels}, sans compter la colonne des numéros ID.
+     */
+    private int getSampleColumnCount() throws RemoteException {
+        try {
+            return (sampleTableStep != null) ? sampleTableStep.getColumns().length - 1 : 0;
         } catch (SQLException e) {
             throw new CatalogException(e);
-        }            
+        }
+    }
+
+    /**
+     * Charge en mémoire toutes les valeurs d'une étape.
+     *
+     * @param  step L'étape à charger.
+     * @param  connection La connexion à utiliser.
+     * @return Les valeurs de l'étape.
+     * @throws RemoteException si l'interrogation du catalogue a échoué.
+     * @throws SQLException si la lecture des valeurs a échoué.
+     */
+    private static Column load(final EnvironmentTableStep step, final Connection connection)
+            throws RemoteException, SQLException
+    {
+        final Column column = new Column();
+        final ResultSet result = step.getResultSet(connection);
+        try {
+            final int numColumns = result.getMetaData().getColumnCount() - 1;
+            column.values = new float[numColumns][column.IDs.length];
+            while (result.next()) {
+                final int row = column.count;
+                if (row == column.IDs.length) {
+                    column.IDs = XArray.resize(column.IDs, 2*row);
+                    for (int j=0; j<numColumns; j++) {
+                        column.values[j] = XArray.resize(column.values[j], 2*row);
+                    }
+                }
+                column.IDs[row] = result.getInt(1);
+                for (int j=0; j<numColumns; j++) {
+                    final float value = result.getFloat(j+2);
+                    column.values[j][row] = result.wasNull() ? Float.NaN : value;
+                }
+                column.count++;
+            }
+        } finally {
+            result.close();
+        }
+        return column;
     }
 
     /**
@@ -486,12 +756,10 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
             throws RemoteException
     {
         try {
-            final ResultSet       source = getRowSet(progress);
+            final ResultSet       source = getRowSet(progress, false);
             final ResultSetMetaData meta = source.getMetaData();
             final int        columnCount = meta.getColumnCount();
-            final boolean[]       isDate = new boolean[columnCount];
-            final Statement      creator;
-            final ResultSet         dest;
+            final Connection      target = (connection!=null) ? connection : descriptors.getConnection();
             /*
              * Create the destination table. The table must not exists prior to this call.
              * All values (except the ID in column 0) are stored as 32 bits floating point.
@@ -516,7 +784,6 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
                             case Types.TIME: // Fall through
                             case Types.TIMESTAMP: {
                                 // TODO: On aimerait déclarer que ce champ doit être indexé (avec doublons)...
-                                isDate[i] = true;
                                 buffer.append("TIMESTAMP");
                                 break;
                             }
@@ -539,14 +806,9 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
                 }
                 buffer.append(')');
                 final String sqlCreate = buffer.toString();
-                creator = (connection!=null ? connection : descriptors.getConnection()).createStatement(
-                               ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_UPDATABLE);
+                final Statement creator = target.createStatement();
                 creator.execute(sqlCreate);
-                buffer.setLength(0);
-                buffer.append("SELECT * FROM \"");
-                buffer.append(tableName);
-                buffer.append('"');
-                dest = creator.executeQuery(buffer.toString());
+                creator.close();
                 if (true) {
                     // Log the SQL statement.
                     final LogRecord record = new LogRecord(SampleDataBase.SQL_UPDATE, sqlCreate);
@@ -556,51 +818,86 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
                 }
             }
             /*
-             * Copy all values to the destination table.  The progress bar is updated
-             * assuming that ID has uniformely distributed random values ranging from
-             * Integer.MIN_VALUE to Integer.MAX_VALUE.
+             * Copy all values to the destination table, by batches of INSERT statements.
              */
-            final float minID = Integer.MIN_VALUE;
-            final float maxID = Integer.MAX_VALUE;
-            if (progress != null) {
-                progress.setDescription("Copie des données");
-                progress.progress(0);
-            }
-            int count = 0;
-            while (source.next()) {
-                final int ID = source.getInt(1);
-                if (progress!=null && (count & 0xFF)==0) {
-                    progress.progress((ID - minID) / ((maxID-minID)/100));
-                }
-                dest.moveToInsertRow();
-                dest.updateInt(1, ID);
-                for (int i=2; i<=columnCount; i++) {
-                    if (isDate[i-1]) {
-                        dest.updateTimestamp(i, source.getTimestamp(i));
-                    } else {
-                        final float x = source.getFloat(i);
-                        if (!source.wasNull()) {
-                            dest.updateFloat(i, x);
-                        } else {
-                            dest.updateNull(i);
-                        }
-                    }
-                }
-                dest.insertRow();
-                count++;
-            }
-            dest.close();
+            final int count = new EnvironmentExport(source, progress).toTable(target, tableName);
             source.close();
-            creator.close();
-            if (progress != null) {
-                progress.complete();
-            }
             return count;
         } catch (SQLException e) {
             throw new CatalogException(e);
         }                                    
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int exportToCSV(final Writer           out,
+                                        final ProgressListener progress) throws IOException
+    {
+        try {
+            final ResultSet source = getRowSet(progress, false);
+            final int count = new EnvironmentExport(source, progress).toCSV(out);
+            source.close();
+            return count;
+        } catch (SQLException e) {
+            throw new CatalogException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized int exportToBinary(final OutputStream     out,
+                                           final ProgressListener progress) throws IOException
+    {
+        try {
+            final ResultSet source = getRowSet(progress, false);
+            final int count = new EnvironmentExport(source, progress).toBinary(out);
+            source.close();
+            return count;
+        } catch (SQLException e) {
+            throw new CatalogException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized Set<Integer> getCompleteSamples(final RelativePositionEntry filter)
+            throws RemoteException
+    {
+        flush();
+        final Set<Integer> samples = new HashSet<Integer>();
+        try {
+            final Connection connection = descriptors.getConnection();
+            boolean first = true;
+            for (final EnvironmentTableStep step : parameters.values()) {
+                if (filter!=null && !filter.equals(step.position)) {
+                    continue;
+                }
+                final EnvironmentTableStep query = step.getNotNullStep();
+                final Set<Integer> IDs = new HashSet<Integer>();
+                final ResultSet result = query.getResultSet(connection);
+                while (result.next()) {
+                    IDs.add(new Integer(result.getInt(1)));
+                }
+                result.close();
+                if (query != step) {
+                    query.close();
+                }
+                if (first) {
+                    samples.addAll(IDs);
+                    first = false;
+                } else {
+                    samples.retainAll(IDs);
+                }
+            }
+        } catch (SQLException e) {
+            throw new CatalogException(e);
+        }
+        return samples;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -624,63 +921,162 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
                 if (Double.isNaN(value)) {
                     continue;
                 }
+                final Cell cell = new Cell(sample.getID(), position, parameter, value);
                 final String[] columns = step.getColumns(false);
                 for (int i=0; i<columns.length; i++) {
-                    final String column = columns[i];
-                    /*
-                     * Tente la requête de mise à jour. Idéalement, cet objet EnvironmentTable
-                     * ne devrait servir à mettre à jour qu'une seule colonne, ce qui signifie
-                     * que l'instruction PreparedStatement ne sera construit qu'une seule fois.
-                     */
-                    if (update!=null && !column.equals(columnUpdate)) {
-                        update.close();
-                        update = null;
-                    }
-                    if (update == null) {
-                        update = descriptors.getConnection().prepareStatement(replaceQuestionMark(SQL_UPDATE, column));
-                        columnUpdate = column;
+                    Map<Cell,Cell> cells = pending.get(columns[i]);
+                    if (cells == null) {
+                        cells = new LinkedHashMap<Cell,Cell>();
+                        pending.put(columns[i], cells);
                     }
-                    update.setInt   (1+ARG_SAMPLE,    sample.getID());
-                    update.setInt   (1+ARG_PARAMETER, parameter);
-                    update.setInt   (1+ARG_POSITION,  position);
-                    update.setDouble(1,               value);
-                    int n = update.executeUpdate();
-                    if (n == 0) {
-                        /*
-                         * Si une ligne n'existait pas déjà pour ce paramètre, insère une nouvelle
-                         * ligne. Encore une fois, cet objet EnvironmentTable ne sera habituellement
-                         * utilisé que pour mettre à jour une seule colonne.
-                         */
-                        if (insert!=null && !column.equals(columnInsert)) {
-                            insert.close();
-                            insert = null;
+                    if (cells.put(cell, cell) == null) {
+                        if (pendingCount++ == 0) {
+                            pendingSince = System.currentTimeMillis();
                         }
-                        if (insert == null) {
-                            insert = descriptors.getConnection().prepareStatement(replaceQuestionMark(SQL_INSERT, column));
-                            columnInsert = column;
-                        }
-                        insert.setInt   (ARG_SAMPLE,    sample.getID());
-                        insert.setInt   (ARG_PARAMETER, parameter);
-                        insert.setInt   (ARG_POSITION,  position);
-                        insert.setDouble(ARG_VALUE,     value);
-                        n = insert.executeUpdate();
-                    }
-                    if (n != 1) {
-                        throw new SQLWarning(Resources.format(ResourceKeys.ERROR_UNEXPECTED_UPDATE_$1,
-                                                                           new Integer(n)));
                     }
                 }
             }
             assert index == values.length;
+            if (pendingCount >= BATCH_SIZE ||
+                System.currentTimeMillis() - pendingSince >= FLUSH_DELAY)
+            {
+                flush();
+            }
         } catch (SQLException e) {
             throw new CatalogException(e);
         }                                    
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void flush() throws RemoteException {
+        if (pendingCount == 0) {
+            return;
+        }
+        try {
+            final Connection connection = descriptors.getConnection();
+            if (batchSupported == null) {
+                batchSupported = Boolean.valueOf(connection.getMetaData().supportsBatchUpdates());
+            }
+            for (final Map.Entry<String, Map<Cell,Cell>> entry : pending.entrySet()) {
+                final String  column = entry.getKey();
+                final Cell[]  cells  = entry.getValue().values().toArray(new Cell[entry.getValue().size()]);
+                final int  inserted  = write(connection, column, cells);
+                final int  updated   = cells.length - inserted;
+                updateCount += updated;
+                insertCount += inserted;
+                final LogRecord record = new LogRecord(Level.FINE, "Colonne \"" + column + "\": " +
+                        updated + " enregistrement(s) mis à jour, " + inserted + " inséré(s).");
+                record.setSourceClassName("EnvironmentTable");
+                record.setSourceMethodName("flush");
+                SampleDataBase.LOGGER.log(record);
+            }
+        } catch (SQLException e) {
+            throw new CatalogException(e);
+        } finally {
+            /*
+             * Les valeurs sont oubliées même en cas d'erreur, afin que l'erreur
+             * ne soit pas répétée à chaque appel suivant de 'set' ou 'close'.
+             */
+            pending.clear();
+            pendingCount = 0;
+        }
+    }
+
+    /**
+     * Écrit les valeurs d'une colonne. Toutes les valeurs sont d'abord soumises en un seul lot
+     * d'instructions <code>UPDATE</code>. Les enregistrements qui n'existaient pas encore sont
+     * ensuite ajoutés en un second lot d'instructions <code>INSERT</code>. Si le pilote ne
+     * sait pas indiquer le nombre d'enregistrements modifiés par chaque instruction d'un lot,
+     * les instructions concernées sont exécutées à nouveau une à une.
+     *
+     * @param  connection La connexion vers la base de données.
+     * @param  column Le nom de la colonne à mettre à jour.
+     * @param  cells Les valeurs à écrire.
+     * @return Le nombre d'enregistrements insérés.
+     * @throws SQLException si l'écriture a échoué.
+     */
+    private int write(final Connection connection, final String column, final Cell[] cells)
+            throws SQLException
+    {
+        final List<Cell> missing = new ArrayList<Cell>();
+        PreparedStatement statement = connection.prepareStatement(replaceQuestionMark(SQL_UPDATE, column));
+        try {
+            final int[] counts = execute(statement, cells, 1, batchSupported.booleanValue());
+            for (int i=0; i<cells.length; i++) {
+                int n = counts[i];
+                if (n == Statement.SUCCESS_NO_INFO) {
+                    n = execute(statement, new Cell[] {cells[i]}, 1, false)[0];
+                }
+                if (n == 0) {
+                    missing.add(cells[i]);
+                } else if (n != 1) {
+                    throw new SQLWarning(Resources.format(ResourceKeys.ERROR_UNEXPECTED_UPDATE_$1,
+                                                                       new Integer(n)));
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        statement = connection.prepareStatement(replaceQuestionMark(SQL_INSERT, column));
+        try {
+            final int[] counts = execute(statement, missing.toArray(new Cell[missing.size()]),
+                                         0, batchSupported.booleanValue());
+            for (int i=0; i<counts.length; i++) {
+                final int n = counts[i];
+                if (n != 1 && n != Statement.SUCCESS_NO_INFO) {
+                    throw new SQLWarning(Resources.format(ResourceKeys.ERROR_UNEXPECTED_UPDATE_$1,
+                                                                       new Integer(n)));
+                }
+            }
+        } finally {
+            statement.close();
+        }
+        return missing.size();
+    }
+
+    /**
+     * Exécute l'instruction spécifiée pour chacune des cellules.
+     *
+     * @param  statement L'instruction <code>UPDATE</code> ou <code>INSERT</code> à exécuter.
+     * @param  cells Les valeurs à écrire.
+     * @param  shift Décalage à ajouter aux numéros d'arguments: 1 pour <code>UPDATE</code>
+     *         (dont la valeur est le premier argument), ou 0 pour <code>INSERT</code>.
+     * @param  batch <code>true</code> pour soumettre toutes les instructions en un seul lot.
+     * @return Le nombre d'enregistrements modifiés par chaque instruction.
+     * @throws SQLException si l'exécution a échoué.
+     */
+    private static int[] execute(final PreparedStatement statement, final Cell[] cells,
+                                 final int shift, final boolean batch) throws SQLException
+    {
+        final int[] counts = new int[cells.length];
+        for (int i=0; i<cells.length; i++) {
+            final Cell cell = cells[i];
+            statement.setInt   (shift + ARG_SAMPLE,    cell.sample);
+            statement.setInt   (shift + ARG_PARAMETER, cell.parameter);
+            statement.setInt   (shift + ARG_POSITION,  cell.position);
+            statement.setDouble((shift != 0) ? 1 : ARG_VALUE, cell.value);
+            if (batch) {
+                statement.addBatch();
+            } else {
+                counts[i] = statement.executeUpdate();
+            }
+        }
+        if (batch) {
+            return statement.executeBatch();
+        }
+        return counts;
+    }
+
     /**
      * {@inheritDoc}
      */
     public synchronized void clear() throws RemoteException {
+        flush();
         for (final EnvironmentTableStep step : parameters.values()) {
             step.close();
         }
@@ -693,13 +1089,15 @@ final class EnvironmentTable extends Table implements fr.ird.database.sample.Env
      */
     public synchronized void close() throws RemoteException {
         try {
-            if (insert != null) {
-                insert.close();
-                insert = null;
-            }
-            if (update != null) {
-                update.close();
-                update = null;
+            flush();
+            if (updateCount != 0 || insertCount != 0) {
+                final LogRecord record = new LogRecord(Level.INFO, "Valeurs environnementales: " +
+                        updateCount + " enregistrement(s) mis à jour, " + insertCount + " inséré(s).");
+                record.setSourceClassName("EnvironmentTable");
+                record.setSourceMethodName("close");
+                SampleDataBase.LOGGER.log(record);
+                updateCount = 0;
+                insertCount = 0;
             }
             if (descriptors != null) {
                 descriptors.close();
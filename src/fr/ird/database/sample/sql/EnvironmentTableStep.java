@@ -207,6 +207,26 @@ final class EnvironmentTableStep extends Table {
         }
     }
 
+    /**
+     * Retourne une étape équivalente à celle-ci, mais qui omet les enregistrements dont au moins
+     * une des colonnes est nulle. Si cette étape omet déjà ces enregistrements, alors cette
+     * méthode retourne <code>this</code>.
+     *
+     * @throws RemoteException si l'opération a échouée.
+     */
+    final synchronized EnvironmentTableStep getNotNullStep() throws RemoteException {
+        if (!nullIncluded) {
+            return this;
+        }
+        final EnvironmentTableStep step = new EnvironmentTableStep(parameter, position, false);
+        if (columns != null) {
+            for (final OperationEntry column : columns) {
+                step.addColumn(column);
+            }
+        }
+        return step;
+    }
+
     /**
      * Retourne les valeurs environnementales en utilisant la connexion spécifiée.
      *
@@ -69,6 +69,13 @@ final class OperationTable
         super(connection, type);
     }
 
+    /**
+     * Retourne le numéro ID de l'entrée spécifiée.
+     */
+    protected Integer getID(final OperationEntry entry) {
+        return new Integer(entry.getID());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -133,6 +133,13 @@ final class ParameterTable
         }
     }
     
+    /**
+     * Retourne le numéro ID de l'entrée spécifiée.
+     */
+    protected Integer getID(final ParameterEntry entry) {
+        return new Integer(entry.getID());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -63,6 +63,13 @@ final class RelativePositionTable
         super(connection, type);
     }
 
+    /**
+     * Retourne le numéro ID de l'entrée spécifiée.
+     */
+    protected Integer getID(final RelativePositionEntry entry) {
+        return new Integer(entry.getID());
+    }
+
     /**
      * {@inheritDoc}
      */
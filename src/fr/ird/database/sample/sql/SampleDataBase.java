@@ -41,8 +41,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.TimeZone;
-import java.io.IOException;
 import java.io.File;
+import java.io.Writer;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 
 // Geotools
 import org.geotools.resources.Arguments;
@@ -484,6 +489,8 @@ public class SampleDataBase extends SQLDataBase implements fr.ird.database.sampl
      * <blockquote><pre>
      *  <b>-config</b> <i></i>       Configure la base de données (interface graphique)
      *  <b>-copyTo</b> <i>table</i>  Copie les données dans une table au lieu de les afficher.
+     *  <b>-csv</b> <i>filename</i>  Écrit les données dans un fichier CSV au lieu de les afficher.
+     *  <b>-binary</b> <i>filename</i> Écrit les données dans un fichier binaire par colonnes.
      *  <b>-count</b> <i>n</i>       Nombre maximal d'enregistrement à afficher (20 par défaut).
      *  <b>-o</b> <i>operation</i>   Ajoute une opération (exemple: "valeur", "sobel3", etc.).
      *  <b>-p</b> <i>parameter</i>   Ajoute un paramètre (exemple: "SST", "CHL", etc.).
@@ -514,6 +521,8 @@ public class SampleDataBase extends SQLDataBase implements fr.ird.database.sampl
         final boolean     config = console.getFlag("-config");
         final Integer maxRecords = console.getOptionalInteger("-count");
         final String      copyTo = console.getOptionalString("-copyTo");
+        final String       toCSV = console.getOptionalString("-csv");
+        final String    toBinary = console.getOptionalString("-binary");
         final String sampleTable = console.getOptionalString("-samples");
         if (config) {
             getSQLEditor().showDialog(null);
@@ -560,6 +569,20 @@ public class SampleDataBase extends SQLDataBase implements fr.ird.database.sampl
                 table.setSampleTable(sampleTable);
                 if (copyTo != null) {
                     table.copyToTable(null, copyTo, new ProgressPrinter(console.out));
+                } else if (toCSV != null) {
+                    final Writer out = new BufferedWriter(new FileWriter(toCSV));
+                    try {
+                        table.exportToCSV(out, new ProgressPrinter(console.out));
+                    } finally {
+                        out.close();
+                    }
+                } else if (toBinary != null) {
+                    final OutputStream out = new FileOutputStream(toBinary);
+                    try {
+                        table.exportToBinary(out, new ProgressPrinter(console.out));
+                    } finally {
+                        out.close();
+                    }
                 } else {
                     table.print(console.out, (maxRecords!=null) ? maxRecords.intValue() : 20);
                 }
@@ -88,6 +88,11 @@ abstract class SampleTable extends Table implements fr.ird.database.sample.Sampl
     /** Numéro d'argument. */ private static final int ARG_VALUE = 1;
     /** Numéro d'argument. */ private static final int ARG_ID    = 2;
 
+    /**
+     * Nombre maximal de mises à jour soumises en un seul lot par {@link #setValues}.
+     */
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * The SQL instruction to use for query sample data. The "SELECT" clause
      * in this instruction <strong>do not</strong> include species. Species
@@ -486,20 +491,105 @@ abstract class SampleTable extends Table implements fr.ird.database.sample.Sampl
             }
             update.setObject(ARG_VALUE, value);
             update.setInt(ARG_ID, sample.getID());
-            switch (update.executeUpdate()) {
-                case 1: {
-                    break;
+            check(update.executeUpdate(), sample);
+        } catch (SQLException e) {
+            throw new CatalogException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final synchronized void setValues(final SampleEntry[] samples,
+                                             final String     columnName,
+                                             final float[]        values)
+        throws RemoteException
+    {
+        if (samples.length != values.length) {
+            throw new IllegalArgumentException("Le nombre de valeurs ne correspond pas.");
+        }
+        if (samples.length == 0) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            final Connection connection = statement.getConnection();
+            final boolean batch = connection.getMetaData().supportsBatchUpdates();
+            final boolean autoCommit = connection.getAutoCommit();
+            final PreparedStatement update = connection.prepareStatement(
+                                             replaceQuestionMark(SQL_UPDATE, columnName));
+            boolean success = false;
+            try {
+                /*
+                 * Si l'appelant gère déjà une transaction, les mises à jour en font partie.
+                 * Sinon, toutes les mises à jour sont faites dans une seule transaction.
+                 */
+                if (autoCommit) {
+                    connection.setAutoCommit(false);
                 }
-                case 0: {
-                    throw new SQLWarning(Resources.format(ResourceKeys.ERROR_SAMPLE_NOT_FOUND_$1, sample));
+                for (int lower=0; lower<samples.length; lower+=BATCH_SIZE) {
+                    final int upper = Math.min(lower + BATCH_SIZE, samples.length);
+                    for (int i=lower; i<upper; i++) {
+                        update.setFloat(ARG_VALUE, values[i]);
+                        update.setInt  (ARG_ID,    samples[i].getID());
+                        if (batch) {
+                            update.addBatch();
+                        } else {
+                            check(update.executeUpdate(), samples[i]);
+                        }
+                    }
+                    if (batch) {
+                        final int[] counts = update.executeBatch();
+                        for (int i=0; i<counts.length; i++) {
+                            if (counts[i] != Statement.SUCCESS_NO_INFO) {
+                                check(counts[i], samples[lower + i]);
+                            }
+                        }
+                    }
+                }
+                if (autoCommit) {
+                    connection.commit();
                 }
-                default: {
-                    throw new SQLWarning(Resources.format(ResourceKeys.ERROR_DUPLICATED_RECORD_$1, sample));
+                success = true;
+            } finally {
+                if (autoCommit) {
+                    if (!success) {
+                        connection.rollback();
+                    }
+                    connection.setAutoCommit(true);
                 }
+                update.close();
             }
         } catch (SQLException e) {
             throw new CatalogException(e);
         }
+        final LogRecord record = new LogRecord(Level.FINE, "Colonne \"" + columnName + "\": " +
+                samples.length + " enregistrement(s) mis à jour en " +
+                (System.currentTimeMillis() - start) / 1000.0 + " secondes.");
+        record.setSourceClassName ("SampleTable");
+        record.setSourceMethodName("setValues");
+        SampleDataBase.LOGGER.log(record);
+    }
+
+    /**
+     * Vérifie le nombre d'enregistrements modifiés par la mise à jour d'un échantillon.
+     *
+     * @param  count  Nombre d'enregistrements modifiés.
+     * @param  sample Echantillon qui a été mis à jour.
+     * @throws SQLWarning si ce nombre n'est pas 1.
+     */
+    private static void check(final int count, final SampleEntry sample) throws SQLWarning {
+        switch (count) {
+            case 1: {
+                break;
+            }
+            case 0: {
+                throw new SQLWarning(Resources.format(ResourceKeys.ERROR_SAMPLE_NOT_FOUND_$1, sample));
+            }
+            default: {
+                throw new SQLWarning(Resources.format(ResourceKeys.ERROR_DUPLICATED_RECORD_$1, sample));
+            }
+        }
     }
 
     /**
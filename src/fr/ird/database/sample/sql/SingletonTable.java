@@ -25,7 +25,10 @@ import java.rmi.RemoteException;
 // Collections
 import java.util.Set;
 import java.util.Map;
+import java.util.List;
 import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 
 // Seagis
@@ -74,6 +77,9 @@ import fr.ird.resources.seagis.ResourceKeys;
  *
  * Les entrés obtenus lors des appels précédents seront cachés pour un accès plus rapide la
  * prochaine fois qu'une méthode <code>getEntry(...)</code> est appelée avec la même clé.
+ * Les tables de petite taille peuvent aussi être chargées entièrement d'avance par
+ * {@link #refresh}; les méthodes <code>getEntry(...)</code> et {@link #list()} ne
+ * prennent alors plus de verrou et n'interrogent plus la base de données.
  *
  * @version $Id$
  * @author Martin Desruisseaux
@@ -129,6 +135,33 @@ abstract class SingletonTable<T extends Entry, Timpl extends T> extends Table {
      *       table {@link EnvironmentTable}. Ce compromis nous semble acceptable.
      */
     final Map<Object,Timpl> pool = new HashMap<Object,Timpl>();
+
+    /**
+     * Le contenu complet de la table tel que chargé par {@link #refresh}, ou <code>null</code>
+     * si la table n'a pas été chargée d'avance. Cet objet est immutable; il est remplacé en
+     * bloc à chaque appel de {@link #refresh}, de sorte que les lectures n'ont pas besoin
+     * de verrou.
+     */
+    private volatile Snapshot<T,Timpl> snapshot;
+
+    /**
+     * Le contenu complet d'une table à un instant donné. Les ensembles
+     * et dictionnaires de cet objet ne sont pas modifiables.
+     */
+    private static final class Snapshot<T, Timpl extends T> {
+        /** Les entrées selon leur numéro ID. */ final Map<Integer,Timpl> byID;
+        /** Les entrées selon leur nom.       */ final Map<String, Timpl> byName;
+        /** L'ensemble retourné par list().   */ final Set<T> list;
+
+        /**
+         * Construit un instantané à partir des entrées spécifiées.
+         */
+        Snapshot(final Map<Integer,Timpl> byID, final Map<String,Timpl> byName, final Set<T> list) {
+            this.byID   = Collections.unmodifiableMap(byID);
+            this.byName = Collections.unmodifiableMap(byName);
+            this.list   = Collections.unmodifiableSet(list);
+        }
+    }
     
     /**
      * Construit une table initialisée avec la requête spécifiée.
@@ -359,6 +392,19 @@ abstract class SingletonTable<T extends Entry, Timpl extends T> extends Table {
     protected void postCreateEntry(final Timpl entry) throws CatalogException {
     }
 
+    /**
+     * Retourne le numéro ID de l'entrée spécifiée, ou <code>null</code> si les entrées de cette
+     * table ne sont pas identifiées par un numéro. Cette méthode est utilisée par {@link #refresh}
+     * afin que {@link #getEntry(int)} puisse trouver les entrées chargées d'avance. L'implémentation
+     * par défaut retourne toujours <code>null</code>.
+     *
+     * @param  entry Une entrée construite par {@link #createEntry}.
+     * @return Le numéro ID de l'entrée, ou <code>null</code>.
+     */
+    protected Integer getID(final Timpl entry) {
+        return null;
+    }
+
     /**
      * Retourne une seule entré pour l'objet {@link #statement} courant. Tous les arguments de
      * {@link #statement} doivent avoir été définis avent d'appeler cette méthode. Cette méthode
@@ -412,20 +458,29 @@ abstract class SingletonTable<T extends Entry, Timpl extends T> extends Table {
      * @return L'entré demandé.
      * @throws RemoteException si l'interrogation de la base de données a échouée.
      */
-    public synchronized final Timpl getEntry(final String name) throws RemoteException {
+    public final Timpl getEntry(final String name) throws RemoteException {
         if (name == null) {
             return null;
         }
-        Timpl entry = pool.get(name);
-        if (entry != null) {
-            return entry;
+        final Snapshot<T,Timpl> snapshot = this.snapshot;
+        if (snapshot != null) {
+            final Timpl entry = snapshot.byName.get(name);
+            if (entry != null) {
+                return entry;
+            }
         }
-        try {
-            setType(BY_NAME);
-            statement.setString(1, name);
-            return executeQuery(name);
-        } catch (SQLException e) {
-            throw new CatalogException(e);
+        synchronized (this) {
+            Timpl entry = pool.get(name);
+            if (entry != null) {
+                return entry;
+            }
+            try {
+                setType(BY_NAME);
+                statement.setString(1, name);
+                return executeQuery(name);
+            } catch (SQLException e) {
+                throw new CatalogException(e);
+            }
         }
     }
 
@@ -436,46 +491,124 @@ abstract class SingletonTable<T extends Entry, Timpl extends T> extends Table {
      * @return L'entré demandé.
      * @throws RemoteException si l'interrogation de la base de données a échouée.
      */
-    public synchronized final Timpl getEntry(final int ID) throws RemoteException {
+    public final Timpl getEntry(final int ID) throws RemoteException {
         final Integer key = new Integer(ID);
-        Timpl entry = pool.get(key);
-        if (entry != null) {
-            return entry;
+        final Snapshot<T,Timpl> snapshot = this.snapshot;
+        if (snapshot != null) {
+            final Timpl entry = snapshot.byID.get(key);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        synchronized (this) {
+            Timpl entry = pool.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            try {
+                setType(BY_ID);
+                statement.setInt(1, ID);
+                return executeQuery(key);
+            } catch (SQLException e) {
+                throw new CatalogException(e);
+            }
         }
-        try {
-            setType(BY_ID);
-            statement.setInt(1, ID);
-            return executeQuery(key);        
-        } catch (SQLException e) {
-            throw new CatalogException(e);
-        }        
     }
 
     /**
-     * Retourne toutes les entrés disponibles dans la base de données.
+     * Retourne toutes les entrés disponibles dans la base de données. Si la table n'a pas été
+     * {@linkplain #refresh chargée d'avance}, la base de données est interrogée à chaque appel.
+     * Sinon, l'ensemble retourné est celui du dernier chargement et n'est pas modifiable:
+     * <strong>les enregistrements ajoutés depuis dans la base de données n'y apparaîtront
+     * pas</strong> tant que {@link #refresh} n'aura pas été appelée à nouveau.
      */
-    public synchronized final Set<T> list() throws RemoteException {
-        pool.clear(); // Make sure to take in account latest database updates.
-        final Set<T> set = new LinkedHashSet<T>();
+    public final Set<T> list() throws RemoteException {
+        final Snapshot<T,Timpl> snapshot = this.snapshot;
+        if (snapshot != null) {
+            return snapshot.list;
+        }
+        synchronized (this) {
+            pool.clear(); // Make sure to take in account latest database updates.
+            final Set<T> set = new LinkedHashSet<T>();
+            try {
+                setType(LIST);
+                final ResultSet results = statement.executeQuery();
+                while (results.next()) {
+                    final Timpl entry = createEntry(results);
+                    if (accept(entry)) {
+                        Timpl old = pool.put(entry.getName(), entry);
+                        assert old==null : old;
+                        set.add(entry);
+                    }
+                }
+                results.close();
+            } catch (SQLException e) {
+                throw new CatalogException(e);
+            }
+            for (final T entry : set) {
+                postCreateEntry((Timpl) entry);
+            }
+            return set;
+        }
+    }
+
+    /**
+     * Charge d'avance toutes les entrées de la table. Après l'appel de cette méthode, les
+     * méthodes {@link #getEntry(int)}, {@link #getEntry(String)} et {@link #list()} trouvent
+     * leurs entrées sans prendre de verrou et sans interroger la base de données. Seule une
+     * clé absente du dernier chargement provoque encore une requête. Cette méthode est destinée
+     * aux tables de petite taille qui ne changent presque jamais; elle peut être appelée à
+     * nouveau pour prendre en compte des modifications de la base de données.
+     * <br><br>
+     * Les entrées égales à celles qui étaient déjà dans la cache sont conservées, afin que
+     * les objets déjà référencés par d'autres tables restent valides.
+     *
+     * @throws RemoteException si l'interrogation de la base de données a échouée.
+     */
+    public synchronized void refresh() throws RemoteException {
+        final Map<Object,Timpl>  previous = new HashMap<Object,Timpl>(pool);
+        final Map<Integer,Timpl> byID     = new HashMap<Integer,Timpl>();
+        final Map<String, Timpl> byName   = new HashMap<String, Timpl>();
+        final Set<T>             set      = new LinkedHashSet<T>();
+        final List<Timpl>        entries  = new ArrayList<Timpl>();
+        pool.clear();
         try {
             setType(LIST);
             final ResultSet results = statement.executeQuery();
             while (results.next()) {
-                final Timpl entry = createEntry(results);
+                Timpl entry = createEntry(results);
+                final String  name = entry.getName();
+                final Integer ID   = getID(entry);
+                Timpl old = previous.get(name);
+                if (old == null && ID != null) {
+                    old = previous.get(ID);
+                }
+                if (entry.equals(old)) {
+                    entry = old;
+                }
+                byName.put(name, entry);
+                pool  .put(name, entry);
+                if (ID != null) {
+                    byID.put(ID, entry);
+                    pool.put(ID, entry);
+                }
                 if (accept(entry)) {
-                    Timpl old = pool.put(entry.getName(), entry);
-                    assert old==null : old;
                     set.add(entry);
                 }
+                entries.add(entry);
             }
             results.close();
         } catch (SQLException e) {
             throw new CatalogException(e);
         }
-        for (final T entry : set) {
-            postCreateEntry((Timpl) entry);
+        /*
+         * Toutes les entrées sont dans la cache avant que 'postCreateEntry' ne soit appelée,
+         * de sorte que les requêtes qu'elle provoque sur cette table les trouveront.
+         */
+        for (final Timpl entry : entries) {
+            postCreateEntry(entry);
         }
-        return set;
+        snapshot = new Snapshot<T,Timpl>(byID, byName, set);
     }
 
     /**
@@ -494,6 +627,7 @@ abstract class SingletonTable<T extends Entry, Timpl extends T> extends Table {
      * {@inheritDoc}
      */
     public synchronized void close() throws RemoteException {
+        snapshot = null;
         pool.clear();
         super.close();
     }
@@ -120,6 +120,12 @@ public abstract class AbstractDataBase extends UnicastRemoteObject implements Da
      */
     protected final Connection connection;
 
+    /**
+     * Réserve de connexions dont fait partie {@link #connection}, ou <code>null</code>
+     * si cette base de données n'est pas connectée.
+     */
+    private final ConnectionPool pool;
+
     /**
      * Fuseau horaire des dates inscrites dans la base de données.
      * Cette information est utilisée pour convertir en heure GMT
@@ -196,15 +202,39 @@ public abstract class AbstractDataBase extends UnicastRemoteObject implements Da
         }
         if (source.equals("offline")) {
             this.connection = null;
+            this.pool       = null;
         } else {
             if (user!=null && user.trim().length()!=0) {
                 this.connection = DriverManager.getConnection(source, user, password);
             } else {
                 this.connection = DriverManager.getConnection(source);
             }
+            this.pool = new ConnectionPool(source, user, password, connection,
+                                           Runtime.getRuntime().availableProcessors());
         }
     }
 
+    /**
+     * Retourne la réserve de connexions de cette base de données, ou <code>null</code>
+     * si cette base de données n'est pas connectée. Cette réserve peut être utilisée
+     * pour obtenir des statistiques ou pour ajuster le nombre maximal de connexions.
+     */
+    public ConnectionPool getConnectionPool() {
+        return pool;
+    }
+
+    /**
+     * Retourne une connexion pour l'usage exclusif d'une table. La connexion retournée
+     * doit être fermée en même temps que la table, ce qui la rendra à la réserve. Si
+     * cette base de données n'est pas connectée, alors cette méthode retourne
+     * <code>null</code>.
+     *
+     * @throws SQLException si une nouvelle connexion n'a pas pu être ouverte.
+     */
+    protected final Connection leaseConnection() throws SQLException {
+        return (pool != null) ? pool.lease() : null;
+    }
+
     /**
      * Retourne le fuseau horaire des dates
      * exprimées dans cette base de données.
@@ -271,6 +301,7 @@ public abstract class AbstractDataBase extends UnicastRemoteObject implements Da
             }
         }
         if (connection != null) try {
+            pool.close();
             connection.close();
         } catch (SQLException e) {
             throw new CatalogException(e);
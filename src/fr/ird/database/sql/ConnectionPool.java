@@ -0,0 +1,462 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sql;
+
+// J2SE dependencies
+import java.util.Map;
+import java.util.Iterator;
+import java.util.IdentityHashMap;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.DriverManager;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Method;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+
+// Geotools dependencies
+import org.geotools.resources.Utilities;
+
+
+/**
+ * Réserve de connexions vers une base de données. Chaque table qui doit pouvoir interroger la
+ * base de données indépendamment des autres (par exemple deux tables d'images de séries
+ * différentes) obtient sa propre connexion par {@link #lease}, ce qui évite que les requêtes
+ * de threads différents ne soient mises en file d'attente derrière une connexion unique.
+ * <br><br>
+ * Les connexions retournées par {@link #lease} sont des <em>baux</em>: appeler leur méthode
+ * {@link Connection#close close()} rend la connexion à la réserve au lieu de la fermer. Une
+ * connexion inoccupée est toujours réutilisée en priorité. Si aucune ne l'est et que le
+ * nombre maximal de connexions est atteint, {@link #lease} attend qu'une connexion soit
+ * rendue pendant au plus {@link #getMaximumWait} millisecondes, puis partage la connexion la
+ * moins utilisée (ce qui était le comportement de toutes les tables avant l'introduction de
+ * cette réserve). Une table qui ne serait jamais fermée ne peut donc pas bloquer les autres.
+ * <br><br>
+ * La connexion principale de la base de données fait partie de la réserve et n'est jamais
+ * fermée par cette classe. Puisque les tables qui n'utilisent pas la réserve l'emploient
+ * directement, elle porte un bail permanent: elle n'est jamais accordée comme connexion
+ * inoccupée, et n'est partagée que lorsque la réserve est saturée.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ *
+ * @see AbstractDataBase#getConnectionPool
+ */
+public final class ConnectionPool {
+    /**
+     * Source, utilisateur et mot de passe à utiliser pour ouvrir de nouvelles connexions.
+     */
+    private final String source, user, password;
+
+    /**
+     * La connexion principale de la base de données. Elle ne sera pas fermée par {@link #close}.
+     */
+    private final Connection primary;
+
+    /**
+     * Toutes les connexions ouvertes, avec le nombre de baux présentement actifs sur chacune.
+     * Le nombre de baux de la connexion principale compte un bail permanent.
+     */
+    private final Map<Connection,Integer> leases = new IdentityHashMap<Connection,Integer>();
+
+    /**
+     * Nombre de connexions en cours d'ouverture. Ces connexions sont comptées dans la taille
+     * de la réserve, mais n'apparaissent pas encore dans {@link #leases}.
+     */
+    private int opening;
+
+    /**
+     * Nombre maximal de connexions que peut ouvrir cette réserve.
+     */
+    private int maximumSize;
+
+    /**
+     * Temps maximal (en millisecondes) pendant lequel {@link #lease} attend qu'une connexion
+     * soit rendue avant de partager une connexion occupée.
+     */
+    private long maximumWait = 1000;
+
+    /**
+     * Nombre de fois où {@link #lease} a dû attendre, et temps total d'attente en millisecondes.
+     */
+    private long waitCount, waitTime;
+
+    /**
+     * Nombre de baux qui ont dû partager une connexion déjà occupée.
+     */
+    private long sharedCount;
+
+    /**
+     * Nombre total de baux accordés.
+     */
+    private long leaseCount;
+
+    /**
+     * <code>true</code> si cette réserve a été fermée.
+     */
+    private boolean closed;
+
+    /**
+     * Construit une réserve de connexions.
+     *
+     * @param source      Protocole et nom de la base de données.
+     * @param user        Nom d'utilisateur, ou <code>null</code>.
+     * @param password    Mot de passe, ou <code>null</code>.
+     * @param primary     La connexion principale de la base de données.
+     * @param maximumSize Nombre maximal de connexions, incluant la connexion principale.
+     */
+    ConnectionPool(final String source, final String user, final String password,
+                   final Connection primary, final int maximumSize)
+    {
+        this.source      = source;
+        this.user        = user;
+        this.password    = password;
+        this.primary     = primary;
+        this.maximumSize = Math.max(1, maximumSize);
+        leases.put(primary, 1);
+    }
+
+    /**
+     * Retourne une connexion pour l'usage d'une table. La connexion retournée doit être
+     * fermée lorsque la table n'en a plus besoin, ce qui la rendra à la réserve.
+     *
+     * @return Un bail sur une connexion de la réserve.
+     * @throws SQLException si une nouvelle connexion n'a pas pu être ouverte, ou si la
+     *         réserve a été fermée.
+     */
+    public Connection lease() throws SQLException {
+        Connection connection;
+        synchronized (this) {
+            connection = select();
+            if (connection == null && !canOpen()) {
+                /*
+                 * Si la réserve ne peut contenir que la connexion principale, son bail
+                 * permanent ne sera jamais rendu: elle est partagée sans attendre.
+                 */
+                if (maximumSize > 1) {
+                    final long start = System.currentTimeMillis();
+                    long remaining = maximumWait;
+                    waitCount++;
+                    try {
+                        while (connection == null && remaining > 0 && !canOpen()) {
+                            wait(remaining);
+                            connection = select();
+                            remaining = maximumWait - (System.currentTimeMillis() - start);
+                        }
+                    } catch (InterruptedException exception) {
+                        // Stop waiting and share a connection.
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        waitTime += System.currentTimeMillis() - start;
+                    }
+                }
+                if (connection == null && !canOpen()) {
+                    connection = leastUsed();
+                    sharedCount++;
+                }
+            }
+            if (connection != null) {
+                leases.put(connection, leases.get(connection) + 1);
+                leaseCount++;
+                return wrap(connection);
+            }
+            opening++;
+        }
+        /*
+         * Aucune connexion n'était disponible, mais la réserve n'est pas pleine: ouvre
+         * une nouvelle connexion en dehors du bloc synchronisé, car cette opération
+         * peut être longue.
+         */
+        try {
+            if (user!=null && user.trim().length()!=0) {
+                connection = DriverManager.getConnection(source, user, password);
+            } else {
+                connection = DriverManager.getConnection(source);
+            }
+        } finally {
+            synchronized (this) {
+                opening--;
+                if (connection != null) {
+                    leases.put(connection, 1);
+                    leaseCount++;
+                }
+                notifyAll();
+            }
+        }
+        return wrap(connection);
+    }
+
+    /**
+     * Retourne une connexion inoccupée, ou <code>null</code> si aucune ne l'est. Dans ce
+     * dernier cas, {@link #canOpen} indique si une nouvelle connexion peut être ouverte.
+     */
+    private Connection select() throws SQLException {
+        assert Thread.holdsLock(this);
+        if (closed) {
+            throw new SQLException("Connection pool is closed.");
+        }
+        for (final Map.Entry<Connection,Integer> entry : leases.entrySet()) {
+            if (entry.getValue().intValue() == 0) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Indique si une nouvelle connexion peut être ouverte sans dépasser la taille maximale.
+     */
+    private boolean canOpen() {
+        return leases.size() + opening < maximumSize;
+    }
+
+    /**
+     * Retourne la connexion qui a le moins de baux actifs.
+     */
+    private Connection leastUsed() {
+        assert Thread.holdsLock(this);
+        Connection best = primary;
+        int min = Integer.MAX_VALUE;
+        for (final Map.Entry<Connection,Integer> entry : leases.entrySet()) {
+            final int count = entry.getValue().intValue();
+            if (count < min) {
+                min  = count;
+                best = entry.getKey();
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Rend à la réserve une connexion obtenue par {@link #lease}.
+     */
+    private synchronized void release(final Connection connection) throws SQLException {
+        final Integer count = leases.get(connection);
+        if (count != null) {
+            final int n = count.intValue() - 1;
+            leases.put(connection, Math.max((connection == primary) ? 1 : 0, n));
+            if (n <= 0) {
+                if (closed && connection != primary) {
+                    leases.remove(connection);
+                    connection.close();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Enveloppe la connexion spécifiée dans un bail, dont la méthode
+     * {@link Connection#close close()} rendra la connexion à la réserve.
+     */
+    private Connection wrap(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class[] {Connection.class}, new Lease(connection));
+    }
+
+    /**
+     * Un bail sur une connexion. Toutes les méthodes sont déléguées à la connexion, à
+     * l'exception de {@link Connection#close} qui rend la connexion à la réserve. Un bail
+     * ne peut être rendu qu'une seule fois.
+     */
+    private final class Lease implements InvocationHandler {
+        /** La connexion, ou <code>null</code> si elle a été rendue. */
+        private Connection connection;
+
+        /** Construit un bail sur la connexion spécifiée. */
+        Lease(final Connection connection) {
+            this.connection = connection;
+        }
+
+        /** Délègue l'appel à la connexion. */
+        public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable
+        {
+            final String name = method.getName();
+            final Connection c;
+            synchronized (this) {
+                c = connection;
+                if (name.equals("close")) {
+                    connection = null;
+                }
+            }
+            if (name.equals("close")) {
+                if (c != null) {
+                    release(c);
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return Boolean.valueOf(c == null || c.isClosed());
+            }
+            if (name.equals("equals")) {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            if (name.equals("hashCode")) {
+                return new Integer(System.identityHashCode(proxy));
+            }
+            if (name.equals("toString")) {
+                return "Lease[" + c + ']';
+            }
+            if (c == null) {
+                throw new SQLException("Connection lease is closed.");
+            }
+            try {
+                return method.invoke(c, args);
+            } catch (InvocationTargetException exception) {
+                throw exception.getTargetException();
+            }
+        }
+    }
+
+    /**
+     * Retourne le nombre maximal de connexions que peut ouvrir cette réserve,
+     * incluant la connexion principale.
+     */
+    public synchronized int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Modifie le nombre maximal de connexions que peut ouvrir cette réserve. Les connexions
+     * déjà ouvertes ne sont pas fermées si la nouvelle taille est plus petite.
+     *
+     * @param size Le nombre maximal de connexions, incluant la connexion principale.
+     * @throws IllegalArgumentException si <code>size</code> est inférieur à 1.
+     */
+    public synchronized void setMaximumSize(final int size) throws IllegalArgumentException {
+        if (size < 1) {
+            throw new IllegalArgumentException(String.valueOf(size));
+        }
+        maximumSize = size;
+        notifyAll();
+    }
+
+    /**
+     * Retourne le temps maximal (en millisecondes) pendant lequel {@link #lease} attend
+     * qu'une connexion soit rendue avant de partager une connexion occupée.
+     */
+    public synchronized long getMaximumWait() {
+        return maximumWait;
+    }
+
+    /**
+     * Modifie le temps maximal (en millisecondes) pendant lequel {@link #lease} attend
+     * qu'une connexion soit rendue avant de partager une connexion occupée.
+     *
+     * @param wait Le temps d'attente maximal, en millisecondes.
+     * @throws IllegalArgumentException si <code>wait</code> est négatif.
+     */
+    public synchronized void setMaximumWait(final long wait) throws IllegalArgumentException {
+        if (wait < 0) {
+            throw new IllegalArgumentException(String.valueOf(wait));
+        }
+        maximumWait = wait;
+    }
+
+    /**
+     * Retourne le nombre de connexions présentement ouvertes, incluant la connexion principale.
+     */
+    public synchronized int getSize() {
+        return leases.size();
+    }
+
+    /**
+     * Retourne le nombre de connexions qui ont au moins un bail actif. La connexion
+     * principale est toujours comptée, puisqu'elle porte un bail permanent.
+     */
+    public synchronized int getActiveCount() {
+        int count = 0;
+        for (final Integer n : leases.values()) {
+            if (n.intValue() != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retourne le nombre total de baux accordés depuis la création de cette réserve.
+     */
+    public synchronized long getLeaseCount() {
+        return leaseCount;
+    }
+
+    /**
+     * Retourne le nombre de baux qui ont dû partager une connexion déjà occupée, faute
+     * de connexion rendue à temps.
+     */
+    public synchronized long getSharedCount() {
+        return sharedCount;
+    }
+
+    /**
+     * Retourne le nombre de fois où {@link #lease} a dû attendre qu'une connexion soit rendue.
+     */
+    public synchronized long getWaitCount() {
+        return waitCount;
+    }
+
+    /**
+     * Retourne le temps total (en millisecondes) passé à attendre qu'une connexion soit rendue.
+     */
+    public synchronized long getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Ferme toutes les connexions inoccupées, à l'exception de la connexion principale. Les
+     * connexions encore utilisées seront fermées lorsque leur dernier bail sera rendu.
+     *
+     * @throws SQLException si une connexion n'a pas pu être fermée.
+     */
+    synchronized void close() throws SQLException {
+        closed = true;
+        SQLException failure = null;
+        for (final Iterator<Map.Entry<Connection,Integer>> it=leases.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Connection,Integer> entry = it.next();
+            final Connection connection = entry.getKey();
+            if (connection != primary && entry.getValue().intValue() == 0) {
+                it.remove();
+                try {
+                    connection.close();
+                } catch (SQLException exception) {
+                    failure = exception;
+                }
+            }
+        }
+        notifyAll();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Retourne une chaîne de caractères résumant l'état de cette réserve.
+     */
+    public synchronized String toString() {
+        final StringBuilder buffer = new StringBuilder(Utilities.getShortClassName(this));
+        buffer.append("[size=")    .append(leases.size());
+        buffer.append(", active=") .append(getActiveCount());
+        buffer.append(", maximum=").append(maximumSize);
+        buffer.append(", leases=") .append(leaseCount);
+        buffer.append(", shared=") .append(sharedCount);
+        buffer.append(", waits=")  .append(waitCount);
+        buffer.append(", waitTime=").append(waitTime);
+        buffer.append(']');
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE dependencies
+import java.util.Random;
+import java.awt.geom.Point2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.GeneralPath;
+import java.awt.geom.Rectangle2D;
+
+// JUnit dependencies
+import junit.framework.*;
+
+// Geotools dependencies
+import org.geotools.cs.Ellipsoid;
+import org.geotools.resources.geometry.ShapeUtilities;
+
+
+/**
+ * Compare les distances calculées par {@link CoastIndex} avec celles d'un balayage exhaustif
+ * de tous les segments de la côte. Ce test n'utilise pas de base de données: les côtes sont
+ * des polylignes aléatoires construites en mémoire.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ */
+public class CoastIndexTest extends TestCase {
+    /**
+     * Ellipsoïde à utiliser pour les calculs de distances orthodromiques.
+     */
+    private static final Ellipsoid ELLIPSOID = Ellipsoid.WGS84;
+
+    /**
+     * Construit la suite de tests.
+     */
+    public CoastIndexTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Compare l'index avec le balayage exhaustif pour plusieurs côtes aléatoires. Les points
+     * testés couvrent une région plus grande que la côte, afin qu'une partie d'entre eux se
+     * trouve à l'extérieur du rectangle englobant de la côte et de la grille de l'index.
+     */
+    public void testDistance() {
+        final Random random = new Random(872364521);
+        for (int pass=0; pass<20; pass++) {
+            final GeneralPath coast = createCoast(random, 1 + random.nextInt(8));
+            final CoastIndex  index = new CoastIndex(coast, ELLIPSOID);
+            final Rectangle2D bounds = coast.getBounds2D();
+            int outside = 0;
+            for (int i=0; i<200; i++) {
+                final double x = 80*random.nextDouble() -  40;
+                final double y = 160*random.nextDouble() - 80;
+                if (!bounds.contains(x, y)) {
+                    outside++;
+                }
+                final double expected = bruteForce(coast, x, y);
+                assertEquals(expected, index.distance(x, y), 1E-6);
+            }
+            assertTrue(outside != 0);
+        }
+    }
+
+    /**
+     * Vérifie que la distance d'un point situé sur un sommet de la côte est nulle,
+     * et que la distance à une côte vide est indéterminée.
+     */
+    public void testDegenerated() {
+        final GeneralPath coast = new GeneralPath();
+        coast.moveTo(-5, 10);
+        coast.lineTo( 5, 12);
+        coast.lineTo( 6, -3);
+        final CoastIndex index = new CoastIndex(coast, ELLIPSOID);
+        assertEquals(2, index.getSegmentCount());
+        assertEquals(0, index.distance(5, 12), 1E-6);
+        assertTrue(Double.isNaN(new CoastIndex(new GeneralPath(), ELLIPSOID).distance(0, 0)));
+    }
+
+    /**
+     * Construit une côte aléatoire formée du nombre de polylignes spécifié.
+     * Certaines polylignes sont fermées.
+     */
+    private static GeneralPath createCoast(final Random random, final int lineCount) {
+        final GeneralPath coast = new GeneralPath();
+        for (int n=0; n<lineCount; n++) {
+            float x = 20*random.nextFloat() - 10;
+            float y = 40*random.nextFloat() - 20;
+            coast.moveTo(x, y);
+            final int pointCount = 1 + random.nextInt(30);
+            for (int i=0; i<pointCount; i++) {
+                x = Math.max(-10, Math.min(10, x + (float) random.nextGaussian()));
+                y = Math.max(-20, Math.min(20, y + (float) random.nextGaussian()));
+                coast.lineTo(x, y);
+            }
+            if (random.nextBoolean()) {
+                coast.closePath();
+            }
+        }
+        return coast;
+    }
+
+    /**
+     * Calcule la distance en mètres entre le point spécifié et le segment le plus proche
+     * de la côte, en examinant tous les segments.
+     */
+    private static double bruteForce(final GeneralPath coast, final double px, final double py) {
+        double smallestDistance = Double.POSITIVE_INFINITY;
+        final double[] buffer = new double[6];
+        final PathIterator it = coast.getPathIterator(null, ShapeUtilities.getFlatness(coast));
+        double x0=0, y0=0, x1=0, y1=0;
+        for (; !it.isDone(); it.next()) {
+            final double x2, y2;
+            switch (it.currentSegment(buffer)) {
+                case PathIterator.SEG_MOVETO: {
+                    x0 = x1 = buffer[0];
+                    y0 = y1 = buffer[1];
+                    continue;
+                }
+                case PathIterator.SEG_LINETO: {
+                    x2 = buffer[0];
+                    y2 = buffer[1];
+                    break;
+                }
+                case PathIterator.SEG_CLOSE: {
+                    x2 = x0;
+                    y2 = y0;
+                    break;
+                }
+                default: {
+                    throw new AssertionError();
+                }
+            }
+            final Point2D point = ShapeUtilities.nearestColinearPoint(x1, y1, x2, y2, px, py);
+            final double distance = ELLIPSOID.orthodromicDistance(point.getX(), point.getY(), px, py);
+            if (distance < smallestDistance) {
+                smallestDistance = distance;
+            }
+            x1 = x2;
+            y1 = y2;
+        }
+        return smallestDistance;
+    }
+
+    /**
+     * Retourne la suite de tests.
+     */
+    public static Test suite() {
+        return new TestSuite(CoastIndexTest.class);
+    }
+
+    /**
+     * Exécute la suite de tests à partir de la ligne de commande.
+     */
+    public static void main(final String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
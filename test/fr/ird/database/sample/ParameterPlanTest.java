@@ -0,0 +1,231 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE dependencies
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.Date;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Arrays;
+import java.awt.geom.Point2D;
+
+// JUnit dependencies
+import junit.framework.*;
+
+// Geotools dependencies
+import org.geotools.pt.Envelope;
+import org.geotools.cv.SampleDimension;
+import org.geotools.cs.CoordinateSystem;
+import org.geotools.cs.CompoundCoordinateSystem;
+import org.geotools.cs.TemporalCoordinateSystem;
+import org.geotools.cs.GeographicCoordinateSystem;
+
+// Seagis dependencies
+import fr.ird.database.Coverage3D;
+import fr.ird.database.coverage.SeriesEntry;
+
+
+/**
+ * Teste la compilation du modèle linéaire de {@link ParameterCoverage3D} en un plan
+ * d'évaluation, et l'évaluation de ce plan. Ce test n'utilise pas de base de données:
+ * les paramètres, descripteurs et couvertures sont construits en mémoire.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ */
+public class ParameterPlanTest extends TestCase {
+    /**
+     * Système de coordonnées des couvertures de test.
+     */
+    private static final CoordinateSystem CS = new CompoundCoordinateSystem("Test",
+            GeographicCoordinateSystem.WGS84, new TemporalCoordinateSystem("Test", new Date(0)));
+
+    /**
+     * Construit la suite de tests.
+     */
+    public ParameterPlanTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Teste un modèle <code>C + a*SST + b*C*SLA</code>, où <code>C</code> est le descripteur
+     * identité. Le premier terme ne contient que l'identité, et le dernier la contient en plus
+     * d'un descripteur ordinaire. Le plan est évalué par {@link ParameterCoverage3D}, point
+     * par point et pour plusieurs points à la fois.
+     */
+    public void testIntercept() throws RemoteException {
+        final Series    sst = new Series("SST");
+        final Series    sla = new Series("SLA");
+        final Parameter C   = new Parameter(0, null);
+        final Parameter SST = new Parameter(1, sst);
+        final Parameter SLA = new Parameter(2, sla);
+        final Descriptor dSST = new Descriptor(SST);
+        final Descriptor dSLA = new Descriptor(SLA);
+        final LinearModelTerm[] model = {
+            new Term(-500, new Descriptor(C)),
+            new Term(  10, dSST),
+            new Term( 0.1, new Descriptor(C), dSLA)
+        };
+        final Map<ParameterCoverage3D.SeriesKey,Coverage3D> coverages =
+                new HashMap<ParameterCoverage3D.SeriesKey,Coverage3D>();
+        coverages.put(new ParameterCoverage3D.SeriesKey(sst, null, null), new Constant(26));
+        coverages.put(new ParameterCoverage3D.SeriesKey(sla, null, null), new Constant( 3));
+
+        final ParameterCoverage3D.Plan plan = ParameterCoverage3D.compile(new Parameter(3, null), model, coverages);
+        assertEquals(2, plan.descriptors.length);
+        assertEquals(2, plan.coverages  .length);
+        assertSame(dSST, plan.descriptors[0]);
+        assertSame(dSLA, plan.descriptors[1]);
+        assertTrue(Arrays.equals(new int[] {0, 1, 2}, plan.termEnd));
+        for (int d=0; d<plan.coverages.length; d++) {
+            assertNotNull(plan.coverages[d]);
+            assertNotNull(plan.coverages[d][0]);
+        }
+        /*
+         * Evalue le plan par ParameterCoverage3D, d'abord pour un seul point
+         * puis pour plusieurs points à la fois.
+         */
+        final double expected = -500 + 10*26 + 0.1*3;
+        final ParameterCoverage3D coverage = new ParameterCoverage3D(null, CS);
+        coverage.setPlan(plan);
+        final double[] value = coverage.evaluate(new Point2D.Double(40, -18), new Date(0), (double[]) null);
+        assertEquals(expected, value[0], 1E-9);
+        final double[] values = coverage.evaluate(new double[] {40, 45, 50},
+                                                  new double[] {-18, -20, -22},
+                                                  new long  [] {0, 1000, 2000}, null);
+        assertEquals(3, values.length);
+        for (int i=0; i<values.length; i++) {
+            assertEquals(expected, values[i], 1E-9);
+        }
+    }
+
+    /**
+     * Une série de test.
+     */
+    private static final class Series implements SeriesEntry {
+        private final String name;
+        Series(final String name)  {this.name = name;}
+        public String getName()    {return name;}
+        public String getRemarks() {return null;}
+        public double getPeriod()  {return 1;}
+    }
+
+    /**
+     * Un paramètre de test, lu dans la première bande d'une seule série.
+     * Le paramètre est l'identité si sa série est nulle.
+     */
+    private static final class Parameter implements ParameterEntry {
+        private final int    ID;
+        private final Series series;
+        Parameter(final int ID, final Series series) {
+            this.ID     = ID;
+            this.series = series;
+        }
+        public int     getID()              {return ID;}
+        public String  getName()            {return (series != null) ? series.getName() : "C";}
+        public String  getRemarks()         {return null;}
+        public boolean isIdentity()         {return series == null;}
+        public SeriesEntry getSeries(int n) {return (n == 0) ? series : null;}
+        public int     getBand()            {return 1;}
+        public List<? extends LinearModelTerm> getLinearModel() {return null;}
+    }
+
+    /**
+     * Un descripteur de test, sans décalage ni opération. Les valeurs ne sont
+     * pas transformées par la normalisation.
+     */
+    private static final class Descriptor implements DescriptorEntry {
+        private final Parameter parameter;
+        Descriptor(final Parameter parameter) {this.parameter = parameter;}
+        public String getName()                            {return parameter.getName();}
+        public String getRemarks()                         {return null;}
+        public ParameterEntry getParameter()               {return parameter;}
+        public RelativePositionEntry getRelativePosition() {return Position.NONE;}
+        public OperationEntry getOperation()               {return null;}
+        public double normalize(final double value)        {return value;}
+    }
+
+    /**
+     * Une position relative de test, qui ne décale ni la position ni la date.
+     */
+    private static final class Position implements RelativePositionEntry {
+        static final Position NONE = new Position();
+        public int     getID()                          {return 0;}
+        public String  getName()                        {return "Aucun décalage";}
+        public String  getRemarks()                     {return null;}
+        public Date    getTime(SampleEntry sample)      {return sample.getTime();}
+        public Point2D getCoordinate(SampleEntry sample){return sample.getCoordinate();}
+        public void    applyOffset        (Point2D coordinate, Date time) {}
+        public void    applyOppositeOffset(Point2D coordinate, Date time) {}
+        public float   getTypicalTimeOffset()           {return 0;}
+        public boolean isDefault()                      {return true;}
+    }
+
+    /**
+     * Un terme du modèle linéaire de test.
+     */
+    private static final class Term implements LinearModelTerm {
+        private final double coefficient;
+        private final List<DescriptorEntry> descriptors;
+        Term(final double coefficient, final DescriptorEntry... descriptors) {
+            this.coefficient = coefficient;
+            this.descriptors = Arrays.asList(descriptors);
+        }
+        public ParameterEntry getTarget()           {return null;}
+        public List<DescriptorEntry> getDescriptors() {return descriptors;}
+        public double getCoefficient()              {return coefficient;}
+    }
+
+    /**
+     * Une couverture de test qui retourne la même valeur partout.
+     */
+    private static final class Constant extends Coverage3D {
+        private final double value;
+        Constant(final double value) {
+            super("Constant", CS);
+            this.value = value;
+        }
+        public Envelope getEnvelope() {
+            return new Envelope(3);
+        }
+        public SampleDimension[] getSampleDimensions() {
+            return new SampleDimension[] {new SampleDimension()};
+        }
+        public double[] evaluate(final Point2D point, final Date time, double[] dest) {
+            if (dest == null) {
+                dest = new double[1];
+            }
+            dest[0] = value;
+            return dest;
+        }
+    }
+
+    /**
+     * Retourne la suite de tests.
+     */
+    public static Test suite() {
+        return new TestSuite(ParameterPlanTest.class);
+    }
+
+    /**
+     * Exécute la suite de tests à partir de la ligne de commande.
+     */
+    public static void main(final String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}
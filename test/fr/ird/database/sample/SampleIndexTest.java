@@ -0,0 +1,245 @@
+/*
+ * Remote sensing images: database and visualisation
+ * Copyright (C) 2003 Institut de Recherche pour le Développement
+ *
+ *
+ *    This library is free software; you can redistribute it and/or
+ *    modify it under the terms of the GNU Library General Public
+ *    License as published by the Free Software Foundation; either
+ *    version 2 of the License, or (at your option) any later version.
+ *
+ *    This library is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *    Library General Public License for more details (http://www.gnu.org/).
+ */
+package fr.ird.database.sample;
+
+// J2SE dependencies
+import java.util.Set;
+import java.util.Map;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import javax.media.jai.util.Range;
+
+// JUnit dependencies
+import junit.framework.*;
+
+// Geotools dependencies
+import org.geotools.cs.Ellipsoid;
+import org.geotools.units.Unit;
+
+// Seagis dependencies
+import fr.ird.animat.Species;
+
+
+/**
+ * Compare les distances calculées par {@link SampleIndex} avec celles du balayage en
+ * O(<var>n</var>²) des échantillons classés par date, qui était utilisé auparavant par
+ * {@link SampleTableFiller#computeInterSampleDistances}. Ce test n'utilise pas de base
+ * de données: les échantillons et les campagnes sont construits en mémoire.
+ *
+ * @version $Id$
+ * @author Martin Desruisseaux
+ */
+public class SampleIndexTest extends TestCase {
+    /**
+     * Ellipsoïde à utiliser pour les calculs de distances orthodromiques.
+     */
+    private static final Ellipsoid ELLIPSOID = Ellipsoid.WGS84;
+
+    /**
+     * Ecart de temps maximal entre deux échantillons, en millisecondes.
+     */
+    private static final long MAX_TIME_LAG = 12*60*60*1000L;
+
+    /**
+     * Construit la suite de tests.
+     */
+    public SampleIndexTest(final String name) {
+        super(name);
+    }
+
+    /**
+     * Compare l'index avec le balayage exhaustif sur des échantillons aléatoires. Les dates
+     * sont des multiples du quart de l'écart de temps maximal, de sorte que beaucoup d'écarts
+     * sont exactement égaux à cet écart maximal et que les candidats se répartissent entre
+     * l'intervalle de temps de l'échantillon et les intervalles voisins. Peu de campagnes
+     * sont utilisées afin que l'exclusion des échantillons de la même campagne soit fréquente.
+     */
+    public void testDistance() {
+        final Random random = new Random(419283746);
+        for (int pass=0; pass<10; pass++) {
+            final Cruise[] cruises = new Cruise[1 + random.nextInt(5)];
+            for (int i=0; i<cruises.length; i++) {
+                cruises[i] = new Cruise(i);
+            }
+            final List<SampleEntry> samples = new ArrayList<SampleEntry>();
+            final int count = 50 + random.nextInt(400);
+            for (int i=0; i<count; i++) {
+                /*
+                 * Une nouvelle instance de campagne est créée pour chaque échantillon, afin de
+                 * vérifier que les campagnes sont comparées avec 'equals' plutôt qu'avec '=='.
+                 * Quelques échantillons n'ont pas de campagne, de position ou de date.
+                 */
+                final int     c      = random.nextInt(cruises.length + 1);
+                final Cruise  cruise = (c < cruises.length) ? new Cruise(c) : null;
+                final Point2D coord  = new Point2D.Double(20*random.nextDouble(), 60*random.nextDouble() - 30);
+                final Date    time   = new Date(random.nextInt(40) * (MAX_TIME_LAG/4));
+                switch (random.nextInt(50)) {
+                    case 0:  samples.add(new Sample(cruise, null,  time)); break;
+                    case 1:  samples.add(new Sample(cruise, coord, null)); break;
+                    default: samples.add(new Sample(cruise, coord, time)); break;
+                }
+            }
+            final SampleIndex index = new SampleIndex(samples, MAX_TIME_LAG, ELLIPSOID);
+            final List<SampleEntry> valid = new ArrayList<SampleEntry>();
+            for (final SampleEntry sample : samples) {
+                if (sample.getCoordinate()!=null && sample.getTime()!=null) {
+                    valid.add(sample);
+                }
+            }
+            assertEquals(valid.size(), index.getSampleCount());
+            final Map<SampleEntry,Double> expected = bruteForce(valid);
+            for (int i=0; i<index.getSampleCount(); i++) {
+                final Double distance = expected.get(index.getSample(i));
+                assertNotNull(distance);
+                assertEquals(distance.doubleValue(), index.distance(i), 1E-6);
+            }
+        }
+    }
+
+    /**
+     * Vérifie sur quelques échantillons choisis que le candidat situé exactement à l'écart de
+     * temps maximal est retenu, que celui qui le dépasse d'une milliseconde est écarté, et que
+     * les échantillons de la même campagne sont ignorés même s'ils sont plus proches.
+     */
+    public void testBoundaries() {
+        final List<SampleEntry> samples = new ArrayList<SampleEntry>();
+        samples.add(new Sample(new Cruise(1), new Point2D.Double(10,   0), new Date(MAX_TIME_LAG)));
+        samples.add(new Sample(new Cruise(2), new Point2D.Double(12,   0), new Date(0)));
+        samples.add(new Sample(new Cruise(2), new Point2D.Double(11,   0), new Date(2*MAX_TIME_LAG + 1)));
+        samples.add(new Sample(new Cruise(1), new Point2D.Double(10, 0.1), new Date(MAX_TIME_LAG)));
+        samples.add(new Sample(new Cruise(3), new Point2D.Double(40,  30), new Date(10*MAX_TIME_LAG)));
+        final SampleIndex index = new SampleIndex(samples, MAX_TIME_LAG, ELLIPSOID);
+        assertEquals(5, index.getSampleCount());
+        for (int i=0; i<index.getSampleCount(); i++) {
+            final SampleEntry sample = index.getSample(i);
+            final double distance = index.distance(i);
+            if (sample == samples.get(0) || sample == samples.get(3)) {
+                final double expected = ELLIPSOID.orthodromicDistance(
+                        sample.getCoordinate(), samples.get(1).getCoordinate());
+                assertEquals(expected, distance, 1E-6);
+            } else if (sample == samples.get(4)) {
+                assertTrue(Double.isNaN(distance));
+            }
+        }
+    }
+
+    /**
+     * Calcule la distance de chaque échantillon à l'échantillon le plus proche d'une autre
+     * campagne, en balayant les échantillons classés par date comme le faisait l'ancienne
+     * version de {@link SampleTableFiller#computeInterSampleDistances}.
+     */
+    private static Map<SampleEntry,Double> bruteForce(final List<SampleEntry> list) {
+        final Map<SampleEntry,Double> distances = new IdentityHashMap<SampleEntry,Double>();
+        final SampleEntry[] samples = list.toArray(new SampleEntry[list.size()]);
+        Arrays.sort(samples, new Comparator<SampleEntry>() {
+            public int compare(final SampleEntry e1, final SampleEntry e2) {
+                return e1.getTime().compareTo(e2.getTime());
+            }
+        });
+        for (int i=0; i<samples.length; i++) {
+            final SampleEntry  sample = samples[i];
+            final CruiseEntry  cruise = sample.getCruise();
+            final long           time = sample.getTime().getTime();
+            final Point2D       coord = sample.getCoordinate();
+            double   smallestDistance = Double.POSITIVE_INFINITY;
+            int scanDirection = -1;
+            do { // Run this loop exactly 2 times.
+                for (int j=i; (j+=scanDirection)>=0 && j<samples.length;) {
+                    final SampleEntry candidate = samples[j];
+                    if (Math.abs(time - candidate.getTime().getTime()) > MAX_TIME_LAG) {
+                        break;
+                    }
+                    if (cruise != null) {
+                        if (cruise.equals(candidate.getCruise())) {
+                            continue;
+                        }
+                    }
+                    final double distance = ELLIPSOID.orthodromicDistance(coord, candidate.getCoordinate());
+                    if (distance < smallestDistance) {
+                        smallestDistance = distance;
+                    }
+                }
+            }
+            while ((scanDirection = -scanDirection) >= 0);
+            distances.put(sample, Double.isInfinite(smallestDistance) ? Double.NaN : smallestDistance);
+        }
+        return distances;
+    }
+
+    /**
+     * Une campagne de test. Deux campagnes sont égales si elles ont le même numéro.
+     */
+    private static final class Cruise implements CruiseEntry {
+        private final int ID;
+        Cruise(final int ID)       {this.ID = ID;}
+        public int    getID()      {return ID;}
+        public String getName()    {return String.valueOf(ID);}
+        public String getRemarks() {return null;}
+        public int    hashCode()   {return ID;}
+        public boolean equals(final Object object) {
+            return (object instanceof Cruise) && ((Cruise) object).ID == ID;
+        }
+    }
+
+    /**
+     * Un échantillon de test, sans espèce ni valeur.
+     */
+    private static final class Sample implements SampleEntry {
+        private final Cruise  cruise;
+        private final Point2D coordinate;
+        private final Date    time;
+        Sample(final Cruise cruise, final Point2D coordinate, final Date time) {
+            this.cruise     = cruise;
+            this.coordinate = coordinate;
+            this.time       = time;
+        }
+        public String      getName()                       {return null;}
+        public String      getRemarks()                    {return null;}
+        public CruiseEntry getCruise()                     {return cruise;}
+        public Point2D     getCoordinate()                 {return coordinate;}
+        public Shape       getShape()                      {return null;}
+        public Date        getTime()                       {return time;}
+        public Range       getTimeRange()                  {return null;}
+        public boolean     intersects(Rectangle2D rect)    {return false;}
+        public Species     getDominantSpecies()            {return null;}
+        public Set<Species> getSpecies()                   {return null;}
+        public float       getValue(final Species species) {return Float.NaN;}
+        public float       getValue()                      {return Float.NaN;}
+        public Unit        getUnit()                       {return null;}
+    }
+
+    /**
+     * Retourne la suite de tests.
+     */
+    public static Test suite() {
+        return new TestSuite(SampleIndexTest.class);
+    }
+
+    /**
+     * Exécute la suite de tests à partir de la ligne de commande.
+     */
+    public static void main(final String[] args) {
+        junit.textui.TestRunner.run(suite());
+    }
+}